@@ -0,0 +1,88 @@
+package de.nenick.workinterruption.aggregation;
+
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Aggregates synthetic task columns with 1, 2, 4 ... threads up to the number of cores and
+ * prints the best time of several runs per grouping and the speedup over one thread.
+ */
+public class AggregationBenchmark {
+
+    private static final String[] CATEGORIES = {"work", "call", "colleague", "mail", "meeting", "break", "chat", "review"};
+    private static final int RUNS = 7;
+
+    /**
+     * Arguments: optionally the number of tasks, default five million over ten years, and the
+     * most threads, default the number of cores.
+     */
+    public static void main(String[] args) {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 5000000;
+        TaskColumns columns = generate(tasks, 10 * 365);
+        TimeZone zone = TimeZone.getTimeZone("Europe/Berlin");
+        Dimension[][] groupings = {
+                {Dimension.DAY, Dimension.CATEGORY},
+                {Dimension.WEEK},
+                {Dimension.CATEGORY, Dimension.HOUR}
+        };
+        int cores = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        System.out.println(tasks + " tasks, up to " + cores + " threads");
+        System.out.println("grouping,threads,millis,speedup");
+        for (Dimension[] dimensions : groupings) {
+            Grouping grouping = new Grouping(columns, zone, dimensions);
+            long single = 0;
+            for (int threads = 1; ; threads = Math.min(cores, threads * 2)) {
+                long best = best(columns, grouping, threads);
+                if (threads == 1) {
+                    single = best;
+                }
+                System.out.printf("%s,%d,%.1f,%.2f%n", name(dimensions), threads, best / 1e6, (double) single / best);
+                if (threads == cores) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /** @return best time of the runs in nanoseconds */
+    private static long best(TaskColumns columns, Grouping grouping, int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            ColumnAggregation aggregation = new ColumnAggregation(pool);
+            long best = Long.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                aggregation.aggregate(columns, grouping);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            return best;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Tasks in start order spread evenly over the given number of days, durations of a few minutes. */
+    static TaskColumns generate(int tasks, int days) {
+        Random random = new Random(42);
+        long[] started = new long[tasks];
+        int[] duration = new int[tasks];
+        int[] categoryId = new int[tasks];
+        long first = 1262304000000L; // 2010-01-01
+        long step = (long) days * Grouping.DAY_MILLIS / tasks;
+        for (int row = 0; row < tasks; row++) {
+            started[row] = first + row * step;
+            duration[row] = 60 * 1000 + random.nextInt(30 * 60 * 1000);
+            categoryId[row] = random.nextInt(CATEGORIES.length);
+        }
+        return new TaskColumns(started, duration, categoryId, tasks, CATEGORIES);
+    }
+
+    private static String name(Dimension[] dimensions) {
+        StringBuilder name = new StringBuilder();
+        for (Dimension dimension : dimensions) {
+            name.append(name.length() == 0 ? "" : "+").append(dimension.name().toLowerCase());
+        }
+        return name.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package de.nenick.workinterruption.aggregation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sums {@link TaskColumns} per group on the threads of a fork/join pool.
+ *
+ * <P>The rows are split in halves until a range has at most the leaf size. Each pool thread
+ * adds its ranges into its own primitive accumulator, so there is no locking and no sharing
+ * of cache lines while the rows are read. The accumulators are added up once at the end, which
+ * costs the number of groups per thread whatever the number of rows.</P>
+ */
+public class ColumnAggregation {
+
+    /** Rows of a range which is not split any further. */
+    public static final int DEFAULT_LEAF_ROWS = 16 * 1024;
+
+    private final ForkJoinPool pool;
+    private final int leafRows;
+
+    public ColumnAggregation(ForkJoinPool pool) {
+        this(pool, DEFAULT_LEAF_ROWS);
+    }
+
+    public ColumnAggregation(ForkJoinPool pool, int leafRows) {
+        if (leafRows < 1) {
+            throw new IllegalArgumentException("Leaf size " + leafRows);
+        }
+        this.pool = pool;
+        this.leafRows = leafRows;
+    }
+
+    /** @return tasks and durations per group of all rows of the columns */
+    public GroupTotals aggregate(TaskColumns columns, Grouping grouping) {
+        Accumulators accumulators = new Accumulators(grouping.groups());
+        pool.invoke(new Range(columns, grouping, accumulators, 0, columns.size));
+
+        long[] tasks = new long[grouping.groups()];
+        long[] millis = new long[grouping.groups()];
+        for (Accumulator accumulator : accumulators.all.values()) {
+            for (int group = 0; group < tasks.length; group++) {
+                tasks[group] += accumulator.tasks[group];
+                millis[group] += accumulator.millis[group];
+            }
+        }
+        return new GroupTotals(grouping, tasks, millis);
+    }
+
+    private static class Accumulator {
+        final long[] tasks;
+        final long[] millis;
+
+        Accumulator(int groups) {
+            tasks = new long[groups];
+            millis = new long[groups];
+        }
+    }
+
+    /** One accumulator per thread of one aggregation, dropped with it. */
+    private static class Accumulators {
+        private final int groups;
+        final Map<Thread, Accumulator> all = new ConcurrentHashMap<Thread, Accumulator>();
+
+        Accumulators(int groups) {
+            this.groups = groups;
+        }
+
+        /** @return the accumulator of the current thread, only used by it */
+        Accumulator get() {
+            Accumulator accumulator = all.get(Thread.currentThread());
+            if (accumulator == null) {
+                accumulator = new Accumulator(groups);
+                all.put(Thread.currentThread(), accumulator);
+            }
+            return accumulator;
+        }
+    }
+
+    @SuppressWarnings("serial") // never serialized, only run by the pool
+    private class Range extends RecursiveAction {
+        private final TaskColumns columns;
+        private final Grouping grouping;
+        private final Accumulators accumulators;
+        private final int from;
+        private final int to;
+
+        Range(TaskColumns columns, Grouping grouping, Accumulators accumulators, int from, int to) {
+            this.columns = columns;
+            this.grouping = grouping;
+            this.accumulators = accumulators;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafRows) {
+                Accumulator accumulator = accumulators.get();
+                long[] started = columns.started;
+                int[] duration = columns.duration;
+                int[] categoryId = columns.categoryId;
+                for (int row = from; row < to; row++) {
+                    int group = grouping.index(started[row], categoryId[row]);
+                    accumulator.tasks[group]++;
+                    accumulator.millis[group] += duration[row];
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Range(columns, grouping, accumulators, from, middle),
+                    new Range(columns, grouping, accumulators, middle, to));
+        }
+    }
+}
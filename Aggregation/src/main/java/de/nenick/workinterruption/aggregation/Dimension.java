@@ -0,0 +1,17 @@
+package de.nenick.workinterruption.aggregation;
+
+/** What tasks can be grouped by, days and hours are local to the zone of the {@link Grouping}. */
+public enum Dimension {
+
+    /** Local day of the start, the key is the epoch day. */
+    DAY,
+
+    /** Week of the start from Monday, the key is the epoch day of the Monday. */
+    WEEK,
+
+    /** Category, the key is the category id of the {@link TaskColumns}. */
+    CATEGORY,
+
+    /** Local hour of the day of the start, the key is 0 to 23. */
+    HOUR
+}
@@ -0,0 +1,34 @@
+package de.nenick.workinterruption.aggregation;
+
+/** Number of tasks and total duration per group of a {@link Grouping}. */
+public class GroupTotals {
+
+    private final Grouping grouping;
+    private final long[] tasks;
+    private final long[] millis;
+
+    GroupTotals(Grouping grouping, long[] tasks, long[] millis) {
+        this.grouping = grouping;
+        this.tasks = tasks;
+        this.millis = millis;
+    }
+
+    public Grouping grouping() {
+        return grouping;
+    }
+
+    /** @return number of tasks of the group */
+    public long tasks(int group) {
+        return tasks[group];
+    }
+
+    /** @return total duration of the tasks of the group in milliseconds */
+    public long millis(int group) {
+        return millis[group];
+    }
+
+    /** @return number of groups, empty ones included */
+    public int groups() {
+        return tasks.length;
+    }
+}
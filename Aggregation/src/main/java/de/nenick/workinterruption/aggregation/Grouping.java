@@ -0,0 +1,148 @@
+package de.nenick.workinterruption.aggregation;
+
+import java.util.TimeZone;
+
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
+
+/**
+ * Maps each task of some {@link TaskColumns} to a dense group index, from one or more
+ * {@link Dimension}s. The index combines the position of the task in each dimension, the last
+ * dimension varies fastest. Days and weeks are counted from the earliest task, so the number of
+ * groups depends on the time the columns span and not on the number of tasks.
+ */
+public class Grouping {
+
+    /** More groups than this take more memory per thread than the tasks themselves. */
+    public static final int MAX_GROUPS = 1 << 24;
+
+    static final long HOUR_MILLIS = 60L * 60 * 1000;
+    static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    private final TimeBuckets buckets;
+    private final Dimension[] dimensions;
+    private final int[] sizes;
+    private final int[] strides;
+    private final int groups;
+    private final boolean local;
+
+    // first day and monday a task can fall on, a zone offset moves the local day by at most one
+    private final long firstDay;
+    private final long firstWeek;
+
+    /**
+     * @param zone for days, weeks and hours
+     * @throws IllegalArgumentException without dimensions or if there are more than {@link #MAX_GROUPS} groups
+     */
+    public Grouping(TaskColumns columns, TimeZone zone, Dimension... dimensions) {
+        if (dimensions.length == 0) {
+            throw new IllegalArgumentException("No dimension to group by");
+        }
+        this.buckets = TimeBuckets.forZone(zone);
+        this.dimensions = dimensions.clone();
+        boolean empty = columns.size == 0;
+        firstDay = empty ? 0 : floorDiv(columns.minStarted(), DAY_MILLIS) - 1;
+        long lastDay = empty ? 0 : floorDiv(columns.maxStarted(), DAY_MILLIS) + 1;
+        firstWeek = weekStart(firstDay);
+
+        sizes = new int[dimensions.length];
+        boolean local = false;
+        for (int i = 0; i < dimensions.length; i++) {
+            switch (dimensions[i]) {
+                case DAY:
+                    sizes[i] = (int) (lastDay - firstDay + 1);
+                    local = true;
+                    break;
+                case WEEK:
+                    sizes[i] = (int) ((weekStart(lastDay) - firstWeek) / 7 + 1);
+                    local = true;
+                    break;
+                case CATEGORY:
+                    sizes[i] = Math.max(1, columns.categoryCount());
+                    break;
+                default:
+                    sizes[i] = 24;
+                    local = true;
+                    break;
+            }
+        }
+        this.local = local;
+
+        strides = new int[dimensions.length];
+        long stride = 1;
+        for (int i = dimensions.length - 1; i >= 0; i--) {
+            strides[i] = (int) stride;
+            stride *= sizes[i];
+            if (stride > MAX_GROUPS) {
+                throw new IllegalArgumentException("More than " + MAX_GROUPS + " groups");
+            }
+        }
+        groups = (int) stride;
+    }
+
+    /** @return number of group indexes */
+    public int groups() {
+        return groups;
+    }
+
+    /** @return group index of a task */
+    public int index(long started, int categoryId) {
+        long local = this.local ? buckets.localMillis(started) : 0;
+        int index = 0;
+        for (int i = 0; i < dimensions.length; i++) {
+            int position;
+            switch (dimensions[i]) {
+                case DAY:
+                    position = (int) (floorDiv(local, DAY_MILLIS) - firstDay);
+                    break;
+                case WEEK:
+                    position = (int) ((weekStart(floorDiv(local, DAY_MILLIS)) - firstWeek) / 7);
+                    break;
+                case CATEGORY:
+                    position = categoryId;
+                    break;
+                default:
+                    position = (int) ((local - floorDiv(local, DAY_MILLIS) * DAY_MILLIS) / HOUR_MILLIS);
+                    break;
+            }
+            index += position * strides[i];
+        }
+        return index;
+    }
+
+    /** @return number of dimensions grouped by */
+    public int dimensions() {
+        return dimensions.length;
+    }
+
+    /** @return dimension at the position as given to the constructor */
+    public Dimension dimension(int dimension) {
+        return dimensions[dimension];
+    }
+
+    /**
+     * @param dimension position of the dimension as given to the constructor
+     * @return key of the group in the dimension, see {@link Dimension}
+     */
+    public long key(int group, int dimension) {
+        int position = group / strides[dimension] % sizes[dimension];
+        switch (dimensions[dimension]) {
+            case DAY:
+                return firstDay + position;
+            case WEEK:
+                return firstWeek + 7L * position;
+            default:
+                return position;
+        }
+    }
+
+    /** @return the epoch day of the Monday of the week */
+    static long weekStart(long epochDay) {
+        // 1970-01-01 was a Thursday
+        return epochDay - ((epochDay + 3) % 7 + 7) % 7;
+    }
+
+    static long floorDiv(long value, long divisor) {
+        long result = value / divisor;
+        return value % divisor < 0 ? result - 1 : result;
+    }
+}
@@ -0,0 +1,116 @@
+package de.nenick.workinterruption.aggregation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Closed tasks as primitive columns, one array per column of the {@code task} table. The
+ * category is stored as index into a dictionary of all categories, so grouping by it is an
+ * array access.
+ */
+public class TaskColumns {
+
+    /** Start times in milliseconds. */
+    public final long[] started;
+
+    /** Durations in milliseconds. */
+    public final int[] duration;
+
+    /** Index of the category, see {@link #category(int)}. */
+    public final int[] categoryId;
+
+    /** Number of tasks, the arrays may be longer. */
+    public final int size;
+
+    private final String[] categories;
+    private final long minStarted;
+    private final long maxStarted;
+
+    /**
+     * @param categories the category of each id
+     * @throws IllegalArgumentException if a column is shorter than the size or a category id unknown
+     */
+    public TaskColumns(long[] started, int[] duration, int[] categoryId, int size, String[] categories) {
+        if (started.length < size || duration.length < size || categoryId.length < size) {
+            throw new IllegalArgumentException("Columns shorter than " + size + " rows");
+        }
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int row = 0; row < size; row++) {
+            if (categoryId[row] < 0 || categoryId[row] >= categories.length) {
+                throw new IllegalArgumentException("Unknown category id " + categoryId[row] + " in row " + row);
+            }
+            min = Math.min(min, started[row]);
+            max = Math.max(max, started[row]);
+        }
+        this.started = started;
+        this.duration = duration;
+        this.categoryId = categoryId;
+        this.size = size;
+        this.categories = categories.clone();
+        this.minStarted = min;
+        this.maxStarted = max;
+    }
+
+    /** @return category of the id */
+    public String category(int id) {
+        return categories[id];
+    }
+
+    /** @return number of categories, ids are below */
+    public int categoryCount() {
+        return categories.length;
+    }
+
+    /** @return earliest start, {@code Long.MAX_VALUE} without tasks */
+    public long minStarted() {
+        return minStarted;
+    }
+
+    /** @return latest start, {@code Long.MIN_VALUE} without tasks */
+    public long maxStarted() {
+        return maxStarted;
+    }
+
+    /** Collects visited tasks into columns, running tasks are skipped. */
+    public static class Builder implements TaskVisitor {
+
+        private long[] started = new long[1024];
+        private int[] duration = new int[1024];
+        private int[] categoryId = new int[1024];
+        private int size;
+        private final Map<String, Integer> ids = new HashMap<String, Integer>();
+        private final List<String> categories = new ArrayList<String>();
+
+        @Override
+        public void visit(long id, long started, String category, int duration) {
+            if (duration < 0) {
+                return;
+            }
+            if (size == this.started.length) {
+                this.started = Arrays.copyOf(this.started, size * 2);
+                this.duration = Arrays.copyOf(this.duration, size * 2);
+                this.categoryId = Arrays.copyOf(this.categoryId, size * 2);
+            }
+            Integer categoryId = ids.get(category);
+            if (categoryId == null) {
+                categoryId = categories.size();
+                ids.put(category, categoryId);
+                categories.add(category);
+            }
+            this.started[size] = started;
+            this.duration[size] = duration;
+            this.categoryId[size] = categoryId;
+            size++;
+        }
+
+        public TaskColumns build() {
+            return new TaskColumns(started, duration, categoryId, size, categories.toArray(new String[categories.size()]));
+        }
+    }
+}
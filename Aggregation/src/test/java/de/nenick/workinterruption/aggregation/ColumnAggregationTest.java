@@ -0,0 +1,106 @@
+package de.nenick.workinterruption.aggregation;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+
+public class ColumnAggregationTest extends TestCase {
+
+    private static final TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+
+    private ForkJoinPool pool;
+
+    @Override
+    protected void setUp() throws Exception {
+        pool = new ForkJoinPool(4);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pool.shutdown();
+    }
+
+    public void testGroupsByLocalDayAndCategory() throws Exception {
+
+        // given: a call late on sunday 2013-03-31 and work on monday 2013-04-01, in Berlin
+        TaskColumns.Builder builder = new TaskColumns.Builder();
+        builder.visit(1, time(2013, Calendar.MARCH, 31, 23), "call", 61);
+        builder.visit(2, time(2013, Calendar.APRIL, 1, 0), "work", 100);
+        builder.visit(3, time(2013, Calendar.APRIL, 1, 9), "work", 200);
+        builder.visit(4, time(2013, Calendar.APRIL, 1, 10), "work", -1);
+        TaskColumns columns = builder.build();
+
+        // when: they are grouped by day and category
+        Grouping grouping = new Grouping(columns, BERLIN, Dimension.DAY, Dimension.CATEGORY);
+        GroupTotals totals = new ColumnAggregation(pool).aggregate(columns, grouping);
+
+        // then: the running task is skipped, the others are on their local days
+        assertEquals("15795/call=1/61,15796/work=2/300", filled(totals, columns));
+    }
+
+    public void testGroupsByWeekAndHour() throws Exception {
+
+        // given: tasks on sunday and monday at 8:30 and 9:30 local time
+        TaskColumns.Builder builder = new TaskColumns.Builder();
+        builder.visit(1, time(2013, Calendar.MARCH, 31, 8), "call", 10);
+        builder.visit(2, time(2013, Calendar.APRIL, 1, 8), "call", 20);
+        builder.visit(3, time(2013, Calendar.APRIL, 1, 9), "call", 30);
+        TaskColumns columns = builder.build();
+
+        // when: they are grouped by week and by hour
+        GroupTotals weeks = new ColumnAggregation(pool).aggregate(columns, new Grouping(columns, BERLIN, Dimension.WEEK));
+        GroupTotals hours = new ColumnAggregation(pool).aggregate(columns, new Grouping(columns, BERLIN, Dimension.HOUR));
+
+        // then: the weeks start on mondays, the hours are local hours
+        assertEquals("15789=1/10,15796=2/50", filled(weeks, columns));
+        assertEquals("8=2/30,9=1/30", filled(hours, columns));
+    }
+
+    public void testParallelRangesMatchOneRange() throws Exception {
+
+        // given: three years of tasks
+        TaskColumns columns = AggregationBenchmark.generate(100000, 3 * 365);
+        Grouping grouping = new Grouping(columns, BERLIN, Dimension.DAY, Dimension.CATEGORY, Dimension.HOUR);
+
+        // when: they are aggregated in one range and in small ranges on four threads
+        GroupTotals single = new ColumnAggregation(pool, Integer.MAX_VALUE).aggregate(columns, grouping);
+        GroupTotals parallel = new ColumnAggregation(pool, 100).aggregate(columns, grouping);
+
+        // then: the totals are the same
+        long tasks = 0;
+        for (int group = 0; group < single.groups(); group++) {
+            assertEquals(single.tasks(group), parallel.tasks(group));
+            assertEquals(single.millis(group), parallel.millis(group));
+            tasks += parallel.tasks(group);
+        }
+        assertEquals(100000, tasks);
+    }
+
+    private static long time(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance(BERLIN);
+        calendar.clear();
+        calendar.set(year, month, day, hour, 30);
+        return calendar.getTimeInMillis();
+    }
+
+    /** @return keys joined with "/" and totals of the groups with tasks, categories by name */
+    private static String filled(GroupTotals totals, TaskColumns columns) {
+        StringBuilder text = new StringBuilder();
+        Grouping grouping = totals.grouping();
+        for (int group = 0; group < totals.groups(); group++) {
+            if (totals.tasks(group) == 0) {
+                continue;
+            }
+            text.append(text.length() == 0 ? "" : ",");
+            for (int dimension = 0; dimension < grouping.dimensions(); dimension++) {
+                long key = grouping.key(group, dimension);
+                text.append(dimension == 0 ? "" : "/").append(grouping.dimension(dimension) == Dimension.CATEGORY
+                        ? columns.category((int) key) : String.valueOf(key));
+            }
+            text.append('=').append(totals.tasks(group)).append('/').append(totals.millis(group));
+        }
+        return text.toString();
+    }
+}
@@ -13,6 +13,7 @@ import de.nenick.workinterruption.R;
 import de.nenick.workinterruption.application.functions.GetOpenTasksFromBundleFunction;
 import de.nenick.workinterruption.application.functions.GetOpenTasksFromProviderFunction;
 import de.nenick.workinterruption.application.functions.GetTaskListFunction;
+import de.nenick.workinterruption.application.functions.PrefetchTaskListFunction;
 import de.nenick.workinterruption.application.functions.SaveOpenTasksToBundleFunction;
 import de.nenick.workinterruption.application.functions.SaveOpenTasksToProviderFunction;
 import de.nenick.workinterruption.application.functions.SetStatesFromOpenTasksFuncton;
@@ -34,11 +35,13 @@ public class MainActivity extends Activity {
     private SaveOpenTasksToProviderFunction saveOpenTasksToProviderFunction = new SaveOpenTasksToProviderFunction();
     private SaveOpenTasksToBundleFunction saveOpenTasksToBundleFunction = new SaveOpenTasksToBundleFunction();
     private SetStatesFromOpenTasksFuncton setStatesFromOpenTasksFuncton = new SetStatesFromOpenTasksFuncton();
+    private PrefetchTaskListFunction prefetchTaskListFunction = new PrefetchTaskListFunction();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        TaskAlerts.getInstance(this);
 
         if (savedInstanceState != null) {
             getOpenTasksFromBundleFunction.apply(savedInstanceState, this, allTaskManager);
@@ -55,6 +58,7 @@ public class MainActivity extends Activity {
         super.onResume();
         //new GetTaskListFunction().apply(this, new ListView(getBaseContext()));
         getOpenTasksFromProviderFunction.apply(this);
+        prefetchTaskListFunction.apply(this);
     }
 
     @Override
@@ -70,6 +74,7 @@ public class MainActivity extends Activity {
     @Override
     protected void onPause() {
         super.onPause();
+        prefetchTaskListFunction.pause();
         saveOpenTasksToProviderFunction.apply(this, allTaskManager);
     }
 
@@ -0,0 +1,223 @@
+package de.nenick.workinterruption.application;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Toast;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.nenick.workinterruption.R;
+import de.nenick.workinterruption.dataaccess.rules.AlertRule;
+import de.nenick.workinterruption.dataaccess.rules.RuleEngine;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+import static de.nenick.workinterruption.dataaccess.api.WorkInterruption.Task;
+
+/**
+ * Alerts of the rules declared in {@code R.array.alert_rules}, fed by the task switches.
+ *
+ * The recent and the running tasks are replayed from the provider in the background when the
+ * alerts are first used, together with the switches restored until then. Other switches until
+ * then are kept and fed afterwards unless the replay already saw them, so the rules see each
+ * start and stop once.
+ */
+public class TaskAlerts {
+
+    private static final String[] PROJECTION = new String[] {
+            Task.VALUE_STARTED, Task.VALUE_CATEGORY, Task.VALUE_DURATION
+    };
+
+    private static TaskAlerts instance;
+
+    private static final Comparator<Switch> START_ORDER = new Comparator<Switch>() {
+        @Override
+        public int compare(Switch a, Switch b) {
+            return a.time < b.time ? -1 : a.time > b.time ? 1 : 0;
+        }
+    };
+
+    /** A switch which came before the replay was done, or a replayed task. */
+    private static class Switch {
+        final boolean started;
+        final String category;
+        final long time;
+        // of a replayed task
+        final int duration;
+
+        Switch(boolean started, String category, long time) {
+            this(started, category, time, TaskStore.OPEN);
+        }
+
+        Switch(boolean started, String category, long time, int duration) {
+            this.started = started;
+            this.category = category;
+            this.time = time;
+            this.duration = duration;
+        }
+
+        /** @return key of the start, or of the stop of a stopped switch */
+        String key() {
+            return (started ? "start " : "stop ") + category + '\u0000' + time;
+        }
+
+        /** @return key of the stop of a replayed closed task */
+        String stopKey() {
+            return "stop " + category + '\u0000' + (time + duration);
+        }
+    }
+
+    private final Context context;
+    private final RuleEngine engine;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // switches before the replay is done, null afterwards
+    private List<Switch> pending = new ArrayList<Switch>();
+    private List<Switch> restored = new ArrayList<Switch>();
+
+    private TaskAlerts(Context context) {
+        this.context = context;
+        this.engine = RuleEngine.parse(context.getResources().getStringArray(R.array.alert_rules));
+    }
+
+    /** @return the alerts of the app, starts the replay on first use */
+    public static synchronized TaskAlerts getInstance(Context context) {
+        if (instance == null) {
+            instance = new TaskAlerts(context.getApplicationContext());
+            instance.replayLater();
+        }
+        return instance;
+    }
+
+    /** A task switch was turned on. */
+    public void onStarted(String category, long time) {
+        onSwitched(true, category, time);
+    }
+
+    /** A task switch was turned off. */
+    public void onStopped(String category, long time) {
+        onSwitched(false, category, time);
+    }
+
+    /**
+     * A task switch was turned on again for a task which runs since the given time, e.g. after
+     * the activity was recreated. Only the replay needs it, the rules saw the start already.
+     */
+    public synchronized void onRestored(String category, long started) {
+        if (restored != null) {
+            restored.add(new Switch(true, category, started));
+        }
+    }
+
+    private void onSwitched(boolean started, String category, long time) {
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(new Switch(started, category, time));
+                return;
+            }
+        }
+        show(started ? engine.onStarted(category, time) : engine.onStopped(category, time));
+    }
+
+    private void replayLater() {
+        final ContentResolver resolver = context.getContentResolver();
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                long now = System.currentTimeMillis();
+                List<Switch> tasks = query(resolver, now);
+                Set<String> replayed = new HashSet<String>();
+                for (Switch task : tasks) {
+                    replayed.add(task.key());
+                    if (task.duration != TaskStore.OPEN) {
+                        replayed.add(task.stopKey());
+                    }
+                }
+
+                final List<AlertRule> alerts = new ArrayList<AlertRule>();
+                // switches wait until the replay and the earlier switches are fed
+                synchronized (TaskAlerts.this) {
+                    for (Switch task : restored) {
+                        if (replayed.add(task.key())) {
+                            tasks.add(task);
+                        }
+                    }
+                    restored = null;
+                    Collections.sort(tasks, START_ORDER);
+                    for (Switch task : tasks) {
+                        engine.visit(TaskStore.NO_ID, task.time, task.category, task.duration);
+                    }
+                    engine.endReplay(now);
+
+                    for (Switch event : pending) {
+                        // the replay read it from the provider already
+                        if (replayed.contains(event.key())) {
+                            continue;
+                        }
+                        alerts.addAll(event.started
+                                ? engine.onStarted(event.category, event.time) : engine.onStopped(event.category, event.time));
+                    }
+                    pending = null;
+                }
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        show(alerts);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return the tasks which started within twice the horizon, so tasks running into it are
+     * seen, and the running tasks; unordered
+     */
+    private List<Switch> query(ContentResolver resolver, long now) {
+        List<Switch> tasks = new ArrayList<Switch>();
+        Set<String> seen = new HashSet<String>();
+        try {
+            read(resolver.query(Task.CONTENT_URI, PROJECTION, Task.VALUE_STARTED + " >= ?",
+                    new String[]{String.valueOf(now - 2 * engine.horizonMillis())}, null), tasks, seen);
+        } catch (IllegalArgumentException e) {
+            // stores without SQL support can't select the recent tasks
+            Log.w(TaskAlerts.class.getName(), "Replaying the recent tasks failed", e);
+        }
+        read(resolver.query(Task.CONTENT_URI, PROJECTION, Task.SELECTION_OPEN, null, null), tasks, seen);
+        return tasks;
+    }
+
+    private static void read(Cursor cursor, List<Switch> tasks, Set<String> seen) {
+        if (cursor == null) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                Switch task = new Switch(true, cursor.getString(1), cursor.getLong(0),
+                        cursor.isNull(2) ? TaskStore.OPEN : cursor.getInt(2));
+                // a running task started recently comes twice
+                if (seen.add(task.key())) {
+                    tasks.add(task);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void show(List<AlertRule> alerts) {
+        for (AlertRule rule : alerts) {
+            Toast.makeText(context, context.getString(R.string.alert_rule_violated, rule.getText()),
+                    Toast.LENGTH_LONG).show();
+        }
+    }
+}
@@ -39,10 +39,18 @@ public class TaskSwitchManager implements CompoundButton.OnCheckedChangeListener
     public void onCheckedChanged(CompoundButton compoundButton, boolean isActive) {
 
         if(isActive) {
+            // a switch restored from the saved open tasks already has its start
+            long restored = started;
             started = System.currentTimeMillis();
+            if(restored != 0) {
+                TaskAlerts.getInstance(activity).onRestored(category, restored);
+            } else {
+                TaskAlerts.getInstance(activity).onStarted(category, started);
+            }
         } else {
+            long stopped = System.currentTimeMillis();
             ContentValues values = new ContentValues();
-            values.put(Task.VALUE_DURATION, (int) (System.currentTimeMillis() - started));
+            values.put(Task.VALUE_DURATION, (int) (stopped - started));
 
             if(resourceId == 0) {
                 values.put(Task.VALUE_CATEGORY, category);
@@ -53,6 +61,7 @@ public class TaskSwitchManager implements CompoundButton.OnCheckedChangeListener
                 activity.getContentResolver().update(contentUri, values, null, null);
             }
 
+            TaskAlerts.getInstance(activity).onStopped(category, stopped);
             started = 0;
         }
     }
@@ -19,7 +19,7 @@ public class DeleteDoingFunction {
      */
     public void apply(MenuItem item, ContentResolver contentResolver) {
         AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo) item.getMenuInfo();
-        Uri uri = Uri.parse(WorkInterruption.TimeSheet.CONTENT_URI + "/" + info.id);
+        Uri uri = Uri.parse(WorkInterruption.Task.CONTENT_URI + "/" + info.id);
         contentResolver.delete(uri, null, null);
     }
 }
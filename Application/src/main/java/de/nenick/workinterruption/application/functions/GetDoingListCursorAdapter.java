@@ -2,7 +2,6 @@ package de.nenick.workinterruption.application.functions;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.text.format.DateFormat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -11,6 +10,7 @@ import android.widget.TextView;
 
 import de.nenick.workinterruption.R;
 import de.nenick.workinterruption.dataaccess.TimeSheetTable;
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
 
 /** Transform the content human readable. */
 public class GetDoingListCursorAdapter extends CursorAdapter {
@@ -32,7 +32,7 @@ public class GetDoingListCursorAdapter extends CursorAdapter {
         TextView began = (TextView) view.findViewById(R.id.began);
         long timestampInMilliseconds = cursor.getLong(cursor.getColumnIndex(TimeSheetTable.COL_BEGAN));
 
-        CharSequence format = DateFormat.format("E d.M", timestampInMilliseconds);
+        CharSequence format = TimeBuckets.getDefault().dayLabel(timestampInMilliseconds);
         began.setText(format);
 
         TextView category = (TextView)view.findViewById(R.id.category);
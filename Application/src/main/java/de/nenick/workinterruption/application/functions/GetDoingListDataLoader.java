@@ -2,14 +2,12 @@ package de.nenick.workinterruption.application.functions;
 
 import android.app.LoaderManager;
 import android.content.Context;
-import android.content.CursorLoader;
 import android.content.Loader;
 import android.database.Cursor;
 import android.os.Bundle;
 import android.widget.CursorAdapter;
 
 import de.nenick.workinterruption.dataaccess.TimeSheetTable;
-import de.nenick.workinterruption.dataaccess.api.WorkInterruption;
 
 /**
  * Callback handler for asynchronous loading the list of doings.
@@ -33,8 +31,7 @@ public class GetDoingListDataLoader implements LoaderManager.LoaderCallbacks<Cur
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
         String[] projection = {TimeSheetTable._ID, TimeSheetTable.COL_BEGAN, TimeSheetTable.COL_CATEGORY, TimeSheetTable.COL_DURATION};
-        CursorLoader cursorLoader = new CursorLoader(context, WorkInterruption.TimeSheet.CONTENT_URI, projection, null, null, null);
-        return cursorLoader;
+        return new HistoryCursorLoader(context, projection);
     }
 
     @Override
@@ -33,7 +33,7 @@ public class GetOpenTasksFromProviderLoader implements LoaderManager.LoaderCallb
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
         String[] projection = {Task.VALUE_ID, Task.VALUE_STARTED, Task.VALUE_CATEGORY, Task.VALUE_DURATION};
-        CursorLoader cursorLoader = new CursorLoader(context, Task.CONTENT_URI, projection, Task.VALUE_DURATION + " is null ", null, null);
+        CursorLoader cursorLoader = new CursorLoader(context, Task.CONTENT_URI, projection, Task.SELECTION_OPEN, null, null);
         return cursorLoader;
     }
 
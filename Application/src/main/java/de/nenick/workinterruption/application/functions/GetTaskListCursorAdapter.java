@@ -2,7 +2,6 @@ package de.nenick.workinterruption.application.functions;
 
 import android.content.Context;
 import android.database.Cursor;
-import android.text.format.DateFormat;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,6 +9,7 @@ import android.widget.CursorAdapter;
 import android.widget.TextView;
 
 import de.nenick.workinterruption.R;
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
 
 import static de.nenick.workinterruption.dataaccess.api.WorkInterruption.Task;
 
@@ -32,7 +32,7 @@ public class GetTaskListCursorAdapter extends CursorAdapter {
         TextView started = (TextView) view.findViewById(R.id.started);
         long timestampInMilliseconds = cursor.getLong(cursor.getColumnIndex(Task.VALUE_STARTED));
 
-        CharSequence format = DateFormat.format("E d.M", timestampInMilliseconds);
+        CharSequence format = TimeBuckets.getDefault().dayLabel(timestampInMilliseconds);
         started.setText(format);
 
         TextView category = (TextView)view.findViewById(R.id.category);
@@ -2,7 +2,6 @@ package de.nenick.workinterruption.application.functions;
 
 import android.app.LoaderManager;
 import android.content.Context;
-import android.content.CursorLoader;
 import android.content.Loader;
 import android.database.Cursor;
 import android.os.Bundle;
@@ -17,33 +16,49 @@ import static de.nenick.workinterruption.dataaccess.api.WorkInterruption.Task;
  */
 public class GetTaskListDataLoader implements LoaderManager.LoaderCallbacks<Cursor> {
 
+    /** Columns of the task list. */
+    static final String[] PROJECTION = {Task.VALUE_ID, Task.VALUE_STARTED, Task.VALUE_CATEGORY, Task.VALUE_DURATION};
+
     private CursorAdapter adapter;
 
+    private Cursor prefetched;
+
     private Context context;
 
     public void setCursorAdapter(CursorAdapter adapter) {
         this.adapter = adapter;
     }
 
+    /** @param prefetched cursor the adapter shows until the first load, closed once it is replaced */
+    public void setPrefetched(Cursor prefetched) {
+        this.prefetched = prefetched;
+    }
+
     public void setContext(Context context) {
         this.context = context;
     }
 
     @Override
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        String[] projection = {Task.VALUE_ID, Task.VALUE_STARTED, Task.VALUE_CATEGORY, Task.VALUE_DURATION};
-        CursorLoader cursorLoader = new CursorLoader(context, Task.CONTENT_URI, projection, null, null, null);
-        return cursorLoader;
+        return new HistoryCursorLoader(context, PROJECTION);
     }
 
     @Override
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        adapter.swapCursor(data);
+        closePrefetched(adapter.swapCursor(data));
     }
 
     @Override
     public void onLoaderReset(Loader<Cursor> loader) {
         // data is not available anymore, delete reference
-        adapter.swapCursor(null);
+        closePrefetched(adapter.swapCursor(null));
+    }
+
+    /** The loader closes its own cursors, only the prefetched one is ours. */
+    private void closePrefetched(Cursor replaced) {
+        if (replaced != null && replaced == prefetched) {
+            replaced.close();
+            prefetched = null;
+        }
     }
 }
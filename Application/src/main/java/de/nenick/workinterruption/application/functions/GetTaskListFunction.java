@@ -1,10 +1,15 @@
 package de.nenick.workinterruption.application.functions;
 
 import android.app.Activity;
+import android.database.Cursor;
 import android.widget.CursorAdapter;
 import android.widget.ListView;
 
-/** Load and show the tasks list content asynchronous. */
+import de.nenick.workinterruption.dataaccess.columnar.ColumnarHistory;
+import de.nenick.workinterruption.dataaccess.columnar.HistoryColumns;
+import de.nenick.workinterruption.dataaccess.columnar.HistoryCursor;
+
+/** Load and show the tasks list content asynchronous, starting with the prefetched history if it is loaded. */
 public class GetTaskListFunction {
 
     /**
@@ -15,11 +20,14 @@ public class GetTaskListFunction {
      */
     public void apply(Activity activity, ListView listView) {
 
-        CursorAdapter adapter = new GetTaskListCursorAdapter(listView.getContext(), null, 0);
+        HistoryColumns loaded = ColumnarHistory.getInstance().currentIfLoaded();
+        Cursor prefetched = loaded == null ? null : new HistoryCursor(loaded, GetTaskListDataLoader.PROJECTION);
+        CursorAdapter adapter = new GetTaskListCursorAdapter(listView.getContext(), prefetched, 0);
         listView.setAdapter(adapter);
 
         GetTaskListDataLoader dataLoader = new GetTaskListDataLoader();
         dataLoader.setCursorAdapter(adapter);
+        dataLoader.setPrefetched(prefetched);
         dataLoader.setContext(listView.getContext());
         activity.getLoaderManager().initLoader(0, null, dataLoader);
     }
@@ -0,0 +1,92 @@
+package de.nenick.workinterruption.application.functions;
+
+import android.content.AsyncTaskLoader;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
+
+import de.nenick.workinterruption.dataaccess.columnar.ColumnarHistory;
+import de.nenick.workinterruption.dataaccess.columnar.HistoryColumns;
+import de.nenick.workinterruption.dataaccess.columnar.HistoryCursor;
+
+/**
+ * Loads the task history from the process wide {@link ColumnarHistory}, so all lists share one
+ * copy of the tasks instead of querying their own.
+ *
+ * Reloads whenever the history announces a new version.
+ */
+public class HistoryCursorLoader extends AsyncTaskLoader<Cursor> implements ColumnarHistory.Listener {
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final String[] columnNames;
+
+    private HistoryCursor cursor;
+    private boolean listening;
+
+    private final Runnable contentChanged = new Runnable() {
+        @Override
+        public void run() {
+            onContentChanged();
+        }
+    };
+
+    /**
+     * @param columnNames names for the id, start time, category and duration column
+     */
+    public HistoryCursorLoader(Context context, String[] columnNames) {
+        super(context);
+        this.columnNames = columnNames;
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        return new HistoryCursor(ColumnarHistory.getInstance().current(), columnNames);
+    }
+
+    @Override
+    public void onHistoryChanged(HistoryColumns columns) {
+        // called by the writing thread
+        mainHandler.post(contentChanged);
+    }
+
+    @Override
+    public void deliverResult(Cursor data) {
+        if (isReset()) {
+            return;
+        }
+        cursor = (HistoryCursor) data;
+        if (isStarted()) {
+            super.deliverResult(data);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (!listening) {
+            ColumnarHistory.getInstance().addListener(this);
+            listening = true;
+        }
+        if (cursor != null) {
+            deliverResult(cursor);
+        }
+        if (takeContentChanged() || cursor == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onStopLoading();
+        ColumnarHistory.getInstance().removeListener(this);
+        mainHandler.removeCallbacks(contentChanged);
+        listening = false;
+        cursor = null;
+    }
+}
@@ -0,0 +1,75 @@
+package de.nenick.workinterruption.application.functions;
+
+import android.app.Activity;
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+
+import de.nenick.workinterruption.dataaccess.columnar.ColumnarHistory;
+
+import static de.nenick.workinterruption.dataaccess.api.WorkInterruption.Task;
+
+/**
+ * Load the process wide {@link ColumnarHistory} once the main thread has nothing else to do,
+ * so the task list can show it right away. Done again after each change of the tasks while the
+ * owning activity is resumed, a change may drop the loaded history.
+ */
+public class PrefetchTaskListFunction {
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private boolean scheduled;
+    private ContentResolver resolver;
+
+    private final ContentObserver observer = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            if (resolver != null) {
+                schedule();
+            }
+        }
+    };
+
+    /**
+     * Schedule loading the task history, unless it is loaded, and keep it loaded until
+     * {@link #pause()}. Call it on the main thread, e.g. in onResume.
+     *
+     * @param activity owner of the main thread, only its application context is kept
+     */
+    public void apply(Activity activity) {
+        resolver = activity.getApplicationContext().getContentResolver();
+        resolver.registerContentObserver(Task.CONTENT_URI, true, observer);
+        schedule();
+    }
+
+    /** Stop loading the history after changes. Call it on the main thread, e.g. in onPause. */
+    public void pause() {
+        if (resolver != null) {
+            resolver.unregisterContentObserver(observer);
+            resolver = null;
+        }
+    }
+
+    private void schedule() {
+        if (scheduled || ColumnarHistory.getInstance().isLoaded()) {
+            return;
+        }
+        scheduled = true;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        ColumnarHistory.getInstance().current();
+                    }
+                });
+                scheduled = false;
+                return false;
+            }
+        });
+    }
+}
@@ -0,0 +1,118 @@
+package de.nenick.workinterruption.dataaccess.analytics;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.support.TaskStoreTestCase;
+
+public class CoverageSweepTest extends TaskStoreTestCase {
+
+    public void testOverlapsPerCategoryPair() throws Exception {
+
+        // given: work with a call and a meeting during it, the call runs into the meeting
+        add(9 * HOUR, "work", 4 * HOUR);
+        add(10 * HOUR, "call", HOUR);
+        add(10 * HOUR + 30 * MINUTE, "meeting", HOUR);
+        add(10 * HOUR + 45 * MINUTE, "work", 15 * MINUTE);
+
+        // when: the day is swept
+        CoverageReport report = analyze(0, DAY);
+
+        // then: each pair counts the time it ran together, the second work task counts once
+        assertEquals("[call+meeting=1800000, call+work=3600000, meeting+work=3600000]",
+                report.overlaps.toString());
+        assertEquals(4 * HOUR, report.coveredMillis());
+    }
+
+    public void testGapsWithinWorkingHours() throws Exception {
+
+        // given: Thursday 8-10 and 11-12:30, nothing on Friday and Saturday, Sunday 16-18
+        add(8 * HOUR, "work", 2 * HOUR);
+        add(11 * HOUR, "work", 90 * MINUTE);
+        add(3 * DAY + 16 * HOUR, "work", 2 * HOUR);
+
+        // when: Thursday to Sunday is swept
+        CoverageReport report = analyze(0, 4 * DAY);
+
+        // then: the Thursday gaps, all of Friday, no Saturday and the Sunday morning are untracked
+        assertEquals(4, report.gaps.size());
+        assertGap(10 * HOUR, 11 * HOUR, report.gaps.get(0));
+        assertGap(12 * HOUR + 30 * MINUTE, 17 * HOUR, report.gaps.get(1));
+        assertGap(DAY + 9 * HOUR, DAY + 17 * HOUR, report.gaps.get(2));
+        assertGap(3 * DAY + 9 * HOUR, 3 * DAY + 16 * HOUR, report.gaps.get(3));
+        assertEquals(2, report.days.size());
+        assertEquals(210 * MINUTE, report.days.get(0).coveredMillis);
+        assertEquals(3 * DAY, report.days.get(1).start);
+    }
+
+    public void testTasksAcrossMidnightAndRunningTasks() throws Exception {
+
+        // given: a task from 22:00 to 02:00 and a running task since 08:00 the next day
+        add(22 * HOUR, "work", 4 * HOUR);
+        add(DAY + 8 * HOUR, "call", TaskStore.OPEN);
+
+        // when: the range ends at 10:00 the next day
+        CoverageReport report = analyze(0, DAY + 10 * HOUR);
+
+        // then: the covered time is split at midnight and the running task ends with the range
+        assertEquals(2, report.days.size());
+        assertEquals(2 * HOUR, report.days.get(0).coveredMillis);
+        assertEquals(4 * HOUR, report.days.get(1).coveredMillis);
+        assertEquals(DAY, report.days.get(0).end);
+        assertTrue(report.overlaps.isEmpty());
+    }
+
+    public void testTasksStartedBeforeTheRange() throws Exception {
+
+        // given: a running task since three days ago, a call from 23:00 into the range, one before
+        add(-3 * DAY, "work", TaskStore.OPEN);
+        add(-2 * HOUR, "call", HOUR);
+        add(-HOUR, "call", 3 * HOUR);
+
+        // when: the range starts at midnight
+        CoverageReport report = analyze(0, DAY);
+
+        // then: both running into the range count from its start, the earlier call not at all
+        assertEquals(1, report.days.size());
+        assertEquals(DAY, report.days.get(0).coveredMillis);
+        assertEquals("[call+work=7200000]", report.overlaps.toString());
+        assertTrue(report.gaps.isEmpty());
+    }
+
+    public void testLocalDayOfTheSpringSwitch() throws Exception {
+
+        // given: Sunday 2013-03-31 in Berlin, 23 hours long, with a task from 10:00 to 12:00
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        long midnight = berlinTime(berlin, 31, 0);
+        add(berlinTime(berlin, 31, 10), "work", 2 * HOUR);
+
+        // when: the day is swept
+        CoverageReport report = CoverageSweep.analyze(store, midnight, berlinTime(berlin, 32, 0), berlin,
+                CoverageSweep.DEFAULT_DAY_START_MINUTE, CoverageSweep.DEFAULT_DAY_END_MINUTE);
+
+        // then: the working hours and the day follow the local clock
+        assertEquals(2, report.gaps.size());
+        assertGap(berlinTime(berlin, 31, 9), berlinTime(berlin, 31, 10), report.gaps.get(0));
+        assertGap(berlinTime(berlin, 31, 12), berlinTime(berlin, 31, 17), report.gaps.get(1));
+        assertEquals(midnight, report.days.get(0).start);
+        assertEquals(midnight + 23 * HOUR, report.days.get(0).end);
+    }
+
+    private static long berlinTime(TimeZone berlin, int dayOfMarch, int hour) {
+        Calendar calendar = Calendar.getInstance(berlin);
+        calendar.clear();
+        calendar.set(2013, Calendar.MARCH, dayOfMarch, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private CoverageReport analyze(long from, long to) {
+        return CoverageSweep.analyze(store, from, to, UTC,
+                CoverageSweep.DEFAULT_DAY_START_MINUTE, CoverageSweep.DEFAULT_DAY_END_MINUTE);
+    }
+
+    private static void assertGap(long start, long end, CoverageReport.Gap gap) {
+        assertEquals(start, gap.start);
+        assertEquals(end, gap.end);
+    }
+}
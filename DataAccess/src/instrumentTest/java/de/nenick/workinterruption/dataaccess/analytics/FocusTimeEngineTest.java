@@ -0,0 +1,89 @@
+package de.nenick.workinterruption.dataaccess.analytics;
+
+import java.util.List;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.support.TaskStoreTestCase;
+
+public class FocusTimeEngineTest extends TaskStoreTestCase {
+
+    private FocusTimeEngine engine;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        engine = new FocusTimeEngine(store, "work");
+    }
+
+    public void testNestedInterruptionsAreSubtractedOnce() throws Exception {
+
+        // given: four hours of work with a meeting, a call during the meeting and a call after it
+        add(9 * HOUR, "work", 4 * HOUR);
+        add(10 * HOUR, "meeting", HOUR);
+        add(10 * HOUR + 30 * MINUTE, "call", HOUR);
+        add(12 * HOUR, "call", 10 * MINUTE);
+        add(12 * HOUR + 5 * MINUTE, "work", 5 * MINUTE);
+
+        // when: the day is computed
+        List<FocusTimeEngine.Day> days = engine.days(0, DAY, UTC, 2 * DAY);
+
+        // then: work covers four hours, without the overlapping meeting and calls
+        assertEquals(1, days.size());
+        assertEquals(4 * HOUR, days.get(0).workMillis);
+        assertEquals(4 * HOUR - 90 * MINUTE - 10 * MINUTE, days.get(0).netMillis);
+    }
+
+    public void testWorkAcrossMidnightAndRunningWork() throws Exception {
+
+        // given: work from 22:00 to 02:00 with a call at 01:00, running work since 08:00
+        add(22 * HOUR, "work", 4 * HOUR);
+        add(DAY + HOUR, "call", 30 * MINUTE);
+        add(DAY + 8 * HOUR, "work", TaskStore.OPEN);
+
+        // when: both days are computed at 09:00 on the second day
+        List<FocusTimeEngine.Day> days = engine.days(0, 2 * DAY, UTC, DAY + 9 * HOUR);
+
+        // then: the work is split at midnight and the running work ends now
+        assertEquals(2, days.size());
+        assertEquals(2 * HOUR, days.get(0).netMillis);
+        assertEquals(DAY, days.get(1).start);
+        assertEquals(3 * HOUR, days.get(1).workMillis);
+        assertEquals(150 * MINUTE, days.get(1).netMillis);
+    }
+
+    public void testWritesRecomputeOnlyTouchedDays() throws Exception {
+
+        // given: computed days with work on the first and the third day
+        add(10 * HOUR, "work", HOUR);
+        add(2 * DAY + 10 * HOUR, "work", HOUR);
+        FocusTimeEngine.Day third = engine.days(0, 3 * DAY, UTC, 4 * DAY).get(2);
+
+        // when: a call is added to the first day
+        long started = 10 * HOUR + 15 * MINUTE;
+        store.insert(TaskStore.NO_ID, started, "call", (int) (15 * MINUTE));
+        engine.onTaskInserted(0, started, "call", (int) (15 * MINUTE));
+        List<FocusTimeEngine.Day> days = engine.days(0, 3 * DAY, UTC, 4 * DAY);
+
+        // then: the first day is recomputed, the third day comes from the cache
+        assertEquals(45 * MINUTE, days.get(0).netMillis);
+        assertSame(third, days.get(2));
+    }
+
+    public void testWorkRunningSinceDaysBeforeCountsForAllDays() throws Exception {
+
+        // given: computed days without work
+        add(3 * DAY + 10 * HOUR, "call", HOUR);
+        FocusTimeEngine.Day fourth = engine.days(3 * DAY, 4 * DAY, UTC, 5 * DAY).get(0);
+        assertEquals(0, fourth.workMillis);
+
+        // when: work is started on the first day and still runs
+        long started = 10 * HOUR;
+        store.insert(TaskStore.NO_ID, started, "work", TaskStore.OPEN);
+        engine.onTaskInserted(0, started, "work", TaskStore.OPEN);
+        List<FocusTimeEngine.Day> days = engine.days(3 * DAY, 4 * DAY, UTC, 5 * DAY);
+
+        // then: the fourth day is recomputed, the work covers it without the call
+        assertEquals(DAY, days.get(0).workMillis);
+        assertEquals(DAY - HOUR, days.get(0).netMillis);
+    }
+}
@@ -0,0 +1,68 @@
+package de.nenick.workinterruption.dataaccess.analytics;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.support.TaskStoreTestCase;
+
+public class InterruptionAnalyticsTest extends TaskStoreTestCase {
+
+    public void testInterruptedWorkDay() throws Exception {
+
+        // given: three hours of work with two calls in between and a meeting afterwards
+        add(9 * HOUR, "work", 3 * HOUR);
+        add(10 * HOUR, "call", 15 * MINUTE);
+        add(11 * HOUR, "colleague", 5 * MINUTE);
+        add(13 * HOUR, "meeting", HOUR);
+
+        // when: the day is analyzed
+        InterruptionMetrics metrics = InterruptionAnalytics.analyze(store, 0, DAY, UTC, 5);
+
+        // then: work was split into three stretches by two interruptions
+        assertEquals(3 * HOUR, metrics.workMillis);
+        assertEquals(2, metrics.interruptions);
+        assertEquals(2 / 3.0, metrics.interruptionsPerWorkHour(), 1e-9);
+        assertEquals(3, metrics.stretches);
+        assertEquals((60 + 45 + 55) * MINUTE / 3, metrics.meanStretchMillis);
+        assertEquals(HOUR, metrics.longestStretchMillis);
+        assertEquals("[call=1, colleague=1]", metrics.topInterrupters.toString());
+        assertEquals(4, metrics.contextSwitches);
+        assertEquals(1, metrics.activeDays);
+        assertEquals(4, metrics.maxContextSwitchesPerDay);
+    }
+
+    public void testRunningTasksEndWithTheRange() throws Exception {
+
+        // given: running work interrupted by a running call, and a day before with one call
+        add(9 * HOUR, "work", 2 * HOUR);
+        add(10 * HOUR, "call", 10 * MINUTE);
+        add(DAY + 9 * HOUR, "work", TaskStore.OPEN);
+        add(DAY + 9 * HOUR + 30 * MINUTE, "call", TaskStore.OPEN);
+
+        // when: the range ends at ten on the second day
+        InterruptionMetrics metrics = InterruptionAnalytics.analyze(store, 0, DAY + 10 * HOUR, UTC, 1);
+
+        // then: the running tasks count up to the end of the range
+        assertEquals(3 * HOUR, metrics.workMillis);
+        assertEquals(2, metrics.interruptions);
+        assertEquals("[call=2]", metrics.topInterrupters.toString());
+        assertEquals(40 * MINUTE, metrics.topInterrupters.get(0).millis);
+        assertEquals(3, metrics.stretches);
+        assertEquals(2, metrics.activeDays);
+        assertEquals(3, metrics.contextSwitches);
+        assertEquals(1.5, metrics.contextSwitchesPerDay(), 1e-9);
+    }
+
+    public void testUnorderedTasksFail() throws Exception {
+
+        // given: an analysis which saw a task at noon
+        InterruptionAnalytics analytics = new InterruptionAnalytics("work", UTC, DAY);
+        analytics.visit(1, 12 * HOUR, "work", 1);
+
+        // when: an earlier task follows
+        try {
+            analytics.visit(2, 11 * HOUR, "work", 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // then: it is refused
+        }
+    }
+}
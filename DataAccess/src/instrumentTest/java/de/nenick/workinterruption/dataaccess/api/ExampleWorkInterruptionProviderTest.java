@@ -162,9 +162,13 @@ public class ExampleWorkInterruptionProviderTest extends ProviderTestCase2<WorkI
      */
     public void testGetStreamTypes() {
 
-        // Tests the notes table URI. This should return null, since the content provider does
-        // not provide a stream MIME type for multiple notes.
-        assertNull(mMockResolver.getStreamTypes(WorkInterruption.Task.CONTENT_URI, MIME_TYPES_ALL));
+        // Tests the tasks URI. This should return the export types for multiple tasks.
+        String[] exportTypes = mMockResolver.getStreamTypes(WorkInterruption.Task.CONTENT_URI, MIME_TYPES_ALL);
+        assertNotNull(exportTypes);
+        assertEquals(3, exportTypes.length);
+        assertEquals(WorkInterruption.Task.STREAM_TYPE_CSV, exportTypes[0]);
+        assertEquals(WorkInterruption.Task.STREAM_TYPE_NDJSON, exportTypes[1]);
+        assertEquals(WorkInterruption.Task.STREAM_TYPE_BINARY, exportTypes[2]);
 
         /*
          * Tests the category id URI for a single category, using _ID value "1" which is a valid ID. Uses a
@@ -191,11 +195,12 @@ public class ExampleWorkInterruptionProviderTest extends ProviderTestCase2<WorkI
         assertNull(mimeType);
 
         /*
-         * Tests with a URI that should not have any associated stream MIME types, but with a
-         * filter that returns all types. The result should still be null.
+         * Tests the tasks URI with a filter that only matches one export type.
          */
-        mimeType = mMockResolver.getStreamTypes(WorkInterruption.Task.CONTENT_URI, MIME_TYPES_ALL);
-        assertNull(mimeType);
+        mimeType = mMockResolver.getStreamTypes(WorkInterruption.Task.CONTENT_URI, "text/*");
+        assertNotNull(mimeType);
+        assertEquals(WorkInterruption.Task.STREAM_TYPE_CSV, mimeType[0]);
+        assertEquals(1, mimeType.length);
 
     }
 
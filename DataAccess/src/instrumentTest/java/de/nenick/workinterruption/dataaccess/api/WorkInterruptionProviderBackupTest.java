@@ -0,0 +1,52 @@
+package de.nenick.workinterruption.dataaccess.api;
+
+import android.content.ContentValues;
+import android.os.ParcelFileDescriptor;
+import android.test.ProviderTestCase2;
+
+import java.io.InputStream;
+
+import static de.nenick.workinterruption.dataaccess.api.WorkInterruption.Backup;
+import static de.nenick.workinterruption.dataaccess.api.WorkInterruption.Task;
+
+public class WorkInterruptionProviderBackupTest extends ProviderTestCase2 {
+
+    public WorkInterruptionProviderBackupTest() {
+        super(WorkInterruptionProvider.class, WorkInterruption.AUTHORITY);
+    }
+
+    public void testBackupIsSQLiteDatabase() throws Exception {
+
+        // given: some record
+        ContentValues values = new ContentValues();
+        values.put(Task.VALUE_CATEGORY, "testCategory");
+        getProvider().insert(Task.CONTENT_URI, values);
+
+        // when: the backup is read
+        ParcelFileDescriptor backup = getProvider().openFile(Backup.CONTENT_URI, "r");
+        InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(backup);
+        byte[] header = new byte[16];
+        int length = 0;
+        int read;
+        while ((read = in.read()) != -1) {
+            if (length < header.length) {
+                header[length] = (byte) read;
+            }
+            length++;
+        }
+        in.close();
+
+        // then: it is a complete database file
+        assertEquals("SQLite format 3\u0000", new String(header, "US-ASCII"));
+        assertEquals(0, length % 512);
+    }
+
+    public void testBackupHasDatabaseType() {
+
+        // when: the type of the backup is requested
+        String type = getProvider().getType(Backup.CONTENT_URI);
+
+        // then: it is an SQLite file
+        assertEquals(Backup.CONTENT_TYPE, type);
+    }
+}
@@ -0,0 +1,95 @@
+package de.nenick.workinterruption.dataaccess.api;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.test.ProviderTestCase2;
+
+import static de.nenick.workinterruption.dataaccess.api.WorkInterruption.Change;
+import static de.nenick.workinterruption.dataaccess.api.WorkInterruption.Task;
+
+public class WorkInterruptionProviderChangeTest extends ProviderTestCase2 {
+
+    private static final Uri CONSUMER = Uri.withAppendedPath(Change.CONSUMER_URI_BASE, "test");
+
+    public WorkInterruptionProviderChangeTest() {
+        super(WorkInterruptionProvider.class, WorkInterruption.AUTHORITY);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        acknowledge(0);
+    }
+
+    public void testChangesSinceSequence() {
+
+        // given: a task which was inserted and closed
+        ContentValues values = new ContentValues();
+        values.put(Task.VALUE_CATEGORY, "testCategory");
+        long id = ContentUris.parseId(getProvider().insert(Task.CONTENT_URI, values));
+        ContentValues duration = new ContentValues();
+        duration.put(Task.VALUE_DURATION, 100);
+        getProvider().update(ContentUris.withAppendedId(Task.CONTENT_ID_URI_BASE, id), duration, null, null);
+
+        // when: the changes behind the first one are read
+        Cursor result = changesSince(1);
+
+        // then: only the update is returned with its new values
+        assertEquals(1, result.getCount());
+        result.moveToFirst();
+        assertEquals(Change.OP_UPDATE, result.getInt(result.getColumnIndex(Change.VALUE_OP)));
+        assertEquals(id, result.getLong(result.getColumnIndex(Change.VALUE_TASK_ID)));
+        assertEquals(100, result.getInt(result.getColumnIndex(Task.VALUE_DURATION)));
+    }
+
+    public void testAcknowledgedChangesAreDropped() {
+
+        // given: two inserted tasks
+        ContentValues values = new ContentValues();
+        values.put(Task.VALUE_CATEGORY, "testCategory");
+        getProvider().insert(Task.CONTENT_URI, values);
+        getProvider().insert(Task.CONTENT_URI, values);
+
+        // when: the only consumer acknowledges the first one
+        acknowledge(1);
+
+        // then: reading from the start asks for a reload before the remaining change
+        Cursor result = changesSince(0);
+        assertEquals(2, result.getCount());
+        result.moveToFirst();
+        assertEquals(Change.OP_RESET, result.getInt(result.getColumnIndex(Change.VALUE_OP)));
+        result.moveToNext();
+        assertEquals(2, result.getLong(result.getColumnIndex(Change.VALUE_SEQ)));
+    }
+
+    public void testChangesAreReadOverSeveralPages() {
+
+        // given: more inserted tasks than one page of changes holds
+        ContentValues values = new ContentValues();
+        values.put(Task.VALUE_CATEGORY, "testCategory");
+        for (int i = 0; i < 600; i++) {
+            getProvider().insert(Task.CONTENT_URI, values);
+        }
+
+        // when: all changes are read
+        Cursor result = changesSince(0);
+
+        // then: each change is returned once, in order
+        assertEquals(600, result.getCount());
+        result.moveToLast();
+        assertEquals(600, result.getLong(result.getColumnIndex(Change.VALUE_SEQ)));
+    }
+
+    private void acknowledge(long seq) {
+        ContentValues acked = new ContentValues();
+        acked.put(Change.VALUE_ACKED, seq);
+        getProvider().update(CONSUMER, acked, null, null);
+    }
+
+    private Cursor changesSince(long seq) {
+        Uri uri = Change.CONTENT_URI.buildUpon().appendQueryParameter(Change.PARAM_SINCE, Long.toString(seq)).build();
+        return getProvider().query(uri, null, null, null, null);
+    }
+}
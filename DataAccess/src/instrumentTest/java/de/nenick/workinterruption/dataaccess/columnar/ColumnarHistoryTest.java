@@ -0,0 +1,92 @@
+package de.nenick.workinterruption.dataaccess.columnar;
+
+import junit.framework.TestCase;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+public class ColumnarHistoryTest extends TestCase {
+
+    private MemoryTaskStore store;
+
+    private ColumnarHistory history;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store = new MemoryTaskStore();
+        history = new ColumnarHistory();
+        history.attach(store);
+    }
+
+    public void testLoadsStoreInStartOrder() {
+
+        // given: tasks inserted out of order
+        store.insert(TaskStore.NO_ID, 300, "work", TaskStore.OPEN);
+        store.insert(TaskStore.NO_ID, 100, "break", 50);
+
+        // when: the history is loaded
+        HistoryColumns columns = history.current();
+
+        // then: tasks are ordered by start time with shared categories
+        assertEquals(2, columns.size());
+        assertEquals(100, columns.started(0));
+        assertEquals("break", columns.category(0));
+        assertEquals(TaskStore.OPEN, columns.duration(1));
+        assertEquals(2, columns.categoryCount());
+    }
+
+    public void testOlderVersionsDontChange() {
+
+        // given: a loaded history
+        long id = store.insert(TaskStore.NO_ID, 100, "work", TaskStore.OPEN);
+        HistoryColumns before = history.current();
+
+        // when: the task is closed and another one appended
+        history.onTaskClosed(id, 100, "work", TaskStore.OPEN, 60);
+        history.onTaskInserted(2, 200, "work", TaskStore.OPEN);
+
+        // then: the new version has both changes, the old one none
+        HistoryColumns after = history.current();
+        assertTrue(after.version() > before.version());
+        assertEquals(2, after.size());
+        assertEquals(60, after.duration(0));
+        assertEquals(1, before.size());
+        assertEquals(TaskStore.OPEN, before.duration(0));
+    }
+
+    public void testInsertKeepsStartOrder() {
+
+        // given: a loaded history
+        store.insert(TaskStore.NO_ID, 100, "work", 10);
+        store.insert(TaskStore.NO_ID, 300, "work", 10);
+        HistoryColumns before = history.current();
+
+        // when: a task in between and one with a new category is inserted, one deleted
+        history.onTaskInserted(3, 200, "meeting", 10);
+        history.onTaskDeleted(1, 100, "work", 10);
+
+        // then: order is kept and the old version is unchanged
+        HistoryColumns after = history.current();
+        assertEquals(2, after.size());
+        assertEquals(200, after.started(0));
+        assertEquals("meeting", after.category(0));
+        assertEquals(1, after.firstIndexAtOrAfter(250));
+        assertEquals(300, before.started(1));
+    }
+
+    public void testReloadsAfterUnknownChanges() {
+
+        // given: a loaded history
+        history.current();
+
+        // when: the store was changed behind the history
+        store.insert(TaskStore.NO_ID, 100, "work", 10);
+        history.onTasksChanged();
+
+        // then: nothing is shown until the next access loads the change
+        assertNull(history.currentIfLoaded());
+        assertEquals(1, history.current().size());
+        assertSame(history.current(), history.currentIfLoaded());
+    }
+}
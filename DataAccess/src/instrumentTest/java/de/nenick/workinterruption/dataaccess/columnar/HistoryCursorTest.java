@@ -0,0 +1,36 @@
+package de.nenick.workinterruption.dataaccess.columnar;
+
+import junit.framework.TestCase;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+public class HistoryCursorTest extends TestCase {
+
+    private static final String[] COLUMNS = {"_id", "started", "category", "duration"};
+
+    public void testNewestTaskFirst() {
+
+        // given: a finished and a running task
+        MemoryTaskStore store = new MemoryTaskStore();
+        long finished = store.insert(TaskStore.NO_ID, 100, "break", 50);
+        long running = store.insert(TaskStore.NO_ID, 300, "work", TaskStore.OPEN);
+        ColumnarHistory history = new ColumnarHistory();
+        history.attach(store);
+
+        // when: the history is read through a cursor
+        HistoryCursor cursor = new HistoryCursor(history.current(), COLUMNS);
+
+        // then: the running task comes first without duration
+        assertEquals(2, cursor.getCount());
+        assertTrue(cursor.moveToFirst());
+        assertEquals(running, cursor.getLong(cursor.getColumnIndex("_id")));
+        assertEquals("work", cursor.getString(2));
+        assertTrue(cursor.isNull(3));
+        assertTrue(cursor.moveToNext());
+        assertEquals(finished, cursor.getLong(0));
+        assertEquals(100, cursor.getLong(1));
+        assertEquals(50, cursor.getInt(3));
+        assertFalse(cursor.moveToNext());
+    }
+}
@@ -0,0 +1,53 @@
+package de.nenick.workinterruption.dataaccess.database;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import junit.framework.TestCase;
+
+public class ChangeLogTableTest extends TestCase {
+
+    private static final String LAST_SEQ = "SELECT seq FROM sqlite_sequence WHERE name = '" + ChangeLogTable.TABLE_NAME + "'";
+
+    private SQLiteDatabase database;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        database = SQLiteDatabase.create(null);
+        new TaskTable().onCreate(database);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        database.close();
+        super.tearDown();
+    }
+
+    public void testUpgradeWithTasksCountsThemAsDropped() throws Exception {
+
+        // given: a database of version 3 with a task
+        ContentValues values = new ContentValues();
+        values.put(TaskTable.COL_STARTED, 1000L);
+        values.put(TaskTable.COL_CATEGORY, "work");
+        database.insert(TaskTable.TABLE_NAME, null, values);
+
+        // when: it is upgraded
+        new ChangeLogTable().onUpgrade(database, 3, SQLiteHelper.DATABASE_VERSION);
+
+        // then: the log is empty but its first sequence number is used up
+        assertEquals(0, DatabaseUtils.queryNumEntries(database, ChangeLogTable.TABLE_NAME));
+        assertEquals(1, DatabaseUtils.longForQuery(database, LAST_SEQ, null));
+    }
+
+    public void testUpgradeWithoutTasksStartsTheLogFresh() throws Exception {
+
+        // when: an empty database of version 3 is upgraded
+        new ChangeLogTable().onUpgrade(database, 3, SQLiteHelper.DATABASE_VERSION);
+
+        // then: no sequence number is used
+        assertEquals(0, DatabaseUtils.queryNumEntries(database, "sqlite_sequence",
+                "name = ?", new String[]{ChangeLogTable.TABLE_NAME}));
+    }
+}
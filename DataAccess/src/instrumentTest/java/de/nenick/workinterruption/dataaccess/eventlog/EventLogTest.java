@@ -0,0 +1,147 @@
+package de.nenick.workinterruption.dataaccess.eventlog;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventLogTest extends TestCase {
+
+    private File directory;
+
+    private List<String> events;
+
+    private EventLog.EventHandler collect = new EventLog.EventHandler() {
+        @Override
+        public void onEvent(long endOffset, byte type, long id, long time, int duration, String category) {
+            events.add(type + ":" + id + ":" + time + ":" + duration + ":" + category);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = new File(System.getProperty("java.io.tmpdir"), "event-log-test-" + System.nanoTime());
+        events = new ArrayList<String>();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+        super.tearDown();
+    }
+
+    public void testFailedAppendIsCutFromTheLog() throws IOException {
+
+        // given: a log whose second append fails halfway through
+        final boolean[] fail = {false};
+        EventLog log = new EventLog(directory, EventLog.DEFAULT_SEGMENT_BYTES, false) {
+            @Override
+            void write(FileOutputStream segment, byte[] frame, int length) throws IOException {
+                if (fail[0]) {
+                    segment.write(frame, 0, length / 2);
+                    throw new IOException("disk full");
+                }
+                super.write(segment, frame, length);
+            }
+        };
+        log.append(EventLog.STARTED, 1, 100, -1, "work");
+        fail[0] = true;
+        try {
+            log.append(EventLog.STOPPED, 1, 0, 50, null);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // the event is not in the log
+        }
+
+        // when: the next append works again
+        fail[0] = false;
+        log.append(EventLog.DELETED, 1, 0, 0, null);
+        log.close();
+
+        // then: readers and a reopened log see both written events
+        EventLog reopened = new EventLog(directory, EventLog.DEFAULT_SEGMENT_BYTES, false);
+        assertEquals(log.endOffset(), reopened.endOffset());
+        reopened.read(0, collect);
+        reopened.close();
+        assertEquals(2, events.size());
+        assertEquals("3:1:0:0:", events.get(1));
+    }
+
+    public void testAppendAndRead() throws IOException {
+
+        // given: some events
+        EventLog log = new EventLog(directory, EventLog.DEFAULT_SEGMENT_BYTES, false);
+        log.append(EventLog.STARTED, 1, 100, -1, "work");
+        long afterFirst = log.endOffset();
+        log.append(EventLog.STOPPED, 1, 0, 50, null);
+
+        // when: reading from the start and from behind the first event
+        long end = log.read(0, collect);
+        log.read(afterFirst, collect);
+
+        // then: events come back in order
+        assertEquals(log.endOffset(), end);
+        assertEquals(3, events.size());
+        assertEquals("1:1:100:-1:work", events.get(0));
+        assertEquals("2:1:0:50:", events.get(1));
+        assertEquals(events.get(1), events.get(2));
+        log.close();
+    }
+
+    public void testReopenDropsTornTail() throws IOException {
+
+        // given: a log with one complete and one torn event
+        EventLog log = new EventLog(directory, EventLog.DEFAULT_SEGMENT_BYTES, false);
+        long valid = log.append(EventLog.STARTED, 1, 100, -1, "work");
+        log.append(EventLog.STARTED, 2, 200, -1, "break");
+        log.close();
+        File segment = directory.listFiles()[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.setLength(segment.length() - 3);
+        file.close();
+
+        // when: the log is opened again
+        log = new EventLog(directory, EventLog.DEFAULT_SEGMENT_BYTES, false);
+
+        // then: only the complete event is left and appends continue behind it
+        assertEquals(valid, log.endOffset());
+        log.append(EventLog.STARTED, 3, 300, -1, "meeting");
+        log.read(0, collect);
+        assertEquals(2, events.size());
+        assertEquals("1:3:300:-1:meeting", events.get(1));
+        log.close();
+    }
+
+    public void testRotationAndCleanup() throws IOException {
+
+        // given: a log with tiny segments
+        EventLog log = new EventLog(directory, 64, false);
+        for (int i = 1; i <= 10; i++) {
+            log.append(EventLog.STARTED, i, i * 100, -1, "work");
+        }
+        assertTrue(log.segmentCount() > 1);
+
+        // when: everything before the end was consumed
+        log.deleteSegmentsBefore(log.endOffset());
+
+        // then: only the active segment is left, reading across segments still works
+        assertEquals(1, log.segmentCount());
+        assertTrue(log.startOffset() > 0);
+        assertTrue(log.startOffset() <= log.endOffset());
+        log.append(EventLog.STARTED, 11, 1100, -1, "work");
+        assertTrue(log.read(0, collect) == log.endOffset());
+        assertTrue(events.contains("1:11:1100:-1:work"));
+        log.close();
+    }
+}
@@ -0,0 +1,123 @@
+package de.nenick.workinterruption.dataaccess.forecast;
+
+import junit.framework.TestCase;
+
+import java.util.Map;
+import java.util.TimeZone;
+
+public class ForecastModelTest extends TestCase {
+
+    private static final long HOUR = 60 * 60 * 1000;
+    private static final long DAY = 24 * HOUR;
+    private static final long WEEK = 7 * DAY;
+    // Monday 1970-01-05 0:00 UTC
+    private static final long MONDAY = 4 * DAY;
+
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    public void testLearnsTheHourOfTheWeek() throws Exception {
+
+        // given: a model
+        ForecastModel model = new ForecastModel(UTC, ForecastModel.DEFAULT_ALPHA);
+
+        // when: a call starts each Monday at 10:15 for twenty weeks
+        for (int week = 0; week < 20; week++) {
+            model.record(MONDAY + week * WEEK + 10 * HOUR + 15 * 60 * 1000, "call");
+        }
+
+        // then: next Monday 10:00 expects one call, the bias of the zero start is corrected
+        long next = MONDAY + 20 * WEEK;
+        assertEquals(1.0, model.expectedStarts("call", next + 10 * HOUR), 1e-9);
+        assertEquals(0.0, model.expectedStarts("call", next + 11 * HOUR), 1e-9);
+        assertEquals(0.5, model.expectedStarts("call", next + 10 * HOUR + 30 * 60 * 1000), 1e-9);
+        assertEquals(0.0, model.expectedStarts("meeting", next + 10 * HOUR), 1e-9);
+    }
+
+    public void testRecordingOrderDoesNotMatter() throws Exception {
+
+        // given: starts in the same hour of the week with gaps of several weeks
+        long[] starts = {MONDAY + 9 * HOUR, MONDAY + WEEK + 9 * HOUR, MONDAY + WEEK + 9 * HOUR + 60 * 1000,
+                MONDAY + 5 * WEEK + 9 * HOUR, MONDAY + 6 * WEEK + 9 * HOUR};
+
+        // when: they are recorded forwards and backwards
+        ForecastModel forwards = new ForecastModel(UTC, 0.3);
+        ForecastModel backwards = new ForecastModel(UTC, 0.3);
+        for (int i = 0; i < starts.length; i++) {
+            forwards.record(starts[i], "call");
+            backwards.record(starts[starts.length - 1 - i], "call");
+        }
+
+        // then: both forecast the same
+        long next = MONDAY + 9 * WEEK + 9 * HOUR;
+        assertEquals(forwards.expectedStarts("call", next), backwards.expectedStarts("call", next), 1e-12);
+    }
+
+    public void testForgottenStartsAreTakenOut() throws Exception {
+
+        // given: a model with starts in four weeks and one without the second and last one
+        long[] starts = {MONDAY + 9 * HOUR, MONDAY + WEEK + 9 * HOUR, MONDAY + 3 * WEEK + 9 * HOUR,
+                MONDAY + 4 * WEEK + 9 * HOUR};
+        ForecastModel model = new ForecastModel(UTC, 0.3);
+        ForecastModel without = new ForecastModel(UTC, 0.3);
+        for (long started : starts) {
+            model.record(started, "call");
+        }
+        without.record(starts[0], "call");
+        without.record(starts[2], "call");
+
+        // when: the second and last start are forgotten
+        model.forget(starts[1], "call");
+        model.forget(starts[3], "call");
+
+        // then: it forecasts like the model which never saw them
+        long next = MONDAY + 6 * WEEK + 9 * HOUR;
+        assertEquals(without.expectedStarts("call", next), model.expectedStarts("call", next), 1e-12);
+        assertNull(model.forget(MONDAY + 9 * HOUR, "meeting"));
+    }
+
+    public void testRestoredStatesForecastLikeTheRecordingModel() throws Exception {
+
+        // given: a model with starts on two days
+        ForecastModel model = new ForecastModel(UTC, ForecastModel.DEFAULT_ALPHA);
+        model.record(MONDAY + 8 * HOUR, "call");
+        model.record(MONDAY + WEEK + DAY + 14 * HOUR, "call");
+
+        // when: its states are restored into a new model
+        ForecastModel restored = new ForecastModel(UTC, ForecastModel.DEFAULT_ALPHA);
+        for (Map.Entry<String, ForecastModel.SlotRate[]> entry : model.states().entrySet()) {
+            for (int slot = 0; slot < ForecastModel.SLOTS; slot++) {
+                if (entry.getValue()[slot] != null) {
+                    restored.restore(entry.getKey(), slot, entry.getValue()[slot]);
+                }
+            }
+        }
+
+        // then: it forecasts the same
+        long later = MONDAY + 3 * WEEK;
+        assertEquals(model.expectedStarts(later + 8 * HOUR), restored.expectedStarts(later + 8 * HOUR));
+        assertEquals(model.expectedStarts(later + DAY + 14 * HOUR), restored.expectedStarts(later + DAY + 14 * HOUR));
+    }
+
+    public void testBacktestBeatsTheClimatologyOnAWeeklyPattern() throws Exception {
+
+        // given: a standup each weekday at 9:00 and a review each Friday at 15:00 for a year
+        ForecastBacktest backtest = new ForecastBacktest(UTC, ForecastModel.DEFAULT_ALPHA, null);
+
+        // when: it is replayed
+        for (int week = 0; week < 52; week++) {
+            for (int day = 0; day < 5; day++) {
+                long date = MONDAY + week * WEEK + day * DAY;
+                backtest.visit(0, date + 9 * HOUR, "standup", 15 * 60 * 1000);
+                if (day == 4) {
+                    backtest.visit(0, date + 15 * HOUR, "review", 60 * 60 * 1000);
+                }
+            }
+        }
+        Map<String, ForecastBacktest.Score> scores = backtest.finish();
+
+        // then: the forecasts are far better than the share of hours with a start
+        assertTrue(scores.get("standup").brierSkill() > 0.5);
+        assertTrue(scores.get("review").brierSkill() > 0.5);
+        assertTrue(scores.get("standup").logLoss < scores.get("standup").baselineLogLoss);
+    }
+}
@@ -0,0 +1,144 @@
+package de.nenick.workinterruption.dataaccess.heatmap;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.support.TaskStoreTestCase;
+
+public class HeatmapHistogramsTest extends TaskStoreTestCase {
+
+    // Monday 1970-01-05 0:00 UTC, epoch day 4
+    private static final long MONDAY = 4 * DAY;
+
+    private MapPersistence persistence;
+    private HeatmapHistograms heatmap;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        persistence = new MapPersistence();
+        heatmap = new HeatmapHistograms(store, persistence, UTC);
+    }
+
+    public void testTaskIsSplitOverTheHoursItCovers() throws Exception {
+
+        // given: a call from Monday 9:30 to 11:30 and one from Sunday 23:30 to Monday 0:30
+        add(MONDAY + 9 * HOUR + 30 * MINUTE, "call", 2 * HOUR);
+        add(MONDAY + 6 * DAY + 23 * HOUR + 30 * MINUTE, "call", HOUR);
+
+        // when: the weeks are read
+        Map<Integer, Map<String, WeekHeatmap>> weeks = heatmap.weeks(MONDAY, MONDAY + 14 * DAY, null);
+
+        // then: the time is split at the hours, the second call counts in both weeks
+        WeekHeatmap first = weeks.get(4).get("call");
+        assertEquals(1, first.starts(9));
+        assertEquals(30 * MINUTE, first.millis(9));
+        assertEquals(HOUR, first.millis(10));
+        assertEquals(30 * MINUTE, first.millis(11));
+        assertEquals(1, first.starts(167));
+        assertEquals(30 * MINUTE, first.millis(167));
+        WeekHeatmap second = WeekHeatmap.fromBytes(weeks.get(11).get("call").toBytes());
+        assertEquals(0, second.starts(0));
+        assertEquals(30 * MINUTE, second.millis(0));
+        assertEquals(1, heatmap.weeks(MONDAY + 7 * DAY, MONDAY + 8 * DAY, "call").size());
+        assertTrue(heatmap.weeks(MONDAY, MONDAY + DAY, "work").isEmpty());
+    }
+
+    public void testWritesKeepThePersistedWeeksCurrent() throws Exception {
+
+        // given: counted weeks and a running task
+        long id = store.insert(TaskStore.NO_ID, MONDAY + 8 * HOUR, "work", TaskStore.OPEN);
+        heatmap.onTaskInserted(id, MONDAY + 8 * HOUR, "work", TaskStore.OPEN);
+        heatmap.weeks(Long.MIN_VALUE, Long.MAX_VALUE, null);
+
+        // when: the task is closed after 90 minutes
+        store.close(id, (int) (90 * MINUTE), null);
+        heatmap.onTaskClosed(id, MONDAY + 8 * HOUR, "work", TaskStore.OPEN, (int) (90 * MINUTE));
+
+        // then: a restart loads the week with it
+        HeatmapHistograms restarted = new HeatmapHistograms(store, persistence, UTC);
+        WeekHeatmap week = restarted.weeks(Long.MIN_VALUE, Long.MAX_VALUE, "work").get(4).get("work");
+        assertEquals(1, week.starts(8));
+        assertEquals(HOUR, week.millis(8));
+        assertEquals(30 * MINUTE, week.millis(9));
+
+        // when: the task is closed again after two hours
+        store.close(id, (int) (2 * HOUR), null);
+        heatmap.onTaskClosed(id, MONDAY + 8 * HOUR, "work", (int) (90 * MINUTE), (int) (2 * HOUR));
+
+        // then: it counts once with its new duration
+        week = new HeatmapHistograms(store, persistence, UTC).weeks(MONDAY, MONDAY + 7 * DAY, "work").get(4).get("work");
+        assertEquals(1, week.starts(8));
+        assertEquals(HOUR, week.millis(9));
+
+        // when: the task is deleted and another one added
+        store.delete(id, null);
+        heatmap.onTaskDeleted(id, MONDAY + 8 * HOUR, "work", (int) (2 * HOUR));
+        long other = add(MONDAY + DAY, "work", 1000);
+
+        // then: only the other task is left in the persisted week
+        week = WeekHeatmap.fromBytes(persistence.weeks.get(4).get("work"));
+        assertEquals(0, week.starts(8));
+        assertEquals(0, week.millis(9));
+        assertEquals(1, week.starts(24));
+
+        // when: that one is deleted too
+        store.delete(other, null);
+        heatmap.onTaskDeleted(other, MONDAY + DAY, "work", 1000);
+
+        // then: the empty week is removed
+        assertTrue(persistence.weeks.get(4).isEmpty());
+        assertTrue(heatmap.weeks(Long.MIN_VALUE, Long.MAX_VALUE, null).isEmpty());
+    }
+
+    @Override
+    protected long add(long started, String category, long duration) {
+        long id = super.add(started, category, duration);
+        heatmap.onTaskInserted(id, started, category, (int) duration);
+        return id;
+    }
+
+    /** Keeps the encoded weeks, like the table does. */
+    private static class MapPersistence implements HeatmapHistograms.Persistence {
+
+        final Map<Integer, Map<String, byte[]>> weeks = new HashMap<Integer, Map<String, byte[]>>();
+
+        @Override
+        public Map<Integer, Map<String, WeekHeatmap>> load() {
+            Map<Integer, Map<String, WeekHeatmap>> result = new HashMap<Integer, Map<String, WeekHeatmap>>();
+            for (Map.Entry<Integer, Map<String, byte[]>> week : weeks.entrySet()) {
+                Map<String, WeekHeatmap> categories = new HashMap<String, WeekHeatmap>();
+                for (Map.Entry<String, byte[]> entry : week.getValue().entrySet()) {
+                    categories.put(entry.getKey(), WeekHeatmap.fromBytes(entry.getValue()));
+                }
+                result.put(week.getKey(), categories);
+            }
+            return result;
+        }
+
+        @Override
+        public void save(int week, String category, WeekHeatmap heatmap) {
+            Map<String, byte[]> categories = weeks.get(week);
+            if (categories == null) {
+                categories = new HashMap<String, byte[]>();
+                weeks.put(week, categories);
+            }
+            if (heatmap == null) {
+                categories.remove(category);
+            } else {
+                categories.put(category, heatmap.toBytes());
+            }
+        }
+
+        @Override
+        public void replaceAll(Map<Integer, Map<String, WeekHeatmap>> replacement) {
+            weeks.clear();
+            for (Map.Entry<Integer, Map<String, WeekHeatmap>> week : replacement.entrySet()) {
+                for (Map.Entry<String, WeekHeatmap> entry : week.getValue().entrySet()) {
+                    save(week.getKey(), entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+}
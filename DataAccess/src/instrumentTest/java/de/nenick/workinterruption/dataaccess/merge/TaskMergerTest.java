@@ -0,0 +1,103 @@
+package de.nenick.workinterruption.dataaccess.merge;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.transfer.TaskBinaryFormat;
+import de.nenick.workinterruption.dataaccess.transfer.TaskExport;
+
+public class TaskMergerTest extends TestCase {
+
+    private MemoryTaskStore target;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        target = new MemoryTaskStore();
+    }
+
+    public void testDuplicatesAndOverlapsOfSameCategory() throws Exception {
+
+        // given: two devices with a shared task, overlapping work and a still running copy
+        TaskRun phone = binaryRun(100, "work", 50, 300, "work", 100, 1000, "call", TaskStore.OPEN);
+        TaskRun tablet = csvRun(100, "work", 50, 350, "work", 100, 1000, "call", 20);
+
+        // when: both are merged
+        TaskMerger merger = new TaskMerger(Arrays.asList(phone, tablet));
+        StoreTaskSink sink = new StoreTaskSink(target, 2);
+        merger.mergeInto(sink);
+
+        // then: duplicates are gone, overlaps are joined and the closed copy wins
+        assertEquals(6, merger.read());
+        assertEquals(3, merger.written());
+        assertEquals(3, sink.written());
+        assertEquals("[100 work 50, 300 work 150, 1000 call 20]", tasks());
+    }
+
+    public void testOverlapsOfOtherCategoriesAreKept() throws Exception {
+
+        // given: an interruption during work, recorded on another device
+        TaskRun phone = csvRun(100, "work", 500);
+        TaskRun tablet = binaryRun(200, "call", 50, 700, "work", 10);
+
+        // when: both are merged, in either order
+        new TaskMerger(Arrays.asList(tablet, phone)).mergeInto(new StoreTaskSink(target, 10));
+
+        // then: both categories keep their tasks
+        assertEquals("[100 work 500, 200 call 50, 700 work 10]", tasks());
+    }
+
+    public void testUnsortedRunFails() throws Exception {
+
+        // given: a run going back in time
+        String csv = "id,started,category,duration\n,200,work,1\n,100,work,1\n";
+        TaskRun run = new ExportTaskRun(new ByteArrayInputStream(csv.getBytes("UTF-8")));
+
+        // when: it is merged
+        try {
+            new TaskMerger(Arrays.<TaskRun>asList(run)).mergeInto(new StoreTaskSink(target, 10));
+            fail();
+        } catch (IOException e) {
+            // then: the merge stops
+            assertTrue(e.getMessage().contains("not sorted"));
+        }
+    }
+
+    private TaskRun binaryRun(Object... tasks) throws IOException {
+        return exportRun(TaskBinaryFormat.MIME_TYPE, tasks);
+    }
+
+    private TaskRun csvRun(Object... tasks) throws IOException {
+        return exportRun("text/csv", tasks);
+    }
+
+    private TaskRun exportRun(String mimeType, Object... tasks) throws IOException {
+        MemoryTaskStore device = new MemoryTaskStore();
+        for (int i = 0; i < tasks.length; i += 3) {
+            device.insert(TaskStore.NO_ID, (Integer) tasks[i], (String) tasks[i + 1], (Integer) tasks[i + 2]);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TaskExport(mimeType).writeTo(device, out);
+        return new ExportTaskRun(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private String tasks() {
+        final List<String> tasks = new ArrayList<String>();
+        target.scan(Long.MIN_VALUE, Long.MAX_VALUE, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                tasks.add(started + " " + category + " " + duration);
+            }
+        });
+        return tasks.toString();
+    }
+}
@@ -0,0 +1,172 @@
+package de.nenick.workinterruption.dataaccess.quantiles;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.support.TaskStoreTestCase;
+
+public class DurationQuantilesTest extends TaskStoreTestCase {
+
+    private MapPersistence persistence;
+    private DurationQuantiles quantiles;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        persistence = new MapPersistence();
+        quantiles = new DurationQuantiles(store, persistence, UTC);
+    }
+
+    public void testQuantilesStayWithinTheRelativeError() throws Exception {
+
+        // given: a year of log-normal durations, merged from one sketch per day
+        Random random = new Random(42);
+        int[] durations = new int[36500];
+        DurationSketch merged = new DurationSketch();
+        for (int day = 0; day < 365; day++) {
+            DurationSketch sketch = new DurationSketch();
+            for (int i = 0; i < 100; i++) {
+                int duration = (int) Math.exp(12 + 2 * random.nextGaussian());
+                durations[day * 100 + i] = duration;
+                sketch.add(duration);
+            }
+            merged.merge(DurationSketch.fromBytes(sketch.toBytes()));
+        }
+
+        // when: the quantiles are read
+        Arrays.sort(durations);
+
+        // then: each one is within the promised error of the exact duration at its rank
+        for (double q : new double[]{0, 0.5, 0.9, 0.99, 1}) {
+            int exact = durations[(int) (q * (durations.length - 1))];
+            assertEquals(exact, merged.quantile(q), exact * DurationSketch.RELATIVE_ACCURACY);
+        }
+        assertEquals(36500, merged.count());
+    }
+
+    public void testRangeCountsPartialDaysExactly() throws Exception {
+
+        // given: closed tasks over three days, one running task
+        add(10 * HOUR, "work", 1000);
+        add(DAY + 10 * HOUR, "work", 2000);
+        add(DAY + 11 * HOUR, "call", 500);
+        add(2 * DAY + 10 * HOUR, "work", 3000);
+        add(2 * DAY + 20 * HOUR, "work", 4000);
+        add(2 * DAY + 21 * HOUR, "work", TaskStore.OPEN);
+
+        // when: the range starts within the first day and ends within the last day
+        Map<String, DurationSketch> sketches = quantiles.sketches(5 * HOUR, 2 * DAY + 12 * HOUR, null);
+
+        // then: only the tasks started in the range count
+        assertEquals(2, sketches.size());
+        assertEquals(3, sketches.get("work").count());
+        assertEquals(2000, sketches.get("work").quantile(0.5), 20);
+        assertEquals(1, sketches.get("call").count());
+        assertEquals(1, quantiles.sketches(0, 3 * DAY, "call").size());
+    }
+
+    public void testWritesKeepThePersistedSketchesCurrent() throws Exception {
+
+        // given: counted sketches
+        long id = add(DAY + HOUR, "work", TaskStore.OPEN);
+        quantiles.sketches(0, 3 * DAY, null);
+
+        // when: the task is closed, closed again and a closed task is inserted
+        close(id, 1000);
+        close(id, 5000);
+        long other = store.insert(TaskStore.NO_ID, DAY + 2 * HOUR, "work", 7000);
+        quantiles.onTaskInserted(other, DAY + 2 * HOUR, "work", 7000);
+
+        // then: a restart loads sketches which count each task once
+        DurationQuantiles restarted = new DurationQuantiles(store, persistence, UTC);
+        DurationSketch work = restarted.sketches(0, 3 * DAY, "work").get("work");
+        assertEquals(2, work.count());
+        assertEquals(5000, work.quantile(0), 50);
+
+        // when: the task is deleted and unknown rows change
+        store.delete(id, null);
+        quantiles.onTaskDeleted(id, DAY + HOUR, "work", 5000);
+        quantiles.onTasksChanged();
+
+        // then: the persisted sketches are dropped and counted again on the next read
+        assertTrue(persistence.sketches.isEmpty());
+        assertEquals(1, quantiles.sketches(0, 3 * DAY, "work").get("work").count());
+        assertEquals(1, persistence.sketches.size());
+    }
+
+    public void testDaysAreLocal() throws Exception {
+
+        // given: sketches of local days in UTC+2, tasks just before and after a local midnight
+        DurationQuantiles summer = new DurationQuantiles(store, null, TimeZone.getTimeZone("GMT+02:00"));
+        add(DAY + 21 * HOUR + 30 * MINUTE, "work", 1000);
+        add(DAY + 22 * HOUR + 30 * MINUTE, "work", 2000);
+        add(3 * DAY, "work", 3000);
+
+        // when: the range covers the local day of the second task only
+        Map<String, DurationSketch> sketches = summer.sketches(DAY + 22 * HOUR, 2 * DAY + 22 * HOUR, null);
+
+        // then: the whole local day is read from its sketch
+        assertEquals(1, sketches.get("work").count());
+        assertEquals(2000, sketches.get("work").quantile(0.5), 20);
+        assertEquals(3, summer.sketches(Long.MIN_VALUE, Long.MAX_VALUE, "work").get("work").count());
+    }
+
+    private void close(long id, int duration) {
+        final int[] previous = new int[1];
+        store.close(id, duration, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                previous[0] = duration;
+            }
+        });
+        quantiles.onTaskClosed(id, DAY + HOUR, "work", previous[0], duration);
+    }
+
+    /** Keeps the encoded sketches, like the table does. */
+    private static class MapPersistence implements DurationQuantiles.Persistence {
+
+        final Map<Long, Map<String, byte[]>> sketches = new HashMap<Long, Map<String, byte[]>>();
+
+        @Override
+        public Map<Long, Map<String, DurationSketch>> load() {
+            Map<Long, Map<String, DurationSketch>> result = new HashMap<Long, Map<String, DurationSketch>>();
+            for (Map.Entry<Long, Map<String, byte[]>> day : sketches.entrySet()) {
+                Map<String, DurationSketch> categories = new HashMap<String, DurationSketch>();
+                for (Map.Entry<String, byte[]> entry : day.getValue().entrySet()) {
+                    categories.put(entry.getKey(), DurationSketch.fromBytes(entry.getValue()));
+                }
+                result.put(day.getKey(), categories);
+            }
+            return result;
+        }
+
+        @Override
+        public void save(long day, String category, DurationSketch sketch) {
+            Map<String, byte[]> categories = sketches.get(day);
+            if (categories == null) {
+                categories = new HashMap<String, byte[]>();
+                sketches.put(day, categories);
+            }
+            if (sketch == null) {
+                categories.remove(category);
+            } else {
+                categories.put(category, sketch.toBytes());
+            }
+        }
+
+        @Override
+        public void replaceAll(Map<Long, Map<String, DurationSketch>> replacement) {
+            sketches.clear();
+            for (Map.Entry<Long, Map<String, DurationSketch>> day : replacement.entrySet()) {
+                for (Map.Entry<String, DurationSketch> entry : day.getValue().entrySet()) {
+                    save(day.getKey(), entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.nenick.workinterruption.dataaccess.reports;
+
+import junit.framework.TestCase;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+public class ReportCacheTest extends TestCase {
+
+    private static final long WEEK = 7L * 24 * 60 * 60 * 1000;
+
+    private static final Object[][] ROWS = {{"work", 3L, 1.5}};
+
+    public void testWriteDropsOnlyReportsOfItsStartAndCategory() throws Exception {
+
+        // given: reports of two weeks, one of them for calls only
+        ReportCache cache = new ReportCache();
+        ReportCache.Key firstWeek = new ReportCache.Key("quantiles", 0, WEEK, null);
+        ReportCache.Key secondWeek = new ReportCache.Key("quantiles", WEEK, 2 * WEEK, null);
+        ReportCache.Key secondWeekCalls = new ReportCache.Key("quantiles", WEEK, 2 * WEEK, "call");
+        cache.put(firstWeek, ROWS, cache.version());
+        cache.put(secondWeek, ROWS, cache.version());
+        cache.put(secondWeekCalls, ROWS, cache.version());
+
+        // when: work is started in the second week
+        cache.onTaskInserted(1, WEEK, "work", TaskStore.OPEN);
+
+        // then: only the report of the second week for all categories is dropped
+        assertSame(ROWS, cache.get(firstWeek));
+        assertNull(cache.get(secondWeek));
+        assertSame(ROWS, cache.get(secondWeekCalls));
+
+        // when: tasks are changed in unknown ways
+        cache.onTasksChanged();
+
+        // then: all are dropped
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    public void testOverlappingReportsDropForTasksRunningIntoThem() throws Exception {
+
+        // given: a coverage report of the second week and one of the fourth
+        ReportCache cache = new ReportCache();
+        ReportCache.Key secondWeek = ReportCache.Key.overlapping("coverage", WEEK, 2 * WEEK, null);
+        ReportCache.Key fourthWeek = ReportCache.Key.overlapping("coverage", 3 * WEEK, 4 * WEEK, null);
+        cache.put(secondWeek, ROWS, cache.version());
+        cache.put(fourthWeek, ROWS, cache.version());
+
+        // when: a task started in the first week is closed after it ran into the second one
+        cache.onTaskClosed(1, WEEK - 1000, "work", 3000, 5000);
+
+        // then: the report of the second week is dropped
+        assertNull(cache.get(secondWeek));
+        assertSame(ROWS, cache.get(fourthWeek));
+
+        // when: a task of the first week is started, it runs into all later weeks
+        cache.put(secondWeek, ROWS, cache.version());
+        cache.onTaskInserted(2, WEEK / 2, "call", TaskStore.OPEN);
+
+        // then: both are dropped
+        assertEquals(0, cache.size());
+    }
+
+    public void testLeastRecentlyUsedGoesOverTheCap() throws Exception {
+
+        // given: room for two reports
+        ReportCache cache = new ReportCache(2 * ReportCache.sizeOf(ROWS));
+        ReportCache.Key first = new ReportCache.Key("coverage", 0, WEEK, null);
+        ReportCache.Key second = new ReportCache.Key("coverage", WEEK, 2 * WEEK, null);
+        ReportCache.Key third = new ReportCache.Key("coverage", 2 * WEEK, 3 * WEEK, null);
+        cache.put(first, ROWS, cache.version());
+        cache.put(second, ROWS, cache.version());
+
+        // when: the first is read, then a third is added
+        cache.get(first);
+        cache.put(third, ROWS, cache.version());
+
+        // then: the second one is gone
+        assertSame(ROWS, cache.get(first));
+        assertNull(cache.get(second));
+        assertSame(ROWS, cache.get(third));
+        assertEquals(2 * ReportCache.sizeOf(ROWS), cache.bytes());
+    }
+
+    public void testReportComputedDuringAWriteIsNotCached() throws Exception {
+
+        // given: a report is being computed
+        ReportCache cache = new ReportCache();
+        ReportCache.Key key = new ReportCache.Key("quantiles", 0, WEEK, null);
+        long version = cache.version();
+
+        // when: a task outside of its range is closed meanwhile
+        cache.onTaskClosed(1, 3 * WEEK, "work", TaskStore.OPEN, 1000);
+        cache.put(key, ROWS, version);
+
+        // then: the report is not cached, it may have seen the store in between
+        assertNull(cache.get(key));
+    }
+}
@@ -0,0 +1,84 @@
+package de.nenick.workinterruption.dataaccess.rules;
+
+import junit.framework.TestCase;
+
+import java.util.List;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+public class RuleEngineTest extends TestCase {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+
+    public void testCountAlertsOnceWhileTheWindowIsFull() throws Exception {
+
+        // given: at most two interruptions within ten minutes
+        RuleEngine engine = RuleEngine.parse("count interruption > 2 in 10m");
+
+        // when: three interruptions start within five minutes, a fourth one right after
+        engine.onStarted("interruption", 0);
+        engine.onStarted("interruption", 2 * MINUTE);
+        List<AlertRule> third = engine.onStarted("interruption", 4 * MINUTE);
+        List<AlertRule> fourth = engine.onStarted("interruption", 5 * MINUTE);
+
+        // then: the third one alerts, the fourth one doesn't alert again
+        assertEquals("[count interruption > 2 in 10m]", third.toString());
+        assertTrue(fourth.isEmpty());
+
+        // when: the first ones left the window and three more come in
+        assertTrue(engine.check(13 * MINUTE).isEmpty());
+        engine.onStarted("interruption", 14 * MINUTE);
+        engine.onStarted("interruption", 15 * MINUTE);
+
+        // then: the rule alerts again
+        assertEquals(1, engine.onStarted("interruption", 16 * MINUTE).size());
+    }
+
+    public void testAbsenceCountsFromTheLastBreak() throws Exception {
+
+        // given: no break for three hours
+        RuleEngine engine = RuleEngine.parse("absent break for 3h");
+
+        // when: work starts, a break is taken after two hours, work goes on
+        engine.onStarted("work", 0);
+        engine.onStarted("break", 2 * HOUR);
+        assertTrue(engine.onStopped("break", 2 * HOUR + 15 * MINUTE).isEmpty());
+
+        // then: the alert comes three hours after the break
+        assertTrue(engine.check(5 * HOUR).isEmpty());
+        assertEquals(1, engine.check(5 * HOUR + 15 * MINUTE).size());
+    }
+
+    public void testReplayedHistoryDoesNotAlert() throws Exception {
+
+        // given: a history with work running for four hours and three recent interruptions
+        RuleEngine engine = RuleEngine.parse("absent break for 3h", "count interruption > 2 in 60m");
+        engine.visit(1, 0, "work", TaskStore.OPEN);
+        engine.visit(2, 3 * HOUR + 30 * MINUTE, "interruption", (int) (5 * MINUTE));
+        engine.visit(3, 3 * HOUR + 40 * MINUTE, "interruption", (int) (5 * MINUTE));
+        engine.visit(4, 3 * HOUR + 50 * MINUTE, "interruption", (int) (5 * MINUTE));
+
+        // when: the replay ends and the next interruption starts
+        engine.endReplay(4 * HOUR);
+        List<AlertRule> alerts = engine.onStarted("interruption", 4 * HOUR + MINUTE);
+
+        // then: the violations of the history are known and don't alert again
+        assertTrue(alerts.isEmpty());
+        assertEquals(3 * HOUR, engine.horizonMillis());
+    }
+
+    public void testInvalidRule() throws Exception {
+
+        // given: a rule in free text
+        String text = "more than 5 interruptions";
+
+        // when: it is parsed
+        try {
+            AlertRule.parse(text);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // then: it is rejected
+        }
+    }
+}
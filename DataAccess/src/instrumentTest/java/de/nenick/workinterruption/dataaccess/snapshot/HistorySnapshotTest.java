@@ -0,0 +1,115 @@
+package de.nenick.workinterruption.dataaccess.snapshot;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+public class HistorySnapshotTest extends TestCase {
+
+    private File directory;
+
+    private MemoryTaskStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = new File(System.getProperty("java.io.tmpdir"), "snapshot-test-" + System.nanoTime());
+        store = new MemoryTaskStore();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+        super.tearDown();
+    }
+
+    public void testWriteAndScanRange() throws IOException {
+
+        // given: closed and running tasks
+        store.insert(TaskStore.NO_ID, 100, "work", 10);
+        store.insert(TaskStore.NO_ID, 200, "break", 20);
+        store.insert(TaskStore.NO_ID, 300, "work", 30);
+        store.insert(TaskStore.NO_ID, 400, "work", TaskStore.OPEN);
+
+        // when: a snapshot up to 1000 is written
+        new HistorySnapshotWriter(directory).rewrite(store, 1000);
+
+        // then: a range scan sees the closed tasks within the range
+        HistorySnapshotReader reader = HistorySnapshotReader.open(directory);
+        assertEquals(3, reader.count());
+        assertEquals(1000, reader.watermark());
+        List<String> tasks = scan(reader, 150, 1000);
+        assertEquals(2, tasks.size());
+        assertEquals("200:20:break", tasks.get(0));
+        assertEquals("300:30:work", tasks.get(1));
+    }
+
+    public void testAppendKeepsCategoryIds() throws IOException {
+
+        // given: a snapshot up to 250
+        store.insert(TaskStore.NO_ID, 100, "work", 10);
+        store.insert(TaskStore.NO_ID, 200, "break", 20);
+        HistorySnapshotWriter writer = new HistorySnapshotWriter(directory);
+        writer.rewrite(store, 250);
+        int workId = HistorySnapshotReader.open(directory).categoryId("work");
+
+        // when: more tasks are appended
+        store.insert(TaskStore.NO_ID, 300, "meeting", 30);
+        store.insert(TaskStore.NO_ID, 400, "work", 40);
+        new HistorySnapshotWriter(directory).append(store, 500);
+
+        // then: all tasks are there and old ids are unchanged
+        HistorySnapshotReader reader = HistorySnapshotReader.open(directory);
+        assertEquals(4, reader.count());
+        assertEquals(500, reader.watermark());
+        assertEquals(workId, reader.categoryId("work"));
+        assertEquals("400:40:work", scan(reader, 0, 1000).get(3));
+    }
+
+    public void testCategoryNamesAreKeptExactly() throws IOException {
+
+        // given: categories which only differ in a line break, and a name torn by a crash
+        store.insert(TaskStore.NO_ID, 100, "call\nback", 10);
+        store.insert(TaskStore.NO_ID, 200, "call back", 20);
+        HistorySnapshotWriter writer = new HistorySnapshotWriter(directory);
+        writer.rewrite(store, 250);
+        FileOutputStream categories = new FileOutputStream(HistorySnapshot.categoryFile(directory), true);
+        categories.write(new byte[]{0, 10, 'm', 'e'});
+        categories.close();
+
+        // when: a task of a new category is appended
+        store.insert(TaskStore.NO_ID, 300, "meeting", 30);
+        new HistorySnapshotWriter(directory).append(store, 500);
+
+        // then: every name comes back as it was written
+        HistorySnapshotReader reader = HistorySnapshotReader.open(directory);
+        assertEquals(3, reader.categoryCount());
+        assertEquals("100:10:call\nback", scan(reader, 0, 1000).get(0));
+        assertEquals("200:20:call back", scan(reader, 0, 1000).get(1));
+        assertEquals("300:30:meeting", scan(reader, 0, 1000).get(2));
+    }
+
+    private List<String> scan(final HistorySnapshotReader reader, long from, long to) {
+        final List<String> tasks = new ArrayList<String>();
+        reader.scan(from, to, new SnapshotVisitor() {
+            @Override
+            public void visit(long started, int duration, int categoryId) {
+                tasks.add(started + ":" + duration + ":" + reader.category(categoryId));
+            }
+        });
+        return tasks;
+    }
+}
@@ -0,0 +1,104 @@
+package de.nenick.workinterruption.dataaccess.snapshot;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+public class SnapshotTaskStoreTest extends TestCase {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private File directory;
+
+    private MemoryTaskStore store;
+
+    private HistorySnapshotUpdater snapshots;
+
+    private SnapshotTaskStore history;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = new File(System.getProperty("java.io.tmpdir"), "snapshot-store-test-" + System.nanoTime());
+        store = new MemoryTaskStore();
+        snapshots = new HistorySnapshotUpdater(directory, store);
+        history = new SnapshotTaskStore(store, snapshots);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        snapshots.shutdown();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+        super.tearDown();
+    }
+
+    public void testOldTasksComeFromSnapshot() throws IOException {
+
+        // given: an old and a recent task in the snapshot
+        long now = System.currentTimeMillis();
+        store.insert(TaskStore.NO_ID, now - 3 * DAY, "work", 10);
+        store.insert(TaskStore.NO_ID, now - 60000, "break", 20);
+        snapshots.refresh();
+
+        // when: all tasks are scanned
+        List<String> tasks = scan();
+
+        // then: the old task comes from the snapshot without id, the recent one from the store
+        assertNotNull(snapshots.reader());
+        assertEquals(2, tasks.size());
+        assertEquals(TaskStore.NO_ID + ":work:10", tasks.get(0));
+        assertEquals("2:break:20", tasks.get(1));
+        assertEquals(Long.valueOf(30), sum(history));
+    }
+
+    public void testStaleSnapshotIsNotRead() throws IOException {
+
+        // given: a snapshot with an old task
+        long now = System.currentTimeMillis();
+        long id = store.insert(TaskStore.NO_ID, now - 3 * DAY, "work", 10);
+        snapshots.refresh();
+
+        // when: the old task is deleted
+        store.delete(id, null);
+        snapshots.onTaskDeleted(id, now - 3 * DAY, "work", 10);
+
+        // then: the store is read until the snapshot is rewritten
+        assertNull(snapshots.reader());
+        assertTrue(scan().isEmpty());
+        snapshots.refresh();
+        assertNotNull(snapshots.reader());
+        assertTrue(scan().isEmpty());
+    }
+
+    private List<String> scan() {
+        final List<String> tasks = new ArrayList<String>();
+        history.scan(Long.MIN_VALUE, Long.MAX_VALUE, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                tasks.add(id + ":" + category + ":" + duration);
+            }
+        });
+        return tasks;
+    }
+
+    private static Long sum(TaskStore store) {
+        long sum = 0;
+        for (Long duration : store.durationByCategory(Long.MIN_VALUE, Long.MAX_VALUE).values()) {
+            sum += duration;
+        }
+        return sum;
+    }
+}
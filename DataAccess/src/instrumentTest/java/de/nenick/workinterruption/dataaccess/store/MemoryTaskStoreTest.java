@@ -0,0 +1,152 @@
+package de.nenick.workinterruption.dataaccess.store;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class MemoryTaskStoreTest extends TestCase {
+
+    private MemoryTaskStore store;
+
+    private List<Long> visited;
+
+    private TaskVisitor collectIds = new TaskVisitor() {
+        @Override
+        public void visit(long id, long started, String category, int duration) {
+            visited.add(id);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store = new MemoryTaskStore();
+        visited = new ArrayList<Long>();
+    }
+
+    public void testInsertGeneratesIds() {
+
+        // when: tasks are inserted without id
+        long first = store.insert(TaskStore.NO_ID, 100, "work", TaskStore.OPEN);
+        long second = store.insert(TaskStore.NO_ID, 200, "break", TaskStore.OPEN);
+
+        // then: ids are generated in order
+        assertEquals(1, first);
+        assertEquals(2, second);
+    }
+
+    public void testInsertFailsForExistingId() {
+
+        // given: a task
+        long id = store.insert(TaskStore.NO_ID, 100, "work", TaskStore.OPEN);
+
+        // when: the same id is inserted again
+        long result = store.insert(id, 200, "work", TaskStore.OPEN);
+
+        // then: the insert was rejected
+        assertEquals(-1, result);
+        assertEquals(1, store.size());
+    }
+
+    public void testScanIsOrderedAndHalfOpen() {
+
+        // given: tasks inserted out of order
+        long late = store.insert(TaskStore.NO_ID, 300, "work", 10);
+        long early = store.insert(TaskStore.NO_ID, 100, "work", 10);
+        long middle = store.insert(TaskStore.NO_ID, 200, "meeting", 10);
+
+        // when: scanning a range which excludes the last task
+        store.scan(100, 300, collectIds);
+
+        // then: tasks are visited by start time
+        assertEquals(2, visited.size());
+        assertEquals(early, (long) visited.get(0));
+        assertEquals(middle, (long) visited.get(1));
+        assertFalse(visited.contains(late));
+    }
+
+    public void testLongScanVisitsEachTaskOnceWithoutHoldingTheStore() throws Exception {
+
+        // given: many tasks, most of them started at the same time
+        for (int i = 0; i < 1000; i++) {
+            store.insert(TaskStore.NO_ID, i < 700 ? 100 : i, "work", 10);
+        }
+
+        // when: the scan visitor waits for a write of another thread
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                store.insert(TaskStore.NO_ID, 5000, "call", 10);
+            }
+        });
+        store.scan(0, 2000, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                if (visited.isEmpty()) {
+                    writer.start();
+                    try {
+                        writer.join(5000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                visited.add(id);
+            }
+        });
+
+        // then: the write was done meanwhile and each task was visited once, in order
+        assertFalse(writer.isAlive());
+        assertEquals(1000, visited.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i + 1, (long) visited.get(i));
+        }
+    }
+
+    public void testCloseAndOpenTasks() {
+
+        // given: two running tasks
+        long work = store.insert(TaskStore.NO_ID, 100, "work", TaskStore.OPEN);
+        long meeting = store.insert(TaskStore.NO_ID, 200, "meeting", TaskStore.OPEN);
+
+        // when: one task is closed
+        assertTrue(store.close(work, 50, null));
+
+        // then: only the other one is open
+        store.openTasks(collectIds);
+        assertEquals(1, visited.size());
+        assertEquals(meeting, (long) visited.get(0));
+    }
+
+    public void testDelete() {
+
+        // given: a task
+        long id = store.insert(TaskStore.NO_ID, 100, "work", 10);
+
+        // when: it is deleted
+        assertTrue(store.delete(id, collectIds));
+
+        // then: it is gone, the deleting call saw it
+        assertEquals(id, (long) visited.get(0));
+        assertFalse(store.get(id, collectIds));
+        assertFalse(store.delete(id, collectIds));
+        assertEquals(1, visited.size());
+    }
+
+    public void testDurationByCategorySkipsOpenTasks() {
+
+        // given: closed and running tasks
+        store.insert(TaskStore.NO_ID, 100, "work", 10);
+        store.insert(TaskStore.NO_ID, 200, "work", 20);
+        store.insert(TaskStore.NO_ID, 300, "work", TaskStore.OPEN);
+        store.insert(TaskStore.NO_ID, 400, "break", 5);
+
+        // when: aggregating
+        Map<String, Long> result = store.durationByCategory(0, 1000);
+
+        // then: only closed durations are summed
+        assertEquals(30L, (long) result.get("work"));
+        assertEquals(5L, (long) result.get("break"));
+    }
+}
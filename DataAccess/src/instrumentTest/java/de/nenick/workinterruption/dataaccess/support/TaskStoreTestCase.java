@@ -0,0 +1,30 @@
+package de.nenick.workinterruption.dataaccess.support;
+
+import junit.framework.TestCase;
+
+import java.util.TimeZone;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/** Base for tests of task consumers, with a fresh {@link MemoryTaskStore} for each test. */
+public abstract class TaskStoreTestCase extends TestCase {
+
+    protected static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    protected static final long MINUTE = 60 * 1000;
+    protected static final long HOUR = 60 * MINUTE;
+    protected static final long DAY = 24 * HOUR;
+
+    protected MemoryTaskStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store = new MemoryTaskStore();
+    }
+
+    /** @return id of the added task */
+    protected long add(long started, String category, long duration) {
+        return store.insert(TaskStore.NO_ID, started, category, (int) duration);
+    }
+}
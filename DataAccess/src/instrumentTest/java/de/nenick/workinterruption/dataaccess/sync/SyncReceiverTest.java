@@ -0,0 +1,89 @@
+package de.nenick.workinterruption.dataaccess.sync;
+
+import junit.framework.TestCase;
+
+public class SyncReceiverTest extends TestCase {
+
+    private SyncReceiver receiver;
+
+    private SyncTransport transport;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        receiver = new SyncReceiver(2);
+        int port = receiver.start(0);
+        transport = new SyncTransport("http://127.0.0.1:" + port, 3, 10);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        receiver.stop();
+        super.tearDown();
+    }
+
+    public void testRetriedBatchIsStoredOnce() throws Exception {
+
+        // given: a batch with a new and a closed task
+        SyncBatch batch = new SyncBatch("phone", 1, 2);
+        batch.add(7, SyncBatch.OP_UPSERT, 100, "work", -1);
+        batch.add(7, SyncBatch.OP_UPSERT, 100, "work", 60);
+
+        // when: it is sent twice, like after a lost answer
+        transport.send(batch);
+        transport.send(batch);
+
+        // then: the row holds the last values once and the watermark moved
+        assertEquals(1, receiver.rowCount());
+        assertEquals(60, receiver.row(SyncBatch.rowId("phone", 7)).duration);
+        assertEquals(2, transport.watermark("phone"));
+    }
+
+    public void testOutdatedBatchIsSkipped() throws Exception {
+
+        // given: a stored batch which deleted a task
+        SyncBatch insert = new SyncBatch("tablet", 1, 1);
+        insert.add(3, SyncBatch.OP_UPSERT, 100, "work", 10);
+        SyncBatch delete = new SyncBatch("tablet", 2, 2);
+        delete.add(3, SyncBatch.OP_DELETE, 100, "work", 10);
+        transport.send(insert);
+        transport.send(delete);
+
+        // when: the older batch arrives again
+        transport.send(insert);
+
+        // then: the task stays deleted
+        assertEquals(0, receiver.rowCount());
+        assertEquals(2, receiver.appliedBatches());
+    }
+
+    public void testResetReplacesRowsOfTheDevice() throws Exception {
+
+        // given: stored tasks of two devices
+        SyncBatch phone = new SyncBatch("phone", 1, 3);
+        phone.add(1, SyncBatch.OP_UPSERT, 100, "work", 10);
+        phone.add(2, SyncBatch.OP_UPSERT, 200, "call", 20);
+        phone.add(3, SyncBatch.OP_UPSERT, 300, "work", 30);
+        SyncBatch tablet = new SyncBatch("tablet", 1, 1);
+        tablet.add(2, SyncBatch.OP_UPSERT, 200, "work", 40);
+        transport.send(phone);
+        transport.send(tablet);
+
+        // when: the phone pushes all its tasks in two batches, task 2 was deleted in dropped changes
+        SyncBatch first = new SyncBatch("phone", 9, 9);
+        first.setReset(true);
+        first.add(1, SyncBatch.OP_UPSERT, 100, "work", 10);
+        SyncBatch second = new SyncBatch("phone", 9, 9);
+        second.add(3, SyncBatch.OP_UPSERT, 300, "work", 35);
+        transport.send(first);
+        transport.send(second);
+
+        // then: the deleted task is gone, the other device keeps its rows
+        assertEquals(3, receiver.rowCount());
+        assertNull(receiver.row(SyncBatch.rowId("phone", 2)));
+        assertEquals(10, receiver.row(SyncBatch.rowId("phone", 1)).duration);
+        assertEquals(35, receiver.row(SyncBatch.rowId("phone", 3)).duration);
+        assertEquals(40, receiver.row(SyncBatch.rowId("tablet", 2)).duration);
+        assertEquals(9, transport.watermark("phone"));
+    }
+}
@@ -0,0 +1,102 @@
+package de.nenick.workinterruption.dataaccess.time;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+public class TimeBucketsTest extends TestCase {
+
+    private static final TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+
+    public void testMatchesCalendarAcrossSwitches() throws Exception {
+        Random random = new Random(7);
+        for (String id : new String[] {"Europe/Berlin", "America/New_York", "Australia/Lord_Howe", "Asia/Kolkata"}) {
+
+            // given: the buckets and a calendar of a zone with daylight saving or odd offsets
+            TimeZone zone = TimeZone.getTimeZone(id);
+            TimeBuckets buckets = TimeBuckets.forZone(zone);
+            Calendar calendar = Calendar.getInstance(zone);
+
+            for (int i = 0; i < 10000; i++) {
+                // when: a random time up to 2036 is bucketed
+                long time = (long) (random.nextDouble() * 2.1e12);
+                calendar.setTimeInMillis(time);
+
+                // then: offset, hour and day of the week are the same as the calendar's
+                assertEquals(id + " " + time, zone.getOffset(time), buckets.offset(time));
+                assertEquals(calendar.get(Calendar.HOUR_OF_DAY), buckets.hourOfDay(time));
+                int dayOfWeek = (calendar.get(Calendar.DAY_OF_WEEK) + 5) % 7;
+                assertEquals(dayOfWeek, TimeBuckets.dayOfWeek(buckets.epochDay(time)));
+                assertEquals(dayOfWeek * 24 + calendar.get(Calendar.HOUR_OF_DAY), buckets.hourOfWeek(time));
+            }
+        }
+    }
+
+    public void testDaysAndWeeksAroundTheSpringSwitch() throws Exception {
+
+        // given: the last hour of sunday 2013-03-31, the first day with summer time in Berlin
+        TimeBuckets buckets = TimeBuckets.forZone(BERLIN);
+        long sundayNight = time(2013, Calendar.MARCH, 31, 23);
+        long mondayMorning = time(2013, Calendar.APRIL, 1, 0);
+
+        // when: they are bucketed
+        // then: the days follow each other and the monday starts a new week
+        assertEquals(15795, buckets.epochDay(sundayNight));
+        assertEquals(15796, buckets.epochDay(mondayMorning));
+        assertEquals(15789, buckets.weekStart(sundayNight));
+        assertEquals(15796, buckets.weekStart(mondayMorning));
+        assertEquals(6 * 24 + 23, buckets.hourOfWeek(sundayNight));
+        assertEquals(0, buckets.hourOfWeek(mondayMorning));
+    }
+
+    public void testDayStartAcrossSwitches() throws Exception {
+
+        // given: Berlin and Sao Paulo, which skipped midnight on 2018-11-04 for summer time
+        TimeBuckets berlin = TimeBuckets.forZone(BERLIN);
+        TimeZone saoPaulo = TimeZone.getTimeZone("America/Sao_Paulo");
+        TimeBuckets brazil = TimeBuckets.forZone(saoPaulo);
+        Calendar calendar = Calendar.getInstance(saoPaulo);
+        calendar.clear();
+        calendar.set(2018, Calendar.NOVEMBER, 4, 1, 0);
+
+        // when: the days around the switches start
+        // then: each starts with its first millisecond, the skipped midnight with the switch
+        assertEquals(time(2013, Calendar.MARCH, 31, 0) - 30 * 60 * 1000, berlin.dayStart(15795));
+        assertEquals(time(2013, Calendar.APRIL, 1, 0) - 30 * 60 * 1000, berlin.dayStart(15796));
+        int switchDay = brazil.epochDay(calendar.getTimeInMillis());
+        assertEquals(calendar.getTimeInMillis(), brazil.dayStart(switchDay));
+        assertEquals(switchDay - 1, brazil.epochDay(brazil.dayStart(switchDay) - 1));
+        assertEquals(3 * 60 * 60 * 1000, brazil.dayStart(0));
+    }
+
+    public void testDayLabel() throws Exception {
+
+        // given: buckets with english weekdays
+        Locale previous = Locale.getDefault();
+        Locale.setDefault(Locale.ENGLISH);
+        try {
+            TimeBuckets buckets = TimeBuckets.forZone(BERLIN);
+
+            // when: two days 64 days apart are labeled, they share a cache slot
+            String first = buckets.dayLabel(time(2013, Calendar.APRIL, 1, 9));
+            String second = buckets.dayLabel(time(2013, Calendar.JUNE, 4, 9));
+
+            // then: both are labeled like "E d.M"
+            assertEquals("Mon 1.4", first);
+            assertEquals("Tue 4.6", second);
+            assertEquals("Mon 1.4", buckets.dayLabel(time(2013, Calendar.APRIL, 1, 23)));
+        } finally {
+            Locale.setDefault(previous);
+        }
+    }
+
+    private static long time(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance(BERLIN);
+        calendar.clear();
+        calendar.set(year, month, day, hour, 30);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,120 @@
+package de.nenick.workinterruption.dataaccess.trace;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+public class TraceReplayerTest extends TestCase {
+
+    private static final String TASKS = "content://de.nenick.workinterruption/task";
+
+    private long time;
+
+    public void testRecordsSurviveRoundTrip() throws Exception {
+
+        // given: a recorded query with arguments
+        TraceRecord query = record(TraceRecord.QUERY, TASKS, 3);
+        query.projection = new String[]{"_id", "started"};
+        query.selection = "category = ?";
+        query.selectionArgs = new String[]{"work"};
+        byte[] trace = write(query, query);
+
+        // when: the trace is read, cut off in the middle of the second record
+        TraceReader reader = new TraceReader(new ByteArrayInputStream(Arrays.copyOf(trace, trace.length - 3)));
+        TraceRecord read = reader.read();
+
+        // then: the first record is complete and the torn one ends the trace
+        assertEquals(TraceRecord.QUERY, read.op);
+        assertEquals(TASKS, read.uri);
+        assertEquals("[_id, started]", Arrays.toString(read.projection));
+        assertEquals("category = ?", read.selection);
+        assertEquals("[work]", Arrays.toString(read.selectionArgs));
+        assertEquals(3, read.result);
+        assertEquals(10, read.startMicros);
+        assertNull(reader.read());
+    }
+
+    public void testReplayMapsTaskIds() throws Exception {
+
+        // given: a session which started, closed and deleted tasks with ids of another device
+        byte[] trace = write(
+                insert(41, "work"),
+                insert(42, "call"),
+                record(TraceRecord.QUERY, TASKS, 2),
+                close(41, 500),
+                record(TraceRecord.DELETE, TASKS + "/42", 1),
+                sql(record(TraceRecord.DELETE, TASKS, 0)),
+                record(TraceRecord.BULK_INSERT, TASKS, 20));
+
+        // when: it is replayed against an empty store
+        MemoryTaskStore store = new MemoryTaskStore();
+        store.insert(TaskStore.NO_ID, 1, "old", 1);
+        TraceReplayer replayer = new TraceReplayer(new StoreReplayTarget(store));
+        replayer.replay(new TraceReader(new ByteArrayInputStream(trace)), false);
+
+        // then: the calls hit the new tasks, SQL and bulk inserts without rows are skipped
+        final StringBuilder tasks = new StringBuilder();
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                tasks.append(category).append('=').append(duration).append(' ');
+            }
+        });
+        assertEquals("old=1 work=500 ", tasks.toString());
+        assertEquals(2, replayer.replayed(TraceRecord.INSERT));
+        assertEquals(1, replayer.replayed(TraceRecord.DELETE));
+        assertEquals(1, replayer.skipped(TraceRecord.DELETE));
+        assertEquals(1, replayer.skipped(TraceRecord.BULK_INSERT));
+        assertTrue(replayer.report().contains("update"));
+        assertTrue(replayer.report().contains("bulk"));
+    }
+
+    private TraceRecord record(byte op, String uri, long result) {
+        TraceRecord record = new TraceRecord();
+        record.op = op;
+        record.uri = uri;
+        record.startMicros = time += 10;
+        record.durationMicros = 5;
+        record.result = result;
+        return record;
+    }
+
+    private TraceRecord insert(long id, String category) {
+        TraceRecord record = record(TraceRecord.INSERT, TASKS, id);
+        record.values = new LinkedHashMap<String, Object>();
+        record.values.put("started", time);
+        record.values.put("category", category);
+        return record;
+    }
+
+    private TraceRecord close(long id, int duration) {
+        TraceRecord record = record(TraceRecord.UPDATE, TASKS + "/" + id, 1);
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        values.put("duration", (long) duration);
+        record.values = values;
+        return record;
+    }
+
+    private static TraceRecord sql(TraceRecord record) {
+        record.selection = "duration > 0";
+        return record;
+    }
+
+    private static byte[] write(TraceRecord... records) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TraceWriter writer = new TraceWriter(out, 0);
+        for (TraceRecord record : records) {
+            writer.write(record);
+        }
+        writer.close();
+        return out.toByteArray();
+    }
+}
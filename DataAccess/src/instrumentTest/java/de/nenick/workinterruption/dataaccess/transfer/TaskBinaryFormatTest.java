@@ -0,0 +1,148 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+public class TaskBinaryFormatTest extends TestCase {
+
+    private MemoryTaskStore store;
+
+    private List<String> decoded;
+
+    private TaskVisitor collect = new TaskVisitor() {
+        @Override
+        public void visit(long id, long started, String category, int duration) {
+            decoded.add(id + "," + started + "," + category + "," + duration);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store = new MemoryTaskStore();
+        decoded = new ArrayList<String>();
+    }
+
+    public void testRoundTripOverSeveralBlocks() throws Exception {
+
+        // given: more tasks than fit into one block
+        int tasks = TaskBinaryFormat.ROWS_PER_BLOCK * 2 + 3;
+        for (int i = 0; i < tasks; i++) {
+            store.insert(TaskStore.NO_ID, 1000L * i, i % 3 == 0 ? "work" : "pause", i == tasks - 1 ? TaskStore.OPEN : i);
+        }
+
+        // when: the tasks are encoded and decoded
+        ByteBuffer buffer = ByteBuffer.wrap(encode());
+        new TaskBinaryDecoder(buffer).readAll(collect);
+
+        // then: all tasks are back, including the running one
+        assertEquals(tasks, decoded.size());
+        assertEquals("1,0,work,0", decoded.get(0));
+        assertEquals(tasks + "," + 1000L * (tasks - 1) + ",pause," + TaskStore.OPEN, decoded.get(tasks - 1));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    public void testCategoriesAreDefinedByTheBlockUsingThemFirst() throws Exception {
+
+        // given: a block of work followed by a block with a new category
+        for (int i = 0; i < TaskBinaryFormat.ROWS_PER_BLOCK; i++) {
+            store.insert(TaskStore.NO_ID, 1000L * i, "work", 10);
+        }
+        store.insert(TaskStore.NO_ID, 1000L * TaskBinaryFormat.ROWS_PER_BLOCK, "call", 20);
+        byte[] bytes = encode();
+
+        // when: the first block and then the rest is read
+        TaskBinaryStreamReader reader = new TaskBinaryStreamReader(new ByteArrayInputStream(bytes));
+        reader.readBlock(collect);
+        int firstBlock = decoded.size();
+        while (reader.readBlock(collect)) {
+            // next block
+        }
+
+        // then: the header had no categories, each block brought its own
+        assertEquals(TaskBinaryFormat.ROWS_PER_BLOCK, firstBlock);
+        assertEquals(TaskBinaryFormat.ROWS_PER_BLOCK + "," + 1000L * (TaskBinaryFormat.ROWS_PER_BLOCK - 1) + ",work,10",
+                decoded.get(firstBlock - 1));
+        assertEquals((TaskBinaryFormat.ROWS_PER_BLOCK + 1) + "," + 1000L * TaskBinaryFormat.ROWS_PER_BLOCK + ",call,20",
+                decoded.get(firstBlock));
+        assertEquals(0, bytes[TaskBinaryFormat.MAGIC.length + 1]);
+    }
+
+    public void testReadsVersionWithHeaderCategories() throws Exception {
+
+        // given: a version 1 stream, categories only in the header
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(TaskBinaryFormat.MAGIC);
+        out.write(TaskBinaryFormat.VERSION_HEADER_CATEGORIES);
+        out.write(new byte[]{1, 4, 'w', 'o', 'r', 'k'});
+        byte[] payload = {(byte) 0xE8, 0x07, 0x02, 0x00, 0x3D, 0x00};
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        out.write(new byte[]{1, (byte) payload.length});
+        out.write(payload);
+        new DataOutputStream(out).writeInt((int) crc.getValue());
+        out.write(0);
+
+        // when: it is decoded
+        new TaskBinaryDecoder(ByteBuffer.wrap(out.toByteArray())).readAll(collect);
+
+        // then: the task is read with the header category
+        assertEquals(1, decoded.size());
+        assertEquals("1,1000,work,60", decoded.get(0));
+    }
+
+    public void testDetectsDamagedBlock() throws Exception {
+
+        // given: an encoded task with a flipped bit in the block
+        store.insert(TaskStore.NO_ID, 1000, "work", 60);
+        byte[] bytes = encode();
+        bytes[bytes.length - 8] ^= 1;
+
+        // when: it is decoded
+        try {
+            new TaskBinaryDecoder(ByteBuffer.wrap(bytes)).readAll(collect);
+            fail("exception expected");
+        } catch (IOException e) {
+            // then: nothing was decoded
+            assertTrue(decoded.isEmpty());
+        }
+    }
+
+    public void testCategoryAddedDuringExport() throws Exception {
+
+        // given: a store which gets a task of a new category after each scan
+        store = new MemoryTaskStore() {
+            @Override
+            public synchronized void scan(long from, long to, TaskVisitor visitor) {
+                super.scan(from, to, visitor);
+                insert(TaskStore.NO_ID, 5000, "meeting", 60);
+            }
+        };
+        store.insert(TaskStore.NO_ID, 1000, "work", 60);
+
+        // when: the tasks are encoded and decoded
+        new TaskBinaryDecoder(ByteBuffer.wrap(encode())).readAll(collect);
+
+        // then: the export holds the tasks as they were when it started
+        assertEquals(1, decoded.size());
+        assertEquals("1,1000,work,60", decoded.get(0));
+    }
+
+    private byte[] encode() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TaskExport(TaskBinaryFormat.MIME_TYPE).writeTo(store, out);
+        return out.toByteArray();
+    }
+}
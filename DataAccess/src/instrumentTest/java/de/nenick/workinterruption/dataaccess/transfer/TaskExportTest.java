@@ -0,0 +1,64 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.zip.GZIPInputStream;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+public class TaskExportTest extends TestCase {
+
+    private MemoryTaskStore store;
+
+    private ByteArrayOutputStream out;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store = new MemoryTaskStore();
+        store.insert(TaskStore.NO_ID, 100, "work", 50);
+        store.insert(TaskStore.NO_ID, 200, "meeting, \"weekly\"", TaskStore.OPEN);
+        out = new ByteArrayOutputStream();
+    }
+
+    public void testCsvQuotesCategories() throws Exception {
+
+        // when: all tasks are exported as CSV
+        new TaskExport(TaskTextFormat.CSV.getMimeType()).writeTo(store, out);
+
+        // then: each task is a line, special categories are quoted
+        assertEquals("id,started,category,duration\n"
+                + "1,100,work,50\n"
+                + "2,200,\"meeting, \"\"weekly\"\"\",\n", out.toString("UTF-8"));
+    }
+
+    public void testJsonLinesWithFilter() throws Exception {
+
+        // when: one category is exported as JSON lines
+        new TaskExport(TaskTextFormat.NDJSON.getMimeType()).category("meeting, \"weekly\"").writeTo(store, out);
+
+        // then: only that task is written
+        assertEquals("{\"id\":2,\"started\":200,\"category\":\"meeting, \\\"weekly\\\"\",\"duration\":null}\n",
+                out.toString("UTF-8"));
+    }
+
+    public void testGzipRange() throws Exception {
+
+        // when: a time range is exported compressed
+        new TaskExport(TaskTextFormat.CSV.getMimeType()).range(0, 150).gzip(true).writeTo(store, out);
+
+        // then: the uncompressed stream contains the task in range
+        Reader in = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), "UTF-8");
+        StringBuilder text = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            text.append((char) c);
+        }
+        assertEquals("id,started,category,duration\n1,100,work,50\n", text.toString());
+    }
+}
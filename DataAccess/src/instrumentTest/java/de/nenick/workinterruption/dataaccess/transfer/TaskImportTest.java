@@ -0,0 +1,90 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+public class TaskImportTest extends TestCase {
+
+    private MemoryTaskStore store;
+
+    private List<Integer> progress;
+
+    private TaskImport.Progress collectProgress = new TaskImport.Progress() {
+        @Override
+        public void onProgress(int imported, int skipped) {
+            progress.add(imported);
+        }
+    };
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        store = new MemoryTaskStore();
+        progress = new ArrayList<Integer>();
+    }
+
+    public void testCsvSkipsExistingTasks() throws Exception {
+
+        // given: an existing task
+        store.insert(TaskStore.NO_ID, 100, "work", 50);
+
+        // when: a CSV with that task, a duplicated one and a quoted category is imported
+        String csv = "id,started,category,duration\n"
+                + "7,100,work,50\n"
+                + ",200,\"line\nbreak\",\n"
+                + ",300,work,10\n"
+                + ",300,work,10\n";
+        TaskImport taskImport = new TaskImport(store, 10);
+        taskImport.run(new ByteArrayInputStream(csv.getBytes("UTF-8")), null);
+
+        // then: only the new tasks were added
+        assertEquals(2, taskImport.imported());
+        assertEquals(2, taskImport.skipped());
+        assertEquals(3, store.size());
+        assertTrue(taskImport.isFinished());
+    }
+
+    public void testGzipBinaryInChunks() throws Exception {
+
+        // given: a compressed binary export of another store
+        MemoryTaskStore other = new MemoryTaskStore();
+        for (int i = 0; i < 25; i++) {
+            other.insert(TaskStore.NO_ID, i * 1000, "work", i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TaskExport(TaskBinaryFormat.MIME_TYPE).gzip(true).writeTo(other, out);
+
+        // when: it is imported in chunks of ten
+        TaskImport taskImport = new TaskImport(store, 10);
+        taskImport.run(new ByteArrayInputStream(out.toByteArray()), collectProgress);
+
+        // then: all tasks were added with progress after each chunk
+        assertEquals(25, store.size());
+        assertEquals("[10, 20, 25]", progress.toString());
+    }
+
+    public void testMalformedCsvKeepsStoredChunks() throws Exception {
+
+        // given: a CSV with a broken line after the first chunk
+        String csv = "id,started,category,duration\n,100,work,1\n,200,work,1\n,oops,work,1\n";
+
+        // when: it is imported
+        TaskImport taskImport = new TaskImport(store, 2);
+        try {
+            taskImport.run(new ByteArrayInputStream(csv.getBytes("UTF-8")), null);
+            fail("exception expected");
+        } catch (IOException e) {
+            // then: the first chunk is stored and the failure is reported
+            assertEquals(2, store.size());
+            assertNotNull(taskImport.failure());
+        }
+    }
+}
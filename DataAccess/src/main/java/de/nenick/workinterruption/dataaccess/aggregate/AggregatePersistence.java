@@ -0,0 +1,16 @@
+package de.nenick.workinterruption.dataaccess.aggregate;
+
+import java.util.Map;
+
+/**
+ * Where the entries of a {@link PersistedAggregate} survive restarts. Implementations add a
+ * method to save a single changed entry.
+ */
+public interface AggregatePersistence<K, V> {
+
+    /** @return all stored entries, empty if there are none */
+    Map<K, V> load();
+
+    /** Replace all stored entries. */
+    void replaceAll(Map<K, V> entries);
+}
@@ -0,0 +1,81 @@
+package de.nenick.workinterruption.dataaccess.aggregate;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State derived from all tasks which is kept current by the provider writes and survives
+ * restarts in an {@link AggregatePersistence}.
+ *
+ * <P>The state is loaded from the persistence on first use. If nothing is stored, or after
+ * {@link #invalidate()}, it is counted again from the store on the next read; writes in between
+ * are skipped. Without persistence the state is counted again after each start. The owner
+ * synchronizes the calls.</P>
+ *
+ * @param <K> key of a persisted entry
+ * @param <V> value of a persisted entry
+ * @param <M> in-memory form of the state
+ */
+public abstract class PersistedAggregate<K, V, M> {
+
+    private final AggregatePersistence<K, V> persistence;
+
+    // null until loaded
+    private M state;
+
+    // true if the loaded or persisted state may not match the store
+    private boolean stale;
+
+    /**
+     * @param persistence where the entries are kept, null to count them again after each start
+     */
+    protected PersistedAggregate(AggregatePersistence<K, V> persistence) {
+        this.persistence = persistence;
+        this.stale = persistence == null;
+    }
+
+    /** @return all entries counted from the store */
+    protected abstract Map<K, V> countAll();
+
+    /** @return the in-memory form of stored or counted entries */
+    protected abstract M restore(Map<K, V> entries);
+
+    /** @return the state if it is loaded and current, null if a write can skip it */
+    public final M loadIfKnown() {
+        if (state == null && !stale) {
+            Map<K, V> stored = persistence.load();
+            if (stored.isEmpty()) {
+                // never counted, e.g. after the upgrade which added the aggregate
+                stale = true;
+            } else {
+                state = restore(stored);
+            }
+        }
+        return stale ? null : state;
+    }
+
+    /** @return the state matching the store, counted from the store if necessary */
+    public final M loadCurrent() {
+        M known = loadIfKnown();
+        if (known != null) {
+            return known;
+        }
+        Map<K, V> counted = countAll();
+        if (persistence != null) {
+            persistence.replaceAll(counted);
+        }
+        state = restore(counted);
+        stale = false;
+        return state;
+    }
+
+    /** Drop the state after writes whose effect is unknown, the next read counts it again. */
+    public final void invalidate() {
+        state = null;
+        stale = true;
+        if (persistence != null) {
+            // a restart must not load it either
+            persistence.replaceAll(new HashMap<K, V>());
+        }
+    }
+}
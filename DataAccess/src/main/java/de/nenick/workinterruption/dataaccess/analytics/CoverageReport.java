@@ -0,0 +1,86 @@
+package de.nenick.workinterruption.dataaccess.analytics;
+
+import java.util.List;
+
+/** Overlaps, untracked gaps and covered time of a time range, computed by {@link CoverageSweep}. */
+public class CoverageReport {
+
+    /** Time in which tasks of two categories ran at the same time. */
+    public static class Overlap {
+        /** The category which sorts first. */
+        public final String category;
+        public final String otherCategory;
+        public final long millis;
+
+        Overlap(String category, String otherCategory, long millis) {
+            this.category = category;
+            this.otherCategory = otherCategory;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString() {
+            return category + "+" + otherCategory + "=" + millis;
+        }
+    }
+
+    /** A time without any task, from inclusive to exclusive. */
+    public static class Gap {
+        public final long start;
+        public final long end;
+
+        Gap(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public String toString() {
+            return start + ".." + end;
+        }
+    }
+
+    /** A local day and how much of it had at least one task running. */
+    public static class Day {
+        /** Local midnight which starts the day. */
+        public final long start;
+        /** Next local midnight, days with a daylight saving switch are shorter or longer. */
+        public final long end;
+        public final long coveredMillis;
+
+        Day(long start, long end, long coveredMillis) {
+            this.start = start;
+            this.end = end;
+            this.coveredMillis = coveredMillis;
+        }
+
+        @Override
+        public String toString() {
+            return start + "=" + coveredMillis;
+        }
+    }
+
+    /** Pairs of categories which overlapped, sorted by category and other category. */
+    public final List<Overlap> overlaps;
+
+    /** Untracked times within working hours, oldest first. */
+    public final List<Gap> gaps;
+
+    /** Days with covered time, oldest first. */
+    public final List<Day> days;
+
+    CoverageReport(List<Overlap> overlaps, List<Gap> gaps, List<Day> days) {
+        this.overlaps = overlaps;
+        this.gaps = gaps;
+        this.days = days;
+    }
+
+    /** @return time with at least one task running */
+    public long coveredMillis() {
+        long covered = 0;
+        for (Day day : days) {
+            covered += day.coveredMillis;
+        }
+        return covered;
+    }
+}
@@ -0,0 +1,256 @@
+package de.nenick.workinterruption.dataaccess.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
+
+/**
+ * Computes a {@link CoverageReport} in one forward pass over tasks ordered by start time.
+ *
+ * <P>The running tasks are kept in a queue ordered by their ends, so the pass takes
+ * O(n log n). Between two starts or ends the set of running categories is fixed: each pair of
+ * them overlaps for that time, the time is covered if the set is not empty and untracked
+ * otherwise. Several tasks of the same category running at once count once.</P>
+ *
+ * <P>Untracked time is reported as gap where it falls into the working hours of a local day,
+ * Monday to Friday and any other day with a task. Tasks are cut to the range, running tasks
+ * end at its end. {@link #analyze} reads closed tasks from {@link FocusTimeEngine#LOOKBACK_MILLIS}
+ * before the range and running tasks whenever they started.</P>
+ */
+public class CoverageSweep implements TaskVisitor {
+
+    /** Working hours start at 9:00 unless configured. */
+    public static final int DEFAULT_DAY_START_MINUTE = 9 * 60;
+
+    /** Working hours end at 17:00 unless configured. */
+    public static final int DEFAULT_DAY_END_MINUTE = 17 * 60;
+
+    private static final char PAIR_SEPARATOR = '\u0000';
+
+    private static final long MINUTE_MILLIS = 60 * 1000;
+
+    private static class Running {
+        final long end;
+        final String category;
+
+        Running(long end, String category) {
+            this.end = end;
+            this.category = category;
+        }
+    }
+
+    private final long from;
+    private final long to;
+    private final int dayStartMinute;
+    private final int dayEndMinute;
+    private final TimeBuckets buckets;
+
+    private final PriorityQueue<Running> running = new PriorityQueue<Running>(16, new Comparator<Running>() {
+        @Override
+        public int compare(Running a, Running b) {
+            return a.end < b.end ? -1 : a.end > b.end ? 1 : 0;
+        }
+    });
+
+    // number of running tasks per category, sorted so pairs come out in order
+    private final TreeMap<String, int[]> active = new TreeMap<String, int[]>();
+    private final Map<String, long[]> overlaps = new TreeMap<String, long[]>();
+
+    private long clock;
+    private long previousStarted = Long.MIN_VALUE;
+
+    // the local day the clock is in
+    private long dayStart;
+    private long dayEnd;
+    private long workStart;
+    private long workEnd;
+    private boolean workDay;
+    private long dayCovered;
+    private boolean dayHasTask;
+
+    private final List<CoverageReport.Gap> dayGaps = new ArrayList<CoverageReport.Gap>();
+    private final List<CoverageReport.Gap> gaps = new ArrayList<CoverageReport.Gap>();
+    private final List<CoverageReport.Day> days = new ArrayList<CoverageReport.Day>();
+
+    /**
+     * @param from start of the range, untracked time is counted from here and earlier tasks are cut
+     * @param to end of the range, running tasks are taken to end here
+     * @param zone for the local days and working hours
+     * @param dayStartMinute start of the working hours in minutes after local midnight
+     * @param dayEndMinute end of the working hours in minutes after local midnight
+     */
+    public CoverageSweep(long from, long to, TimeZone zone, int dayStartMinute, int dayEndMinute) {
+        this.from = from;
+        this.to = to;
+        this.dayStartMinute = dayStartMinute;
+        this.dayEndMinute = dayEndMinute;
+        this.buckets = TimeBuckets.forZone(zone);
+        this.clock = from;
+        enterDay(from);
+    }
+
+    /** Coverage of the tasks of the store within the range. */
+    public static CoverageReport analyze(TaskStore store, long from, long to, TimeZone zone,
+                                         int dayStartMinute, int dayEndMinute) {
+        final CoverageSweep sweep = new CoverageSweep(from, to, zone, dayStartMinute, dayEndMinute);
+        final long scanFrom = from - FocusTimeEngine.LOOKBACK_MILLIS;
+        // running tasks started before the scan, in start order like the scan
+        store.openTasks(new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                if (started < scanFrom) {
+                    sweep.visit(id, started, category, duration);
+                }
+            }
+        });
+        store.scan(scanFrom, to, sweep);
+        return sweep.finish();
+    }
+
+    /** @throws IllegalArgumentException if the task starts before the previous one */
+    @Override
+    public void visit(long id, long started, String category, int duration) {
+        if (started < previousStarted) {
+            throw new IllegalArgumentException("Task " + id + " is out of start order");
+        }
+        previousStarted = started;
+        if (started >= to) {
+            return;
+        }
+        long end = duration == TaskStore.OPEN ? to : Math.min(to, started + duration);
+        if (started < from) {
+            if (end <= from) {
+                return;
+            }
+            started = from;
+        }
+        endRunningUntil(started);
+        advance(started);
+        dayHasTask = true;
+        if (end <= started) {
+            return;
+        }
+        running.add(new Running(end, category));
+        int[] count = active.get(category);
+        if (count == null) {
+            active.put(category, new int[]{1});
+        } else {
+            count[0]++;
+        }
+    }
+
+    /** End the pass. */
+    public CoverageReport finish() {
+        endRunningUntil(to);
+        advance(to);
+        leaveDay();
+
+        List<CoverageReport.Overlap> pairs = new ArrayList<CoverageReport.Overlap>(overlaps.size());
+        for (Map.Entry<String, long[]> entry : overlaps.entrySet()) {
+            int separator = entry.getKey().indexOf(PAIR_SEPARATOR);
+            pairs.add(new CoverageReport.Overlap(entry.getKey().substring(0, separator),
+                    entry.getKey().substring(separator + 1), entry.getValue()[0]));
+        }
+        return new CoverageReport(Collections.unmodifiableList(pairs), Collections.unmodifiableList(gaps),
+                Collections.unmodifiableList(days));
+    }
+
+    /** End running tasks in the order of their ends, up to the given time. */
+    private void endRunningUntil(long time) {
+        while (!running.isEmpty() && running.peek().end <= time) {
+            Running task = running.poll();
+            advance(task.end);
+            int[] count = active.get(task.category);
+            if (--count[0] == 0) {
+                active.remove(task.category);
+            }
+        }
+    }
+
+    /** Move the clock, counting the time in between for the running categories. */
+    private void advance(long time) {
+        while (clock < time) {
+            long until = Math.min(time, dayEnd);
+            count(clock, until);
+            clock = until;
+            if (clock == dayEnd) {
+                leaveDay();
+                enterDay(clock);
+            }
+        }
+    }
+
+    /** Count a time within the current day. */
+    private void count(long start, long end) {
+        long millis = end - start;
+        if (active.isEmpty()) {
+            untracked(start, end);
+            return;
+        }
+        dayCovered += millis;
+        if (active.size() < 2) {
+            return;
+        }
+        for (String category : active.keySet()) {
+            for (String other : active.tailMap(category, false).keySet()) {
+                String pair = category + PAIR_SEPARATOR + other;
+                long[] total = overlaps.get(pair);
+                if (total == null) {
+                    overlaps.put(pair, new long[]{millis});
+                } else {
+                    total[0] += millis;
+                }
+            }
+        }
+    }
+
+    private void untracked(long start, long end) {
+        start = Math.max(start, workStart);
+        end = Math.min(end, workEnd);
+        if (start >= end) {
+            return;
+        }
+        int last = dayGaps.size() - 1;
+        if (last >= 0 && dayGaps.get(last).end == start) {
+            start = dayGaps.remove(last).start;
+        }
+        dayGaps.add(new CoverageReport.Gap(start, end));
+    }
+
+    private void enterDay(long time) {
+        int day = buckets.epochDay(time);
+        dayStart = buckets.dayStart(day);
+        // Monday to Friday
+        workDay = TimeBuckets.dayOfWeek(day) < 5;
+        workStart = localTime(day, dayStartMinute);
+        workEnd = localTime(day, dayEndMinute);
+        dayEnd = buckets.dayStart(day + 1);
+        dayCovered = 0;
+        dayHasTask = false;
+    }
+
+    /** @return the time of the local day at the minute after local midnight */
+    private long localTime(int day, int minute) {
+        return buckets.atLocal(day * TimeBuckets.DAY_MILLIS + minute * MINUTE_MILLIS);
+    }
+
+    private void leaveDay() {
+        if (dayCovered > 0) {
+            days.add(new CoverageReport.Day(dayStart, dayEnd, dayCovered));
+        }
+        // a weekend day only has working hours if it was worked on
+        if (workDay || dayHasTask || dayCovered > 0) {
+            gaps.addAll(dayGaps);
+        }
+        dayGaps.clear();
+    }
+}
@@ -0,0 +1,267 @@
+package de.nenick.workinterruption.dataaccess.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.store.TaskWriteListener;
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
+
+/**
+ * Net work time per local day: the time covered by work tasks minus every time in which a
+ * task of another category ran, e.g. a call or a meeting during work.
+ *
+ * <P>One scan splits the tasks into two streams ordered by start, each is merged into disjoint
+ * intervals while it is read. A single merge pass over both then subtracts the other tasks
+ * from the work. Closed tasks are seen from {@link #LOOKBACK_MILLIS} before a day, so a closed
+ * task counts for at most the day after its start. Running tasks count up to now, whenever
+ * they started.</P>
+ *
+ * <P>Computed days are cached. A write drops only the days its task can count for, writes
+ * whose rows are unknown drop all days. Days with a running task are computed up to now on
+ * each request and are not cached.</P>
+ */
+public class FocusTimeEngine implements TaskWriteListener {
+
+    /** Net and gross work time of a local day. */
+    public static class Day {
+        /** Local midnight which starts the day. */
+        public final long start;
+        /** Next local midnight. */
+        public final long end;
+        /** Time covered by work tasks. */
+        public final long workMillis;
+        /** Work time without the times of other tasks. */
+        public final long netMillis;
+
+        Day(long start, long end, long workMillis, long netMillis) {
+            this.start = start;
+            this.end = end;
+            this.workMillis = workMillis;
+            this.netMillis = netMillis;
+        }
+
+        @Override
+        public String toString() {
+            return start + "=" + netMillis + "/" + workMillis;
+        }
+    }
+
+    /** How far before a day tasks are read which may run into it. */
+    public static final long LOOKBACK_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final TaskStore store;
+    private final String workCategory;
+
+    private TimeZone zone;
+    private TimeBuckets buckets;
+    private final TreeMap<Long, Day> cache = new TreeMap<Long, Day>();
+
+    public FocusTimeEngine(TaskStore store, String workCategory) {
+        this.store = store;
+        this.workCategory = workCategory;
+    }
+
+    /**
+     * @param zone for the local days, a different zone than before drops the cache
+     * @param now end of running tasks
+     * @return all days which overlap the range, oldest first
+     */
+    public synchronized List<Day> days(long from, long to, TimeZone zone, long now) {
+        if (this.zone == null || !this.zone.getID().equals(zone.getID())) {
+            this.zone = zone;
+            this.buckets = TimeBuckets.forZone(zone);
+            cache.clear();
+        }
+        List<Day> result = new ArrayList<Day>();
+        long day = dayStart(from);
+        while (day < to) {
+            Day cached = cache.get(day);
+            if (cached != null) {
+                result.add(cached);
+                day = cached.end;
+                continue;
+            }
+            // compute all missing days up to the next cached one in one pass
+            Long next = cache.higherKey(day);
+            long end = dayStart(to - 1);
+            end = next != null && next <= end ? next : nextDay(end);
+            for (Day computed : compute(day, end, now)) {
+                result.add(computed);
+            }
+            day = end;
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void onTaskInserted(long id, long started, String category, int duration) {
+        drop(started, duration);
+    }
+
+    @Override
+    public synchronized void onTaskClosed(long id, long started, String category, int previousDuration, int duration) {
+        drop(started, previousDuration);
+        drop(started, duration);
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(long id, long started, String category, int duration) {
+        drop(started, duration);
+    }
+
+    @Override
+    public synchronized void onTasksChanged() {
+        cache.clear();
+    }
+
+    /** Drop the days a task can count for, a running one for all days from its start. */
+    private void drop(long started, int duration) {
+        if (buckets == null) {
+            return;
+        }
+        if (duration == TaskStore.OPEN) {
+            cache.tailMap(dayStart(started), true).clear();
+        } else {
+            cache.subMap(dayStart(started), true, started + LOOKBACK_MILLIS, true).clear();
+        }
+    }
+
+    /** Compute and cache the days from the day start to the other day start. */
+    private List<Day> compute(long from, long to, long now) {
+        final Intervals work = new Intervals();
+        final Intervals other = new Intervals();
+        final long[] openFrom = {Long.MAX_VALUE};
+        final long spanFrom = from;
+        final long spanTo = to;
+        final long end = now;
+        final long scanFrom = from - LOOKBACK_MILLIS;
+        final TaskVisitor collect = new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                long taskEnd = duration == TaskStore.OPEN ? Math.max(started, end) : started + duration;
+                long start = Math.max(started, spanFrom);
+                taskEnd = Math.min(taskEnd, spanTo);
+                if (taskEnd <= start) {
+                    return;
+                }
+                if (duration == TaskStore.OPEN) {
+                    openFrom[0] = Math.min(openFrom[0], start);
+                }
+                (workCategory.equals(category) ? work : other).add(start, taskEnd);
+            }
+        };
+        // running tasks started before the scan, in start order like the scan
+        store.openTasks(new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                if (started < scanFrom) {
+                    collect.visit(id, started, category, duration);
+                }
+            }
+        });
+        store.scan(scanFrom, to, collect);
+
+        long[] bounds = dayBounds(from, to);
+        long[] workMillis = new long[bounds.length - 1];
+        long[] netMillis = new long[bounds.length - 1];
+        for (int i = 0; i < work.count; i++) {
+            credit(bounds, workMillis, work.starts[i], work.ends[i]);
+        }
+
+        // subtract the other intervals from the work intervals, both are disjoint and ordered
+        int j = 0;
+        for (int i = 0; i < work.count; i++) {
+            long cursor = work.starts[i];
+            long workEnd = work.ends[i];
+            while (j < other.count && other.ends[j] <= cursor) {
+                j++;
+            }
+            while (j < other.count && other.starts[j] < workEnd) {
+                if (other.starts[j] > cursor) {
+                    credit(bounds, netMillis, cursor, other.starts[j]);
+                }
+                cursor = Math.max(cursor, other.ends[j]);
+                if (other.ends[j] >= workEnd) {
+                    break;
+                }
+                j++;
+            }
+            if (cursor < workEnd) {
+                credit(bounds, netMillis, cursor, workEnd);
+            }
+        }
+
+        List<Day> days = new ArrayList<Day>(workMillis.length);
+        for (int i = 0; i < workMillis.length; i++) {
+            Day day = new Day(bounds[i], bounds[i + 1], workMillis[i], netMillis[i]);
+            days.add(day);
+            if (day.end <= openFrom[0]) {
+                cache.put(day.start, day);
+            }
+        }
+        return days;
+    }
+
+    /** Add the interval to the totals of the days it overlaps. */
+    private static void credit(long[] bounds, long[] totals, long start, long end) {
+        int day = Arrays.binarySearch(bounds, start);
+        if (day < 0) {
+            day = -day - 2;
+        }
+        while (start < end) {
+            long until = Math.min(end, bounds[day + 1]);
+            totals[day] += until - start;
+            start = until;
+            day++;
+        }
+    }
+
+    /** @return the day starts from the day start to the other day start, both included */
+    private long[] dayBounds(long from, long to) {
+        long[] bounds = new long[8];
+        int count = 0;
+        for (long day = from; day < to; day = nextDay(day)) {
+            if (count == bounds.length) {
+                bounds = Arrays.copyOf(bounds, count * 2);
+            }
+            bounds[count++] = day;
+        }
+        bounds = Arrays.copyOf(bounds, count + 1);
+        bounds[count] = to;
+        return bounds;
+    }
+
+    private long dayStart(long time) {
+        return buckets.dayStart(buckets.epochDay(time));
+    }
+
+    private long nextDay(long dayStart) {
+        return buckets.dayStart(buckets.epochDay(dayStart) + 1);
+    }
+
+    /** Disjoint intervals in order, built from intervals ordered by start. */
+    private static class Intervals {
+        long[] starts = new long[64];
+        long[] ends = new long[64];
+        int count;
+
+        void add(long start, long end) {
+            if (count > 0 && start <= ends[count - 1]) {
+                ends[count - 1] = Math.max(ends[count - 1], end);
+                return;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = start;
+            ends[count] = end;
+            count++;
+        }
+    }
+}
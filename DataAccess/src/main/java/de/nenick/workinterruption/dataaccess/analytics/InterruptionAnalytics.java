@@ -0,0 +1,232 @@
+package de.nenick.workinterruption.dataaccess.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
+
+/**
+ * Computes {@link InterruptionMetrics} in one forward pass over tasks ordered by start time.
+ *
+ * <P>Tasks of several categories may run at the same time. The task in front is the latest
+ * started one which is still running; when it ends the one started before it comes back to the
+ * front. Work is interrupted when a task of another category starts while work is in front, and
+ * each change of the category in front is a context switch.</P>
+ *
+ * <P>The state are the running tasks, at most one per category in practice, and one counter
+ * pair per interrupting category. Tasks are cut at the end of the range, running tasks end
+ * there too.</P>
+ */
+public class InterruptionAnalytics implements TaskVisitor {
+
+    public static final String DEFAULT_WORK_CATEGORY = "work";
+
+
+    private final String workCategory;
+    private final TimeBuckets buckets;
+    private final long to;
+
+    // running tasks ordered by start, the last one is in front
+    private long[] runningEnds = new long[8];
+    private String[] runningCategories = new String[8];
+    private int running;
+    private int runningWork;
+
+    private long previousStarted = Long.MIN_VALUE;
+    private long clock = Long.MIN_VALUE;
+
+    private long workMillis;
+    private int interruptions;
+    private int stretches;
+    private long stretchStart;
+    private long stretchTotal;
+    private long longestStretch;
+    private final Map<String, long[]> interrupters = new HashMap<String, long[]>();
+
+    private int contextSwitches;
+    private int activeDays;
+    private long startDay = Long.MIN_VALUE;
+    private long switchDay = Long.MIN_VALUE;
+    private int switchesToday;
+    private int maxSwitchesPerDay;
+
+    /**
+     * @param workCategory category of the work which gets interrupted
+     * @param zone for the local days
+     * @param to end of the range, running tasks are taken to end here
+     */
+    public InterruptionAnalytics(String workCategory, TimeZone zone, long to) {
+        this.workCategory = workCategory;
+        this.buckets = TimeBuckets.forZone(zone);
+        this.to = to;
+    }
+
+    /** Metrics of the tasks of the store started within the range. */
+    public static InterruptionMetrics analyze(TaskStore store, long from, long to, TimeZone zone, int topCount) {
+        InterruptionAnalytics analytics = new InterruptionAnalytics(DEFAULT_WORK_CATEGORY, zone, to);
+        store.scan(from, to, analytics);
+        return analytics.finish(topCount);
+    }
+
+    /** @throws IllegalArgumentException if the task starts before the previous one */
+    @Override
+    public void visit(long id, long started, String category, int duration) {
+        if (started < previousStarted) {
+            throw new IllegalArgumentException("Task " + id + " is out of start order");
+        }
+        previousStarted = started;
+        long end = duration == TaskStore.OPEN ? to : Math.min(to, started + duration);
+        if (started >= to) {
+            return;
+        }
+        endRunningUntil(started);
+        advance(started);
+
+        long day = day(started);
+        if (day != startDay) {
+            startDay = day;
+            activeDays++;
+        }
+
+        String front = front();
+        boolean interrupts = workCategory.equals(front) && !workCategory.equals(category);
+        if (interrupts) {
+            interruptions++;
+            long[] counts = interrupters.get(category);
+            if (counts == null) {
+                counts = new long[2];
+                interrupters.put(category, counts);
+            }
+            counts[0]++;
+            counts[1] += Math.max(0, end - started);
+        }
+        push(end, category);
+        frontChanged(front, category, started);
+    }
+
+    /**
+     * End the pass.
+     *
+     * @param topCount number of interrupting categories to return
+     */
+    public InterruptionMetrics finish(int topCount) {
+        endRunningUntil(Long.MAX_VALUE);
+        flushSwitchDay();
+
+        List<InterruptionMetrics.Interrupter> top = new ArrayList<InterruptionMetrics.Interrupter>();
+        for (Map.Entry<String, long[]> entry : interrupters.entrySet()) {
+            top.add(new InterruptionMetrics.Interrupter(entry.getKey(), (int) entry.getValue()[0],
+                    entry.getValue()[1]));
+        }
+        Collections.sort(top, new Comparator<InterruptionMetrics.Interrupter>() {
+            @Override
+            public int compare(InterruptionMetrics.Interrupter a, InterruptionMetrics.Interrupter b) {
+                if (a.interruptions != b.interruptions) {
+                    return b.interruptions - a.interruptions;
+                }
+                if (a.millis != b.millis) {
+                    return a.millis > b.millis ? -1 : 1;
+                }
+                return a.category.compareTo(b.category);
+            }
+        });
+        if (top.size() > topCount) {
+            top = new ArrayList<InterruptionMetrics.Interrupter>(top.subList(0, topCount));
+        }
+
+        return new InterruptionMetrics(workMillis, interruptions, stretches,
+                stretches == 0 ? 0 : stretchTotal / stretches, longestStretch, top,
+                contextSwitches, activeDays, maxSwitchesPerDay);
+    }
+
+    /** End running tasks in the order of their ends, up to the given time. */
+    private void endRunningUntil(long time) {
+        while (running > 0) {
+            int first = 0;
+            for (int i = 1; i < running; i++) {
+                if (runningEnds[i] < runningEnds[first]) {
+                    first = i;
+                }
+            }
+            long end = runningEnds[first];
+            if (end > time) {
+                return;
+            }
+            advance(end);
+            String front = front();
+            String category = runningCategories[first];
+            System.arraycopy(runningEnds, first + 1, runningEnds, first, running - first - 1);
+            System.arraycopy(runningCategories, first + 1, runningCategories, first, running - first - 1);
+            running--;
+            runningCategories[running] = null;
+            if (workCategory.equals(category)) {
+                runningWork--;
+            }
+            frontChanged(front, front(), end);
+        }
+    }
+
+    /** Move the clock, counting work time in between. */
+    private void advance(long time) {
+        if (runningWork > 0 && time > clock) {
+            workMillis += time - clock;
+        }
+        clock = Math.max(clock, time);
+    }
+
+    private void push(long end, String category) {
+        if (running == runningEnds.length) {
+            runningEnds = Arrays.copyOf(runningEnds, running * 2);
+            runningCategories = Arrays.copyOf(runningCategories, running * 2);
+        }
+        runningEnds[running] = end;
+        runningCategories[running] = category;
+        running++;
+        if (workCategory.equals(category)) {
+            runningWork++;
+        }
+    }
+
+    private String front() {
+        return running == 0 ? null : runningCategories[running - 1];
+    }
+
+    private void frontChanged(String before, String after, long time) {
+        boolean workBefore = workCategory.equals(before);
+        boolean workAfter = workCategory.equals(after);
+        if (workBefore && !workAfter) {
+            long stretch = time - stretchStart;
+            stretches++;
+            stretchTotal += stretch;
+            longestStretch = Math.max(longestStretch, stretch);
+        } else if (!workBefore && workAfter) {
+            stretchStart = time;
+        }
+        if (before != null && after != null && !before.equals(after)) {
+            contextSwitches++;
+            long day = day(time);
+            if (day != switchDay) {
+                flushSwitchDay();
+                switchDay = day;
+            }
+            switchesToday++;
+        }
+    }
+
+    private void flushSwitchDay() {
+        maxSwitchesPerDay = Math.max(maxSwitchesPerDay, switchesToday);
+        switchesToday = 0;
+    }
+
+    private long day(long time) {
+        return buckets.epochDay(time);
+    }
+}
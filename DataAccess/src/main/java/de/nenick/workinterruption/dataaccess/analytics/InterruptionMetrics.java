@@ -0,0 +1,73 @@
+package de.nenick.workinterruption.dataaccess.analytics;
+
+import java.util.List;
+
+/** Fragmentation metrics of a time range, computed by {@link InterruptionAnalytics}. */
+public class InterruptionMetrics {
+
+    /** A category and how often its tasks interrupted work. */
+    public static class Interrupter {
+        public final String category;
+        public final int interruptions;
+        /** Total duration of the interrupting tasks within the range. */
+        public final long millis;
+
+        Interrupter(String category, int interruptions, long millis) {
+            this.category = category;
+            this.interruptions = interruptions;
+            this.millis = millis;
+        }
+
+        @Override
+        public String toString() {
+            return category + "=" + interruptions;
+        }
+    }
+
+    /** Time while at least one work task was running. */
+    public final long workMillis;
+
+    /** Number of times a task of another category was started while work was in front. */
+    public final int interruptions;
+
+    /** Number of periods in which work was in front. */
+    public final int stretches;
+
+    public final long meanStretchMillis;
+    public final long longestStretchMillis;
+
+    /** Categories by interruptions, most first, then by duration. */
+    public final List<Interrupter> topInterrupters;
+
+    /** Number of times the task in front changed from one category to another. */
+    public final int contextSwitches;
+
+    /** Number of local days on which a task started. */
+    public final int activeDays;
+
+    public final int maxContextSwitchesPerDay;
+
+    InterruptionMetrics(long workMillis, int interruptions, int stretches, long meanStretchMillis,
+                        long longestStretchMillis, List<Interrupter> topInterrupters, int contextSwitches,
+                        int activeDays, int maxContextSwitchesPerDay) {
+        this.workMillis = workMillis;
+        this.interruptions = interruptions;
+        this.stretches = stretches;
+        this.meanStretchMillis = meanStretchMillis;
+        this.longestStretchMillis = longestStretchMillis;
+        this.topInterrupters = topInterrupters;
+        this.contextSwitches = contextSwitches;
+        this.activeDays = activeDays;
+        this.maxContextSwitchesPerDay = maxContextSwitchesPerDay;
+    }
+
+    /** @return interruptions per hour of work, 0 without work */
+    public double interruptionsPerWorkHour() {
+        return workMillis == 0 ? 0 : interruptions * 3600000.0 / workMillis;
+    }
+
+    /** @return mean context switches per active day, 0 without tasks */
+    public double contextSwitchesPerDay() {
+        return activeDays == 0 ? 0 : (double) contextSwitches / activeDays;
+    }
+}
@@ -2,7 +2,13 @@ package de.nenick.workinterruption.dataaccess.api;
 
 import android.net.Uri;
 
+import de.nenick.workinterruption.dataaccess.database.ChangeConsumerTable;
+import de.nenick.workinterruption.dataaccess.database.ChangeFeed;
+import de.nenick.workinterruption.dataaccess.database.ChangeLogTable;
+import de.nenick.workinterruption.dataaccess.database.HeatmapTable;
 import de.nenick.workinterruption.dataaccess.database.TaskTable;
+import de.nenick.workinterruption.dataaccess.heatmap.WeekHeatmap;
+import de.nenick.workinterruption.dataaccess.quantiles.DurationSketch;
 
 public interface WorkInterruption
 {
@@ -10,6 +16,14 @@ public interface WorkInterruption
 
     String PATH_TASK = "task";
 
+    String PATH_BACKUP = "backup";
+
+    String PATH_IMPORT = "import";
+
+    String PATH_CHANGES = "changes";
+
+    String PATH_AGGREGATE = "aggregate";
+
     /** Task resource contract. */
     interface Task {
 
@@ -55,9 +69,347 @@ public interface WorkInterruption
         /** The MIME type of a {@link #CONTENT_URI} sub-directory of a single task. */
         String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.google.note";
 
+        /** Stream type of {@link #CONTENT_URI}, comma separated values with a header line. */
+        String STREAM_TYPE_CSV = "text/csv";
+
+        /** Stream type of {@link #CONTENT_URI}, one JSON object per line. */
+        String STREAM_TYPE_NDJSON = "application/x-ndjson";
+
+        /** Stream type of {@link #CONTENT_URI}, compact binary blocks. */
+        String STREAM_TYPE_BINARY = "application/vnd.nenick.workinterruption.tasks";
+
+        /* Query parameters for streams of {@link #CONTENT_URI} */
+
+        /** Only tasks started at or after this time in milliseconds. */
+        String PARAM_FROM = "from";
+
+        /** Only tasks started before this time in milliseconds. */
+        String PARAM_TO = "to";
+
+        /** Only tasks of this category. */
+        String PARAM_CATEGORY = "category";
+
+        /** "true" to compress the stream with gzip. */
+        String PARAM_GZIP = "gzip";
+
+        /* Query parameters for queries of {@link #CONTENT_URI} */
+
+        /** Most rows returned, the first ones in sort order. */
+        String PARAM_LIMIT = "limit";
+
         /* Some extras */
 
         /** The default sort order for this table */
         String DEFAULT_SORT_ORDER = TaskTable.COL_STARTED + " DESC";
+
+        /** The ascending sort order, oldest task first. */
+        String ASCENDING_SORT_ORDER = TaskTable.COL_STARTED + " ASC";
+
+        /** Selection for all tasks which are still running. Understood by every task store. */
+        String SELECTION_OPEN = TaskTable.COL_DURATION + " is null";
+    }
+
+    /**
+     * Backup resource contract. Open {@link #CONTENT_URI} for reading to get a consistent copy
+     * of the database, open it for writing to restore such a copy.
+     */
+    interface Backup {
+
+        /** The content:// style URL for this resource */
+        Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_BACKUP);
+
+        /** The MIME type of {@link #CONTENT_URI}, an SQLite database file. */
+        String CONTENT_TYPE = "application/x-sqlite3";
+    }
+
+    /**
+     * Import resource contract. Open {@link #CONTENT_URI} for writing and write a task export
+     * (CSV or binary, optionally gzip compressed) to import it. Query it for the progress of
+     * the last import, observers of it are notified after each chunk.
+     */
+    interface Import {
+
+        /** Number of imported tasks so far.
+         * <P>Type: INTEGER</P> */
+        String VALUE_IMPORTED = "imported";
+
+        /** Number of skipped tasks so far, because they already existed.
+         * <P>Type: INTEGER</P> */
+        String VALUE_SKIPPED = "skipped";
+
+        /** 1 when the import is done.
+         * <P>Type: INTEGER</P> */
+        String VALUE_FINISHED = "finished";
+
+        /** Why the import stopped early, null if it didn't.
+         * <P>Type: TEXT</P> */
+        String VALUE_FAILURE = "failure";
+
+        /** The content:// style URL for this resource */
+        Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_IMPORT);
+
+        /** The MIME type of {@link #CONTENT_URI}, the progress of the last import. */
+        String CONTENT_ITEM_TYPE = "vnd.android.cursor.item/vnd.nenick.workinterruption.import";
+    }
+
+    /**
+     * Change feed contract. Query {@link #CONTENT_URI} with {@link #PARAM_SINCE} for all task
+     * changes behind a sequence number, oldest first. Consumers acknowledge what they have read
+     * by updating their {@link #CONSUMER_URI_BASE} URI, acknowledged changes are dropped once
+     * every consumer has read them. Delete the consumer URI to stop consuming.
+     */
+    interface Change {
+
+        /* Value identifiers for the cursor, the task values are named like in {@link Task}. */
+
+        /** Sequence number of the change, increases with each change.
+         * <P>Type: INTEGER</P> */
+        String VALUE_SEQ = ChangeLogTable.COL_SEQ;
+
+        /** Kind of change, one of the OP constants.
+         * <P>Type: INTEGER</P> */
+        String VALUE_OP = ChangeLogTable.COL_OP;
+
+        /** Id of the changed task.
+         * <P>Type: INTEGER</P> */
+        String VALUE_TASK_ID = ChangeLogTable.COL_TASK_ID;
+
+        /** Highest sequence number a consumer has read, the value to update.
+         * <P>Type: INTEGER</P> */
+        String VALUE_ACKED = ChangeConsumerTable.COL_ACKED;
+
+        /** Task was inserted, the row holds its values. */
+        int OP_INSERT = ChangeLogTable.OP_INSERT;
+
+        /** Task was updated, the row holds its new values. */
+        int OP_UPDATE = ChangeLogTable.OP_UPDATE;
+
+        /** Task was deleted, the row holds its last values. */
+        int OP_DELETE = ChangeLogTable.OP_DELETE;
+
+        /** Requested changes were already dropped: reload everything, then continue behind this row. */
+        int OP_RESET = ChangeFeed.OP_RESET;
+
+        /** Query parameter, only changes with a higher sequence number. Default is 0. */
+        String PARAM_SINCE = "since";
+
+        /** The content:// style URL for this resource */
+        Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_CHANGES);
+
+        /** The content URI base for a consumer. Callers must append the consumer name. */
+        Uri CONSUMER_URI_BASE = Uri.parse("content://" + AUTHORITY + "/" + PATH_CHANGES + "/consumer/");
+
+        /** The MIME type of {@link #CONTENT_URI} providing a directory of changes. */
+        String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.nenick.workinterruption.change";
+
+        /** The MIME type of a consumer URI. */
+        String CONSUMER_ITEM_TYPE = "vnd.android.cursor.item/vnd.nenick.workinterruption.consumer";
+    }
+
+    /**
+     * Duration quantiles contract. Query {@link #CONTENT_URI} for one row per category with the
+     * quantiles of the closed tasks started within {@link #PARAM_FROM} and {@link #PARAM_TO}.
+     * Each quantile is within {@link #RELATIVE_ACCURACY} of the exact duration.
+     */
+    interface Quantiles {
+
+        /** Task category.
+         * <P>Type: TEXT (any string)</P> */
+        String VALUE_CATEGORY = TaskTable.COL_CATEGORY;
+
+        /** Number of closed tasks.
+         * <P>Type: INTEGER</P> */
+        String VALUE_COUNT = "count";
+
+        /** Median duration.
+         * <P>Type: REAL (milliseconds)</P> */
+        String VALUE_P50 = "p50";
+
+        /** 90th percentile of the durations.
+         * <P>Type: REAL (milliseconds)</P> */
+        String VALUE_P90 = "p90";
+
+        /** 99th percentile of the durations.
+         * <P>Type: REAL (milliseconds)</P> */
+        String VALUE_P99 = "p99";
+
+        /** Bound of the relative error of each quantile. */
+        double RELATIVE_ACCURACY = DurationSketch.RELATIVE_ACCURACY;
+
+        /** Query parameter, only tasks started at or after this time in milliseconds. */
+        String PARAM_FROM = Task.PARAM_FROM;
+
+        /** Query parameter, only tasks started before this time in milliseconds. */
+        String PARAM_TO = Task.PARAM_TO;
+
+        /** Query parameter, only this category. */
+        String PARAM_CATEGORY = Task.PARAM_CATEGORY;
+
+        /** The content:// style URL for this resource */
+        Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_AGGREGATE + "/quantiles");
+
+        /** The MIME type of {@link #CONTENT_URI} providing a directory of category quantiles. */
+        String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.nenick.workinterruption.quantiles";
+    }
+
+    /**
+     * Coverage contract. Query {@link #CONTENT_URI} with {@link #PARAM_FROM} and {@link #PARAM_TO}
+     * for the tasks started within the range: how long each pair of categories overlapped, the
+     * untracked gaps within working hours and the covered time of each local day. Each row is
+     * one of the KIND constants, values which don't apply to a kind are null.
+     */
+    interface Coverage {
+
+        /** Kind of the row, one of the KIND constants.
+         * <P>Type: INTEGER</P> */
+        String VALUE_KIND = "kind";
+
+        /** Start of the gap or local midnight of the day.
+         * <P>Type: INTEGER (milliseconds)</P> */
+        String VALUE_START = "start";
+
+        /** End of the gap or next local midnight of the day.
+         * <P>Type: INTEGER (milliseconds)</P> */
+        String VALUE_END = "end";
+
+        /** First category of an overlapping pair, in sort order.
+         * <P>Type: TEXT</P> */
+        String VALUE_CATEGORY = TaskTable.COL_CATEGORY;
+
+        /** Second category of an overlapping pair.
+         * <P>Type: TEXT</P> */
+        String VALUE_OTHER_CATEGORY = "other_category";
+
+        /** Overlapping, untracked or covered time.
+         * <P>Type: INTEGER (milliseconds)</P> */
+        String VALUE_MILLIS = "millis";
+
+        /** Row of two categories which ran at the same time. */
+        int KIND_OVERLAP = 1;
+
+        /** Row of an untracked time within working hours. */
+        int KIND_GAP = 2;
+
+        /** Row of a day and how much of it had a task running. */
+        int KIND_DAY = 3;
+
+        /** Query parameter, required, start of the range in milliseconds. */
+        String PARAM_FROM = Task.PARAM_FROM;
+
+        /** Query parameter, required, end of the range in milliseconds. */
+        String PARAM_TO = Task.PARAM_TO;
+
+        /** Query parameter, start of the working hours in minutes after midnight. Default 9:00. */
+        String PARAM_DAY_START = "dayStart";
+
+        /** Query parameter, end of the working hours in minutes after midnight. Default 17:00. */
+        String PARAM_DAY_END = "dayEnd";
+
+        /** The content:// style URL for this resource */
+        Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_AGGREGATE + "/coverage");
+
+        /** The MIME type of {@link #CONTENT_URI} providing a directory of coverage rows. */
+        String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.nenick.workinterruption.coverage";
+    }
+
+    /**
+     * Focus time contract. Query {@link #CONTENT_URI} with {@link #PARAM_FROM} and
+     * {@link #PARAM_TO} for one row per local day overlapping the range: the time covered by
+     * work tasks and the net time without the tasks of other categories which ran during it.
+     */
+    interface Focus {
+
+        /** Local midnight which starts the day.
+         * <P>Type: INTEGER (milliseconds)</P> */
+        String VALUE_START = "start";
+
+        /** Next local midnight.
+         * <P>Type: INTEGER (milliseconds)</P> */
+        String VALUE_END = "end";
+
+        /** Time covered by work tasks.
+         * <P>Type: INTEGER (milliseconds)</P> */
+        String VALUE_WORK = "work";
+
+        /** Work time without interruptions and meetings.
+         * <P>Type: INTEGER (milliseconds)</P> */
+        String VALUE_NET = "net";
+
+        /** Query parameter, required, start of the range in milliseconds. */
+        String PARAM_FROM = Task.PARAM_FROM;
+
+        /** Query parameter, required, end of the range in milliseconds. */
+        String PARAM_TO = Task.PARAM_TO;
+
+        /** The content:// style URL for this resource */
+        Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_AGGREGATE + "/focus");
+
+        /** The MIME type of {@link #CONTENT_URI} providing a directory of days. */
+        String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.nenick.workinterruption.focus";
+    }
+
+    /**
+     * Forecast contract. Query {@link #CONTENT_URI} for one row per category: the expected task
+     * starts within the hour from {@link #PARAM_AT} and the probability of at least one. The
+     * forecast comes from smoothed rates per hour of the week and never reads the task history.
+     */
+    interface Forecast {
+
+        /** Category of the tasks.
+         * <P>Type: TEXT</P> */
+        String VALUE_CATEGORY = TaskTable.COL_CATEGORY;
+
+        /** Expected starts within the hour.
+         * <P>Type: REAL</P> */
+        String VALUE_EXPECTED = "expected";
+
+        /** Probability of at least one start within the hour.
+         * <P>Type: REAL (0 to 1)</P> */
+        String VALUE_PROBABILITY = "probability";
+
+        /** Query parameter, start of the forecast hour in milliseconds. Default now. */
+        String PARAM_AT = "at";
+
+        /** The content:// style URL for this resource */
+        Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_AGGREGATE + "/forecast");
+
+        /** The MIME type of {@link #CONTENT_URI} providing a directory of categories. */
+        String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.nenick.workinterruption.forecast";
+    }
+
+    /**
+     * Heatmap contract. Query {@link #CONTENT_URI} for one row per local week and category
+     * with the task starts and the covered time per hour of the week, for the weeks which
+     * overlap {@link #PARAM_FROM} and {@link #PARAM_TO}. The cells are maintained as tasks are
+     * closed, a year of one category is some fifty rows.
+     */
+    interface Heatmap {
+
+        /** Week of the row.
+         * <P>Type: INTEGER (days since 1970-01-01 of its local Monday)</P> */
+        String VALUE_WEEK = HeatmapTable.COL_WEEK;
+
+        /** Task category.
+         * <P>Type: TEXT (any string)</P> */
+        String VALUE_CATEGORY = TaskTable.COL_CATEGORY;
+
+        /** Starts and covered milliseconds of the 168 hours from Monday 0:00.
+         * <P>Type: BLOB (read with {@link WeekHeatmap#fromBytes})</P> */
+        String VALUE_CELLS = HeatmapTable.COL_CELLS;
+
+        /** Query parameter, weeks from the one of this time in milliseconds. Default all. */
+        String PARAM_FROM = Task.PARAM_FROM;
+
+        /** Query parameter, weeks before this time in milliseconds. Default all. */
+        String PARAM_TO = Task.PARAM_TO;
+
+        /** Query parameter, only this category. */
+        String PARAM_CATEGORY = Task.PARAM_CATEGORY;
+
+        /** The content:// style URL for this resource */
+        Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + PATH_AGGREGATE + "/heatmap");
+
+        /** The MIME type of {@link #CONTENT_URI} providing a directory of weeks. */
+        String CONTENT_TYPE = "vnd.android.cursor.dir/vnd.nenick.workinterruption.heatmap";
     }
 }
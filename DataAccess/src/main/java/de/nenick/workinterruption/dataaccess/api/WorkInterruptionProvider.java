@@ -1,16 +1,21 @@
 package de.nenick.workinterruption.dataaccess.api;
 
 import android.content.ClipDescription;
+import android.content.ComponentName;
 import android.content.ContentProvider;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.UriMatcher;
+import android.content.pm.PackageManager;
+import android.content.pm.ProviderInfo;
 import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.ParcelFileDescriptor;
 import android.text.TextUtils;
@@ -19,14 +24,49 @@ import android.util.Log;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import de.nenick.workinterruption.dataaccess.analytics.CoverageReport;
+import de.nenick.workinterruption.dataaccess.analytics.CoverageSweep;
+import de.nenick.workinterruption.dataaccess.analytics.FocusTimeEngine;
+import de.nenick.workinterruption.dataaccess.analytics.InterruptionAnalytics;
+import de.nenick.workinterruption.dataaccess.columnar.ColumnarHistory;
+import de.nenick.workinterruption.dataaccess.database.ChangeFeed;
+import de.nenick.workinterruption.dataaccess.database.DatabaseBackup;
 import de.nenick.workinterruption.dataaccess.database.SQLiteHelper;
 import de.nenick.workinterruption.dataaccess.database.TaskTable;
+import de.nenick.workinterruption.dataaccess.forecast.ForecastModel;
+import de.nenick.workinterruption.dataaccess.forecast.InterruptionForecast;
+import de.nenick.workinterruption.dataaccess.forecast.SQLiteForecastPersistence;
+import de.nenick.workinterruption.dataaccess.heatmap.HeatmapHistograms;
+import de.nenick.workinterruption.dataaccess.heatmap.SQLiteHeatmapPersistence;
+import de.nenick.workinterruption.dataaccess.heatmap.WeekHeatmap;
+import de.nenick.workinterruption.dataaccess.quantiles.DurationQuantiles;
+import de.nenick.workinterruption.dataaccess.quantiles.DurationSketch;
+import de.nenick.workinterruption.dataaccess.quantiles.SQLiteSketchPersistence;
+import de.nenick.workinterruption.dataaccess.reports.ReportCache;
+import de.nenick.workinterruption.dataaccess.snapshot.HistorySnapshotUpdater;
+import de.nenick.workinterruption.dataaccess.snapshot.SnapshotTaskStore;
+import de.nenick.workinterruption.dataaccess.store.SQLiteBackedStore;
+import de.nenick.workinterruption.dataaccess.store.SQLiteTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskBatch;
+import de.nenick.workinterruption.dataaccess.store.TaskStoreFactory;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.store.TaskWriteListener;
+import de.nenick.workinterruption.dataaccess.trace.ProviderTrace;
+import de.nenick.workinterruption.dataaccess.trace.TraceRecord;
+import de.nenick.workinterruption.dataaccess.transfer.TaskExport;
+import de.nenick.workinterruption.dataaccess.transfer.TaskImport;
 
 
 public class WorkInterruptionProvider extends ContentProvider implements ContentProvider.PipeDataWriter<Cursor> {
@@ -41,6 +81,53 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
             TaskTable.COL_STARTED, // Projection position 2, the task's title
     };
 
+    /** Columns of the import progress. */
+    private static final String[] IMPORT_COLUMNS = new String[] {
+            WorkInterruption.Import.VALUE_IMPORTED, WorkInterruption.Import.VALUE_SKIPPED,
+            WorkInterruption.Import.VALUE_FINISHED, WorkInterruption.Import.VALUE_FAILURE
+    };
+
+    /** Columns of the duration quantiles. */
+    private static final String[] QUANTILES_COLUMNS = new String[] {
+            WorkInterruption.Quantiles.VALUE_CATEGORY, WorkInterruption.Quantiles.VALUE_COUNT,
+            WorkInterruption.Quantiles.VALUE_P50, WorkInterruption.Quantiles.VALUE_P90,
+            WorkInterruption.Quantiles.VALUE_P99
+    };
+
+    /** Columns of the coverage rows. */
+    private static final String[] COVERAGE_COLUMNS = new String[] {
+            WorkInterruption.Coverage.VALUE_KIND, WorkInterruption.Coverage.VALUE_START,
+            WorkInterruption.Coverage.VALUE_END, WorkInterruption.Coverage.VALUE_CATEGORY,
+            WorkInterruption.Coverage.VALUE_OTHER_CATEGORY, WorkInterruption.Coverage.VALUE_MILLIS
+    };
+
+    /** Columns of the focus time days. */
+    private static final String[] FOCUS_COLUMNS = new String[] {
+            WorkInterruption.Focus.VALUE_START, WorkInterruption.Focus.VALUE_END,
+            WorkInterruption.Focus.VALUE_WORK, WorkInterruption.Focus.VALUE_NET
+    };
+
+    /** Columns of the forecast. */
+    private static final String[] FORECAST_COLUMNS = new String[] {
+            WorkInterruption.Forecast.VALUE_CATEGORY, WorkInterruption.Forecast.VALUE_EXPECTED,
+            WorkInterruption.Forecast.VALUE_PROBABILITY
+    };
+
+    /** Columns of the heatmap weeks. */
+    private static final String[] HEATMAP_COLUMNS = new String[] {
+            WorkInterruption.Heatmap.VALUE_WEEK, WorkInterruption.Heatmap.VALUE_CATEGORY,
+            WorkInterruption.Heatmap.VALUE_CELLS
+    };
+
+    /** Report types of the report cache. */
+    private static final String REPORT_QUANTILES = "quantiles";
+    private static final String REPORT_COVERAGE = "coverage";
+
+    /** All columns of a task, used for store queries without projection. */
+    private static final String[] ALL_COLUMNS = new String[] {
+            TaskTable._ID, TaskTable.COL_STARTED, TaskTable.COL_CATEGORY, TaskTable.COL_DURATION
+    };
+
     private static final int READ_task_task_INDEX = 1;
     private static final int READ_task_TITLE_INDEX = 2;
 
@@ -55,11 +142,71 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
     // The incoming URI matches the task ID URI pattern
     private static final int TASK_ID = 2;
 
+    // The incoming URI matches the backup URI pattern
+    private static final int BACKUP = 3;
+
+    // The incoming URI matches the import URI pattern
+    private static final int IMPORT = 4;
+
+    // The incoming URI matches the change feed URI pattern
+    private static final int CHANGES = 5;
+
+    // The incoming URI matches the change consumer URI pattern
+    private static final int CHANGE_CONSUMER = 6;
+
+    // The incoming URI matches the duration quantiles URI pattern
+    private static final int QUANTILES = 7;
+
+    // The incoming URI matches the coverage URI pattern
+    private static final int COVERAGE = 8;
+
+    // The incoming URI matches the focus time URI pattern
+    private static final int FOCUS = 9;
+
+    // The incoming URI matches the forecast URI pattern
+    private static final int FORECAST = 10;
+
+    // The incoming URI matches the heatmap URI pattern
+    private static final int HEATMAP = 11;
+
+    // 0-relative position of the consumer name segment in the path part of a consumer URI
+    private static final int PATH_POSITION_CONSUMER = 2;
+
     /** A UriMatcher instance  */
     private static final UriMatcher sUriMatcher;
 
-    // Handle to a new DatabaseHelper.
-    private SQLiteHelper mOpenHelper;
+    // Handle to the configured task storage.
+    private TaskStore mStore;
+
+    // Keeps the read-only history snapshot in step with writes.
+    private HistorySnapshotUpdater mSnapshots;
+
+    // Reads history from the snapshot where it can, for consumers which don't need task ids.
+    private TaskStore mHistory;
+
+    // The running or last import, for its progress.
+    private volatile TaskImport mImport;
+
+    // Told about every task write, in registration order.
+    private final List<TaskWriteListener> mWriteListeners = new ArrayList<TaskWriteListener>();
+
+    // Duration sketches per day and category, kept current by the writes.
+    private DurationQuantiles mQuantiles;
+
+    // Net work time per day, cached until a write touches the day.
+    private FocusTimeEngine mFocus;
+
+    // Smoothed start rates per hour of the week, recorded as tasks are closed.
+    private InterruptionForecast mForecast;
+
+    // Hour of the week histograms per week and category, counted as tasks are closed.
+    private HeatmapHistograms mHeatmap;
+
+    // Rows of computed range reports, kept until a write touches their range.
+    private final ReportCache mReports = new ReportCache();
+
+    // Records query, insert, update and delete calls if configured, otherwise null.
+    private ProviderTrace mTrace;
 
 
     /** A block that instantiates and sets static objects */
@@ -70,6 +217,23 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
         // Add a pattern that routes URIs terminated with "tasks" plus an integer
         // to a task ID operation
         sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_TASK + "/#", TASK_ID);
+        // Add a pattern that routes URIs terminated with "backup" to a BACKUP operation
+        sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_BACKUP, BACKUP);
+        // Add a pattern that routes URIs terminated with "import" to an IMPORT operation
+        sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_IMPORT, IMPORT);
+        // Add patterns that route URIs terminated with "changes" or a consumer to the change feed
+        sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_CHANGES, CHANGES);
+        sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_CHANGES + "/consumer/*", CHANGE_CONSUMER);
+        // Add a pattern that routes URIs terminated with "aggregate/quantiles" to the duration quantiles
+        sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_AGGREGATE + "/quantiles", QUANTILES);
+        // Add a pattern that routes URIs terminated with "aggregate/coverage" to the coverage
+        sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_AGGREGATE + "/coverage", COVERAGE);
+        // Add a pattern that routes URIs terminated with "aggregate/focus" to the focus time
+        sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_AGGREGATE + "/focus", FOCUS);
+        // Add a pattern that routes URIs terminated with "aggregate/forecast" to the forecast
+        sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_AGGREGATE + "/forecast", FORECAST);
+        // Add a pattern that routes URIs terminated with "aggregate/heatmap" to the heatmap
+        sUriMatcher.addURI(WorkInterruption.AUTHORITY, WorkInterruption.PATH_AGGREGATE + "/heatmap", HEATMAP);
 
         /* Creates and initializes a projection map that returns all columns */
 
@@ -83,16 +247,121 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
     }
 
     /**
-     * Initializes the provider by creating a new DatabaseHelper. onCreate() is called
+     * Initializes the provider by creating the configured task store. onCreate() is called
      * automatically when Android creates the provider in response to a resolver request from a
      * client.
      */
     @Override
     public boolean onCreate() {
-        mOpenHelper = new SQLiteHelper(getContext());
+        Bundle metaData = metaData();
+        mStore = TaskStoreFactory.create(getContext(),
+                metaData == null ? null : metaData.getString(TaskStoreFactory.META_DATA_BACKEND));
+        if (metaData != null && metaData.getBoolean(ProviderTrace.META_DATA_TRACE)) {
+            mTrace = ProviderTrace.start(getContext().getFilesDir());
+        }
+        mSnapshots = new HistorySnapshotUpdater(getContext().getFilesDir(), mStore);
+        mSnapshots.refreshLater();
+        mWriteListeners.add(mSnapshots);
+        mHistory = new SnapshotTaskStore(mStore, mSnapshots);
+        ColumnarHistory.getInstance().attach(mStore);
+        mWriteListeners.add(ColumnarHistory.getInstance());
+        mQuantiles = new DurationQuantiles(mHistory, mStore instanceof SQLiteBackedStore
+                ? new SQLiteSketchPersistence(((SQLiteBackedStore) mStore).getOpenHelper()) : null,
+                TimeZone.getDefault());
+        mWriteListeners.add(mQuantiles);
+        mFocus = new FocusTimeEngine(mHistory, InterruptionAnalytics.DEFAULT_WORK_CATEGORY);
+        mWriteListeners.add(mFocus);
+        mForecast = new InterruptionForecast(mHistory, mStore instanceof SQLiteBackedStore
+                ? new SQLiteForecastPersistence(((SQLiteBackedStore) mStore).getOpenHelper()) : null,
+                TimeZone.getDefault(), ForecastModel.DEFAULT_ALPHA);
+        mWriteListeners.add(mForecast);
+        mHeatmap = new HeatmapHistograms(mHistory, mStore instanceof SQLiteBackedStore
+                ? new SQLiteHeatmapPersistence(((SQLiteBackedStore) mStore).getOpenHelper()) : null,
+                TimeZone.getDefault());
+        mWriteListeners.add(mHeatmap);
+        mWriteListeners.add(mReports);
+        mWriteListeners.add(new ChangeNotifier());
+        if (mStore instanceof SQLiteBackedStore) {
+            // drop what consumers have read while the app was gone, without delaying startup
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    changeFeed(WorkInterruption.Change.CONTENT_URI).compact();
+                }
+            });
+        }
         return true;
     }
 
+    /** Releases the store, for tests which create several providers. */
+    @Override
+    public void shutdown() {
+        if (mTrace != null) {
+            mTrace.close();
+        }
+        mSnapshots.shutdown();
+        mStore.shutdown();
+        super.shutdown();
+    }
+
+    /**
+     * Reads the provider meta-data, e.g. {@link TaskStoreFactory#META_DATA_BACKEND}.
+     *
+     * @return the meta-data or null if there is none.
+     */
+    private Bundle metaData() {
+        try {
+            ProviderInfo info = getContext().getPackageManager().getProviderInfo(
+                    new ComponentName(getContext(), getClass()), PackageManager.GET_META_DATA);
+            return info.metaData;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        } catch (UnsupportedOperationException e) {
+            // isolated test contexts have no package manager
+            return null;
+        }
+    }
+
+    /**
+     * The change log is kept by the database.
+     *
+     * @throws IllegalArgumentException if the configured store does not use SQLite.
+     */
+    private ChangeFeed changeFeed(Uri uri) {
+        return new ChangeFeed(sqlHelper(uri));
+    }
+
+    /**
+     * Free-form SQL selections can only be answered by an SQLite backed store.
+     *
+     * @throws IllegalArgumentException if the configured store does not understand SQL.
+     */
+    private SQLiteHelper sqlHelper(Uri uri) {
+        if (mStore instanceof SQLiteBackedStore) {
+            return ((SQLiteBackedStore) mStore).getOpenHelper();
+        }
+        throw new IllegalArgumentException("Selection not supported by the configured store for URI " + uri);
+    }
+
+    /** Answers a query, see {@link #performQuery}, and records it when tracing. */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        if (mTrace == null) {
+            return performQuery(uri, projection, selection, selectionArgs, sortOrder);
+        }
+        long begin = System.nanoTime();
+        Cursor c = null;
+        try {
+            c = performQuery(uri, projection, selection, selectionArgs, sortOrder);
+            return c;
+        } finally {
+            // counting runs the query, so the recorded time covers filling the first window
+            mTrace.record(TraceRecord.QUERY, begin, uri, projection, selection, selectionArgs, sortOrder, null,
+                    c == null ? -1 : c.getCount(), c == null);
+        }
+    }
+
     /**
      * This method is called when a client calls
      * {@link android.content.ContentResolver#query(Uri, String[], String, String[], String)}.
@@ -102,9 +371,64 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
      * the query returns no results or an exception occurs.
      * @throws IllegalArgumentException if the incoming URI pattern is invalid.
      */
-    @Override
-    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
-                        String sortOrder) {
+    private Cursor performQuery(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                                String sortOrder) {
+
+        // The import progress is no task data.
+        if (sUriMatcher.match(uri) == IMPORT) {
+            Cursor c = queryImport();
+            c.setNotificationUri(getContext().getContentResolver(), uri);
+            return c;
+        }
+
+        // The change feed is read from its own table.
+        if (sUriMatcher.match(uri) == CHANGES) {
+            Cursor c = changeFeed(uri).changesSince(longParameter(uri, WorkInterruption.Change.PARAM_SINCE, 0));
+            c.setNotificationUri(getContext().getContentResolver(), uri);
+            return c;
+        }
+
+        // The quantiles come from the duration sketches, whatever the store.
+        if (sUriMatcher.match(uri) == QUANTILES) {
+            Cursor c = queryQuantiles(uri);
+            c.setNotificationUri(getContext().getContentResolver(), WorkInterruption.Task.CONTENT_URI);
+            return c;
+        }
+
+        // The coverage is one pass over the store, whatever the store.
+        if (sUriMatcher.match(uri) == COVERAGE) {
+            Cursor c = queryCoverage(uri);
+            c.setNotificationUri(getContext().getContentResolver(), WorkInterruption.Task.CONTENT_URI);
+            return c;
+        }
+
+        // The focus time is computed from the store and cached per day.
+        if (sUriMatcher.match(uri) == FOCUS) {
+            Cursor c = queryFocus(uri);
+            c.setNotificationUri(getContext().getContentResolver(), WorkInterruption.Task.CONTENT_URI);
+            return c;
+        }
+
+        // The forecast comes from the smoothed rates, whatever the store.
+        if (sUriMatcher.match(uri) == FORECAST) {
+            Cursor c = queryForecast(uri);
+            c.setNotificationUri(getContext().getContentResolver(), WorkInterruption.Task.CONTENT_URI);
+            return c;
+        }
+
+        // The heatmap comes from the week histograms, whatever the store.
+        if (sUriMatcher.match(uri) == HEATMAP) {
+            Cursor c = queryHeatmap(uri);
+            c.setNotificationUri(getContext().getContentResolver(), WorkInterruption.Task.CONTENT_URI);
+            return c;
+        }
+
+        // Stores without SQL support answer from their own operations.
+        if (!(mStore instanceof SQLiteBackedStore)) {
+            Cursor c = queryStore(uri, projection, selection, sortOrder);
+            c.setNotificationUri(getContext().getContentResolver(), uri);
+            return c;
+        }
 
         // Constructs a new query builder and sets its table name
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
@@ -146,13 +470,14 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
         }
 
         // Opens the database object in "read" mode, since no writes need to be done.
-        SQLiteDatabase db = mOpenHelper.getReadableDatabase();
+        SQLiteDatabase db = sqlHelper(uri).getReadableDatabase();
 
        /*
         * Performs the query. If no problems occur trying to read the database, then a Cursor
         * object is returned; otherwise, the cursor variable contains null. If no records were
         * selected, then the Cursor object is empty, and Cursor.getCount() returns 0.
         */
+        int limit = limitParameter(uri);
         Cursor c = qb.query(
                 db,            // The database to query
                 projection,    // The columns to return from the query
@@ -160,7 +485,8 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
                 selectionArgs, // The values for the where clause
                 null,          // don't group the rows
                 null,          // don't filter by row groups
-                orderBy        // The sort order
+                orderBy,       // The sort order
+                limit == Integer.MAX_VALUE ? null : String.valueOf(limit)
         );
 
         // Tells the Cursor what URI to watch, so it knows when its source data changes
@@ -168,6 +494,243 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
         return c;
     }
 
+    /**
+     * Answers a query through the task store operations. Supports all tasks, running tasks
+     * ({@link WorkInterruption.Task#SELECTION_OPEN}) and single tasks, sorted by start time.
+     *
+     * @throws IllegalArgumentException for selections or sort orders the store can't answer.
+     */
+    private Cursor queryStore(Uri uri, String[] projection, String selection, String sortOrder) {
+        final boolean openOnly = selection != null && WorkInterruption.Task.SELECTION_OPEN.equals(selection.trim());
+        if (selection != null && !openOnly) {
+            throw new IllegalArgumentException("Selection not supported by the configured store for URI " + uri);
+        }
+
+        final String[] columns = projection == null ? ALL_COLUMNS : projection;
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        TaskVisitor collector = new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                if (!openOnly || duration == TaskStore.OPEN) {
+                    rows.add(toRow(columns, id, started, category, duration));
+                }
+            }
+        };
+
+        switch (sUriMatcher.match(uri)) {
+            case TASKS:
+                if (openOnly) {
+                    mStore.openTasks(collector);
+                } else {
+                    mStore.scan(Long.MIN_VALUE, Long.MAX_VALUE, collector);
+                }
+                break;
+
+            case TASK_ID:
+                mStore.get(taskId(uri), collector);
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unknown URI " + uri);
+        }
+
+        // The store delivers ascending, the default sort order is descending.
+        if (TextUtils.isEmpty(sortOrder) || WorkInterruption.Task.DEFAULT_SORT_ORDER.equalsIgnoreCase(sortOrder.trim())) {
+            Collections.reverse(rows);
+        } else if (!WorkInterruption.Task.ASCENDING_SORT_ORDER.equalsIgnoreCase(sortOrder.trim())) {
+            throw new IllegalArgumentException("Sort order not supported by the configured store: " + sortOrder);
+        }
+
+        List<Object[]> limited = rows.subList(0, Math.min(rows.size(), limitParameter(uri)));
+        MatrixCursor cursor = new MatrixCursor(columns, limited.size());
+        for (Object[] row : limited) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /** @return one row with the progress of the last import, none if there was no import */
+    private Cursor queryImport() {
+        MatrixCursor cursor = new MatrixCursor(IMPORT_COLUMNS, 1);
+        TaskImport last = mImport;
+        if (last != null) {
+            cursor.addRow(new Object[] {
+                    last.imported(), last.skipped(), last.isFinished() ? 1 : 0, last.failure()});
+        }
+        return cursor;
+    }
+
+    /** @return one row per category with the quantiles of the requested range */
+    private Cursor queryQuantiles(Uri uri) {
+        long from = longParameter(uri, WorkInterruption.Quantiles.PARAM_FROM, Long.MIN_VALUE);
+        long to = longParameter(uri, WorkInterruption.Quantiles.PARAM_TO, Long.MAX_VALUE);
+        String category = uri.getQueryParameter(WorkInterruption.Quantiles.PARAM_CATEGORY);
+        ReportCache.Key key = new ReportCache.Key(REPORT_QUANTILES, from, to, category);
+        Object[][] rows = mReports.get(key);
+        if (rows == null) {
+            long version = mReports.version();
+            Map<String, DurationSketch> sketches = mQuantiles.sketches(from, to, category);
+            rows = new Object[sketches.size()][];
+            int row = 0;
+            for (Map.Entry<String, DurationSketch> entry : sketches.entrySet()) {
+                DurationSketch sketch = entry.getValue();
+                rows[row++] = new Object[] {entry.getKey(), sketch.count(),
+                        sketch.quantile(0.5), sketch.quantile(0.9), sketch.quantile(0.99)};
+            }
+            mReports.put(key, rows, version);
+        }
+        return matrixCursor(QUANTILES_COLUMNS, rows);
+    }
+
+    /**
+     * @return the overlap rows, then the gap rows, then the day rows of the requested range
+     * @throws IllegalArgumentException if the range is missing
+     */
+    private Cursor queryCoverage(Uri uri) {
+        if (uri.getQueryParameter(WorkInterruption.Coverage.PARAM_FROM) == null
+                || uri.getQueryParameter(WorkInterruption.Coverage.PARAM_TO) == null) {
+            throw new IllegalArgumentException("Missing range in URI " + uri);
+        }
+        long from = longParameter(uri, WorkInterruption.Coverage.PARAM_FROM, 0);
+        long to = longParameter(uri, WorkInterruption.Coverage.PARAM_TO, 0);
+        TimeZone zone = TimeZone.getDefault();
+        int dayStart = (int) longParameter(uri, WorkInterruption.Coverage.PARAM_DAY_START,
+                CoverageSweep.DEFAULT_DAY_START_MINUTE);
+        int dayEnd = (int) longParameter(uri, WorkInterruption.Coverage.PARAM_DAY_END,
+                CoverageSweep.DEFAULT_DAY_END_MINUTE);
+        // the local days and working hours are part of the report, it reads tasks running into the range
+        ReportCache.Key key = ReportCache.Key.overlapping(REPORT_COVERAGE + "/" + zone.getID() + "/" + dayStart + "-" + dayEnd,
+                from - FocusTimeEngine.LOOKBACK_MILLIS, to, null);
+        Object[][] rows = mReports.get(key);
+        if (rows == null) {
+            long version = mReports.version();
+            CoverageReport report = CoverageSweep.analyze(mHistory, from, to, zone, dayStart, dayEnd);
+            rows = new Object[report.overlaps.size() + report.gaps.size() + report.days.size()][];
+            int row = 0;
+            for (CoverageReport.Overlap overlap : report.overlaps) {
+                rows[row++] = new Object[] {WorkInterruption.Coverage.KIND_OVERLAP, null, null,
+                        overlap.category, overlap.otherCategory, overlap.millis};
+            }
+            for (CoverageReport.Gap gap : report.gaps) {
+                rows[row++] = new Object[] {WorkInterruption.Coverage.KIND_GAP, gap.start, gap.end,
+                        null, null, gap.end - gap.start};
+            }
+            for (CoverageReport.Day day : report.days) {
+                rows[row++] = new Object[] {WorkInterruption.Coverage.KIND_DAY, day.start, day.end,
+                        null, null, day.coveredMillis};
+            }
+            mReports.put(key, rows, version);
+        }
+        return matrixCursor(COVERAGE_COLUMNS, rows);
+    }
+
+    /** @return a cursor over the rows */
+    private static MatrixCursor matrixCursor(String[] columns, Object[][] rows) {
+        MatrixCursor cursor = new MatrixCursor(columns, rows.length);
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * @return one row per local day of the requested range
+     * @throws IllegalArgumentException if the range is missing
+     */
+    private Cursor queryFocus(Uri uri) {
+        if (uri.getQueryParameter(WorkInterruption.Focus.PARAM_FROM) == null
+                || uri.getQueryParameter(WorkInterruption.Focus.PARAM_TO) == null) {
+            throw new IllegalArgumentException("Missing range in URI " + uri);
+        }
+        List<FocusTimeEngine.Day> days = mFocus.days(longParameter(uri, WorkInterruption.Focus.PARAM_FROM, 0),
+                longParameter(uri, WorkInterruption.Focus.PARAM_TO, 0), TimeZone.getDefault(),
+                System.currentTimeMillis());
+        MatrixCursor cursor = new MatrixCursor(FOCUS_COLUMNS, days.size());
+        for (FocusTimeEngine.Day day : days) {
+            cursor.addRow(new Object[] {day.start, day.end, day.workMillis, day.netMillis});
+        }
+        return cursor;
+    }
+
+    /** @return one row per category with its forecast for the hour from the requested time */
+    private Cursor queryForecast(Uri uri) {
+        Map<String, Double> expected = mForecast.expectedStarts(
+                longParameter(uri, WorkInterruption.Forecast.PARAM_AT, System.currentTimeMillis()));
+        MatrixCursor cursor = new MatrixCursor(FORECAST_COLUMNS, expected.size());
+        for (Map.Entry<String, Double> entry : expected.entrySet()) {
+            cursor.addRow(new Object[] {entry.getKey(), entry.getValue(), ForecastModel.probability(entry.getValue())});
+        }
+        return cursor;
+    }
+
+    /** @return one row per week and category of the requested range */
+    private Cursor queryHeatmap(Uri uri) {
+        Map<Integer, Map<String, WeekHeatmap>> weeks = mHeatmap.weeks(
+                longParameter(uri, WorkInterruption.Heatmap.PARAM_FROM, Long.MIN_VALUE),
+                longParameter(uri, WorkInterruption.Heatmap.PARAM_TO, Long.MAX_VALUE),
+                uri.getQueryParameter(WorkInterruption.Heatmap.PARAM_CATEGORY));
+        MatrixCursor cursor = new MatrixCursor(HEATMAP_COLUMNS, weeks.size());
+        for (Map.Entry<Integer, Map<String, WeekHeatmap>> week : weeks.entrySet()) {
+            for (Map.Entry<String, WeekHeatmap> entry : week.getValue().entrySet()) {
+                cursor.addRow(new Object[] {week.getKey(), entry.getKey(), entry.getValue().toBytes()});
+            }
+        }
+        return cursor;
+    }
+
+    /** Picks the values for the requested columns. */
+    private static Object[] toRow(String[] columns, long id, long started, String category, int duration) {
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i];
+            if (TaskTable._ID.equals(column)) {
+                row[i] = id;
+            } else if (TaskTable.COL_STARTED.equals(column)) {
+                row[i] = started;
+            } else if (TaskTable.COL_CATEGORY.equals(column)) {
+                row[i] = category;
+            } else if (TaskTable.COL_DURATION.equals(column)) {
+                row[i] = duration == TaskStore.OPEN ? null : duration;
+            } else {
+                throw new IllegalArgumentException("Invalid column " + column);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * @return the {@link WorkInterruption.Task#PARAM_LIMIT} of the URI, {@link Integer#MAX_VALUE} if missing
+     * @throws IllegalArgumentException if the limit is not a number or negative
+     */
+    private static int limitParameter(Uri uri) {
+        long limit = longParameter(uri, WorkInterruption.Task.PARAM_LIMIT, Integer.MAX_VALUE);
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit in URI " + uri);
+        }
+        return (int) Math.min(limit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @return the numeric query parameter or the default if it is missing
+     * @throws IllegalArgumentException if the parameter is not a number
+     */
+    private static long longParameter(Uri uri, String name, long defaultValue) {
+        String value = uri.getQueryParameter(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " in URI " + uri);
+        }
+    }
+
+    /** @return the task id of a task ID URI */
+    private static long taskId(Uri uri) {
+        return Long.parseLong(uri.getPathSegments().get(WorkInterruption.Task.PATH_POSITION_TASK_ID));
+    }
+
     /**
      * This is called when a client calls {@link android.content.ContentResolver#getType(Uri)}.
      * Returns the MIME data type of the URI given as a parameter.
@@ -190,6 +753,42 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
             case TASK_ID:
                 return WorkInterruption.Task.CONTENT_ITEM_TYPE;
 
+            // If the pattern is for the backup, returns the database file type.
+            case BACKUP:
+                return WorkInterruption.Backup.CONTENT_TYPE;
+
+            // If the pattern is for the import, returns the progress type.
+            case IMPORT:
+                return WorkInterruption.Import.CONTENT_ITEM_TYPE;
+
+            // If the pattern is for the change feed, returns the change directory type.
+            case CHANGES:
+                return WorkInterruption.Change.CONTENT_TYPE;
+
+            // If the pattern is for a change consumer, returns the consumer type.
+            case CHANGE_CONSUMER:
+                return WorkInterruption.Change.CONSUMER_ITEM_TYPE;
+
+            // If the pattern is for the quantiles, returns the quantiles directory type.
+            case QUANTILES:
+                return WorkInterruption.Quantiles.CONTENT_TYPE;
+
+            // If the pattern is for the coverage, returns the coverage directory type.
+            case COVERAGE:
+                return WorkInterruption.Coverage.CONTENT_TYPE;
+
+            // If the pattern is for the focus time, returns the focus days type.
+            case FOCUS:
+                return WorkInterruption.Focus.CONTENT_TYPE;
+
+            // If the pattern is for the forecast, returns the forecast directory type.
+            case FORECAST:
+                return WorkInterruption.Forecast.CONTENT_TYPE;
+
+            // If the pattern is for the heatmap, returns the heatmap weeks type.
+            case HEATMAP:
+                return WorkInterruption.Heatmap.CONTENT_TYPE;
+
             // If the URI pattern doesn't match any permitted patterns, throws an exception.
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
@@ -205,13 +804,18 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
             new String[] { ClipDescription.MIMETYPE_TEXT_PLAIN });
 
     /**
-     * Returns the types of available data streams.  URIs to specific tasks are supported.
-     * The application can convert such a task to a plain text stream.
+     * This describes the MIME types that are supported for opening the tasks URI as a stream.
+     */
+    static ClipDescription TASKS_STREAM_TYPES = new ClipDescription(null, TaskExport.mimeTypes());
+
+    /**
+     * Returns the types of available data streams. URIs to specific tasks can be converted
+     * to a plain text stream, the tasks URI can be exported as CSV, JSON lines or binary.
      *
      * @param uri the URI to analyze
      * @param mimeTypeFilter The MIME type to check for. This method only returns a data stream
-     * type for MIME types that match the filter. Currently, only text/plain MIME types match.
-     * @return a data stream MIME type. Currently, only text/plan is returned.
+     * type for MIME types that match the filter.
+     * @return the matching data stream MIME types.
      * @throws IllegalArgumentException if the URI pattern doesn't match any supported patterns.
      */
     @Override
@@ -221,16 +825,27 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
          */
         switch (sUriMatcher.match(uri)) {
 
-            // If the pattern is for tasks return null. Data streams are not
-            // supported for this type of URI.
+            // If the pattern is for tasks, return the matching export types.
             case TASKS:
-                return null;
+                return TASKS_STREAM_TYPES.filterMimeTypes(mimeTypeFilter);
 
             // If the pattern is for task IDs and the MIME filter is text/plain, then return
             // text/plain
             case TASK_ID:
                 return TASK_STREAM_TYPES.filterMimeTypes(mimeTypeFilter);
 
+            // The backup and import are opened with openFile, changes are no stream.
+            case BACKUP:
+            case IMPORT:
+            case CHANGES:
+            case CHANGE_CONSUMER:
+            case QUANTILES:
+            case COVERAGE:
+            case FOCUS:
+            case FORECAST:
+            case HEATMAP:
+                return null;
+
             // If the URI pattern doesn't match any permitted patterns, throws an exception.
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
@@ -259,6 +874,34 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
         // Checks to see if the MIME type filter matches a supported MIME type.
         String[] mimeTypes = getStreamTypes(uri, mimeTypeFilter);
 
+        // Exports of all tasks are streamed straight from the store.
+        if (mimeTypes != null && sUriMatcher.match(uri) == TASKS) {
+            TaskExport export = new TaskExport(mimeTypes[0])
+                    .range(longParameter(uri, WorkInterruption.Task.PARAM_FROM, Long.MIN_VALUE),
+                            longParameter(uri, WorkInterruption.Task.PARAM_TO, Long.MAX_VALUE))
+                    .category(uri.getQueryParameter(WorkInterruption.Task.PARAM_CATEGORY))
+                    .gzip(Boolean.parseBoolean(uri.getQueryParameter(WorkInterruption.Task.PARAM_GZIP)));
+            return new AssetFileDescriptor(
+                    openPipeHelper(uri, mimeTypes[0], opts, export, new PipeDataWriter<TaskExport>() {
+                        @Override
+                        public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType,
+                                                    Bundle opts, TaskExport args) {
+                            FileOutputStream out = new FileOutputStream(output.getFileDescriptor());
+                            try {
+                                args.writeTo(mStore, out);
+                            } catch (IOException e) {
+                                Log.w(WorkInterruptionProvider.class.getName(), "Export failed", e);
+                            } finally {
+                                try {
+                                    out.close();
+                                } catch (IOException e) {
+                                }
+                            }
+                        }
+                    }), 0,
+                    AssetFileDescriptor.UNKNOWN_LENGTH);
+        }
+
         // If the MIME type is supported
         if (mimeTypes != null) {
 
@@ -328,12 +971,153 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
         }
     }
 
-
     /**
+     * Opens the backup or import URI. Reading the backup streams a consistent copy of the
+     * database while the app keeps working, writing it restores the tasks from such a copy once
+     * the stream is closed. A restore which fails validation keeps the current tasks and is only
+     * logged. Writing the import adds the tasks of an export while it is written.
+     *
+     * @param uri The backup or import URI
+     * @param mode "r" to back up, "w" to restore or import.
+     * @return the reading or writing end of a pipe.
+     * @throws FileNotFoundException if the URI, mode or task store doesn't support it.
+     */
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (sUriMatcher.match(uri) == IMPORT && "w".equals(mode)) {
+            return openImport(uri);
+        }
+        if (sUriMatcher.match(uri) != BACKUP) {
+            return super.openFile(uri, mode);
+        }
+        if (!(mStore instanceof SQLiteBackedStore)) {
+            throw new FileNotFoundException("Backup not supported by the configured store for URI " + uri);
+        }
+        final DatabaseBackup backup = new DatabaseBackup(((SQLiteBackedStore) mStore).getOpenHelper());
+
+        if ("r".equals(mode)) {
+            return openPipeHelper(uri, WorkInterruption.Backup.CONTENT_TYPE, null, backup,
+                    new PipeDataWriter<DatabaseBackup>() {
+                        @Override
+                        public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType,
+                                                    Bundle opts, DatabaseBackup args) {
+                            FileOutputStream out = new FileOutputStream(output.getFileDescriptor());
+                            try {
+                                args.backup(out, getContext().getCacheDir());
+                            } catch (IOException e) {
+                                Log.w(WorkInterruptionProvider.class.getName(), "Backup failed", e);
+                            } finally {
+                                try {
+                                    out.close();
+                                } catch (IOException e) {
+                                }
+                            }
+                        }
+                    });
+        }
 
+        // Only the plain SQLite store keeps its tasks in the database alone.
+        if ("w".equals(mode) && mStore instanceof SQLiteTaskStore) {
+            final ParcelFileDescriptor[] pipe;
+            try {
+                pipe = ParcelFileDescriptor.createPipe();
+            } catch (IOException e) {
+                throw new FileNotFoundException("Unable to create pipe for " + uri);
+            }
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pipe[0]);
+                    try {
+                        backup.restore(in, getContext().getCacheDir());
+                        getContext().getContentResolver().notifyChange(WorkInterruption.Task.CONTENT_URI, null);
+                        for (TaskWriteListener listener : mWriteListeners) {
+                            listener.onTasksChanged();
+                        }
+                    } catch (IOException e) {
+                        Log.w(WorkInterruptionProvider.class.getName(), "Restore failed", e);
+                    } finally {
+                        try {
+                            in.close();
+                        } catch (IOException e) {
+                        }
+                    }
+                }
+            });
+            return pipe[1];
+        }
+
+        throw new FileNotFoundException("Unsupported mode " + mode + " for URI " + uri);
+    }
+
+    /**
+     * Starts an import which reads from a pipe. Observers of the import URI are notified after
+     * each chunk, observers of the tasks once the import is done.
      */
+    private synchronized ParcelFileDescriptor openImport(Uri uri) throws FileNotFoundException {
+        if (mImport != null && !mImport.isFinished()) {
+            throw new FileNotFoundException("Another import is running for URI " + uri);
+        }
+        final ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException("Unable to create pipe for " + uri);
+        }
+        final TaskImport taskImport = new TaskImport(mStore, TaskImport.DEFAULT_CHUNK_SIZE);
+        mImport = taskImport;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pipe[0]);
+                try {
+                    taskImport.run(in, new TaskImport.Progress() {
+                        @Override
+                        public void onProgress(int imported, int skipped) {
+                            getContext().getContentResolver().notifyChange(WorkInterruption.Import.CONTENT_URI, null);
+                        }
+                    });
+                } catch (IOException e) {
+                    Log.w(WorkInterruptionProvider.class.getName(), "Import failed", e);
+                } finally {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                    }
+                    getContext().getContentResolver().notifyChange(WorkInterruption.Import.CONTENT_URI, null);
+                    if (taskImport.imported() > 0) {
+                        getContext().getContentResolver().notifyChange(WorkInterruption.Task.CONTENT_URI, null);
+                        for (TaskWriteListener listener : mWriteListeners) {
+                            listener.onTasksChanged();
+                        }
+                    }
+                }
+            }
+        });
+        return pipe[1];
+    }
+
+    /** Inserts a task, see {@link #performInsert}, and records it when tracing. */
     @Override
     public Uri insert(Uri uri, ContentValues initialValues) {
+        if (mTrace == null) {
+            return performInsert(uri, initialValues);
+        }
+        long begin = System.nanoTime();
+        Uri inserted = null;
+        try {
+            inserted = performInsert(uri, initialValues);
+            return inserted;
+        } finally {
+            mTrace.record(TraceRecord.INSERT, begin, uri, null, null, null, null, initialValues,
+                    inserted == null ? -1 : ContentUris.parseId(inserted), inserted == null);
+        }
+    }
+
+    /**
+
+     */
+    private Uri performInsert(Uri uri, ContentValues initialValues) {
 
         // Validates the incoming URI. Only the full provider URI is allowed for inserts.
         if (sUriMatcher.match(uri) != TASKS) {
@@ -349,7 +1133,7 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
 
         // If the values map doesn't contain the creation date, sets the value to the current time.
         if (values.containsKey(TaskTable.COL_STARTED) == false) {
-            values.put(TaskTable.COL_STARTED, Calendar.getInstance().getTimeInMillis());
+            values.put(TaskTable.COL_STARTED, System.currentTimeMillis());
         }
 
         // If the values map doesn't contain task text, sets the value to an empty string.
@@ -357,16 +1141,17 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
             throw new IllegalArgumentException("Missing value for category");
         }
 
-        // Opens the database object in "write" mode.
-        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
-
         // Performs the insert and returns the ID of the new task.
-        long rowId = db.insert(
-                TaskTable.TABLE_NAME,        // The table to insert into.
-                TaskTable.COL_CATEGORY,  // A hack, SQLite sets this column value to null
-                // if values is empty.
-                values                           // A map of column names, and the values to insert
-                // into the columns.
+        Long id = values.getAsLong(TaskTable._ID);
+        Integer duration = values.getAsInteger(TaskTable.COL_DURATION);
+        long started = values.getAsLong(TaskTable.COL_STARTED);
+        String category = values.getAsString(TaskTable.COL_CATEGORY);
+        int storedDuration = duration == null ? TaskStore.OPEN : duration;  // Tasks without duration are running.
+        long rowId = mStore.insert(
+                id == null ? TaskStore.NO_ID : id,            // The requested or a generated ID.
+                started,
+                category,
+                storedDuration
         );
 
         // If the insert succeeded, the row ID exists.
@@ -376,6 +1161,9 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
 
             // Notifies observers registered against this provider that the data changed.
             getContext().getContentResolver().notifyChange(contentUri, null);
+            for (TaskWriteListener listener : mWriteListeners) {
+                listener.onTaskInserted(rowId, started, category, storedDuration);
+            }
             return contentUri;
         }
 
@@ -383,6 +1171,85 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
         throw new SQLException("Failed to insert row into " + uri);
     }
 
+    /**
+     * Inserts many tasks in chunks, each chunk in one transaction. Observers are notified once,
+     * tracing records one call.
+     * Values are handled like in {@link #insert(Uri, ContentValues)}, tasks with an existing id
+     * are skipped.
+     *
+     * @return the number of inserted tasks.
+     * @throws IllegalArgumentException if the URI is not the tasks URI or a category is missing.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        if (mTrace == null) {
+            return performBulkInsert(uri, values);
+        }
+        long begin = System.nanoTime();
+        int count = -1;
+        boolean done = false;
+        try {
+            count = performBulkInsert(uri, values);
+            done = true;
+            return count;
+        } finally {
+            // one record with the row count, the rows themselves would bloat the trace
+            mTrace.record(TraceRecord.BULK_INSERT, begin, uri, null, null, null, null, null, count, !done);
+        }
+    }
+
+    private int performBulkInsert(Uri uri, ContentValues[] values) {
+        if (sUriMatcher.match(uri) != TASKS) {
+            throw new IllegalArgumentException("Unknown URI " + uri);
+        }
+
+        long now = System.currentTimeMillis();
+        TaskBatch batch = new TaskBatch(TaskImport.DEFAULT_CHUNK_SIZE);
+        int inserted = 0;
+        for (ContentValues value : values) {
+            String category = value.getAsString(TaskTable.COL_CATEGORY);
+            if (category == null) {
+                throw new IllegalArgumentException("Missing value for category");
+            }
+            Long id = value.getAsLong(TaskTable._ID);
+            Long started = value.getAsLong(TaskTable.COL_STARTED);
+            Integer duration = value.getAsInteger(TaskTable.COL_DURATION);
+            batch.add(id == null ? TaskStore.NO_ID : id, started == null ? now : started, category,
+                    duration == null ? TaskStore.OPEN : duration);
+            if (batch.isFull()) {
+                inserted += mStore.insertAll(batch);
+                batch.clear();
+            }
+        }
+        inserted += mStore.insertAll(batch);
+
+        if (inserted > 0) {
+            getContext().getContentResolver().notifyChange(uri, null);
+            for (TaskWriteListener listener : mWriteListeners) {
+                listener.onTasksChanged();
+            }
+        }
+        return inserted;
+    }
+
+    /** Deletes tasks, see {@link #performDelete}, and records it when tracing. */
+    @Override
+    public int delete(Uri uri, String where, String[] whereArgs) {
+        if (mTrace == null) {
+            return performDelete(uri, where, whereArgs);
+        }
+        long begin = System.nanoTime();
+        int count = -1;
+        boolean done = false;
+        try {
+            count = performDelete(uri, where, whereArgs);
+            done = true;
+            return count;
+        } finally {
+            mTrace.record(TraceRecord.DELETE, begin, uri, null, where, whereArgs, null, null, count, !done);
+        }
+    }
+
     /**
      * This is called when a client calls
      * {@link android.content.ContentResolver#delete(Uri, String, String[])}.
@@ -396,11 +1263,44 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
      * 0 is returned. To delete all rows and get a row count, use "1" as the where clause.
      * @throws IllegalArgumentException if the incoming URI pattern is invalid.
      */
-    @Override
-    public int delete(Uri uri, String where, String[] whereArgs) {
+    private int performDelete(Uri uri, String where, String[] whereArgs) {
+
+        // Deleting a consumer stops keeping changes for it.
+        if (sUriMatcher.match(uri) == CHANGE_CONSUMER) {
+            return changeFeed(uri).unregister(uri.getPathSegments().get(PATH_POSITION_CONSUMER)) ? 1 : 0;
+        }
+
+        // A single task without additional criteria is a plain store operation.
+        if (sUriMatcher.match(uri) == TASK_ID && where == null) {
+            StoredTask task = new StoredTask();
+            int count = mStore.delete(taskId(uri), task) ? 1 : 0;
+            getContext().getContentResolver().notifyChange(uri, null);
+            if (count > 0) {
+                for (TaskWriteListener listener : mWriteListeners) {
+                    listener.onTaskDeleted(task.id, task.started, task.category, task.duration);
+                }
+            }
+            return count;
+        }
+
+        // Other stores keep their own writes, the task table may only be a projection of them.
+        if (!(mStore instanceof SQLiteTaskStore)) {
+            int count = 0;
+            for (long id : selectedTaskIds(uri, where, whereArgs)) {
+                StoredTask task = new StoredTask();
+                if (mStore.delete(id, task)) {
+                    count++;
+                    for (TaskWriteListener listener : mWriteListeners) {
+                        listener.onTaskDeleted(task.id, task.started, task.category, task.duration);
+                    }
+                }
+            }
+            getContext().getContentResolver().notifyChange(uri, null);
+            return count;
+        }
 
         // Opens the database object in "write" mode.
-        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        SQLiteDatabase db = sqlHelper(uri).getWritableDatabase();
         String finalWhere;
 
         int count;
@@ -458,10 +1358,33 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
          */
         getContext().getContentResolver().notifyChange(uri, null);
 
+        // Any task may be affected.
+        for (TaskWriteListener listener : mWriteListeners) {
+            listener.onTasksChanged();
+        }
+
         // Returns the number of rows deleted.
         return count;
     }
 
+    /** Updates tasks, see {@link #performUpdate}, and records it when tracing. */
+    @Override
+    public int update(Uri uri, ContentValues values, String where, String[] whereArgs) {
+        if (mTrace == null) {
+            return performUpdate(uri, values, where, whereArgs);
+        }
+        long begin = System.nanoTime();
+        int count = -1;
+        boolean done = false;
+        try {
+            count = performUpdate(uri, values, where, whereArgs);
+            done = true;
+            return count;
+        } finally {
+            mTrace.record(TraceRecord.UPDATE, begin, uri, null, where, whereArgs, null, values, count, !done);
+        }
+    }
+
     /**
      * This is called when a client calls
      * {@link android.content.ContentResolver#update(Uri,ContentValues,String,String[])}
@@ -482,11 +1405,54 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
      * @return The number of rows updated.
      * @throws IllegalArgumentException if the incoming URI pattern is invalid.
      */
-    @Override
-    public int update(Uri uri, ContentValues values, String where, String[] whereArgs) {
+    private int performUpdate(Uri uri, ContentValues values, String where, String[] whereArgs) {
+
+        // Updating a consumer acknowledges the changes it has read.
+        if (sUriMatcher.match(uri) == CHANGE_CONSUMER) {
+            Long acked = values == null ? null : values.getAsLong(WorkInterruption.Change.VALUE_ACKED);
+            if (acked == null) {
+                throw new IllegalArgumentException("Missing value for " + WorkInterruption.Change.VALUE_ACKED);
+            }
+            changeFeed(uri).acknowledge(uri.getPathSegments().get(PATH_POSITION_CONSUMER), acked);
+            return 1;
+        }
+
+        // Closing a single task is a plain store operation.
+        if (sUriMatcher.match(uri) == TASK_ID && where == null && isDurationOnly(values)) {
+            StoredTask task = new StoredTask();
+            int duration = values.getAsInteger(TaskTable.COL_DURATION);
+            int count = mStore.close(taskId(uri), duration, task) ? 1 : 0;
+            getContext().getContentResolver().notifyChange(uri, null);
+            if (count > 0) {
+                for (TaskWriteListener listener : mWriteListeners) {
+                    listener.onTaskClosed(task.id, task.started, task.category, task.duration, duration);
+                }
+            }
+            return count;
+        }
+
+        // Other stores keep their own writes, they can only close the selected tasks.
+        if (!(mStore instanceof SQLiteTaskStore)) {
+            if (!isDurationOnly(values)) {
+                throw new IllegalArgumentException("Only the duration can be updated by the configured store for URI " + uri);
+            }
+            int duration = values.getAsInteger(TaskTable.COL_DURATION);
+            int count = 0;
+            for (long id : selectedTaskIds(uri, where, whereArgs)) {
+                StoredTask task = new StoredTask();
+                if (mStore.close(id, duration, task)) {
+                    count++;
+                    for (TaskWriteListener listener : mWriteListeners) {
+                        listener.onTaskClosed(task.id, task.started, task.category, task.duration, duration);
+                    }
+                }
+            }
+            getContext().getContentResolver().notifyChange(uri, null);
+            return count;
+        }
 
         // Opens the database object in "write" mode.
-        SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        SQLiteDatabase db = sqlHelper(uri).getWritableDatabase();
         int count;
         String finalWhere;
 
@@ -551,6 +1517,11 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
          */
         getContext().getContentResolver().notifyChange(uri, null);
 
+        // Any task may be affected.
+        for (TaskWriteListener listener : mWriteListeners) {
+            listener.onTasksChanged();
+        }
+
         // Returns the number of rows updated.
         return count;
     }
@@ -564,6 +1535,82 @@ public class WorkInterruptionProvider extends ContentProvider implements Content
      * @return a handle to the database helper object for the provider's data.
      */
     SQLiteHelper getOpenHelperForTest() {
-        return mOpenHelper;
+        return sqlHelper(WorkInterruption.Task.CONTENT_URI);
+    }
+
+    /** Tells observers of the change feed about each task write. */
+    private class ChangeNotifier implements TaskWriteListener {
+
+        @Override
+        public void onTaskInserted(long id, long started, String category, int duration) {
+            onTasksChanged();
+        }
+
+        @Override
+        public void onTaskClosed(long id, long started, String category, int previousDuration, int duration) {
+            onTasksChanged();
+        }
+
+        @Override
+        public void onTaskDeleted(long id, long started, String category, int duration) {
+            onTasksChanged();
+        }
+
+        @Override
+        public void onTasksChanged() {
+            getContext().getContentResolver().notifyChange(WorkInterruption.Change.CONTENT_URI, null);
+        }
+    }
+
+    /** Values of a task before a store write. */
+    private static class StoredTask implements TaskVisitor {
+        long id;
+        long started;
+        String category;
+        int duration;
+
+        @Override
+        public void visit(long id, long started, String category, int duration) {
+            this.id = id;
+            this.started = started;
+            this.category = category;
+            this.duration = duration;
+        }
+    }
+
+    /**
+     * Resolves a selection of tasks to their ids, so a store can write them one by one.
+     *
+     * @throws IllegalArgumentException if the configured store does not understand SQL.
+     */
+    private List<Long> selectedTaskIds(Uri uri, String where, String[] whereArgs) {
+        String selection;
+        switch (sUriMatcher.match(uri)) {
+            case TASKS:
+                selection = where;
+                break;
+            case TASK_ID:
+                selection = TaskTable._ID + " = " + taskId(uri) + (where == null ? "" : " AND (" + where + ")");
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown URI " + uri);
+        }
+
+        List<Long> ids = new ArrayList<Long>();
+        Cursor c = sqlHelper(uri).getReadableDatabase().query(TaskTable.TABLE_NAME,
+                new String[]{TaskTable._ID}, selection, whereArgs, null, null, null);
+        try {
+            while (c.moveToNext()) {
+                ids.add(c.getLong(0));
+            }
+        } finally {
+            c.close();
+        }
+        return ids;
+    }
+
+    /** @return true if the values only set a duration */
+    private static boolean isDurationOnly(ContentValues values) {
+        return values != null && values.size() == 1 && values.getAsInteger(TaskTable.COL_DURATION) != null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,252 @@
+package de.nenick.workinterruption.dataaccess.columnar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.store.TaskWriteListener;
+
+/**
+ * Process wide task history as {@link HistoryColumns}, shared by all screens and reports.
+ *
+ * <P>The history is loaded from the task store on first use and then kept current by the
+ * provider writes. Each write publishes a new version: appending a task in start order reuses
+ * the arrays, closing a task copies only the duration column, anything else copies all
+ * columns. Writes whose rows are unknown cause a reload on the next access.</P>
+ */
+public class ColumnarHistory implements TaskWriteListener {
+
+    /** Told about each new version. */
+    public interface Listener {
+        void onHistoryChanged(HistoryColumns columns);
+    }
+
+    private static final ColumnarHistory INSTANCE = new ColumnarHistory();
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private TaskStore store;
+    private volatile HistoryColumns current;
+    private long version;
+
+    ColumnarHistory() {
+    }
+
+    public static ColumnarHistory getInstance() {
+        return INSTANCE;
+    }
+
+    /** Set the store to load from, done by the provider. Drops the loaded history. */
+    public synchronized void attach(TaskStore store) {
+        this.store = store;
+        current = null;
+    }
+
+    /**
+     * @return the current version, loads it if necessary. Do not call on the UI thread
+     * before {@link #isLoaded()}.
+     * @throws IllegalStateException if no store is attached
+     */
+    public HistoryColumns current() {
+        HistoryColumns columns = current;
+        if (columns != null) {
+            return columns;
+        }
+        synchronized (this) {
+            if (current == null) {
+                load();
+            }
+            return current;
+        }
+    }
+
+    /** @return true if {@link #current()} returns without loading */
+    public boolean isLoaded() {
+        return current != null;
+    }
+
+    /** @return the current version without loading it, null if it is not loaded */
+    public HistoryColumns currentIfLoaded() {
+        return current;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public synchronized void onTaskInserted(long id, long started, String category, int duration) {
+        HistoryColumns columns = current;
+        if (columns == null) {
+            return;
+        }
+        int size = columns.size();
+        String[] categories = columns.categories();
+        int categoryId = indexOf(categories, category);
+        if (categoryId < 0) {
+            categoryId = categories.length;
+            categories = Arrays.copyOf(categories, categories.length + 1);
+            categories[categoryId] = category;
+        }
+
+        long[] ids = columns.ids();
+        long[] startedColumn = columns.started();
+        int[] durations = columns.durations();
+        int[] categoryIds = columns.categoryIds();
+        int position = columns.firstIndexAtOrAfter(started + 1);
+        if (position == size && size < ids.length) {
+            // behind all existing tasks, older versions don't see this slot
+        } else {
+            int capacity = Math.max(INITIAL_CAPACITY, size < ids.length ? ids.length : ids.length * 2);
+            ids = insertSlot(ids, size, position, capacity);
+            startedColumn = insertSlot(startedColumn, size, position, capacity);
+            durations = insertSlot(durations, size, position, capacity);
+            categoryIds = insertSlot(categoryIds, size, position, capacity);
+        }
+        ids[position] = id;
+        startedColumn[position] = started;
+        durations[position] = duration;
+        categoryIds[position] = categoryId;
+        publish(size + 1, ids, startedColumn, durations, categoryIds, categories);
+    }
+
+    @Override
+    public synchronized void onTaskClosed(long id, long started, String category, int previousDuration, int duration) {
+        HistoryColumns columns = current;
+        if (columns == null) {
+            return;
+        }
+        int index = columns.indexOf(id);
+        if (index < 0) {
+            current = null;
+            return;
+        }
+        int[] durations = columns.durations().clone();
+        durations[index] = duration;
+        publish(columns.size(), columns.ids(), columns.started(), durations, columns.categoryIds(), columns.categories());
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(long id, long started, String category, int duration) {
+        HistoryColumns columns = current;
+        if (columns == null) {
+            return;
+        }
+        int index = columns.indexOf(id);
+        if (index < 0) {
+            return;
+        }
+        int size = columns.size();
+        publish(size - 1,
+                removeSlot(columns.ids(), size, index),
+                removeSlot(columns.started(), size, index),
+                removeSlot(columns.durations(), size, index),
+                removeSlot(columns.categoryIds(), size, index),
+                columns.categories());
+    }
+
+    @Override
+    public synchronized void onTasksChanged() {
+        current = null;
+    }
+
+    private void load() {
+        if (store == null) {
+            throw new IllegalStateException("No task store attached");
+        }
+        final Loader loader = new Loader();
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, loader);
+        publish(loader.size, loader.ids, loader.started, loader.durations, loader.categoryIds,
+                loader.categories.toArray(new String[loader.categories.size()]));
+    }
+
+    private void publish(int size, long[] ids, long[] started, int[] durations, int[] categoryIds, String[] categories) {
+        HistoryColumns columns = new HistoryColumns(++version, size, ids, started, durations, categoryIds, categories);
+        current = columns;
+        for (Listener listener : listeners) {
+            listener.onHistoryChanged(columns);
+        }
+    }
+
+    private static int indexOf(String[] categories, String category) {
+        for (int i = 0; i < categories.length; i++) {
+            if (categories[i].equals(category)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static long[] insertSlot(long[] column, int size, int position, int capacity) {
+        long[] copy = new long[capacity];
+        System.arraycopy(column, 0, copy, 0, position);
+        System.arraycopy(column, position, copy, position + 1, size - position);
+        return copy;
+    }
+
+    private static int[] insertSlot(int[] column, int size, int position, int capacity) {
+        int[] copy = new int[capacity];
+        System.arraycopy(column, 0, copy, 0, position);
+        System.arraycopy(column, position, copy, position + 1, size - position);
+        return copy;
+    }
+
+    private static long[] removeSlot(long[] column, int size, int position) {
+        long[] copy = new long[column.length];
+        System.arraycopy(column, 0, copy, 0, position);
+        System.arraycopy(column, position + 1, copy, position, size - position - 1);
+        return copy;
+    }
+
+    private static int[] removeSlot(int[] column, int size, int position) {
+        int[] copy = new int[column.length];
+        System.arraycopy(column, 0, copy, 0, position);
+        System.arraycopy(column, position + 1, copy, position, size - position - 1);
+        return copy;
+    }
+
+    /** Collects the store content into columns. */
+    private static class Loader implements TaskVisitor {
+
+        long[] ids = new long[INITIAL_CAPACITY];
+        long[] started = new long[INITIAL_CAPACITY];
+        int[] durations = new int[INITIAL_CAPACITY];
+        int[] categoryIds = new int[INITIAL_CAPACITY];
+        List<String> categories = new ArrayList<String>();
+        Map<String, Integer> categoryIndex = new HashMap<String, Integer>();
+        int size;
+
+        @Override
+        public void visit(long id, long taskStarted, String category, int duration) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                started = Arrays.copyOf(started, capacity);
+                durations = Arrays.copyOf(durations, capacity);
+                categoryIds = Arrays.copyOf(categoryIds, capacity);
+            }
+            Integer categoryId = categoryIndex.get(category);
+            if (categoryId == null) {
+                categoryId = categories.size();
+                categories.add(category);
+                categoryIndex.put(category, categoryId);
+            }
+            ids[size] = id;
+            started[size] = taskStarted;
+            durations[size] = duration;
+            categoryIds[size] = categoryId;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package de.nenick.workinterruption.dataaccess.columnar;
+
+/**
+ * Immutable version of the task history as primitive columns, ordered by start time.
+ *
+ * <P>Versions share their arrays where possible. Newer versions may use array slots behind
+ * {@link #size()}, never the ones before it.</P>
+ */
+public final class HistoryColumns {
+
+    private final long version;
+    private final int size;
+    private final long[] ids;
+    private final long[] started;
+    private final int[] durations;
+    private final int[] categoryIds;
+    private final String[] categories;
+
+    HistoryColumns(long version, int size, long[] ids, long[] started, int[] durations,
+                   int[] categoryIds, String[] categories) {
+        this.version = version;
+        this.size = size;
+        this.ids = ids;
+        this.started = started;
+        this.durations = durations;
+        this.categoryIds = categoryIds;
+        this.categories = categories;
+    }
+
+    /** @return increases with every change, equal versions hold equal data */
+    public long version() {
+        return version;
+    }
+
+    /** @return number of tasks */
+    public int size() {
+        return size;
+    }
+
+    public long id(int index) {
+        return ids[index];
+    }
+
+    public long started(int index) {
+        return started[index];
+    }
+
+    /** @return duration in milliseconds or {@link de.nenick.workinterruption.dataaccess.store.TaskStore#OPEN} */
+    public int duration(int index) {
+        return durations[index];
+    }
+
+    public int categoryId(int index) {
+        return categoryIds[index];
+    }
+
+    public String category(int index) {
+        return categories[categoryIds[index]];
+    }
+
+    /** @return name of a category id */
+    public String categoryName(int categoryId) {
+        return categories[categoryId];
+    }
+
+    /** @return number of known category ids */
+    public int categoryCount() {
+        return categories.length;
+    }
+
+    /** @return index of the first task started at or after the given time, {@link #size()} if none */
+    public int firstIndexAtOrAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (started[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** @return index of the task or -1, searching from the newest task */
+    public int indexOf(long id) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    long[] ids() {
+        return ids;
+    }
+
+    long[] started() {
+        return started;
+    }
+
+    int[] durations() {
+        return durations;
+    }
+
+    int[] categoryIds() {
+        return categoryIds;
+    }
+
+    String[] categories() {
+        return categories;
+    }
+}
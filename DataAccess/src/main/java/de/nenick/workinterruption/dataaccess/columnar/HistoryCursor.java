@@ -0,0 +1,110 @@
+package de.nenick.workinterruption.dataaccess.columnar;
+
+import android.database.AbstractCursor;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/**
+ * Cursor over one {@link HistoryColumns} version, newest task first like the task list.
+ *
+ * <P>Values are read from the shared columns, nothing is copied. The columns are id, start
+ * time, category and duration, a running task has no duration.</P>
+ */
+public class HistoryCursor extends AbstractCursor {
+
+    private static final int ID = 0;
+    private static final int STARTED = 1;
+    private static final int CATEGORY = 2;
+    private static final int DURATION = 3;
+
+    private final HistoryColumns columns;
+    private final String[] columnNames;
+
+    /**
+     * @param columnNames names for the id, start time, category and duration column
+     */
+    public HistoryCursor(HistoryColumns columns, String[] columnNames) {
+        if (columnNames.length != 4) {
+            throw new IllegalArgumentException("Expected 4 column names, got " + columnNames.length);
+        }
+        this.columns = columns;
+        this.columnNames = columnNames;
+    }
+
+    /** @return the version this cursor reads */
+    public HistoryColumns columns() {
+        return columns;
+    }
+
+    @Override
+    public int getCount() {
+        return columns.size();
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public String getString(int column) {
+        if (column == CATEGORY) {
+            return columns.category(index());
+        }
+        return isNull(column) ? null : Long.toString(getLong(column));
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        switch (column) {
+            case ID:
+                return columns.id(index());
+            case STARTED:
+                return columns.started(index());
+            case DURATION:
+                int duration = columns.duration(index());
+                return duration == TaskStore.OPEN ? 0 : duration;
+            case CATEGORY:
+                return Long.parseLong(columns.category(index()));
+            default:
+                throw new IllegalArgumentException("Invalid column " + column);
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public int getType(int column) {
+        if (isNull(column)) {
+            return FIELD_TYPE_NULL;
+        }
+        return column == CATEGORY ? FIELD_TYPE_STRING : FIELD_TYPE_INTEGER;
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return column == DURATION && columns.duration(index()) == TaskStore.OPEN;
+    }
+
+    private int index() {
+        return columns.size() - 1 - getPosition();
+    }
+}
@@ -0,0 +1,38 @@
+package de.nenick.workinterruption.dataaccess.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/** Registered readers of the change log and what they have acknowledged. Since version 4. */
+public class ChangeConsumerTable {
+
+    /** Table name. */
+    public static final String TABLE_NAME = "change_consumer";
+
+    /**
+     * Column name of the consumer name.
+     * <P>Type: TEXT (any string)</P>
+     */
+    public static final String COL_NAME = "name";
+
+    /**
+     * Column name of the highest acknowledged sequence number.
+     * <P>Type: INTEGER</P>
+     */
+    public static final String COL_ACKED = "acked";
+
+    private static final String CREATE_STATEMENT = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_NAME + " ("
+            + COL_NAME + " TEXT PRIMARY KEY,"
+            + COL_ACKED + " INTEGER not null"
+            + ");";
+
+    public void onCreate(SQLiteDatabase database) {
+        database.execSQL(CREATE_STATEMENT);
+    }
+
+    public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
+        if (oldVersion < 4) {
+            onCreate(database);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package de.nenick.workinterruption.dataaccess.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the {@link ChangeLogTable} for consumers which patch their state instead of
+ * reloading it, and drops entries all registered consumers have acknowledged.
+ *
+ * <P>A consumer asking for changes older than the oldest kept entry first gets a row with
+ * {@link #OP_RESET}: it has to reload everything and can continue behind that row.</P>
+ */
+public class ChangeFeed {
+
+    /** Changes were dropped, the row only holds the sequence number to continue from. */
+    public static final int OP_RESET = 4;
+
+    /** Columns of a change, task columns hold the task values. */
+    public static final String[] COLUMNS = {
+            ChangeLogTable.COL_SEQ, ChangeLogTable.COL_OP, ChangeLogTable.COL_TASK_ID,
+            TaskTable.COL_STARTED, TaskTable.COL_CATEGORY, TaskTable.COL_DURATION
+    };
+
+    /** Changes read per query, each page is read by one statement. */
+    private static final int PAGE_ROWS = 256;
+
+    private static final String SINCE_SELECTION = ChangeLogTable.COL_SEQ + " > ?";
+
+    private static final String OLDEST_SEQ = "SELECT MIN(" + ChangeLogTable.COL_SEQ + ") FROM " + ChangeLogTable.TABLE_NAME;
+
+    private static final String LAST_SEQ = "SELECT seq FROM sqlite_sequence WHERE name = '" + ChangeLogTable.TABLE_NAME + "'";
+
+    private static final String COMPACT_SELECTION = ChangeLogTable.COL_SEQ + " <= (SELECT MIN("
+            + ChangeConsumerTable.COL_ACKED + ") FROM " + ChangeConsumerTable.TABLE_NAME + ")";
+
+    private final SQLiteHelper openHelper;
+
+    public ChangeFeed(SQLiteHelper openHelper) {
+        this.openHelper = openHelper;
+    }
+
+    /**
+     * Reads page by page without a transaction, so writers are not blocked. Compaction only drops
+     * the oldest changes, so a change which was dropped before it was read is covered by the
+     * reset which is returned then.
+     *
+     * @return changes behind the sequence number, oldest first
+     */
+    public Cursor changesSince(long since) {
+        SQLiteDatabase db = openHelper.getReadableDatabase();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        long last = since;
+        int read;
+        do {
+            read = 0;
+            Cursor page = db.query(ChangeLogTable.TABLE_NAME, COLUMNS, SINCE_SELECTION,
+                    new String[]{Long.toString(last)}, null, null, ChangeLogTable.COL_SEQ + " ASC",
+                    Integer.toString(PAGE_ROWS));
+            try {
+                while (page.moveToNext()) {
+                    last = page.getLong(0);
+                    rows.add(new Object[]{last, page.getInt(1), page.getLong(2),
+                            page.isNull(3) ? null : page.getLong(3), page.getString(4),
+                            page.isNull(5) ? null : page.getInt(5)});
+                    read++;
+                }
+            } finally {
+                page.close();
+            }
+        } while (read == PAGE_ROWS);
+
+        long dropped = droppedUpTo(db);
+        MatrixCursor changes = new MatrixCursor(COLUMNS, rows.size() + 1);
+        if (since < dropped) {
+            changes.addRow(new Object[]{dropped, OP_RESET, 0, null, null, null});
+        }
+        for (Object[] row : rows) {
+            // changes read before they were dropped are covered by the reset
+            if ((Long) row[0] > dropped) {
+                changes.addRow(row);
+            }
+        }
+        return changes;
+    }
+
+    /** Register the consumer if necessary and remember what it has read. */
+    public void acknowledge(String consumer, long seq) {
+        ContentValues values = new ContentValues();
+        values.put(ChangeConsumerTable.COL_NAME, consumer);
+        values.put(ChangeConsumerTable.COL_ACKED, seq);
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.insertWithOnConflict(ChangeConsumerTable.TABLE_NAME, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        compact();
+    }
+
+    /** @return true if the consumer was registered */
+    public boolean unregister(String consumer) {
+        int count = openHelper.getWritableDatabase().delete(ChangeConsumerTable.TABLE_NAME,
+                ChangeConsumerTable.COL_NAME + " = ?", new String[]{consumer});
+        compact();
+        return count > 0;
+    }
+
+    /** Drop the changes every consumer has read, or all without consumers. */
+    public void compact() {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        if (DatabaseUtils.queryNumEntries(db, ChangeConsumerTable.TABLE_NAME) == 0) {
+            db.delete(ChangeLogTable.TABLE_NAME, null, null);
+        } else {
+            db.delete(ChangeLogTable.TABLE_NAME, COMPACT_SELECTION, null);
+        }
+    }
+
+    /** @return the highest sequence number which is no longer kept */
+    private static long droppedUpTo(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery(OLDEST_SEQ, null);
+        try {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0) - 1;
+            }
+        } finally {
+            cursor.close();
+        }
+        cursor = db.rawQuery(LAST_SEQ, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
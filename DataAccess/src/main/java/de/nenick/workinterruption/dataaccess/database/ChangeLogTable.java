@@ -0,0 +1,84 @@
+package de.nenick.workinterruption.dataaccess.database;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Records every change of the task table with a growing sequence number, filled by triggers
+ * so no write can bypass it. Since version 4.
+ */
+public class ChangeLogTable {
+
+    /** Table name. */
+    public static final String TABLE_NAME = "change_log";
+
+    /**
+     * Column name of the sequence number, never reused.
+     * <P>Type: INTEGER (generated)</P>
+     */
+    public static final String COL_SEQ = "seq";
+
+    /**
+     * Column name of the kind of change, one of the OP constants.
+     * <P>Type: INTEGER</P>
+     */
+    public static final String COL_OP = "op";
+
+    /**
+     * Column name of the changed task id.
+     * <P>Type: INTEGER</P>
+     */
+    public static final String COL_TASK_ID = "task_id";
+
+    /** Task was inserted, the row holds its values. */
+    public static final int OP_INSERT = 1;
+
+    /** Task was updated, the row holds its new values. */
+    public static final int OP_UPDATE = 2;
+
+    /** Task was deleted, the row holds its last values. */
+    public static final int OP_DELETE = 3;
+
+    private static final String CREATE_STATEMENT = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_NAME + " ("
+            + COL_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COL_OP + " INTEGER not null,"
+            + COL_TASK_ID + " INTEGER not null,"
+            + TaskTable.COL_STARTED + " INTEGER,"
+            + TaskTable.COL_CATEGORY + " TEXT,"
+            + TaskTable.COL_DURATION + " INTEGER"
+            + ");";
+
+    /** Uses up a sequence number, so it counts as dropped. */
+    private static final String SKIP_FIRST_SEQ = "INSERT INTO " + TABLE_NAME
+            + " (" + COL_OP + ", " + COL_TASK_ID + ") VALUES (0, 0);";
+
+    public void onCreate(SQLiteDatabase database) {
+        database.execSQL(CREATE_STATEMENT);
+        database.execSQL(trigger("insert", "INSERT", OP_INSERT, "NEW"));
+        database.execSQL(trigger("update", "UPDATE", OP_UPDATE, "NEW"));
+        database.execSQL(trigger("delete", "DELETE", OP_DELETE, "OLD"));
+    }
+
+    public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
+        if (oldVersion < 4) {
+            onCreate(database);
+            // tasks written before have no changes, readers must start with a reset
+            if (DatabaseUtils.queryNumEntries(database, TaskTable.TABLE_NAME) > 0) {
+                database.execSQL(SKIP_FIRST_SEQ);
+                database.delete(TABLE_NAME, null, null);
+            }
+        }
+    }
+
+    private static String trigger(String name, String event, int op, String row) {
+        return "CREATE TRIGGER IF NOT EXISTS " + TaskTable.TABLE_NAME + "_" + name + "_log"
+                + " AFTER " + event + " ON " + TaskTable.TABLE_NAME + " BEGIN"
+                + " INSERT INTO " + TABLE_NAME + " ("
+                + COL_OP + ", " + COL_TASK_ID + ", " + TaskTable.COL_STARTED + ", "
+                + TaskTable.COL_CATEGORY + ", " + TaskTable.COL_DURATION + ") VALUES ("
+                + op + ", " + row + "." + TaskTable._ID + ", " + row + "." + TaskTable.COL_STARTED + ", "
+                + row + "." + TaskTable.COL_CATEGORY + ", " + row + "." + TaskTable.COL_DURATION + ");"
+                + " END;";
+    }
+}
@@ -0,0 +1,194 @@
+package de.nenick.workinterruption.dataaccess.database;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Backup and restore of the database while it is in use.
+ *
+ * <P>A backup copies the database file page by page to a temporary file inside a transaction,
+ * which keeps writers out only for that local copy. The copy is streamed afterwards, however slow
+ * the reader is. A restore validates the received file first and then
+ * replaces all tasks in one transaction, so readers see either the old or the restored tasks.</P>
+ */
+public class DatabaseBackup {
+
+    /** First bytes of every SQLite database file. */
+    private static final byte[] SQLITE_HEADER = "SQLite format 3\u0000".getBytes();
+
+    private static final String ATTACHED = "restored";
+
+    private static final String TASK_COLUMNS = TaskTable._ID + ", " + TaskTable.COL_STARTED + ", "
+            + TaskTable.COL_CATEGORY + ", " + TaskTable.COL_DURATION;
+
+    private final SQLiteHelper openHelper;
+
+    public DatabaseBackup(SQLiteHelper openHelper) {
+        this.openHelper = openHelper;
+    }
+
+    /**
+     * Write a consistent copy of the database to the stream.
+     *
+     * @param tempDir where the copy is kept while it is streamed
+     */
+    public void backup(OutputStream out, File tempDir) throws IOException {
+        File copy = File.createTempFile("backup", ".db", tempDir);
+        try {
+            copyDatabase(copy);
+            InputStream in = new FileInputStream(copy);
+            try {
+                copy(in, out);
+            } finally {
+                in.close();
+            }
+        } finally {
+            if (!copy.delete()) {
+                copy.deleteOnExit();
+            }
+        }
+    }
+
+    private void copyDatabase(File target) throws IOException {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            int pageSize = (int) DatabaseUtils.longForQuery(db, "PRAGMA page_size", null);
+            long pageCount = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+            byte[] page = new byte[pageSize];
+            InputStream in = new FileInputStream(db.getPath());
+            try {
+                OutputStream out = new FileOutputStream(target);
+                try {
+                    for (long i = 0; i < pageCount; i++) {
+                        readFully(in, page);
+                        out.write(page);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Replace all tasks with the ones from a backup.
+     *
+     * @param in the backup as written by {@link #backup(OutputStream)}
+     * @param tempDir where the received backup is kept while restoring
+     * @throws IOException if the backup is not readable or not a valid task database,
+     * the current tasks are kept then.
+     */
+    public void restore(InputStream in, File tempDir) throws IOException {
+        File received = File.createTempFile("restore", ".db", tempDir);
+        try {
+            receive(in, received);
+            validate(received);
+            replaceTasks(received);
+        } finally {
+            if (!received.delete()) {
+                received.deleteOnExit();
+            }
+        }
+    }
+
+    private static void receive(InputStream in, File target) throws IOException {
+        OutputStream out = new FileOutputStream(target);
+        try {
+            copy(in, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        out.flush();
+    }
+
+    private void validate(File received) throws IOException {
+        byte[] header = new byte[SQLITE_HEADER.length];
+        InputStream in = new FileInputStream(received);
+        try {
+            readFully(in, header);
+        } finally {
+            in.close();
+        }
+        if (!Arrays.equals(SQLITE_HEADER, header)) {
+            throw new IOException("Backup is not an SQLite database");
+        }
+
+        SQLiteDatabase db;
+        try {
+            db = SQLiteDatabase.openDatabase(received.getPath(), null, SQLiteDatabase.OPEN_READONLY);
+        } catch (SQLiteException e) {
+            throw new IOException("Backup can't be opened: " + e.getMessage());
+        }
+        try {
+            String integrity = DatabaseUtils.stringForQuery(db, "PRAGMA integrity_check", null);
+            if (!"ok".equals(integrity)) {
+                throw new IOException("Backup is damaged: " + integrity);
+            }
+            int version = db.getVersion();
+            if (version < 1 || version > SQLiteHelper.DATABASE_VERSION) {
+                throw new IOException("Backup has unsupported database version " + version);
+            }
+            // fails for databases without a compatible task table
+            db.rawQuery("SELECT " + TASK_COLUMNS + " FROM " + TaskTable.TABLE_NAME + " LIMIT 0", null).close();
+        } catch (SQLiteException e) {
+            throw new IOException("Backup has no task table: " + e.getMessage());
+        } finally {
+            db.close();
+        }
+    }
+
+    private void replaceTasks(File received) throws IOException {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        try {
+            db.execSQL("ATTACH DATABASE ? AS " + ATTACHED, new Object[]{received.getPath()});
+        } catch (SQLiteException e) {
+            throw new IOException("Backup can't be attached: " + e.getMessage());
+        }
+        try {
+            db.beginTransaction();
+            try {
+                db.delete(TaskTable.TABLE_NAME, null, null);
+                db.execSQL("INSERT INTO " + TaskTable.TABLE_NAME + " (" + TASK_COLUMNS + ")"
+                        + " SELECT " + TASK_COLUMNS + " FROM " + ATTACHED + "." + TaskTable.TABLE_NAME);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            db.execSQL("DETACH DATABASE " + ATTACHED);
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = in.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                throw new IOException("Unexpected end of database file");
+            }
+            offset += read;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package de.nenick.workinterruption.dataaccess.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/** Duration sketch per local day and category, see DurationQuantiles. Since version 5. */
+public class DurationSketchTable {
+
+    /** Table name. */
+    public static final String TABLE_NAME = "duration_sketch";
+
+    /**
+     * Column name of the day.
+     * <P>Type: INTEGER (local days since 1970-01-01, UTC days before version 8)</P>
+     */
+    public static final String COL_DAY = "day";
+
+    /**
+     * Column name of the task category.
+     * <P>Type: TEXT (any string)</P>
+     */
+    public static final String COL_CATEGORY = "category";
+
+    /**
+     * Column name of the encoded sketch.
+     * <P>Type: BLOB</P>
+     */
+    public static final String COL_SKETCH = "sketch";
+
+    private static final String CREATE_STATEMENT = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_NAME + " ("
+            + COL_DAY + " INTEGER not null,"
+            + COL_CATEGORY + " TEXT not null,"
+            + COL_SKETCH + " BLOB not null,"
+            + "PRIMARY KEY (" + COL_DAY + ", " + COL_CATEGORY + ")"
+            + ");";
+
+    public void onCreate(SQLiteDatabase database) {
+        database.execSQL(CREATE_STATEMENT);
+    }
+
+    public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
+        if (oldVersion < 5) {
+            onCreate(database);
+        } else if (oldVersion < 8) {
+            // the UTC days are counted again by local day on the next read
+            database.delete(TABLE_NAME, null, null);
+        }
+    }
+}
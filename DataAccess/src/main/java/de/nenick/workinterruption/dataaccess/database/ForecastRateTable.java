@@ -0,0 +1,67 @@
+package de.nenick.workinterruption.dataaccess.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/** Smoothed task start rates per category and hour of the week, see ForecastModel. Since version 6. */
+public class ForecastRateTable {
+
+    /** Table name. */
+    public static final String TABLE_NAME = "forecast_rate";
+
+    /**
+     * Column name of the task category.
+     * <P>Type: TEXT (any string)</P>
+     */
+    public static final String COL_CATEGORY = "category";
+
+    /**
+     * Column name of the hour of the week.
+     * <P>Type: INTEGER (0 is Monday 0:00 local time)</P>
+     */
+    public static final String COL_SLOT = "slot";
+
+    /**
+     * Column name of the smoothed starts per occurrence of the hour.
+     * <P>Type: REAL</P>
+     */
+    public static final String COL_RATE = "rate";
+
+    /**
+     * Column name of the week of the last occurrence with starts.
+     * <P>Type: INTEGER (weeks since 1969-12-29)</P>
+     */
+    public static final String COL_WEEK = "week";
+
+    /**
+     * Column name of the starts within that week.
+     * <P>Type: INTEGER</P>
+     */
+    public static final String COL_PENDING = "pending";
+
+    /**
+     * Column name of the week of the first start.
+     * <P>Type: INTEGER (weeks since 1969-12-29)</P>
+     */
+    public static final String COL_FIRST_WEEK = "first_week";
+
+    private static final String CREATE_STATEMENT = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_NAME + " ("
+            + COL_CATEGORY + " TEXT not null,"
+            + COL_SLOT + " INTEGER not null,"
+            + COL_RATE + " REAL not null,"
+            + COL_WEEK + " INTEGER not null,"
+            + COL_PENDING + " INTEGER not null,"
+            + COL_FIRST_WEEK + " INTEGER not null,"
+            + "PRIMARY KEY (" + COL_CATEGORY + ", " + COL_SLOT + ")"
+            + ");";
+
+    public void onCreate(SQLiteDatabase database) {
+        database.execSQL(CREATE_STATEMENT);
+    }
+
+    public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
+        if (oldVersion < 6) {
+            onCreate(database);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package de.nenick.workinterruption.dataaccess.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/** Hour of the week heatmap per local week and category, see HeatmapHistograms. Since version 7. */
+public class HeatmapTable {
+
+    /** Table name. */
+    public static final String TABLE_NAME = "heatmap";
+
+    /**
+     * Column name of the week.
+     * <P>Type: INTEGER (days since 1970-01-01 of its local Monday)</P>
+     */
+    public static final String COL_WEEK = "week";
+
+    /**
+     * Column name of the task category.
+     * <P>Type: TEXT (any string)</P>
+     */
+    public static final String COL_CATEGORY = "category";
+
+    /**
+     * Column name of the encoded cells.
+     * <P>Type: BLOB</P>
+     */
+    public static final String COL_CELLS = "cells";
+
+    private static final String CREATE_STATEMENT = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_NAME + " ("
+            + COL_WEEK + " INTEGER not null,"
+            + COL_CATEGORY + " TEXT not null,"
+            + COL_CELLS + " BLOB not null,"
+            + "PRIMARY KEY (" + COL_WEEK + ", " + COL_CATEGORY + ")"
+            + ");";
+
+    public void onCreate(SQLiteDatabase database) {
+        database.execSQL(CREATE_STATEMENT);
+    }
+
+    public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
+        if (oldVersion < 7) {
+            onCreate(database);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package de.nenick.workinterruption.dataaccess.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/** Remembers up to which log offset events were folded into the tables. Since version 3. */
+public class ProjectionTable {
+
+    /** Table name. */
+    public static final String TABLE_NAME = "projection";
+
+    /**
+     * Column name of the projection, one row per projected log.
+     * <P>Type: TEXT (any string)</P>
+     */
+    public static final String COL_NAME = "name";
+
+    /**
+     * Column name of the log offset behind the last projected event.
+     * <P>Type: INTEGER (bytes)</P>
+     */
+    public static final String COL_OFFSET = "offset";
+
+    private static final String CREATE_STATEMENT = "CREATE TABLE IF NOT EXISTS "
+            + TABLE_NAME + " ("
+            + COL_NAME + " TEXT PRIMARY KEY,"
+            + COL_OFFSET + " INTEGER not null"
+            + ");";
+
+    public void onCreate(SQLiteDatabase database) {
+        database.execSQL(CREATE_STATEMENT);
+    }
+
+    public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
+        if (oldVersion < 3) {
+            onCreate(database);
+        }
+    }
+}
@@ -12,9 +12,15 @@ public class SQLiteHelper extends SQLiteOpenHelper {
 
     // TODO version should go to a config file and be increased for releases with database changes
     // for test runs ignore this property, database is each time recreated
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 8;
 
     private TaskTable taskTable = new TaskTable();
+    private ProjectionTable projectionTable = new ProjectionTable();
+    private ChangeLogTable changeLogTable = new ChangeLogTable();
+    private ChangeConsumerTable changeConsumerTable = new ChangeConsumerTable();
+    private DurationSketchTable durationSketchTable = new DurationSketchTable();
+    private ForecastRateTable forecastRateTable = new ForecastRateTable();
+    private HeatmapTable heatmapTable = new HeatmapTable();
 
     public SQLiteHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
@@ -23,10 +29,22 @@ public class SQLiteHelper extends SQLiteOpenHelper {
     @Override
     public void onCreate(SQLiteDatabase database) {
         taskTable.onCreate(database);
+        projectionTable.onCreate(database);
+        changeLogTable.onCreate(database);
+        changeConsumerTable.onCreate(database);
+        durationSketchTable.onCreate(database);
+        forecastRateTable.onCreate(database);
+        heatmapTable.onCreate(database);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase database, int oldVersion, int newVersion) {
         taskTable.onUpgrade(database, oldVersion, newVersion);
+        projectionTable.onUpgrade(database, oldVersion, newVersion);
+        changeLogTable.onUpgrade(database, oldVersion, newVersion);
+        changeConsumerTable.onUpgrade(database, oldVersion, newVersion);
+        durationSketchTable.onUpgrade(database, oldVersion, newVersion);
+        forecastRateTable.onUpgrade(database, oldVersion, newVersion);
+        heatmapTable.onUpgrade(database, oldVersion, newVersion);
     }
 }
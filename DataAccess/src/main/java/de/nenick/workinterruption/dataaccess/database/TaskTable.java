@@ -36,17 +36,24 @@ public class TaskTable implements BaseColumns {
             + COL_DURATION + " INTEGER"
             + ");";
 
+    /** Range scans by start time, since database version 2. */
+    private static final String CREATE_STARTED_INDEX = "CREATE INDEX IF NOT EXISTS "
+            + TABLE_NAME + "_" + COL_STARTED + "_idx ON "
+            + TABLE_NAME + " (" + COL_STARTED + ");";
+
     public void onCreate(SQLiteDatabase database) {
         database.execSQL(CREATE_STATEMENT);
+        database.execSQL(CREATE_STARTED_INDEX);
     }
 
     public void onUpgrade(SQLiteDatabase database, int oldVersion,
                           int newVersion) {
 
         Log.w(TaskTable.class.getName(), "Upgrading database from version "
-                + oldVersion + " to " + newVersion + ", which will destroy all old data");
+                + oldVersion + " to " + newVersion);
 
-        database.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-        onCreate(database);
+        if (oldVersion < 2) {
+            database.execSQL(CREATE_STARTED_INDEX);
+        }
     }
 }
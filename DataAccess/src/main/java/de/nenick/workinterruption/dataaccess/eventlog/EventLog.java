@@ -0,0 +1,335 @@
+package de.nenick.workinterruption.dataaccess.eventlog;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of task events, split into segment files.
+ *
+ * <P>Each record is {@code [int length][body][int crc32(body)]}, the body holds
+ * {@code [byte type][long id][long time][int duration][UTF category]}. Offsets are global over
+ * all segments; a segment file is named after the offset of its first record.</P>
+ *
+ * <P>Opening the log drops a torn record at the end of the last segment, left by a crash
+ * during an append.</P>
+ */
+public class EventLog {
+
+    /** A task started. Time is the start time, duration may already be known. */
+    public static final byte STARTED = 1;
+
+    /** A task got its duration. */
+    public static final byte STOPPED = 2;
+
+    /** A task was removed. */
+    public static final byte DELETED = 3;
+
+    /** Default size after which a new segment is started. */
+    public static final long DEFAULT_SEGMENT_BYTES = 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /** Length prefix and checksum around each body. */
+    private static final int FRAME_BYTES = 8;
+
+    /** Callback for {@link #read}. */
+    public interface EventHandler {
+
+        /**
+         * @param endOffset offset directly behind this event, where reading would continue
+         */
+        void onEvent(long endOffset, byte type, long id, long time, int duration, String category);
+    }
+
+    private final File directory;
+    private final long segmentBytes;
+    private final boolean syncEachAppend;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(64);
+    private final DataOutputStream bodyOut = new DataOutputStream(body);
+    private final CRC32 crc = new CRC32();
+    private byte[] frame = new byte[128];
+
+    private FileOutputStream active;
+    private long activeBase;
+    private long endOffset;
+
+    /**
+     * @param directory where the segments are kept, created if missing
+     * @param segmentBytes size after which a new segment is started
+     * @param syncEachAppend force each event to the storage device before {@link #append} returns
+     */
+    public EventLog(File directory, long segmentBytes, boolean syncEachAppend) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.syncEachAppend = syncEachAppend;
+        open();
+    }
+
+    private void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create event log directory " + directory);
+        }
+        long[] bases = segmentBases();
+        if (bases.length == 0) {
+            activeBase = 0;
+            endOffset = 0;
+        } else {
+            activeBase = bases[bases.length - 1];
+            File last = segmentFile(activeBase);
+            long valid = validLength(last);
+            if (valid < last.length()) {
+                RandomAccessFile file = new RandomAccessFile(last, "rw");
+                try {
+                    file.setLength(valid);
+                } finally {
+                    file.close();
+                }
+            }
+            endOffset = activeBase + valid;
+        }
+        active = new FileOutputStream(segmentFile(activeBase), true);
+    }
+
+    /**
+     * Append one event.
+     *
+     * @return offset directly behind the new event
+     */
+    public long append(byte type, long id, long time, int duration, String category) throws IOException {
+        return append(type, id, time, duration, category, syncEachAppend);
+    }
+
+    /**
+     * Append one event, for appending several events followed by one {@link #sync()}.
+     *
+     * @param sync force the event to the storage device before returning
+     * @return offset directly behind the new event
+     * @throws IOException if the event could not be written, the log is cut back to its previous
+     * end then. If cutting fails too, the log must not be written anymore.
+     */
+    public synchronized long append(byte type, long id, long time, int duration, String category, boolean sync)
+            throws IOException {
+        body.reset();
+        bodyOut.writeByte(type);
+        bodyOut.writeLong(id);
+        bodyOut.writeLong(time);
+        bodyOut.writeInt(duration);
+        bodyOut.writeUTF(category == null ? "" : category);
+
+        int length = body.size();
+        if (frame.length < length + FRAME_BYTES) {
+            frame = new byte[length + FRAME_BYTES];
+        }
+        byte[] bytes = body.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, length);
+        putInt(frame, 0, length);
+        System.arraycopy(bytes, 0, frame, 4, length);
+        putInt(frame, 4 + length, (int) crc.getValue());
+
+        if (endOffset - activeBase >= segmentBytes) {
+            rotate();
+        }
+        try {
+            write(active, frame, length + FRAME_BYTES);
+            if (sync) {
+                active.getFD().sync();
+            }
+        } catch (IOException e) {
+            // a partly written event would hide all later ones from readers
+            active.getChannel().truncate(endOffset - activeBase);
+            throw e;
+        }
+        endOffset += length + FRAME_BYTES;
+        return endOffset;
+    }
+
+    /** Write one framed event to the active segment, a seam for failing writes in tests. */
+    void write(FileOutputStream segment, byte[] frame, int length) throws IOException {
+        segment.write(frame, 0, length);
+    }
+
+    /** Force all appended events to the storage device. */
+    public synchronized void sync() throws IOException {
+        active.getFD().sync();
+    }
+
+    /** @return offset of the oldest event still kept, the end offset if there is none */
+    public synchronized long startOffset() {
+        long[] bases = segmentBases();
+        return bases.length == 0 ? endOffset : bases[0];
+    }
+
+    /** @return offset behind the last appended event */
+    public synchronized long endOffset() {
+        return endOffset;
+    }
+
+    /**
+     * Read all events from the given offset up to the current end of the log.
+     *
+     * @return offset behind the last event passed to the handler
+     */
+    public long read(long from, EventHandler handler) throws IOException {
+        long limit;
+        long[] bases;
+        synchronized (this) {
+            limit = endOffset;
+            bases = segmentBases();
+        }
+
+        long offset = from;
+        for (int i = 0; i < bases.length && offset < limit; i++) {
+            long segmentEnd = i + 1 < bases.length ? bases[i + 1] : limit;
+            if (segmentEnd <= offset) {
+                continue;
+            }
+            offset = Math.max(offset, bases[i]);
+            offset = readSegment(bases[i], offset, Math.min(segmentEnd, limit), handler);
+        }
+        return offset;
+    }
+
+    /** Remove all segments which only hold events before the given offset. */
+    public synchronized void deleteSegmentsBefore(long offset) {
+        long[] bases = segmentBases();
+        for (int i = 0; i + 1 < bases.length; i++) {
+            if (bases[i + 1] <= offset && bases[i] != activeBase) {
+                segmentFile(bases[i]).delete();
+            }
+        }
+    }
+
+    /** @return number of segment files */
+    public synchronized int segmentCount() {
+        return segmentBases().length;
+    }
+
+    public synchronized void close() throws IOException {
+        active.close();
+    }
+
+    private long readSegment(long base, long from, long to, EventHandler handler) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile(base))));
+        CRC32 check = new CRC32();
+        try {
+            skipFully(in, from - base);
+            long offset = from;
+            byte[] bytes = new byte[128];
+            while (offset < to) {
+                int length = in.readInt();
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                in.readFully(bytes, 0, length);
+                check.reset();
+                check.update(bytes, 0, length);
+                if ((int) check.getValue() != in.readInt()) {
+                    throw new IOException("Corrupt event at offset " + offset);
+                }
+                offset += length + FRAME_BYTES;
+
+                DataInputStream event = new DataInputStream(new ByteArrayInputStream(bytes, 0, length));
+                byte type = event.readByte();
+                long id = event.readLong();
+                long time = event.readLong();
+                int duration = event.readInt();
+                String category = event.readUTF();
+                handler.onEvent(offset, type, id, time, duration, category);
+            }
+            return offset;
+        } finally {
+            in.close();
+        }
+    }
+
+    private void rotate() throws IOException {
+        active.close();
+        activeBase = endOffset;
+        active = new FileOutputStream(segmentFile(activeBase), true);
+    }
+
+    /** @return length of the leading part of the segment with complete and intact records */
+    private long validLength(File segment) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment)));
+        CRC32 check = new CRC32();
+        long valid = 0;
+        byte[] bytes = new byte[128];
+        try {
+            while (true) {
+                int length = in.readInt();
+                if (length < 0 || valid + length + FRAME_BYTES > segment.length()) {
+                    break;
+                }
+                if (bytes.length < length) {
+                    bytes = new byte[length];
+                }
+                in.readFully(bytes, 0, length);
+                check.reset();
+                check.update(bytes, 0, length);
+                if ((int) check.getValue() != in.readInt()) {
+                    break;
+                }
+                valid += length + FRAME_BYTES;
+            }
+        } catch (EOFException e) {
+            // torn tail, everything up to valid is fine
+        } finally {
+            in.close();
+        }
+        return valid;
+    }
+
+    private long[] segmentBases() {
+        String[] names = directory.list();
+        List<Long> bases = new ArrayList<Long>();
+        if (names != null) {
+            for (String name : names) {
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+        long[] result = new long[bases.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bases.get(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private File segmentFile(long base) {
+        return new File(directory, String.format("%020d", base) + SEGMENT_SUFFIX);
+    }
+
+    private static void skipFully(DataInputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static void putInt(byte[] target, int position, int value) {
+        target[position] = (byte) (value >>> 24);
+        target[position + 1] = (byte) (value >>> 16);
+        target[position + 2] = (byte) (value >>> 8);
+        target[position + 3] = (byte) value;
+    }
+}
@@ -0,0 +1,222 @@
+package de.nenick.workinterruption.dataaccess.eventlog;
+
+import android.database.DatabaseUtils;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.database.SQLiteHelper;
+import de.nenick.workinterruption.dataaccess.database.TaskTable;
+import de.nenick.workinterruption.dataaccess.store.SQLiteTaskStore;
+import de.nenick.workinterruption.dataaccess.store.SQLiteBackedStore;
+import de.nenick.workinterruption.dataaccess.store.TaskBatch;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Writes go to an {@link EventLog} and return after the append, an {@link EventProjector}
+ * folds them into the task table in the background. Reads project pending events first,
+ * so they always see every write.
+ *
+ * <P>Running tasks are kept in memory, so closing or deleting them needs no read. Only
+ * writes to closed tasks read the task table to find them.</P>
+ */
+public class EventLogTaskStore implements SQLiteBackedStore {
+
+    private static final String MAX_ID = "SELECT MAX(" + TaskTable._ID + ") FROM " + TaskTable.TABLE_NAME;
+
+    private static final TaskVisitor IGNORE = new TaskVisitor() {
+        @Override
+        public void visit(long id, long started, String category, int duration) {
+        }
+    };
+
+    private final SQLiteTaskStore projected;
+    private final EventLog log;
+    private final EventProjector projector;
+
+    /** Running tasks by id. */
+    private final Map<Long, RunningTask> open = new HashMap<Long, RunningTask>();
+
+    private long nextId;
+
+    /**
+     * Opens the log and replays everything which was not projected before.
+     *
+     * @param projected task table the events are folded into
+     * @param directory where the log segments are kept
+     */
+    public EventLogTaskStore(SQLiteTaskStore projected, File directory) throws IOException {
+        this.projected = projected;
+        this.log = new EventLog(directory, EventLog.DEFAULT_SEGMENT_BYTES, true);
+        this.projector = new EventProjector(log, projected.getOpenHelper(), EventProjector.DEFAULT_BATCH_SIZE);
+
+        projector.recover();
+        nextId = DatabaseUtils.longForQuery(projected.getOpenHelper().getReadableDatabase(), MAX_ID, null) + 1;
+        projected.openTasks(new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                open.put(id, new RunningTask(started, category));
+            }
+        });
+        projector.start();
+    }
+
+    @Override
+    public synchronized long insert(long id, long started, String category, int duration) {
+        if (id == NO_ID) {
+            id = nextId;
+        } else if (exists(id)) {
+            return -1;
+        }
+        if (!append(EventLog.STARTED, id, started, duration, category)) {
+            return -1;
+        }
+        nextId = Math.max(nextId, id + 1);
+        if (duration == OPEN) {
+            open.put(id, new RunningTask(started, category));
+        }
+        return id;
+    }
+
+    /** Appends all tasks and forces them to the storage device once. */
+    @Override
+    public synchronized int insertAll(TaskBatch batch) {
+        int inserted = 0;
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                long id = batch.id(i);
+                if (id == NO_ID) {
+                    id = nextId;
+                } else if (exists(id)) {
+                    continue;
+                }
+                log.append(EventLog.STARTED, id, batch.started(i), batch.duration(i), batch.category(i), false);
+                nextId = Math.max(nextId, id + 1);
+                if (batch.duration(i) == OPEN) {
+                    open.put(id, new RunningTask(batch.started(i), batch.category(i)));
+                }
+                inserted++;
+            }
+            log.sync();
+        } catch (IOException e) {
+            Log.w(EventLogTaskStore.class.getName(), "Appending task events failed", e);
+        }
+        projector.signal();
+        return inserted;
+    }
+
+    @Override
+    public synchronized boolean close(long id, int duration, TaskVisitor previous) {
+        if (!find(id, previous)) {
+            return false;
+        }
+        if (!append(EventLog.STOPPED, id, 0, duration, null)) {
+            return false;
+        }
+        open.remove(id);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean delete(long id, TaskVisitor previous) {
+        if (!find(id, previous)) {
+            return false;
+        }
+        if (!append(EventLog.DELETED, id, 0, OPEN, null)) {
+            return false;
+        }
+        open.remove(id);
+        return true;
+    }
+
+    @Override
+    public boolean get(long id, TaskVisitor visitor) {
+        projectPending();
+        return projected.get(id, visitor);
+    }
+
+    @Override
+    public void scan(long from, long to, TaskVisitor visitor) {
+        projectPending();
+        projected.scan(from, to, visitor);
+    }
+
+    @Override
+    public void openTasks(TaskVisitor visitor) {
+        projectPending();
+        projected.openTasks(visitor);
+    }
+
+    @Override
+    public Map<String, Long> durationByCategory(long from, long to) {
+        projectPending();
+        return projected.durationByCategory(from, to);
+    }
+
+    @Override
+    public SQLiteHelper getOpenHelper() {
+        projectPending();
+        return projected.getOpenHelper();
+    }
+
+    @Override
+    public void shutdown() {
+        try {
+            projector.stop();
+            log.close();
+        } catch (IOException e) {
+            Log.w(EventLogTaskStore.class.getName(), "Closing the task event log failed", e);
+        }
+        projected.shutdown();
+    }
+
+    private boolean exists(long id) {
+        return find(id, null);
+    }
+
+    /** @return true if the task exists, reads the task table only if it isn't running */
+    private boolean find(long id, TaskVisitor visitor) {
+        RunningTask running = open.get(id);
+        if (running != null) {
+            if (visitor != null) {
+                visitor.visit(id, running.started, running.category, OPEN);
+            }
+            return true;
+        }
+        projectPending();
+        return projected.get(id, visitor == null ? IGNORE : visitor);
+    }
+
+    private boolean append(byte type, long id, long time, int duration, String category) {
+        try {
+            log.append(type, id, time, duration, category);
+            projector.signal();
+            return true;
+        } catch (IOException e) {
+            Log.w(EventLogTaskStore.class.getName(), "Appending task event failed", e);
+            return false;
+        }
+    }
+
+    private void projectPending() {
+        try {
+            projector.projectPending();
+        } catch (IOException e) {
+            throw new IllegalStateException("Projecting task events failed", e);
+        }
+    }
+
+    /** What closing or deleting a running task tells about it. */
+    private static class RunningTask {
+        final long started;
+        final String category;
+
+        RunningTask(long started, String category) {
+            this.started = started;
+            this.category = category;
+        }
+    }
+}
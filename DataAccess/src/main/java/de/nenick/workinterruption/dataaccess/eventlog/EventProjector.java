@@ -0,0 +1,247 @@
+package de.nenick.workinterruption.dataaccess.eventlog;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.io.IOException;
+
+import de.nenick.workinterruption.dataaccess.database.ProjectionTable;
+import de.nenick.workinterruption.dataaccess.database.SQLiteHelper;
+import de.nenick.workinterruption.dataaccess.database.TaskTable;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/**
+ * Folds events of an {@link EventLog} into the task table.
+ *
+ * <P>Events are applied in batches. Each batch is one transaction which also stores the log
+ * offset behind its last event, so after a crash {@link #recover()} continues exactly there.</P>
+ *
+ * <P>A background thread projects shortly after {@link #signal()}; {@link #projectPending()}
+ * does the same on the calling thread when readers need the latest state.</P>
+ */
+public class EventProjector {
+
+    /** Batch size used if nothing else is given. */
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /** Wait a moment after a signal, so following events share the transaction. */
+    private static final long LINGER_MILLIS = 200;
+
+    private static final String INSERT_TASK = "INSERT OR REPLACE INTO " + TaskTable.TABLE_NAME + " ("
+            + TaskTable._ID + ", " + TaskTable.COL_STARTED + ", "
+            + TaskTable.COL_CATEGORY + ", " + TaskTable.COL_DURATION + ") VALUES (?, ?, ?, ?)";
+
+    private static final String CLOSE_TASK = "UPDATE " + TaskTable.TABLE_NAME
+            + " SET " + TaskTable.COL_DURATION + " = ? WHERE " + TaskTable._ID + " = ?";
+
+    private static final String DELETE_TASK = "DELETE FROM " + TaskTable.TABLE_NAME
+            + " WHERE " + TaskTable._ID + " = ?";
+
+    private static final String STORE_OFFSET = "INSERT OR REPLACE INTO " + ProjectionTable.TABLE_NAME
+            + " (" + ProjectionTable.COL_NAME + ", " + ProjectionTable.COL_OFFSET + ") VALUES (?, ?)";
+
+    /** The task table is the only projection of the log. */
+    private static final String PROJECTION_NAME = TaskTable.TABLE_NAME;
+
+    private final EventLog log;
+    private final SQLiteHelper openHelper;
+
+    private final byte[] types;
+    private final long[] ids;
+    private final long[] times;
+    private final int[] durations;
+    private final String[] categories;
+    private int batched;
+    private long batchEndOffset;
+
+    private long projectedOffset;
+
+    private final Object signal = new Object();
+    private boolean signaled;
+    private volatile boolean running;
+    private Thread worker;
+
+    private final EventLog.EventHandler collector = new EventLog.EventHandler() {
+        @Override
+        public void onEvent(long endOffset, byte type, long id, long time, int duration, String category) {
+            types[batched] = type;
+            ids[batched] = id;
+            times[batched] = time;
+            durations[batched] = duration;
+            categories[batched] = category;
+            batched++;
+            batchEndOffset = endOffset;
+            if (batched == types.length) {
+                applyBatch();
+            }
+        }
+    };
+
+    public EventProjector(EventLog log, SQLiteHelper openHelper, int batchSize) {
+        this.log = log;
+        this.openHelper = openHelper;
+        types = new byte[batchSize];
+        ids = new long[batchSize];
+        times = new long[batchSize];
+        durations = new int[batchSize];
+        categories = new String[batchSize];
+    }
+
+    /**
+     * Continue from the last stored offset and project everything the log holds beyond it.
+     * A log which ends before the stored offset was lost or replaced while the database was
+     * kept, it is projected from its start so its events don't wait behind the old offset.
+     */
+    public synchronized void recover() throws IOException {
+        projectedOffset = readOffset();
+        if (projectedOffset > log.endOffset()) {
+            Log.w(EventProjector.class.getName(), "Task event log ends at " + log.endOffset()
+                    + " before the projected offset " + projectedOffset + ", projecting it from its start");
+            projectedOffset = log.startOffset();
+            storeOffset(projectedOffset);
+        }
+        projectPending();
+    }
+
+    /**
+     * Project all events appended so far.
+     *
+     * @return log offset up to which the task table is complete
+     */
+    public synchronized long projectPending() throws IOException {
+        if (projectedOffset < log.endOffset()) {
+            log.read(projectedOffset, collector);
+            applyBatch();
+        }
+        return projectedOffset;
+    }
+
+    /** Start projecting in the background. */
+    public synchronized void start() {
+        running = true;
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                projectInBackground();
+            }
+        }, "EventProjector");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /** Tell the background thread that new events were appended. */
+    public void signal() {
+        synchronized (signal) {
+            signaled = true;
+            signal.notifyAll();
+        }
+    }
+
+    /** Stop the background thread and project what is left. */
+    public void stop() throws IOException {
+        running = false;
+        signal();
+        if (worker != null) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        projectPending();
+    }
+
+    private void projectInBackground() {
+        while (running) {
+            synchronized (signal) {
+                while (!signaled && running) {
+                    try {
+                        signal.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                signaled = false;
+            }
+            try {
+                Thread.sleep(LINGER_MILLIS);
+                long offset = projectPending();
+                log.deleteSegmentsBefore(offset);
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                Log.w(EventProjector.class.getName(), "Projecting task events failed", e);
+            }
+        }
+    }
+
+    private void applyBatch() {
+        if (batched == 0) {
+            return;
+        }
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement insert = db.compileStatement(INSERT_TASK);
+            SQLiteStatement close = db.compileStatement(CLOSE_TASK);
+            SQLiteStatement delete = db.compileStatement(DELETE_TASK);
+            for (int i = 0; i < batched; i++) {
+                switch (types[i]) {
+                    case EventLog.STARTED:
+                        insert.bindLong(1, ids[i]);
+                        insert.bindLong(2, times[i]);
+                        insert.bindString(3, categories[i]);
+                        if (durations[i] == TaskStore.OPEN) {
+                            insert.bindNull(4);
+                        } else {
+                            insert.bindLong(4, durations[i]);
+                        }
+                        insert.executeInsert();
+                        break;
+                    case EventLog.STOPPED:
+                        close.bindLong(1, durations[i]);
+                        close.bindLong(2, ids[i]);
+                        close.executeUpdateDelete();
+                        break;
+                    case EventLog.DELETED:
+                        delete.bindLong(1, ids[i]);
+                        delete.executeUpdateDelete();
+                        break;
+                    default:
+                        Log.w(EventProjector.class.getName(), "Skipping unknown task event type " + types[i]);
+                }
+                categories[i] = null;
+            }
+            storeOffset(db, batchEndOffset);
+            db.setTransactionSuccessful();
+            projectedOffset = batchEndOffset;
+        } finally {
+            db.endTransaction();
+            batched = 0;
+        }
+    }
+
+    private void storeOffset(long offset) {
+        storeOffset(openHelper.getWritableDatabase(), offset);
+    }
+
+    private static void storeOffset(SQLiteDatabase db, long offset) {
+        SQLiteStatement statement = db.compileStatement(STORE_OFFSET);
+        statement.bindString(1, PROJECTION_NAME);
+        statement.bindLong(2, offset);
+        statement.execute();
+    }
+
+    private long readOffset() {
+        Cursor cursor = openHelper.getReadableDatabase().query(ProjectionTable.TABLE_NAME,
+                new String[]{ProjectionTable.COL_OFFSET}, ProjectionTable.COL_NAME + " = ?",
+                new String[]{PROJECTION_NAME}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+}
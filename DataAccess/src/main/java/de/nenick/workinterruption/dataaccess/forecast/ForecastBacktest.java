@@ -0,0 +1,177 @@
+package de.nenick.workinterruption.dataaccess.forecast;
+
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.transfer.TaskStreamReader;
+
+/**
+ * Replays tasks ordered by start through a {@link ForecastModel} and scores its forecasts.
+ *
+ * <P>Before the tasks of an hour are recorded, the model forecasts for each category it knows
+ * whether that hour has a start. The forecasts are scored with the Brier score and the log loss
+ * against the climatology of the category, the share of its hours with a start so far.
+ * Skill above 0 means the hours of the week tell more than that share.</P>
+ */
+public class ForecastBacktest implements TaskVisitor {
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+    // probabilities are kept off 0 and 1 so a wrong sure forecast doesn't make the log loss infinite
+    private static final double EPSILON = 1e-6;
+
+    /** Scores of the forecasts of one category. */
+    public static class Score {
+        public long forecasts;
+        public double brier;
+        public double logLoss;
+        public double baselineBrier;
+        public double baselineLogLoss;
+
+        /** @return 1 for perfect forecasts, 0 if no better than the climatology */
+        public double brierSkill() {
+            return baselineBrier == 0 ? 0 : 1 - brier / baselineBrier;
+        }
+
+        void add(double probability, double baseline, boolean started) {
+            forecasts++;
+            brier += square(probability - (started ? 1 : 0));
+            baselineBrier += square(baseline - (started ? 1 : 0));
+            logLoss -= Math.log(started ? probability : 1 - probability);
+            baselineLogLoss -= Math.log(started ? baseline : 1 - baseline);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("forecasts=%d brier=%.4f (climatology %.4f) logloss=%.4f (climatology %.4f) skill=%.3f",
+                    forecasts, brier / forecasts, baselineBrier / forecasts, logLoss / forecasts,
+                    baselineLogLoss / forecasts, brierSkill());
+        }
+    }
+
+    private final ForecastModel model;
+    private final String onlyCategory;
+    private final Map<String, Score> scores = new TreeMap<String, Score>();
+    // hours and hours with a start per category since its first start
+    private final Map<String, long[]> climatology = new TreeMap<String, long[]>();
+
+    private long hour = Long.MIN_VALUE;
+    private long previousStarted = Long.MIN_VALUE;
+    private final List<Long> hourStarts = new ArrayList<Long>();
+    private final List<String> hourCategories = new ArrayList<String>();
+
+    /**
+     * @param onlyCategory score only this category, null for all
+     */
+    public ForecastBacktest(TimeZone zone, double alpha, String onlyCategory) {
+        this.model = new ForecastModel(zone, alpha);
+        this.onlyCategory = onlyCategory;
+    }
+
+    /** @throws IllegalArgumentException if the task starts before the previous one */
+    @Override
+    public void visit(long id, long started, String category, int duration) {
+        if (started < previousStarted) {
+            throw new IllegalArgumentException("Task " + id + " is out of start order");
+        }
+        previousStarted = started;
+        long taskHour = floorDiv(started, HOUR_MILLIS);
+        if (hour == Long.MIN_VALUE) {
+            hour = taskHour;
+        }
+        while (hour < taskHour) {
+            endHour();
+        }
+        hourStarts.add(started);
+        hourCategories.add(category);
+    }
+
+    /** End the replay. */
+    public Map<String, Score> finish() {
+        if (hour != Long.MIN_VALUE) {
+            endHour();
+        }
+        return scores;
+    }
+
+    /** Score the forecasts of the current hour, then record its starts. */
+    private void endHour() {
+        Set<String> started = new HashSet<String>(hourCategories);
+        for (Map.Entry<String, long[]> entry : climatology.entrySet()) {
+            String category = entry.getKey();
+            long[] hours = entry.getValue();
+            boolean hasStart = started.contains(category);
+            if (onlyCategory == null || onlyCategory.equals(category)) {
+                Score score = scores.get(category);
+                if (score == null) {
+                    score = new Score();
+                    scores.put(category, score);
+                }
+                double probability = ForecastModel.probability(model.expectedStarts(category, hour * HOUR_MILLIS));
+                score.add(clamp(probability), clamp((double) hours[1] / hours[0]), hasStart);
+            }
+            hours[0]++;
+            if (hasStart) {
+                hours[1]++;
+            }
+        }
+        for (int i = 0; i < hourStarts.size(); i++) {
+            String category = hourCategories.get(i);
+            model.record(hourStarts.get(i), category);
+            if (!climatology.containsKey(category)) {
+                // the first hour counts, it is the hour of the first start
+                climatology.put(category, new long[]{1, 1});
+            }
+        }
+        hourStarts.clear();
+        hourCategories.clear();
+        hour++;
+    }
+
+    private static double clamp(double probability) {
+        return Math.min(1 - EPSILON, Math.max(EPSILON, probability));
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long result = value / divisor;
+        return value % divisor < 0 ? result - 1 : result;
+    }
+
+    /**
+     * Arguments: task export (CSV or binary, optionally gzip compressed), optionally the only
+     * category to score and the smoothing weight (default {@link ForecastModel#DEFAULT_ALPHA}).
+     * Hours are local hours of the default time zone.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || args.length > 3) {
+            System.err.println("usage: ForecastBacktest <task export> [category] [alpha]");
+            System.exit(2);
+        }
+        String category = args.length > 1 ? args[1] : null;
+        double alpha = args.length > 2 ? Double.parseDouble(args[2]) : ForecastModel.DEFAULT_ALPHA;
+        ForecastBacktest backtest = new ForecastBacktest(TimeZone.getDefault(), alpha, category);
+        FileInputStream in = new FileInputStream(args[0]);
+        try {
+            TaskStreamReader reader = TaskStreamReader.open(in);
+            while (reader.read(backtest)) {
+                // next piece
+            }
+        } finally {
+            in.close();
+        }
+        for (Map.Entry<String, Score> entry : backtest.finish().entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package de.nenick.workinterruption.dataaccess.forecast;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
+
+/**
+ * Exponentially smoothed rates of task starts per category and hour of the week.
+ *
+ * <P>Each (category, weekday, hour) slot keeps the smoothed number of starts per occurrence of
+ * that hour, the week of its last occurrence with starts and the starts counted in it. A start
+ * in a later week first folds the counted week in and decays the rate for the weeks without
+ * starts in between, so recording is O(1) whatever the time since the last start. The rate is
+ * linear in the starts, so a start in an earlier week is added with its decayed weight,
+ * recording in any order gives the same rates and a recorded start can be taken out again.</P>
+ *
+ * <P>Rates start at 0 and are corrected for that, like the first weeks had been observed
+ * since the first week of the category. Hours are local hours of the zone, an hour repeated or
+ * skipped by a daylight saving switch counts like any other.</P>
+ */
+public class ForecastModel {
+
+    /** Weight of the latest week, about the last ten weeks matter. */
+    public static final double DEFAULT_ALPHA = 0.1;
+
+    /** Hours of a week, the slot of Monday 0:00 is 0. */
+    public static final int SLOTS = 7 * 24;
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+    // 1970-01-01 was a Thursday, shifting by three days moves the week start to Monday
+    private static final long WEEK_SHIFT_HOURS = 3 * 24;
+
+    /** State of one slot, as persisted. */
+    public static class SlotRate {
+        /** Smoothed starts per occurrence, up to the week before {@link #week}. */
+        public double rate;
+        /** Week of the last occurrence with starts. */
+        public long week;
+        /** Starts within that week. */
+        public int pending;
+        /** Week of the first start. */
+        public long firstWeek;
+    }
+
+    private final TimeBuckets buckets;
+    private final double alpha;
+    private final Map<String, SlotRate[]> categories = new HashMap<String, SlotRate[]>();
+    private final Map<String, Long> firstWeeks = new HashMap<String, Long>();
+
+    public ForecastModel(TimeZone zone, double alpha) {
+        this.buckets = TimeBuckets.forZone(zone);
+        this.alpha = alpha;
+    }
+
+    /**
+     * Count a start.
+     *
+     * @return the changed slot state, to be persisted
+     */
+    public SlotRate record(long started, String category) {
+        long hour = weekHour(started);
+        long week = floorDiv(hour, SLOTS);
+        int slot = (int) (hour - week * SLOTS);
+
+        SlotRate[] slots = categories.get(category);
+        if (slots == null) {
+            slots = new SlotRate[SLOTS];
+            categories.put(category, slots);
+        }
+        SlotRate state = slots[slot];
+        if (state == null) {
+            state = new SlotRate();
+            state.week = week;
+            state.firstWeek = week;
+            slots[slot] = state;
+        }
+        if (week > state.week) {
+            state.rate = decayed(state, week);
+            state.week = week;
+            state.pending = 0;
+        }
+        if (week == state.week) {
+            state.pending++;
+        } else {
+            // an earlier week, its start has been decayed since
+            state.rate += alpha * Math.pow(1 - alpha, state.week - 1 - week);
+        }
+        state.firstWeek = Math.min(state.firstWeek, week);
+        noteFirstWeek(category, state.firstWeek);
+        return state;
+    }
+
+    /**
+     * Take out a start which was recorded before, e.g. of a deleted task. The first week of
+     * the category stays.
+     *
+     * @return the changed slot state, to be persisted, null if the slot has no starts
+     */
+    public SlotRate forget(long started, String category) {
+        long hour = weekHour(started);
+        long week = floorDiv(hour, SLOTS);
+        SlotRate[] slots = categories.get(category);
+        SlotRate state = slots == null ? null : slots[(int) (hour - week * SLOTS)];
+        if (state == null || week > state.week) {
+            return null;
+        }
+        if (week == state.week) {
+            state.pending = Math.max(0, state.pending - 1);
+        } else {
+            // rounding must not leave a negative rate
+            state.rate = Math.max(0, state.rate - alpha * Math.pow(1 - alpha, state.week - 1 - week));
+        }
+        return state;
+    }
+
+    /** Use a persisted slot state. */
+    public void restore(String category, int slot, SlotRate state) {
+        SlotRate[] slots = categories.get(category);
+        if (slots == null) {
+            slots = new SlotRate[SLOTS];
+            categories.put(category, slots);
+        }
+        slots[slot] = state;
+        noteFirstWeek(category, state.firstWeek);
+    }
+
+    /** @return slot index of the start time, the slot of a state returned by {@link #record} */
+    public int slot(long time) {
+        long hour = weekHour(time);
+        return (int) (hour - floorDiv(hour, SLOTS) * SLOTS);
+    }
+
+    /** @return expected starts of each category within the hour from the given time */
+    public Map<String, Double> expectedStarts(long from) {
+        Map<String, Double> result = new TreeMap<String, Double>();
+        for (String category : categories.keySet()) {
+            result.put(category, expectedStarts(category, from));
+        }
+        return result;
+    }
+
+    /**
+     * @return expected starts of the category within the hour from the given time, blended from
+     * the two clock hours it overlaps
+     */
+    public double expectedStarts(String category, long from) {
+        SlotRate[] slots = categories.get(category);
+        if (slots == null) {
+            return 0;
+        }
+        long local = buckets.localMillis(from);
+        double inFirst = 1 - (double) (local - floorDiv(local, HOUR_MILLIS) * HOUR_MILLIS) / HOUR_MILLIS;
+        return inFirst * hourRate(category, slots, weekHour(from))
+                + (1 - inFirst) * hourRate(category, slots, weekHour(from) + 1);
+    }
+
+    /** @return probability of at least one start, taking starts as a Poisson process */
+    public static double probability(double expectedStarts) {
+        return 1 - Math.exp(-expectedStarts);
+    }
+
+    /** @return all slot states by category, for persisting all */
+    public Map<String, SlotRate[]> states() {
+        return categories;
+    }
+
+    private double hourRate(String category, SlotRate[] slots, long hour) {
+        long week = floorDiv(hour, SLOTS);
+        SlotRate state = slots[(int) (hour - week * SLOTS)];
+        if (state == null) {
+            return 0;
+        }
+        // the week in progress is not complete yet, forecast it from the weeks before
+        double rate = week > state.week ? decayed(state, week) : state.rate;
+        long observed = Math.max(week, state.week) - firstWeeks.get(category);
+        return observed <= 0 ? 0 : rate / (1 - Math.pow(1 - alpha, observed));
+    }
+
+    /** @return the rate up to the week before the given week, which is after the state week */
+    private double decayed(SlotRate state, long week) {
+        double folded = alpha * state.pending + (1 - alpha) * state.rate;
+        return folded * Math.pow(1 - alpha, week - state.week - 1);
+    }
+
+    private void noteFirstWeek(String category, long week) {
+        Long first = firstWeeks.get(category);
+        if (first == null || week < first) {
+            firstWeeks.put(category, week);
+        }
+    }
+
+    /** @return local hours since Monday 1969-12-29 0:00 */
+    private long weekHour(long time) {
+        return floorDiv(buckets.localMillis(time), HOUR_MILLIS) + WEEK_SHIFT_HOURS;
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long result = value / divisor;
+        return value % divisor < 0 ? result - 1 : result;
+    }
+}
@@ -0,0 +1,133 @@
+package de.nenick.workinterruption.dataaccess.forecast;
+
+import java.util.Map;
+import java.util.TimeZone;
+
+import de.nenick.workinterruption.dataaccess.aggregate.AggregatePersistence;
+import de.nenick.workinterruption.dataaccess.aggregate.PersistedAggregate;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.store.TaskWriteListener;
+
+/**
+ * Forecast of task starts per category for the next hour, kept current by the provider writes.
+ *
+ * <P>Each closed task is recorded into the {@link ForecastModel} when it is inserted or its
+ * running task is closed, a deleted closed task is taken out again. Only the changed slot is
+ * saved, forecasts only read the model. The model is loaded from the persistence on first
+ * use, writes whose rows are unknown drop it and it is recorded again from the store on next
+ * use.</P>
+ */
+public class InterruptionForecast implements TaskWriteListener {
+
+    /** Where the slot states survive restarts. */
+    public interface Persistence extends AggregatePersistence<String, ForecastModel.SlotRate[]> {
+
+        /** Store the state of a slot. */
+        void save(String category, int slot, ForecastModel.SlotRate state);
+    }
+
+    private final TaskStore store;
+    private final Persistence persistence;
+    private final TimeZone zone;
+    private final double alpha;
+
+    private final PersistedAggregate<String, ForecastModel.SlotRate[], ForecastModel> model;
+
+    /**
+     * @param persistence where the states are kept, null to record them again after each start
+     * @param zone for the hours of the week
+     */
+    public InterruptionForecast(TaskStore store, Persistence persistence, TimeZone zone, double alpha) {
+        this.store = store;
+        this.persistence = persistence;
+        this.zone = zone;
+        this.alpha = alpha;
+        this.model = new PersistedAggregate<String, ForecastModel.SlotRate[], ForecastModel>(persistence) {
+            @Override
+            protected Map<String, ForecastModel.SlotRate[]> countAll() {
+                return recordAll().states();
+            }
+
+            @Override
+            protected ForecastModel restore(Map<String, ForecastModel.SlotRate[]> entries) {
+                return restoreModel(entries);
+            }
+        };
+    }
+
+    /** @return expected starts of each category within the hour from the given time */
+    public synchronized Map<String, Double> expectedStarts(long from) {
+        return model.loadCurrent().expectedStarts(from);
+    }
+
+    @Override
+    public synchronized void onTaskInserted(long id, long started, String category, int duration) {
+        if (duration != TaskStore.OPEN) {
+            record(started, category);
+        }
+    }
+
+    @Override
+    public synchronized void onTaskClosed(long id, long started, String category, int previousDuration, int duration) {
+        // a task closed again is recorded already
+        if (previousDuration == TaskStore.OPEN) {
+            record(started, category);
+        }
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(long id, long started, String category, int duration) {
+        // a running task wasn't recorded
+        if (duration == TaskStore.OPEN) {
+            return;
+        }
+        ForecastModel known = model.loadIfKnown();
+        ForecastModel.SlotRate state = known == null ? null : known.forget(started, category);
+        if (state != null && persistence != null) {
+            persistence.save(category, known.slot(started), state);
+        }
+    }
+
+    @Override
+    public synchronized void onTasksChanged() {
+        model.invalidate();
+    }
+
+    private void record(long started, String category) {
+        ForecastModel known = model.loadIfKnown();
+        if (known == null) {
+            return;
+        }
+        ForecastModel.SlotRate state = known.record(started, category);
+        if (persistence != null) {
+            persistence.save(category, known.slot(started), state);
+        }
+    }
+
+    private ForecastModel restoreModel(Map<String, ForecastModel.SlotRate[]> states) {
+        ForecastModel restored = new ForecastModel(zone, alpha);
+        for (Map.Entry<String, ForecastModel.SlotRate[]> entry : states.entrySet()) {
+            for (int slot = 0; slot < ForecastModel.SLOTS; slot++) {
+                if (entry.getValue()[slot] != null) {
+                    restored.restore(entry.getKey(), slot, entry.getValue()[slot]);
+                }
+            }
+        }
+        return restored;
+    }
+
+    /** @return a model of all closed tasks, recorded from the store */
+    private ForecastModel recordAll() {
+        final ForecastModel recorded = new ForecastModel(zone, alpha);
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                if (duration != TaskStore.OPEN) {
+                    recorded.record(started, category);
+                }
+            }
+        });
+        return recorded;
+    }
+}
@@ -0,0 +1,86 @@
+package de.nenick.workinterruption.dataaccess.forecast;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.database.ForecastRateTable;
+import de.nenick.workinterruption.dataaccess.database.SQLiteHelper;
+
+/** Keeps the forecast slot states in the {@link ForecastRateTable} of the task database. */
+public class SQLiteForecastPersistence implements InterruptionForecast.Persistence {
+
+    private static final String[] COLUMNS = {
+            ForecastRateTable.COL_CATEGORY, ForecastRateTable.COL_SLOT, ForecastRateTable.COL_RATE,
+            ForecastRateTable.COL_WEEK, ForecastRateTable.COL_PENDING, ForecastRateTable.COL_FIRST_WEEK};
+
+    private final SQLiteHelper openHelper;
+
+    public SQLiteForecastPersistence(SQLiteHelper openHelper) {
+        this.openHelper = openHelper;
+    }
+
+    @Override
+    public Map<String, ForecastModel.SlotRate[]> load() {
+        Map<String, ForecastModel.SlotRate[]> result = new HashMap<String, ForecastModel.SlotRate[]>();
+        Cursor cursor = openHelper.getReadableDatabase().query(ForecastRateTable.TABLE_NAME, COLUMNS,
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                ForecastModel.SlotRate[] slots = result.get(cursor.getString(0));
+                if (slots == null) {
+                    slots = new ForecastModel.SlotRate[ForecastModel.SLOTS];
+                    result.put(cursor.getString(0), slots);
+                }
+                ForecastModel.SlotRate state = new ForecastModel.SlotRate();
+                state.rate = cursor.getDouble(2);
+                state.week = cursor.getLong(3);
+                state.pending = cursor.getInt(4);
+                state.firstWeek = cursor.getLong(5);
+                slots[cursor.getInt(1)] = state;
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    @Override
+    public void save(String category, int slot, ForecastModel.SlotRate state) {
+        openHelper.getWritableDatabase().insertWithOnConflict(ForecastRateTable.TABLE_NAME, null,
+                values(category, slot, state), SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    @Override
+    public void replaceAll(Map<String, ForecastModel.SlotRate[]> states) {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(ForecastRateTable.TABLE_NAME, null, null);
+            for (Map.Entry<String, ForecastModel.SlotRate[]> entry : states.entrySet()) {
+                for (int slot = 0; slot < ForecastModel.SLOTS; slot++) {
+                    if (entry.getValue()[slot] != null) {
+                        db.insert(ForecastRateTable.TABLE_NAME, null, values(entry.getKey(), slot, entry.getValue()[slot]));
+                    }
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static ContentValues values(String category, int slot, ForecastModel.SlotRate state) {
+        ContentValues values = new ContentValues();
+        values.put(ForecastRateTable.COL_CATEGORY, category);
+        values.put(ForecastRateTable.COL_SLOT, slot);
+        values.put(ForecastRateTable.COL_RATE, state.rate);
+        values.put(ForecastRateTable.COL_WEEK, state.week);
+        values.put(ForecastRateTable.COL_PENDING, state.pending);
+        values.put(ForecastRateTable.COL_FIRST_WEEK, state.firstWeek);
+        return values;
+    }
+}
@@ -0,0 +1,199 @@
+package de.nenick.workinterruption.dataaccess.heatmap;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import de.nenick.workinterruption.dataaccess.aggregate.AggregatePersistence;
+import de.nenick.workinterruption.dataaccess.aggregate.PersistedAggregate;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.store.TaskWriteListener;
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
+
+/**
+ * One {@link WeekHeatmap} per local week and category, kept current by the provider writes.
+ *
+ * <P>A closed task counts its start in the hour it started and its time in each hour it
+ * covers, a task over midnight on Sunday counts in two weeks. A task closed again or deleted
+ * takes its old duration out again. Only the changed weeks are saved. The weeks are loaded
+ * from the persistence on first use, writes whose rows are unknown drop them and they are
+ * counted again from the store on next use.</P>
+ */
+public class HeatmapHistograms implements TaskWriteListener {
+
+    /** Where the weeks survive restarts. */
+    public interface Persistence extends AggregatePersistence<Integer, Map<String, WeekHeatmap>> {
+
+        /** Store the heatmap of a week and category, remove it if the heatmap is null. */
+        void save(int week, String category, WeekHeatmap heatmap);
+    }
+
+    // some thousand years, the epoch days of times beyond don't fit an int
+    private static final long UNBOUNDED_MILLIS = 1L << 45;
+
+    private final TaskStore store;
+    private final Persistence persistence;
+    private final TimeBuckets buckets;
+
+    // by epoch day of the Monday
+    private final PersistedAggregate<Integer, Map<String, WeekHeatmap>, TreeMap<Integer, Map<String, WeekHeatmap>>> weeks;
+
+    /**
+     * @param persistence where the weeks are kept, null to count them again after each start
+     * @param zone for the local hours
+     */
+    public HeatmapHistograms(TaskStore store, Persistence persistence, TimeZone zone) {
+        this.store = store;
+        this.persistence = persistence;
+        this.buckets = TimeBuckets.forZone(zone);
+        this.weeks = new PersistedAggregate<Integer, Map<String, WeekHeatmap>, TreeMap<Integer, Map<String, WeekHeatmap>>>(persistence) {
+            @Override
+            protected Map<Integer, Map<String, WeekHeatmap>> countAll() {
+                return countWeeks();
+            }
+
+            @Override
+            protected TreeMap<Integer, Map<String, WeekHeatmap>> restore(Map<Integer, Map<String, WeekHeatmap>> entries) {
+                return new TreeMap<Integer, Map<String, WeekHeatmap>>(entries);
+            }
+        };
+    }
+
+    /**
+     * @param category only this category or null for all
+     * @return the heatmaps of the weeks which overlap the range, by epoch day of the Monday
+     * and category; weeks without tasks are missing
+     */
+    public synchronized TreeMap<Integer, Map<String, WeekHeatmap>> weeks(long from, long to, String category) {
+        TreeMap<Integer, Map<String, WeekHeatmap>> current = weeks.loadCurrent();
+        TreeMap<Integer, Map<String, WeekHeatmap>> result = new TreeMap<Integer, Map<String, WeekHeatmap>>();
+        for (Map.Entry<Integer, Map<String, WeekHeatmap>> week
+                : current.subMap(week(from, Integer.MIN_VALUE), true, week(to - 1, Integer.MAX_VALUE), true).entrySet()) {
+            Map<String, WeekHeatmap> categories = new TreeMap<String, WeekHeatmap>();
+            for (Map.Entry<String, WeekHeatmap> entry : week.getValue().entrySet()) {
+                if (category == null || category.equals(entry.getKey())) {
+                    WeekHeatmap copy = new WeekHeatmap();
+                    copy.merge(entry.getValue());
+                    categories.put(entry.getKey(), copy);
+                }
+            }
+            if (!categories.isEmpty()) {
+                result.put(week.getKey(), categories);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void onTaskInserted(long id, long started, String category, int duration) {
+        record(started, category, TaskStore.OPEN, duration);
+    }
+
+    @Override
+    public synchronized void onTaskClosed(long id, long started, String category, int previousDuration, int duration) {
+        record(started, category, previousDuration, duration);
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(long id, long started, String category, int duration) {
+        record(started, category, duration, TaskStore.OPEN);
+    }
+
+    @Override
+    public synchronized void onTasksChanged() {
+        weeks.invalidate();
+    }
+
+    /** Replace the counts of a task, running tasks aren't counted. */
+    private void record(long started, String category, int previousDuration, int duration) {
+        TreeMap<Integer, Map<String, WeekHeatmap>> known = weeks.loadIfKnown();
+        if (known == null || previousDuration == duration) {
+            return;
+        }
+        int lastWeek = buckets.weekStart(started);
+        if (previousDuration != TaskStore.OPEN) {
+            add(known, started, category, previousDuration, -1);
+            lastWeek = Math.max(lastWeek, buckets.weekStart(started + Math.max(0, previousDuration - 1)));
+        }
+        if (duration != TaskStore.OPEN) {
+            add(known, started, category, duration, 1);
+            lastWeek = Math.max(lastWeek, buckets.weekStart(started + Math.max(0, duration - 1)));
+        }
+        Iterator<Map.Entry<Integer, Map<String, WeekHeatmap>>> changed
+                = known.subMap(buckets.weekStart(started), true, lastWeek, true).entrySet().iterator();
+        while (changed.hasNext()) {
+            Map.Entry<Integer, Map<String, WeekHeatmap>> week = changed.next();
+            WeekHeatmap heatmap = week.getValue().get(category);
+            if (heatmap.isEmpty()) {
+                // weeks without tasks are missing
+                week.getValue().remove(category);
+                heatmap = null;
+                if (week.getValue().isEmpty()) {
+                    changed.remove();
+                }
+            }
+            if (persistence != null) {
+                persistence.save(week.getKey(), category, heatmap);
+            }
+        }
+    }
+
+    /**
+     * Count the start and split the time of the task over the hours it covers.
+     *
+     * @param sign 1 to add the task, -1 to take it out
+     */
+    private void add(Map<Integer, Map<String, WeekHeatmap>> target, long started, String category, int duration,
+                     int sign) {
+        heatmapOf(target, buckets.weekStart(started), category).addStarts(buckets.hourOfWeek(started), sign);
+        long end = started + duration;
+        long time = started;
+        while (time < end) {
+            long local = buckets.localMillis(time);
+            long until = Math.min(end, time + TimeBuckets.HOUR_MILLIS - floorMod(local, TimeBuckets.HOUR_MILLIS));
+            heatmapOf(target, buckets.weekStart(time), category).addMillis(buckets.hourOfWeek(time), sign * (until - time));
+            time = until;
+        }
+    }
+
+    /** @return the weeks of all closed tasks, counted from the store */
+    private TreeMap<Integer, Map<String, WeekHeatmap>> countWeeks() {
+        final TreeMap<Integer, Map<String, WeekHeatmap>> counted = new TreeMap<Integer, Map<String, WeekHeatmap>>();
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                if (duration != TaskStore.OPEN) {
+                    add(counted, started, category, duration, 1);
+                }
+            }
+        });
+        return counted;
+    }
+
+    /** @return week of the time, the given week for times as far off as a missing range bound */
+    private int week(long time, int unbounded) {
+        return time < -UNBOUNDED_MILLIS || time > UNBOUNDED_MILLIS ? unbounded : buckets.weekStart(time);
+    }
+
+    private static WeekHeatmap heatmapOf(Map<Integer, Map<String, WeekHeatmap>> target, int week, String category) {
+        Map<String, WeekHeatmap> categories = target.get(week);
+        if (categories == null) {
+            categories = new HashMap<String, WeekHeatmap>();
+            target.put(week, categories);
+        }
+        WeekHeatmap heatmap = categories.get(category);
+        if (heatmap == null) {
+            heatmap = new WeekHeatmap();
+            categories.put(category, heatmap);
+        }
+        return heatmap;
+    }
+
+    private static long floorMod(long value, long divisor) {
+        long result = value % divisor;
+        return result < 0 ? result + divisor : result;
+    }
+}
@@ -0,0 +1,81 @@
+package de.nenick.workinterruption.dataaccess.heatmap;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.database.HeatmapTable;
+import de.nenick.workinterruption.dataaccess.database.SQLiteHelper;
+
+/** Keeps the heatmap weeks in the {@link HeatmapTable} of the task database. */
+public class SQLiteHeatmapPersistence implements HeatmapHistograms.Persistence {
+
+    private static final String[] COLUMNS = {HeatmapTable.COL_WEEK, HeatmapTable.COL_CATEGORY, HeatmapTable.COL_CELLS};
+
+    private static final String CELL_SELECTION = HeatmapTable.COL_WEEK + " = ? AND " + HeatmapTable.COL_CATEGORY + " = ?";
+
+    private final SQLiteHelper openHelper;
+
+    public SQLiteHeatmapPersistence(SQLiteHelper openHelper) {
+        this.openHelper = openHelper;
+    }
+
+    @Override
+    public Map<Integer, Map<String, WeekHeatmap>> load() {
+        Map<Integer, Map<String, WeekHeatmap>> result = new HashMap<Integer, Map<String, WeekHeatmap>>();
+        Cursor cursor = openHelper.getReadableDatabase().query(HeatmapTable.TABLE_NAME, COLUMNS,
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                Map<String, WeekHeatmap> week = result.get(cursor.getInt(0));
+                if (week == null) {
+                    week = new HashMap<String, WeekHeatmap>();
+                    result.put(cursor.getInt(0), week);
+                }
+                week.put(cursor.getString(1), WeekHeatmap.fromBytes(cursor.getBlob(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    @Override
+    public void save(int week, String category, WeekHeatmap heatmap) {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        if (heatmap == null) {
+            db.delete(HeatmapTable.TABLE_NAME, CELL_SELECTION, new String[]{String.valueOf(week), category});
+        } else {
+            db.insertWithOnConflict(HeatmapTable.TABLE_NAME, null, values(week, category, heatmap),
+                    SQLiteDatabase.CONFLICT_REPLACE);
+        }
+    }
+
+    @Override
+    public void replaceAll(Map<Integer, Map<String, WeekHeatmap>> weeks) {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(HeatmapTable.TABLE_NAME, null, null);
+            for (Map.Entry<Integer, Map<String, WeekHeatmap>> week : weeks.entrySet()) {
+                for (Map.Entry<String, WeekHeatmap> entry : week.getValue().entrySet()) {
+                    db.insert(HeatmapTable.TABLE_NAME, null, values(week.getKey(), entry.getKey(), entry.getValue()));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static ContentValues values(int week, String category, WeekHeatmap heatmap) {
+        ContentValues values = new ContentValues();
+        values.put(HeatmapTable.COL_WEEK, week);
+        values.put(HeatmapTable.COL_CATEGORY, category);
+        values.put(HeatmapTable.COL_CELLS, heatmap.toBytes());
+        return values;
+    }
+}
@@ -0,0 +1,129 @@
+package de.nenick.workinterruption.dataaccess.heatmap;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Task starts and covered time per local hour of one week, for one category. Cell 0 is
+ * Monday 0:00 to 1:00, cell 167 is Sunday 23:00 to midnight.
+ */
+public class WeekHeatmap {
+
+    /** Hours of a week. */
+    public static final int CELLS = 7 * 24;
+
+    private static final byte VERSION = 1;
+
+    private final int[] starts = new int[CELLS];
+    private final int[] millis = new int[CELLS];
+
+    /** @return number of tasks started in the hour */
+    public int starts(int cell) {
+        return starts[cell];
+    }
+
+    /** @return time covered by tasks in the hour, in milliseconds */
+    public int millis(int cell) {
+        return millis[cell];
+    }
+
+    /** @param count starts to add, negative to take them out */
+    void addStarts(int cell, int count) {
+        starts[cell] += count;
+    }
+
+    /** @param covered time to add, negative to take it out */
+    void addMillis(int cell, long covered) {
+        millis[cell] += covered;
+    }
+
+    /** @return true if no cell has starts or time */
+    boolean isEmpty() {
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (starts[cell] != 0 || millis[cell] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Add the cells of the other week. */
+    public void merge(WeekHeatmap other) {
+        for (int cell = 0; cell < CELLS; cell++) {
+            starts[cell] += other.starts[cell];
+            millis[cell] += other.millis[cell];
+        }
+    }
+
+    /**
+     * Encoded as {@code [byte version][filled cells]} followed by
+     * {@code [cell gap][starts][millis]} per cell with starts or time, all numbers unsigned
+     * varints. A week of a few tasks a day takes about a hundred bytes.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+        out.write(VERSION);
+        int filled = 0;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (starts[cell] != 0 || millis[cell] != 0) {
+                filled++;
+            }
+        }
+        writeVarInt(out, filled);
+        int previous = -1;
+        for (int cell = 0; cell < CELLS; cell++) {
+            if (starts[cell] != 0 || millis[cell] != 0) {
+                writeVarInt(out, cell - previous - 1);
+                writeVarInt(out, starts[cell]);
+                writeVarInt(out, millis[cell]);
+                previous = cell;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the week of {@link #toBytes()}
+     * @throws IllegalArgumentException if the bytes are no heatmap week
+     */
+    public static WeekHeatmap fromBytes(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unknown heatmap version");
+        }
+        int[] position = {1};
+        WeekHeatmap week = new WeekHeatmap();
+        int filled = readVarInt(bytes, position);
+        int cell = -1;
+        for (int i = 0; i < filled; i++) {
+            cell += readVarInt(bytes, position) + 1;
+            if (cell >= CELLS) {
+                throw new IllegalArgumentException("Malformed heatmap");
+            }
+            week.starts[cell] = readVarInt(bytes, position);
+            week.millis[cell] = readVarInt(bytes, position);
+        }
+        return week;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] bytes, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (position[0] >= bytes.length) {
+                throw new IllegalArgumentException("Truncated heatmap");
+            }
+            byte b = bytes[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed heatmap");
+    }
+}
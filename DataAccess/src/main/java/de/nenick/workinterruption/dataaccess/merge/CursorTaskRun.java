@@ -0,0 +1,50 @@
+package de.nenick.workinterruption.dataaccess.merge;
+
+import android.database.Cursor;
+
+import de.nenick.workinterruption.dataaccess.api.WorkInterruption;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/**
+ * Reads tasks from a cursor sorted by {@link WorkInterruption.Task#ASCENDING_SORT_ORDER}, for
+ * example a query on another work_interruption database.
+ */
+public class CursorTaskRun implements TaskRun {
+
+    private final Cursor cursor;
+    private final int startedIndex;
+    private final int categoryIndex;
+    private final int durationIndex;
+
+    public CursorTaskRun(Cursor cursor) {
+        this.cursor = cursor;
+        startedIndex = cursor.getColumnIndexOrThrow(WorkInterruption.Task.VALUE_STARTED);
+        categoryIndex = cursor.getColumnIndexOrThrow(WorkInterruption.Task.VALUE_CATEGORY);
+        durationIndex = cursor.getColumnIndexOrThrow(WorkInterruption.Task.VALUE_DURATION);
+    }
+
+    @Override
+    public boolean advance() {
+        return cursor.moveToNext();
+    }
+
+    @Override
+    public long started() {
+        return cursor.getLong(startedIndex);
+    }
+
+    @Override
+    public String category() {
+        return cursor.getString(categoryIndex);
+    }
+
+    @Override
+    public int duration() {
+        return cursor.isNull(durationIndex) ? TaskStore.OPEN : cursor.getInt(durationIndex);
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
@@ -0,0 +1,76 @@
+package de.nenick.workinterruption.dataaccess.merge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.transfer.TaskStreamReader;
+
+/** Reads an exported task stream, CSV or binary. At most one binary block is buffered. */
+public class ExportTaskRun implements TaskRun {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final InputStream in;
+    private final TaskStreamReader reader;
+
+    private long[] started = new long[INITIAL_CAPACITY];
+    private String[] categories = new String[INITIAL_CAPACITY];
+    private int[] durations = new int[INITIAL_CAPACITY];
+    private int size;
+    private int position = -1;
+
+    private final TaskVisitor buffer = new TaskVisitor() {
+        @Override
+        public void visit(long id, long taskStarted, String category, int duration) {
+            if (size == started.length) {
+                started = Arrays.copyOf(started, size * 2);
+                categories = Arrays.copyOf(categories, size * 2);
+                durations = Arrays.copyOf(durations, size * 2);
+            }
+            started[size] = taskStarted;
+            categories[size] = category;
+            durations[size] = duration;
+            size++;
+        }
+    };
+
+    public ExportTaskRun(InputStream in) throws IOException {
+        this.in = in;
+        this.reader = TaskStreamReader.open(in);
+    }
+
+    @Override
+    public boolean advance() throws IOException {
+        position++;
+        while (position >= size) {
+            size = 0;
+            position = 0;
+            if (!reader.read(buffer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long started() {
+        return started[position];
+    }
+
+    @Override
+    public String category() {
+        return categories[position];
+    }
+
+    @Override
+    public int duration() {
+        return durations[position];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
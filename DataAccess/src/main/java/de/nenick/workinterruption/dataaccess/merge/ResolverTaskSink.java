@@ -0,0 +1,52 @@
+package de.nenick.workinterruption.dataaccess.merge;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+
+import java.util.Arrays;
+
+import de.nenick.workinterruption.dataaccess.api.WorkInterruption;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/** Writes tasks through {@link ContentResolver#bulkInsert}, one transaction per chunk. */
+public class ResolverTaskSink implements TaskSink {
+
+    private final ContentResolver resolver;
+    private final ContentValues[] chunk;
+    private int size;
+    private int written;
+
+    public ResolverTaskSink(ContentResolver resolver, int chunkSize) {
+        this.resolver = resolver;
+        this.chunk = new ContentValues[chunkSize];
+    }
+
+    @Override
+    public void write(long started, String category, int duration) {
+        ContentValues values = new ContentValues();
+        values.put(WorkInterruption.Task.VALUE_STARTED, started);
+        values.put(WorkInterruption.Task.VALUE_CATEGORY, category);
+        if (duration != TaskStore.OPEN) {
+            values.put(WorkInterruption.Task.VALUE_DURATION, duration);
+        }
+        chunk[size++] = values;
+        if (size == chunk.length) {
+            finish();
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (size == 0) {
+            return;
+        }
+        ContentValues[] values = size == chunk.length ? chunk : Arrays.copyOf(chunk, size);
+        written += resolver.bulkInsert(WorkInterruption.Task.CONTENT_URI, values);
+        size = 0;
+    }
+
+    /** @return number of stored tasks */
+    public int written() {
+        return written;
+    }
+}
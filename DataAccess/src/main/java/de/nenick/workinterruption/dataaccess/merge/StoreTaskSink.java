@@ -0,0 +1,38 @@
+package de.nenick.workinterruption.dataaccess.merge;
+
+import de.nenick.workinterruption.dataaccess.store.TaskBatch;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/** Writes tasks to a store in transactional chunks. */
+public class StoreTaskSink implements TaskSink {
+
+    private final TaskStore store;
+    private final TaskBatch batch;
+    private int written;
+
+    public StoreTaskSink(TaskStore store, int chunkSize) {
+        this.store = store;
+        this.batch = new TaskBatch(chunkSize);
+    }
+
+    @Override
+    public void write(long started, String category, int duration) {
+        batch.add(TaskStore.NO_ID, started, category, duration);
+        if (batch.isFull()) {
+            finish();
+        }
+    }
+
+    @Override
+    public void finish() {
+        if (batch.size() > 0) {
+            written += store.insertAll(batch);
+            batch.clear();
+        }
+    }
+
+    /** @return number of stored tasks */
+    public int written() {
+        return written;
+    }
+}
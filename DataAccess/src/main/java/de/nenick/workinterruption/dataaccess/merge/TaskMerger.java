@@ -0,0 +1,166 @@
+package de.nenick.workinterruption.dataaccess.merge;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/**
+ * Merges several task runs sorted by start time in one streaming pass.
+ *
+ * <P>Tasks of the same category which overlap or touch are combined into one task: it starts
+ * with the first and ends with the latest known end. Exact duplicates are the simplest case of
+ * this. A combined task is only running if all its parts are running, because a closed copy
+ * knows more than a running one. Tasks of different categories are kept as they are.</P>
+ *
+ * <P>Memory holds one task per run plus one pending task per category, no matter how long the
+ * runs are. The result does not depend on the order of the runs.</P>
+ */
+public class TaskMerger {
+
+    /** Next task of a run. */
+    private static class Head {
+        final TaskRun run;
+        final int index;
+        long previousStarted = Long.MIN_VALUE;
+
+        Head(TaskRun run, int index) {
+            this.run = run;
+            this.index = index;
+        }
+    }
+
+    /** Combined task of a category waiting for overlapping tasks. */
+    private static class Pending {
+        final String category;
+        final long started;
+        long end;
+        boolean open;
+
+        Pending(String category, long started, int duration) {
+            this.category = category;
+            this.started = started;
+            this.open = duration == TaskStore.OPEN;
+            this.end = open ? started : started + duration;
+        }
+    }
+
+    private static final Comparator<Head> ORDER = new Comparator<Head>() {
+        @Override
+        public int compare(Head a, Head b) {
+            if (a.run.started() != b.run.started()) {
+                return a.run.started() < b.run.started() ? -1 : 1;
+            }
+            int byCategory = a.run.category().compareTo(b.run.category());
+            if (byCategory != 0) {
+                return byCategory;
+            }
+            return a.index - b.index;
+        }
+    };
+
+    private static final Comparator<Pending> BY_START = new Comparator<Pending>() {
+        @Override
+        public int compare(Pending a, Pending b) {
+            return a.started < b.started ? -1 : (a.started == b.started ? a.category.compareTo(b.category) : 1);
+        }
+    };
+
+    private final List<TaskRun> runs;
+    private int read;
+    private int written;
+
+    public TaskMerger(List<TaskRun> runs) {
+        this.runs = runs;
+    }
+
+    /**
+     * Merge all runs into the sink and close the runs.
+     *
+     * @throws IOException if reading fails or a run is not sorted by start time
+     */
+    public void mergeInto(TaskSink sink) throws IOException {
+        PriorityQueue<Head> heads = new PriorityQueue<Head>(Math.max(1, runs.size()), ORDER);
+        Map<String, Pending> pending = new HashMap<String, Pending>();
+        try {
+            for (int i = 0; i < runs.size(); i++) {
+                Head head = new Head(runs.get(i), i);
+                if (advance(head)) {
+                    heads.add(head);
+                }
+            }
+
+            while (!heads.isEmpty()) {
+                Head head = heads.poll();
+                read++;
+                add(pending, head.run.started(), head.run.category(), head.run.duration(), sink);
+                if (advance(head)) {
+                    heads.add(head);
+                }
+            }
+
+            List<Pending> rest = new ArrayList<Pending>(pending.values());
+            Collections.sort(rest, BY_START);
+            for (Pending task : rest) {
+                write(task, sink);
+            }
+            sink.finish();
+        } finally {
+            for (TaskRun run : runs) {
+                run.close();
+            }
+        }
+    }
+
+    /** @return number of tasks read from all runs */
+    public int read() {
+        return read;
+    }
+
+    /** @return number of tasks passed to the sink */
+    public int written() {
+        return written;
+    }
+
+    private void add(Map<String, Pending> pending, long started, String category, int duration, TaskSink sink)
+            throws IOException {
+        Pending current = pending.get(category);
+        if (current != null && started <= current.end) {
+            if (duration == TaskStore.OPEN) {
+                // a running copy adds no end
+                return;
+            }
+            long end = started + duration;
+            current.end = current.open ? end : Math.max(current.end, end);
+            current.open = false;
+            return;
+        }
+        if (current != null) {
+            write(current, sink);
+        }
+        pending.put(category, new Pending(category, started, duration));
+    }
+
+    private void write(Pending task, TaskSink sink) throws IOException {
+        int duration = task.open ? TaskStore.OPEN : (int) Math.min(Integer.MAX_VALUE, task.end - task.started);
+        sink.write(task.started, task.category, duration);
+        written++;
+    }
+
+    private static boolean advance(Head head) throws IOException {
+        if (!head.run.advance()) {
+            return false;
+        }
+        if (head.run.started() < head.previousStarted) {
+            throw new IOException("Run " + head.index + " is not sorted by start time");
+        }
+        head.previousStarted = head.run.started();
+        return true;
+    }
+}
@@ -0,0 +1,23 @@
+package de.nenick.workinterruption.dataaccess.merge;
+
+import java.io.IOException;
+
+/** Tasks sorted by start time, read one at a time. */
+public interface TaskRun {
+
+    /**
+     * Move to the next task.
+     *
+     * @return false if there are no more tasks
+     */
+    boolean advance() throws IOException;
+
+    long started();
+
+    String category();
+
+    /** @return duration in milliseconds or {@link de.nenick.workinterruption.dataaccess.store.TaskStore#OPEN} */
+    int duration();
+
+    void close() throws IOException;
+}
@@ -0,0 +1,12 @@
+package de.nenick.workinterruption.dataaccess.merge;
+
+import java.io.IOException;
+
+/** Receives the merged tasks. */
+public interface TaskSink {
+
+    void write(long started, String category, int duration) throws IOException;
+
+    /** No more tasks follow, store what is pending. */
+    void finish() throws IOException;
+}
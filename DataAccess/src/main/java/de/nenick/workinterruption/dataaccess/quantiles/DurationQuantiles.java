@@ -0,0 +1,254 @@
+package de.nenick.workinterruption.dataaccess.quantiles;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import de.nenick.workinterruption.dataaccess.aggregate.AggregatePersistence;
+import de.nenick.workinterruption.dataaccess.aggregate.PersistedAggregate;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.store.TaskWriteListener;
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
+
+/**
+ * Duration quantiles per category for any range, from one {@link DurationSketch} per local day
+ * and category.
+ *
+ * <P>The sketches are kept in memory and in the persistence, they are loaded on first use. A
+ * range merges the sketches of the whole days inside it, the parts of the first and last day
+ * are read from the store, so the answer counts exactly the closed tasks started within the
+ * range. A year of days merges in well under a millisecond.</P>
+ *
+ * <P>Inserted closed tasks and running tasks when they are closed are counted into their day,
+ * a task closed again or deleted causes its day and category to be counted again from the
+ * store. Writes whose rows are unknown drop all sketches, they are counted again on the next
+ * read.</P>
+ */
+public class DurationQuantiles implements TaskWriteListener {
+
+    /** Where the sketches survive restarts. */
+    public interface Persistence extends AggregatePersistence<Long, Map<String, DurationSketch>> {
+
+        /** Store the sketch of a day and category, remove it if the sketch is null. */
+        void save(long day, String category, DurationSketch sketch);
+    }
+
+    // some thousand years, the epoch days of times beyond don't fit an int
+    private static final long UNBOUNDED_MILLIS = 1L << 45;
+
+    private final TaskStore store;
+    private final Persistence persistence;
+    private final TimeBuckets buckets;
+
+    // day sketches per category
+    private final PersistedAggregate<Long, Map<String, DurationSketch>, Map<String, TreeMap<Long, DurationSketch>>> daySketches;
+
+    /**
+     * @param persistence where the sketches are kept, null to count them again after each start
+     * @param zone for the local days
+     */
+    public DurationQuantiles(TaskStore store, Persistence persistence, TimeZone zone) {
+        this.store = store;
+        this.persistence = persistence;
+        this.buckets = TimeBuckets.forZone(zone);
+        this.daySketches = new PersistedAggregate<Long, Map<String, DurationSketch>, Map<String, TreeMap<Long, DurationSketch>>>(persistence) {
+            @Override
+            protected Map<Long, Map<String, DurationSketch>> countAll() {
+                return countByDay();
+            }
+
+            @Override
+            protected Map<String, TreeMap<Long, DurationSketch>> restore(Map<Long, Map<String, DurationSketch>> entries) {
+                return byCategory(entries);
+            }
+        };
+    }
+
+    /**
+     * Merge the sketches of closed tasks started within the range, per category.
+     *
+     * @param category only this category or null for all
+     * @return a new sketch per category which has tasks in the range, sorted by category
+     */
+    public synchronized Map<String, DurationSketch> sketches(long from, long to, String category) {
+        Map<String, TreeMap<Long, DurationSketch>> sketches = daySketches.loadCurrent();
+        Map<String, DurationSketch> result = new TreeMap<String, DurationSketch>();
+        // whole days within the range, from firstDay until before endDay
+        long firstDay = Long.MIN_VALUE;
+        long firstStart = from;
+        if (from >= -UNBOUNDED_MILLIS) {
+            int day = buckets.epochDay(from);
+            firstStart = buckets.dayStart(day);
+            if (firstStart < from) {
+                firstStart = buckets.dayStart(++day);
+            }
+            firstDay = day;
+        }
+        long endDay = Long.MAX_VALUE;
+        long endStart = to;
+        if (to <= UNBOUNDED_MILLIS) {
+            endDay = buckets.epochDay(to);
+            endStart = buckets.dayStart((int) endDay);
+        }
+        if (firstDay >= endDay) {
+            count(result, from, to, category);
+            return result;
+        }
+
+        count(result, from, firstStart, category);
+        for (Map.Entry<String, TreeMap<Long, DurationSketch>> entry : sketches.entrySet()) {
+            if (category != null && !category.equals(entry.getKey())) {
+                continue;
+            }
+            for (DurationSketch day : entry.getValue().subMap(firstDay, endDay).values()) {
+                sketchOf(result, entry.getKey()).merge(day);
+            }
+        }
+        count(result, endStart, to, category);
+        return result;
+    }
+
+    @Override
+    public synchronized void onTaskInserted(long id, long started, String category, int duration) {
+        if (duration != TaskStore.OPEN) {
+            add(started, category, duration);
+        }
+    }
+
+    @Override
+    public synchronized void onTaskClosed(long id, long started, String category, int previousDuration, int duration) {
+        if (previousDuration == TaskStore.OPEN) {
+            add(started, category, duration);
+        } else {
+            // closed again, its old duration can't be taken out of the sketch
+            recount(buckets.epochDay(started), category);
+        }
+    }
+
+    @Override
+    public synchronized void onTaskDeleted(long id, long started, String category, int duration) {
+        if (duration != TaskStore.OPEN) {
+            recount(buckets.epochDay(started), category);
+        }
+    }
+
+    @Override
+    public synchronized void onTasksChanged() {
+        daySketches.invalidate();
+    }
+
+    /** Count a closed task into the sketch of its day. */
+    private void add(long started, String category, int duration) {
+        Map<String, TreeMap<Long, DurationSketch>> sketches = daySketches.loadIfKnown();
+        if (sketches == null) {
+            return;
+        }
+        long day = buckets.epochDay(started);
+        TreeMap<Long, DurationSketch> days = sketches.get(category);
+        if (days == null) {
+            days = new TreeMap<Long, DurationSketch>();
+            sketches.put(category, days);
+        }
+        DurationSketch sketch = days.get(day);
+        if (sketch == null) {
+            sketch = new DurationSketch();
+            days.put(day, sketch);
+        }
+        sketch.add(duration);
+        save(day, category, sketch);
+    }
+
+    /** Count the day and category again from the store. */
+    private void recount(long day, String category) {
+        Map<String, TreeMap<Long, DurationSketch>> sketches = daySketches.loadIfKnown();
+        if (sketches == null) {
+            return;
+        }
+        Map<String, DurationSketch> counted = new HashMap<String, DurationSketch>();
+        count(counted, buckets.dayStart((int) day), buckets.dayStart((int) day + 1), category);
+        DurationSketch sketch = counted.get(category);
+        TreeMap<Long, DurationSketch> days = sketches.get(category);
+        if (sketch != null) {
+            if (days == null) {
+                days = new TreeMap<Long, DurationSketch>();
+                sketches.put(category, days);
+            }
+            days.put(day, sketch);
+        } else if (days != null) {
+            days.remove(day);
+            if (days.isEmpty()) {
+                sketches.remove(category);
+            }
+        }
+        save(day, category, sketch);
+    }
+
+    private void save(long day, String category, DurationSketch sketch) {
+        if (persistence != null) {
+            persistence.save(day, category, sketch);
+        }
+    }
+
+    /** @return sketches of all closed tasks by day and category, counted from the store */
+    private Map<Long, Map<String, DurationSketch>> countByDay() {
+        final Map<Long, Map<String, DurationSketch>> counted = new HashMap<Long, Map<String, DurationSketch>>();
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                if (duration == TaskStore.OPEN) {
+                    return;
+                }
+                long day = buckets.epochDay(started);
+                Map<String, DurationSketch> categories = counted.get(day);
+                if (categories == null) {
+                    categories = new HashMap<String, DurationSketch>();
+                    counted.put(day, categories);
+                }
+                sketchOf(categories, category).add(duration);
+            }
+        });
+        return counted;
+    }
+
+    /** Count the closed tasks of the range into the sketches, directly from the store. */
+    private void count(final Map<String, DurationSketch> result, long from, long to, final String category) {
+        if (from >= to) {
+            return;
+        }
+        store.scan(from, to, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String taskCategory, int duration) {
+                if (duration != TaskStore.OPEN && (category == null || category.equals(taskCategory))) {
+                    sketchOf(result, taskCategory).add(duration);
+                }
+            }
+        });
+    }
+
+    private static DurationSketch sketchOf(Map<String, DurationSketch> sketches, String category) {
+        DurationSketch sketch = sketches.get(category);
+        if (sketch == null) {
+            sketch = new DurationSketch();
+            sketches.put(category, sketch);
+        }
+        return sketch;
+    }
+
+    private static Map<String, TreeMap<Long, DurationSketch>> byCategory(
+            Map<Long, Map<String, DurationSketch>> byDay) {
+        Map<String, TreeMap<Long, DurationSketch>> result = new HashMap<String, TreeMap<Long, DurationSketch>>();
+        for (Map.Entry<Long, Map<String, DurationSketch>> day : byDay.entrySet()) {
+            for (Map.Entry<String, DurationSketch> entry : day.getValue().entrySet()) {
+                TreeMap<Long, DurationSketch> days = result.get(entry.getKey());
+                if (days == null) {
+                    days = new TreeMap<Long, DurationSketch>();
+                    result.put(entry.getKey(), days);
+                }
+                days.put(day.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+}
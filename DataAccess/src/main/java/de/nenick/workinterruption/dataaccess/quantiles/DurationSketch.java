@@ -0,0 +1,174 @@
+package de.nenick.workinterruption.dataaccess.quantiles;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch of task durations in milliseconds.
+ *
+ * <P>Durations are counted in logarithmic buckets, bucket {@code i} holds the durations in
+ * {@code (GAMMA^(i-1), GAMMA^i]}, durations below one millisecond are counted apart. A quantile
+ * is answered with the middle of its bucket, so it is within {@link #RELATIVE_ACCURACY} of the
+ * exact duration of that rank: at most 1% off, whatever the number of tasks. Merging adds the
+ * bucket counts and loses nothing, merged sketches answer like one sketch over all durations.</P>
+ *
+ * <P>A sketch of all durations up to {@code Integer.MAX_VALUE} has at most 1075 buckets, the
+ * encoded form only holds the filled ones.</P>
+ */
+public class DurationSketch {
+
+    /** Bound of the relative error of each quantile. */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private static final byte VERSION = 1;
+
+    private int[] counts = new int[0];
+    // lowest filled bucket, durations of minutes leave the first few hundred buckets empty
+    private int first = Integer.MAX_VALUE;
+    private long zeroCount;
+    private long count;
+
+    /** Count one duration. */
+    public void add(int millis) {
+        if (millis < 1) {
+            zeroCount++;
+        } else {
+            int index = index(millis);
+            grow(index + 1);
+            counts[index]++;
+            first = Math.min(first, index);
+        }
+        count++;
+    }
+
+    /** Add all durations of the other sketch. */
+    public void merge(DurationSketch other) {
+        grow(other.counts.length);
+        for (int i = other.first; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        first = Math.min(first, other.first);
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+
+    /** @return number of counted durations */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.9 for the 90th percentile
+     * @return duration in milliseconds at the quantile, 0 if the sketch is empty
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile out of range: " + quantile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) (quantile * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        int i = Math.min(first, counts.length - 1);
+        while (i < counts.length - 1) {
+            seen += counts[i];
+            if (rank < seen) {
+                break;
+            }
+            i++;
+        }
+        return 2 * Math.pow(GAMMA, i) / (GAMMA + 1);
+    }
+
+    /**
+     * Encoded as {@code [byte version][zero count][filled buckets]} followed by
+     * {@code [index gap][count]} per filled bucket, all numbers unsigned varints.
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16);
+        out.write(VERSION);
+        writeVarLong(out, zeroCount);
+        int filled = 0;
+        for (int bucketCount : counts) {
+            if (bucketCount != 0) {
+                filled++;
+            }
+        }
+        writeVarLong(out, filled);
+        int previous = -1;
+        for (int i = Math.min(first, counts.length); i < counts.length; i++) {
+            if (counts[i] != 0) {
+                writeVarLong(out, i - previous - 1);
+                writeVarLong(out, counts[i]);
+                previous = i;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the sketch of {@link #toBytes()}
+     * @throws IllegalArgumentException if the bytes are no sketch
+     */
+    public static DurationSketch fromBytes(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unknown sketch version");
+        }
+        int[] position = {1};
+        DurationSketch sketch = new DurationSketch();
+        sketch.zeroCount = readVarLong(bytes, position);
+        sketch.count = sketch.zeroCount;
+        long filled = readVarLong(bytes, position);
+        int index = -1;
+        for (long i = 0; i < filled; i++) {
+            index += (int) readVarLong(bytes, position) + 1;
+            int bucketCount = (int) readVarLong(bytes, position);
+            sketch.grow(index + 1);
+            sketch.counts[index] = bucketCount;
+            sketch.first = Math.min(sketch.first, index);
+            sketch.count += bucketCount;
+        }
+        return sketch;
+    }
+
+    static int index(int millis) {
+        return (int) Math.ceil(Math.log(millis) / LOG_GAMMA);
+    }
+
+    private void grow(int length) {
+        if (counts.length < length) {
+            counts = Arrays.copyOf(counts, length);
+        }
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= bytes.length) {
+                throw new IllegalArgumentException("Truncated sketch");
+            }
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed sketch");
+    }
+}
@@ -0,0 +1,83 @@
+package de.nenick.workinterruption.dataaccess.quantiles;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.database.DurationSketchTable;
+import de.nenick.workinterruption.dataaccess.database.SQLiteHelper;
+
+/** Keeps the duration sketches in the {@link DurationSketchTable} of the task database. */
+public class SQLiteSketchPersistence implements DurationQuantiles.Persistence {
+
+    private static final String[] COLUMNS = {
+            DurationSketchTable.COL_DAY, DurationSketchTable.COL_CATEGORY, DurationSketchTable.COL_SKETCH};
+
+    private static final String CELL_SELECTION =
+            DurationSketchTable.COL_DAY + " = ? AND " + DurationSketchTable.COL_CATEGORY + " = ?";
+
+    private final SQLiteHelper openHelper;
+
+    public SQLiteSketchPersistence(SQLiteHelper openHelper) {
+        this.openHelper = openHelper;
+    }
+
+    @Override
+    public Map<Long, Map<String, DurationSketch>> load() {
+        Map<Long, Map<String, DurationSketch>> result = new HashMap<Long, Map<String, DurationSketch>>();
+        Cursor cursor = openHelper.getReadableDatabase().query(DurationSketchTable.TABLE_NAME, COLUMNS,
+                null, null, null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                Map<String, DurationSketch> day = result.get(cursor.getLong(0));
+                if (day == null) {
+                    day = new HashMap<String, DurationSketch>();
+                    result.put(cursor.getLong(0), day);
+                }
+                day.put(cursor.getString(1), DurationSketch.fromBytes(cursor.getBlob(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    @Override
+    public void save(long day, String category, DurationSketch sketch) {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        if (sketch == null) {
+            db.delete(DurationSketchTable.TABLE_NAME, CELL_SELECTION, new String[]{String.valueOf(day), category});
+        } else {
+            db.insertWithOnConflict(DurationSketchTable.TABLE_NAME, null, values(day, category, sketch),
+                    SQLiteDatabase.CONFLICT_REPLACE);
+        }
+    }
+
+    @Override
+    public void replaceAll(Map<Long, Map<String, DurationSketch>> sketches) {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete(DurationSketchTable.TABLE_NAME, null, null);
+            for (Map.Entry<Long, Map<String, DurationSketch>> day : sketches.entrySet()) {
+                for (Map.Entry<String, DurationSketch> entry : day.getValue().entrySet()) {
+                    db.insert(DurationSketchTable.TABLE_NAME, null, values(day.getKey(), entry.getKey(), entry.getValue()));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static ContentValues values(long day, String category, DurationSketch sketch) {
+        ContentValues values = new ContentValues();
+        values.put(DurationSketchTable.COL_DAY, day);
+        values.put(DurationSketchTable.COL_CATEGORY, category);
+        values.put(DurationSketchTable.COL_SKETCH, sketch.toBytes());
+        return values;
+    }
+}
@@ -0,0 +1,225 @@
+package de.nenick.workinterruption.dataaccess.reports;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskWriteListener;
+
+/**
+ * Computed report rows by report type, time range and category filter, least recently used
+ * first out once the rows take more than the memory cap.
+ *
+ * <P>Most reports of a range only depend on the tasks started within it, so a write drops only
+ * the reports whose range contains the start of the written task and whose filter matches its
+ * category. Reports keyed with {@link Key#overlapping} depend on all tasks which run within
+ * their range, a write drops them if the old or new time of the task overlaps it, a running
+ * task runs forever. Reports of past weeks and months stay until they are pushed out. Writes
+ * whose rows are unknown drop all reports.</P>
+ *
+ * <P>A report computed while a task was written may miss the write, {@link #put} ignores it if
+ * any write came in after {@link #version()} was read before computing it.</P>
+ */
+public class ReportCache implements TaskWriteListener {
+
+    /** Half a megabyte holds some hundred reports of a few dozen rows. */
+    public static final long DEFAULT_MAX_BYTES = 512 * 1024;
+
+    // rough heap size of an entry, its key and an empty row array
+    private static final int ENTRY_BYTES = 128;
+    private static final int ROW_BYTES = 16;
+    private static final int VALUE_BYTES = 24;
+    private static final int STRING_BYTES = 40;
+
+    /** Identifies a report. */
+    public static final class Key {
+        private final String type;
+        private final long from;
+        private final long to;
+        private final String category;
+        private final boolean overlapping;
+
+        /**
+         * @param type kind of report and all parameters besides range and category
+         * @param from start of the range, tasks started at or after it
+         * @param to end of the range, tasks started before it
+         * @param category only tasks of this category, null for all
+         */
+        public Key(String type, long from, long to, String category) {
+            this(type, from, to, category, false);
+        }
+
+        private Key(String type, long from, long to, String category, boolean overlapping) {
+            this.type = type;
+            this.from = from;
+            this.to = to;
+            this.category = category;
+            this.overlapping = overlapping;
+        }
+
+        /**
+         * @param from start of the range read for the report, tasks which end after it
+         * @param to end of the range, tasks started before it
+         * @return key of a report which depends on all tasks running within the range
+         */
+        public static Key overlapping(String type, long from, long to, String category) {
+            return new Key(type, from, to, category, true);
+        }
+
+        /** @param end end of the task, {@link Long#MAX_VALUE} if it runs */
+        boolean contains(long started, long end, String taskCategory) {
+            boolean inRange = overlapping ? started < to && end > from : started >= from && started < to;
+            return inRange && (category == null || category.equals(taskCategory));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return from == other.from && to == other.to && overlapping == other.overlapping && type.equals(other.type)
+                    && (category == null ? other.category == null : category.equals(other.category));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type.hashCode();
+            result = 31 * result + (int) (from ^ (from >>> 32));
+            result = 31 * result + (int) (to ^ (to >>> 32));
+            return 31 * result + (category == null ? 0 : category.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return type + "[" + from + "," + to + ")" + (category == null ? "" : "/" + category);
+        }
+    }
+
+    private static class Entry {
+        final Object[][] rows;
+        final long bytes;
+
+        Entry(Object[][] rows, long bytes) {
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private long bytes;
+    private long version;
+
+    public ReportCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    public ReportCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** @return the rows of the report, null if they are not cached; they must not be changed */
+    public synchronized Object[][] get(Key key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.rows;
+    }
+
+    /** @return the current version, to be read before computing a report for {@link #put} */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Cache the rows of a report unless a task was written since the version. Rows larger than
+     * the cap are not cached.
+     *
+     * @param version {@link #version()} read before the report was computed
+     * @param rows the rows, they must not be changed afterwards
+     */
+    public synchronized void put(Key key, Object[][] rows, long version) {
+        if (version != this.version) {
+            return;
+        }
+        long size = sizeOf(rows);
+        if (size > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, new Entry(rows, size));
+        if (previous != null) {
+            bytes -= previous.bytes;
+        }
+        bytes += size;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+        }
+    }
+
+    /** @return number of cached reports */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /** @return estimated heap size of the cached reports */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    @Override
+    public void onTaskInserted(long id, long started, String category, int duration) {
+        invalidate(started, end(started, duration), category);
+    }
+
+    @Override
+    public void onTaskClosed(long id, long started, String category, int previousDuration, int duration) {
+        invalidate(started, Math.max(end(started, previousDuration), end(started, duration)), category);
+    }
+
+    @Override
+    public void onTaskDeleted(long id, long started, String category, int duration) {
+        invalidate(started, end(started, duration), category);
+    }
+
+    @Override
+    public synchronized void onTasksChanged() {
+        version++;
+        entries.clear();
+        bytes = 0;
+    }
+
+    private static long end(long started, int duration) {
+        return duration == TaskStore.OPEN ? Long.MAX_VALUE : started + duration;
+    }
+
+    /** Drop the reports of the task. */
+    private synchronized void invalidate(long started, long end, String category) {
+        version++;
+        Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Key, Entry> entry = iterator.next();
+            if (entry.getKey().contains(started, end, category)) {
+                bytes -= entry.getValue().bytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    /** @return rough heap size of the rows, boxed numbers and strings */
+    static long sizeOf(Object[][] rows) {
+        long size = ENTRY_BYTES;
+        for (Object[] row : rows) {
+            size += ROW_BYTES + 4 * row.length;
+            for (Object value : row) {
+                if (value instanceof String) {
+                    size += STRING_BYTES + 2 * ((String) value).length();
+                } else if (value != null) {
+                    size += VALUE_BYTES;
+                }
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,54 @@
+package de.nenick.workinterruption.dataaccess.rules;
+
+/**
+ * Violated when tasks kept running for a time without a task of a category, e.g. no break.
+ * The time counts from the last task of the category or from the start of the tasks, whatever
+ * is later.
+ */
+public class AbsenceRule extends AlertRule {
+
+    private final String category;
+    private final long durationMillis;
+
+    private int running;
+    private int categoryRunning;
+    private long busySince;
+    private long categorySeen = Long.MIN_VALUE;
+
+    AbsenceRule(String text, String category, long durationMillis) {
+        super(text);
+        this.category = category;
+        this.durationMillis = durationMillis;
+    }
+
+    @Override
+    public void onStarted(String category, long time) {
+        if (running == 0) {
+            busySince = time;
+        }
+        running++;
+        if (this.category.equals(category)) {
+            categoryRunning++;
+        }
+    }
+
+    @Override
+    public void onStopped(String category, long time) {
+        // a replay may see tasks stop which started before it
+        running = Math.max(0, running - 1);
+        if (this.category.equals(category)) {
+            categoryRunning = Math.max(0, categoryRunning - 1);
+            categorySeen = time;
+        }
+    }
+
+    @Override
+    public boolean isViolated(long now) {
+        return running > 0 && categoryRunning == 0 && now - Math.max(busySince, categorySeen) >= durationMillis;
+    }
+
+    @Override
+    public long horizonMillis() {
+        return durationMillis;
+    }
+}
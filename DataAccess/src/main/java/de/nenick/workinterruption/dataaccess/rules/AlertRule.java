@@ -0,0 +1,76 @@
+package de.nenick.workinterruption.dataaccess.rules;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A condition on the recent task switches which is worth an alert.
+ *
+ * <P>Rules are declared as text, durations are given in seconds, minutes or hours:</P>
+ * <ul>
+ *     <li>{@code count interruption > 5 in 60m}, see {@link CountRule}</li>
+ *     <li>{@code absent break for 3h}, see {@link AbsenceRule}</li>
+ * </ul>
+ */
+public abstract class AlertRule {
+
+    private static final Pattern COUNT = Pattern.compile("count\\s+(\\S+)\\s*>\\s*(\\d+)\\s+in\\s+(\\d+[smh])");
+    private static final Pattern ABSENT = Pattern.compile("absent\\s+(\\S+)\\s+for\\s+(\\d+[smh])");
+
+    private final String text;
+
+    protected AlertRule(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @return the rule declared by the text
+     * @throws IllegalArgumentException if the text is no rule
+     */
+    public static AlertRule parse(String text) {
+        String rule = text.trim();
+        Matcher count = COUNT.matcher(rule);
+        if (count.matches()) {
+            return new CountRule(rule, count.group(1), Integer.parseInt(count.group(2)), millis(count.group(3)));
+        }
+        Matcher absent = ABSENT.matcher(rule);
+        if (absent.matches()) {
+            return new AbsenceRule(rule, absent.group(1), millis(absent.group(2)));
+        }
+        throw new IllegalArgumentException("Invalid alert rule: " + text);
+    }
+
+    /** A task of the category started. */
+    public abstract void onStarted(String category, long time);
+
+    /** A task of the category stopped. */
+    public abstract void onStopped(String category, long time);
+
+    /** @return true if the condition holds at the given time */
+    public abstract boolean isViolated(long now);
+
+    /** @return how far back task switches matter for this rule */
+    public abstract long horizonMillis();
+
+    /** @return the rule as declared */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private static long millis(String duration) {
+        long value = Long.parseLong(duration.substring(0, duration.length() - 1));
+        switch (duration.charAt(duration.length() - 1)) {
+            case 's':
+                return value * 1000;
+            case 'm':
+                return value * 60 * 1000;
+            default:
+                return value * 60 * 60 * 1000;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package de.nenick.workinterruption.dataaccess.rules;
+
+/** Violated when more tasks of a category started within a window than allowed. */
+public class CountRule extends AlertRule {
+
+    /** Buckets per window, a 60 minute window is counted per minute. */
+    static final int BUCKETS = 60;
+
+    private final String category;
+    private final int limit;
+    private final long windowMillis;
+    private final SlidingWindowCounter starts;
+
+    CountRule(String text, String category, int limit, long windowMillis) {
+        super(text);
+        this.category = category;
+        this.limit = limit;
+        this.windowMillis = windowMillis;
+        this.starts = new SlidingWindowCounter(windowMillis, BUCKETS);
+    }
+
+    @Override
+    public void onStarted(String category, long time) {
+        if (this.category.equals(category)) {
+            starts.add(time);
+        }
+    }
+
+    @Override
+    public void onStopped(String category, long time) {
+    }
+
+    @Override
+    public boolean isViolated(long now) {
+        return starts.count(now) > limit;
+    }
+
+    @Override
+    public long horizonMillis() {
+        return windowMillis;
+    }
+}
@@ -0,0 +1,129 @@
+package de.nenick.workinterruption.dataaccess.rules;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Evaluates {@link AlertRule}s live on task switches.
+ *
+ * <P>Each switch updates every rule in O(1), the task history is never read again. A rule
+ * alerts once when it becomes violated and again only after it was fine in between.</P>
+ *
+ * <P>The recent history is replayed by visiting its tasks in start order, followed by
+ * {@link #endReplay(long)}. Stops are fed in between the starts in time order. Rules which are
+ * violated by the history don't alert.</P>
+ */
+public class RuleEngine implements TaskVisitor {
+
+    private static class Stop {
+        final long time;
+        final String category;
+
+        Stop(long time, String category) {
+            this.time = time;
+            this.category = category;
+        }
+    }
+
+    private final List<AlertRule> rules;
+    private final boolean[] violated;
+
+    private final PriorityQueue<Stop> replayStops = new PriorityQueue<Stop>(16, new Comparator<Stop>() {
+        @Override
+        public int compare(Stop a, Stop b) {
+            return a.time < b.time ? -1 : a.time > b.time ? 1 : 0;
+        }
+    });
+
+    public RuleEngine(List<AlertRule> rules) {
+        this.rules = new ArrayList<AlertRule>(rules);
+        this.violated = new boolean[rules.size()];
+    }
+
+    /**
+     * @return engine of the rules declared by the texts
+     * @throws IllegalArgumentException if a text is no rule
+     */
+    public static RuleEngine parse(String... texts) {
+        List<AlertRule> rules = new ArrayList<AlertRule>(texts.length);
+        for (String text : texts) {
+            rules.add(AlertRule.parse(text));
+        }
+        return new RuleEngine(rules);
+    }
+
+    /** @return how far back the history must be replayed */
+    public long horizonMillis() {
+        long horizon = 0;
+        for (AlertRule rule : rules) {
+            horizon = Math.max(horizon, rule.horizonMillis());
+        }
+        return horizon;
+    }
+
+    /** @return rules which became violated by the start */
+    public synchronized List<AlertRule> onStarted(String category, long time) {
+        for (AlertRule rule : rules) {
+            rule.onStarted(category, time);
+        }
+        return check(time);
+    }
+
+    /** @return rules which became violated by the stop */
+    public synchronized List<AlertRule> onStopped(String category, long time) {
+        for (AlertRule rule : rules) {
+            rule.onStopped(category, time);
+        }
+        return check(time);
+    }
+
+    /** @return rules which became violated since the last check */
+    public synchronized List<AlertRule> check(long now) {
+        List<AlertRule> alerts = Collections.emptyList();
+        for (int i = 0; i < rules.size(); i++) {
+            boolean isViolated = rules.get(i).isViolated(now);
+            if (isViolated && !violated[i]) {
+                if (alerts.isEmpty()) {
+                    alerts = new ArrayList<AlertRule>();
+                }
+                alerts.add(rules.get(i));
+            }
+            violated[i] = isViolated;
+        }
+        return alerts;
+    }
+
+    /** Replay a task of the history, tasks must come in start order. */
+    @Override
+    public synchronized void visit(long id, long started, String category, int duration) {
+        stopUntil(started);
+        for (AlertRule rule : rules) {
+            rule.onStarted(category, started);
+        }
+        if (duration != TaskStore.OPEN) {
+            replayStops.add(new Stop(started + duration, category));
+        }
+    }
+
+    /** End the replay, the history is taken as known up to the given time. */
+    public synchronized void endReplay(long now) {
+        stopUntil(now);
+        replayStops.clear();
+        check(now);
+    }
+
+    private void stopUntil(long time) {
+        while (!replayStops.isEmpty() && replayStops.peek().time <= time) {
+            Stop stop = replayStops.poll();
+            for (AlertRule rule : rules) {
+                rule.onStopped(stop.category, stop.time);
+            }
+        }
+    }
+}
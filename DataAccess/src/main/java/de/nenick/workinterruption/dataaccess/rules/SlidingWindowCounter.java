@@ -0,0 +1,78 @@
+package de.nenick.workinterruption.dataaccess.rules;
+
+/**
+ * Number of events within a sliding time window, kept in a ring of buckets.
+ *
+ * <P>The window is split into a fixed number of buckets. Moving forward clears the buckets
+ * which fell out of the window, at most all of them, so each event and each count is O(1).
+ * Events are counted with the granularity of a bucket: the count covers the current bucket and
+ * the ones before it, between the window less one bucket and the whole window.</P>
+ *
+ * <P>Times should not go backwards. An event older than the newest one is counted into the
+ * newest bucket, one older than the window is dropped.</P>
+ */
+public class SlidingWindowCounter {
+
+    private final long bucketMillis;
+    private final int[] buckets;
+
+    // index of the newest bucket since 1970, its slot is index modulo the number of buckets
+    private long newest = Long.MIN_VALUE;
+    private int total;
+
+    /**
+     * @param windowMillis length of the window
+     * @param bucketCount number of buckets the window is split into
+     */
+    public SlidingWindowCounter(long windowMillis, int bucketCount) {
+        if (windowMillis < bucketCount || bucketCount < 1) {
+            throw new IllegalArgumentException("Window " + windowMillis + " can't have " + bucketCount + " buckets");
+        }
+        this.bucketMillis = windowMillis / bucketCount;
+        this.buckets = new int[bucketCount];
+    }
+
+    /** Count an event at the given time. */
+    public void add(long time) {
+        long index = bucket(time);
+        if (newest != Long.MIN_VALUE && index <= newest - buckets.length) {
+            return;
+        }
+        advance(index);
+        buckets[slot(Math.max(index, newest))]++;
+        total++;
+    }
+
+    /** @return number of events within the window which ends at the given time */
+    public int count(long now) {
+        advance(bucket(now));
+        return total;
+    }
+
+    private void advance(long index) {
+        if (newest == Long.MIN_VALUE) {
+            newest = index;
+            return;
+        }
+        if (index <= newest) {
+            return;
+        }
+        long steps = Math.min(index - newest, buckets.length);
+        for (long i = 1; i <= steps; i++) {
+            int slot = slot(newest + i);
+            total -= buckets[slot];
+            buckets[slot] = 0;
+        }
+        newest = index;
+    }
+
+    private long bucket(long time) {
+        long index = time / bucketMillis;
+        return time % bucketMillis < 0 ? index - 1 : index;
+    }
+
+    private int slot(long index) {
+        int slot = (int) (index % buckets.length);
+        return slot < 0 ? slot + buckets.length : slot;
+    }
+}
@@ -0,0 +1,52 @@
+package de.nenick.workinterruption.dataaccess.snapshot;
+
+import java.io.File;
+
+/**
+ * Layout of the history snapshot files.
+ *
+ * <P>The data file starts with a header {@code [int magic][int version][int count][int unused]
+ * [long watermark][long unused]} followed by {@code count} fixed width records
+ * {@code [long started][int duration][int categoryId]} sorted by start time. The snapshot
+ * holds all closed tasks started before the watermark.</P>
+ *
+ * <P>The category file holds the category names in id order, each written by
+ * {@link java.io.DataOutput#writeUTF}, so names are kept exactly. A name torn by a crash at the
+ * end of the file is ignored and cut off by the next append. Version 1 had one name per line in
+ * another file, it is removed by the next rewrite.</P>
+ */
+public final class HistorySnapshot {
+
+    static final int MAGIC = 0x57495348; // "WISH"
+    static final int VERSION = 2;
+
+    static final int HEADER_BYTES = 32;
+    static final int COUNT_POSITION = 8;
+    static final int WATERMARK_POSITION = 16;
+
+    static final int RECORD_BYTES = 16;
+    static final int DURATION_OFFSET = 8;
+    static final int CATEGORY_OFFSET = 12;
+
+    private static final String DATA_FILE = "history.snapshot";
+    private static final String CATEGORY_FILE = "history.category-names";
+    private static final String VERSION_1_CATEGORY_FILE = "history.categories";
+
+    private HistorySnapshot() {
+    }
+
+    /** @return the data file inside the given directory */
+    public static File dataFile(File directory) {
+        return new File(directory, DATA_FILE);
+    }
+
+    /** @return the category file inside the given directory */
+    public static File categoryFile(File directory) {
+        return new File(directory, CATEGORY_FILE);
+    }
+
+    /** @return the category file of version 1 inside the given directory */
+    static File version1CategoryFile(File directory) {
+        return new File(directory, VERSION_1_CATEGORY_FILE);
+    }
+}
@@ -0,0 +1,146 @@
+package de.nenick.workinterruption.dataaccess.snapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only view on a history snapshot, the data file is memory mapped.
+ *
+ * <P>Range scans are a binary search followed by sequential reads from the mapping,
+ * nothing is allocated per task. The view keeps the state from the time it was opened;
+ * open a new reader to see later snapshot updates.</P>
+ */
+public class HistorySnapshotReader {
+
+    private final MappedByteBuffer data;
+    private final int count;
+    private final long watermark;
+    private final String[] categories;
+
+    private HistorySnapshotReader(MappedByteBuffer data, String[] categories) throws IOException {
+        this.data = data;
+        if (data.getInt(0) != HistorySnapshot.MAGIC || data.getInt(4) != HistorySnapshot.VERSION) {
+            throw new IOException("Not a history snapshot");
+        }
+        this.count = data.getInt(HistorySnapshot.COUNT_POSITION);
+        this.watermark = data.getLong(HistorySnapshot.WATERMARK_POSITION);
+        this.categories = categories;
+    }
+
+    /** Map the snapshot inside the given directory. */
+    public static HistorySnapshotReader open(File directory) throws IOException {
+        String[] categories = readCategories(HistorySnapshot.categoryFile(directory));
+        RandomAccessFile file = new RandomAccessFile(HistorySnapshot.dataFile(directory), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new HistorySnapshotReader(data, categories);
+        } finally {
+            file.close();
+        }
+    }
+
+    /** @return number of tasks in the snapshot */
+    public int count() {
+        return count;
+    }
+
+    /** @return all closed tasks started before this time are part of the snapshot */
+    public long watermark() {
+        return watermark;
+    }
+
+    /** @return name of a category id passed to a {@link SnapshotVisitor} */
+    public String category(int categoryId) {
+        return categories[categoryId];
+    }
+
+    /** @return number of known category ids */
+    public int categoryCount() {
+        return categories.length;
+    }
+
+    /** @return id of the category or -1 if no task of the snapshot has it */
+    public int categoryId(String category) {
+        for (int i = 0; i < categories.length; i++) {
+            if (categories[i].equals(category)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Visit all tasks started within the range, ordered by start time. */
+    public void scan(long from, long to, SnapshotVisitor visitor) {
+        for (int i = firstIndexAtOrAfter(from); i < count; i++) {
+            int position = HistorySnapshot.HEADER_BYTES + i * HistorySnapshot.RECORD_BYTES;
+            long started = data.getLong(position);
+            if (started >= to) {
+                return;
+            }
+            visitor.visit(started,
+                    data.getInt(position + HistorySnapshot.DURATION_OFFSET),
+                    data.getInt(position + HistorySnapshot.CATEGORY_OFFSET));
+        }
+    }
+
+    private int firstIndexAtOrAfter(long time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (data.getLong(HistorySnapshot.HEADER_BYTES + mid * HistorySnapshot.RECORD_BYTES) < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    static String[] readCategories(File file) throws IOException {
+        List<String> categories = new ArrayList<String>();
+        readCategories(file, categories);
+        return categories.toArray(new String[categories.size()]);
+    }
+
+    /**
+     * Reads the complete names of the category file, a name torn by a crash is left out.
+     *
+     * @return length of the file part with complete names
+     */
+    static long readCategories(File file, List<String> categories) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        ByteArrayInputStream names = new ByteArrayInputStream(bytes);
+        DataInputStream data = new DataInputStream(names);
+        long complete = 0;
+        try {
+            while (names.available() > 0) {
+                categories.add(data.readUTF());
+                complete = bytes.length - names.available();
+            }
+        } catch (EOFException e) {
+            // torn name at the end
+        }
+        return complete;
+    }
+}
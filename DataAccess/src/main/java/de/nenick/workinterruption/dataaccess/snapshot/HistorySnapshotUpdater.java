@@ -0,0 +1,161 @@
+package de.nenick.workinterruption.dataaccess.snapshot;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.store.TaskWriteListener;
+
+/**
+ * Keeps the history snapshot in step with the task store, in the background.
+ *
+ * <P>Only tasks which can't change anymore go into the snapshot: the watermark stays behind
+ * the oldest running task and a day behind now, because a switch inserts its task when it is
+ * turned off. Writes behind the watermark, or writes whose rows are unknown, cause a rewrite.</P>
+ *
+ * <P>After each update a {@link HistorySnapshotReader} is published for {@link SnapshotTaskStore}.
+ * There is none while a rewrite is pending, the snapshot doesn't match the store then.</P>
+ */
+public class HistorySnapshotUpdater implements TaskWriteListener {
+
+    /** Distance of the watermark to now. */
+    static final long HOLDBACK_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final TaskStore store;
+    private final HistorySnapshotWriter writer;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // a crash may have lost a pending rewrite, so the first update always rewrites
+    private volatile boolean rewrite = true;
+
+    /** Watermark of the update in progress, writes behind it may be missed by it. */
+    private volatile long updatingTo = Long.MIN_VALUE;
+    private volatile HistorySnapshotReader reader;
+    /** Counts writes which made the snapshot stale, guarded by this. */
+    private long staleWrites;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            scheduled.set(false);
+            try {
+                refresh();
+            } catch (IOException e) {
+                Log.w(HistorySnapshotUpdater.class.getName(), "Updating the history snapshot failed", e);
+            }
+        }
+    };
+
+    public HistorySnapshotUpdater(File directory, TaskStore store) {
+        this.store = store;
+        this.writer = new HistorySnapshotWriter(directory);
+    }
+
+    /** Bring the snapshot up to date soon. */
+    public void refreshLater() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(refresh);
+        }
+    }
+
+    /** A task started at the given time was inserted, changed or deleted. */
+    public void onTaskWritten(long started) {
+        if (started < Math.max(writer.watermark(), updatingTo)) {
+            markStale();
+        }
+        refreshLater();
+    }
+
+    /** Tasks were changed without knowing which, rewrite the snapshot. */
+    public void invalidate() {
+        markStale();
+        refreshLater();
+    }
+
+    /** @return view on the snapshot as it matches the store, null while it doesn't */
+    public HistorySnapshotReader reader() {
+        return reader;
+    }
+
+    @Override
+    public void onTaskInserted(long id, long started, String category, int duration) {
+        onTaskWritten(started);
+    }
+
+    @Override
+    public void onTaskClosed(long id, long started, String category, int previousDuration, int duration) {
+        onTaskWritten(started);
+    }
+
+    @Override
+    public void onTaskDeleted(long id, long started, String category, int duration) {
+        onTaskWritten(started);
+    }
+
+    @Override
+    public void onTasksChanged() {
+        invalidate();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    void refresh() throws IOException {
+        long seen;
+        synchronized (this) {
+            seen = staleWrites;
+        }
+        long watermark = Math.min(System.currentTimeMillis() - HOLDBACK_MILLIS, oldestRunningTask());
+        boolean full = rewrite;
+        rewrite = false;
+        updatingTo = watermark;
+        boolean written = false;
+        try {
+            if (full) {
+                writer.rewrite(store, watermark);
+            } else {
+                writer.append(store, watermark);
+            }
+            written = true;
+        } finally {
+            updatingTo = Long.MIN_VALUE;
+            if (!written) {
+                // the files may be half written, start over next time
+                markStale();
+            }
+        }
+        publish(HistorySnapshotReader.open(writer.directory()), seen);
+    }
+
+    private synchronized void markStale() {
+        rewrite = true;
+        staleWrites++;
+        reader = null;
+    }
+
+    /** Publish the reader unless a write made it stale while it was written. */
+    private synchronized void publish(HistorySnapshotReader updated, long seen) {
+        if (staleWrites == seen) {
+            reader = updated;
+        }
+    }
+
+    private long oldestRunningTask() {
+        final long[] oldest = {Long.MAX_VALUE};
+        store.openTasks(new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                oldest[0] = Math.min(oldest[0], started);
+            }
+        });
+        return oldest[0];
+    }
+}
@@ -0,0 +1,198 @@
+package de.nenick.workinterruption.dataaccess.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Writes the history snapshot, see {@link HistorySnapshot} for the layout.
+ *
+ * <P>New tasks are appended behind the existing records and made visible by updating the
+ * header afterwards, so a crash never leaves a broken snapshot. Category ids never change,
+ * the category file only grows.</P>
+ */
+public class HistorySnapshotWriter {
+
+    private final File directory;
+
+    private volatile long watermark = Long.MIN_VALUE;
+
+    public HistorySnapshotWriter(File directory) {
+        this.directory = directory;
+        File data = HistorySnapshot.dataFile(directory);
+        if (data.length() >= HistorySnapshot.HEADER_BYTES) {
+            try {
+                watermark = HistorySnapshotReader.open(directory).watermark();
+            } catch (IOException e) {
+                watermark = Long.MIN_VALUE;
+            }
+        }
+    }
+
+    /** @return directory of the snapshot files */
+    public File directory() {
+        return directory;
+    }
+
+    /** @return all closed tasks started before this time are part of the snapshot */
+    public long watermark() {
+        return watermark;
+    }
+
+    /** @return true if there is a readable snapshot */
+    public boolean exists() {
+        return watermark != Long.MIN_VALUE;
+    }
+
+    /**
+     * Append the closed tasks started between the current and the new watermark.
+     * Creates the snapshot if there is none.
+     */
+    public synchronized void append(TaskStore store, long newWatermark) throws IOException {
+        if (!exists()) {
+            rewrite(store, newWatermark);
+            return;
+        }
+        if (newWatermark <= watermark) {
+            return;
+        }
+
+        Categories categories = new Categories();
+        ByteBuffer records = collect(store, watermark, newWatermark, categories);
+        categories.appendNew();
+
+        RandomAccessFile file = new RandomAccessFile(HistorySnapshot.dataFile(directory), "rw");
+        try {
+            file.seek(HistorySnapshot.COUNT_POSITION);
+            int count = file.readInt();
+            file.seek(HistorySnapshot.HEADER_BYTES + (long) count * HistorySnapshot.RECORD_BYTES);
+            file.write(records.array(), 0, records.position());
+            file.getFD().sync();
+
+            file.seek(HistorySnapshot.COUNT_POSITION);
+            file.writeInt(count + records.position() / HistorySnapshot.RECORD_BYTES);
+            file.seek(HistorySnapshot.WATERMARK_POSITION);
+            file.writeLong(newWatermark);
+            file.getFD().sync();
+        } finally {
+            file.close();
+        }
+        watermark = newWatermark;
+    }
+
+    /** Write a new snapshot of all closed tasks started before the watermark. */
+    public synchronized void rewrite(TaskStore store, long newWatermark) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create snapshot directory " + directory);
+        }
+        Categories categories = new Categories();
+        ByteBuffer records = collect(store, Long.MIN_VALUE, newWatermark, categories);
+        categories.appendNew();
+
+        File data = HistorySnapshot.dataFile(directory);
+        File temp = new File(directory, data.getName() + ".tmp");
+        FileOutputStream out = new FileOutputStream(temp);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HistorySnapshot.HEADER_BYTES);
+            header.putInt(HistorySnapshot.MAGIC);
+            header.putInt(HistorySnapshot.VERSION);
+            header.putInt(records.position() / HistorySnapshot.RECORD_BYTES);
+            header.putInt(0);
+            header.putLong(newWatermark);
+            header.putLong(0);
+            out.write(header.array());
+            out.write(records.array(), 0, records.position());
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(data)) {
+            throw new IOException("Can't replace snapshot " + data);
+        }
+        HistorySnapshot.version1CategoryFile(directory).delete();
+        watermark = newWatermark;
+    }
+
+    private ByteBuffer collect(TaskStore store, long from, long to, final Categories categories) {
+        final ByteBuffer[] records = {ByteBuffer.allocate(HistorySnapshot.RECORD_BYTES * 256)};
+        store.scan(from, to, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                if (duration == TaskStore.OPEN) {
+                    return;
+                }
+                ByteBuffer buffer = records[0];
+                if (buffer.remaining() < HistorySnapshot.RECORD_BYTES) {
+                    ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                    buffer.flip();
+                    larger.put(buffer);
+                    records[0] = buffer = larger;
+                }
+                buffer.putLong(started);
+                buffer.putInt(duration);
+                buffer.putInt(categories.idOf(category));
+            }
+        });
+        return records[0];
+    }
+
+    /** Category ids of the existing snapshot plus the ones added while collecting. */
+    private class Categories {
+
+        private final Map<String, Integer> ids = new HashMap<String, Integer>();
+        private final List<String> added = new ArrayList<String>();
+        private final long completeLength;
+        private int next;
+
+        Categories() throws IOException {
+            List<String> known = new ArrayList<String>();
+            completeLength = HistorySnapshotReader.readCategories(HistorySnapshot.categoryFile(directory), known);
+            for (String category : known) {
+                ids.put(category, next++);
+            }
+        }
+
+        int idOf(String category) {
+            Integer id = ids.get(category);
+            if (id == null) {
+                id = next++;
+                ids.put(category, id);
+                added.add(category);
+            }
+            return id;
+        }
+
+        /** Categories must be known before records refer to them. */
+        void appendNew() throws IOException {
+            if (added.isEmpty()) {
+                return;
+            }
+            ByteArrayOutputStream names = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(names);
+            for (String category : added) {
+                out.writeUTF(category);
+            }
+            RandomAccessFile file = new RandomAccessFile(HistorySnapshot.categoryFile(directory), "rw");
+            try {
+                // a name torn by a crash is cut off, no record refers to it
+                file.setLength(completeLength);
+                file.seek(completeLength);
+                file.write(names.toByteArray());
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+        }
+    }
+}
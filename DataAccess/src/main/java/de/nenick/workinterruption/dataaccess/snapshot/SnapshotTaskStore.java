@@ -0,0 +1,110 @@
+package de.nenick.workinterruption.dataaccess.snapshot;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.store.TaskBatch;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Task store which reads closed history from the memory mapped snapshot.
+ *
+ * <P>Range reads behind the snapshot watermark come from the snapshot, the rest and all writes
+ * go to the store. While the snapshot is stale everything is read from the store. Tasks read
+ * from the snapshot have no id, they are visited with {@link TaskStore#NO_ID}, so only pass
+ * this to consumers which don't need ids.</P>
+ */
+public class SnapshotTaskStore implements TaskStore {
+
+    private final TaskStore store;
+    private final HistorySnapshotUpdater snapshots;
+
+    public SnapshotTaskStore(TaskStore store, HistorySnapshotUpdater snapshots) {
+        this.store = store;
+        this.snapshots = snapshots;
+    }
+
+    @Override
+    public long insert(long id, long started, String category, int duration) {
+        return store.insert(id, started, category, duration);
+    }
+
+    @Override
+    public int insertAll(TaskBatch batch) {
+        return store.insertAll(batch);
+    }
+
+    @Override
+    public boolean close(long id, int duration, TaskVisitor previous) {
+        return store.close(id, duration, previous);
+    }
+
+    @Override
+    public boolean delete(long id, TaskVisitor previous) {
+        return store.delete(id, previous);
+    }
+
+    @Override
+    public boolean get(long id, TaskVisitor visitor) {
+        return store.get(id, visitor);
+    }
+
+    @Override
+    public void scan(long from, long to, final TaskVisitor visitor) {
+        final HistorySnapshotReader snapshot = snapshots.reader();
+        if (snapshot == null || from >= snapshot.watermark()) {
+            store.scan(from, to, visitor);
+            return;
+        }
+        long split = Math.min(to, snapshot.watermark());
+        snapshot.scan(from, split, new SnapshotVisitor() {
+            @Override
+            public void visit(long started, int duration, int categoryId) {
+                visitor.visit(NO_ID, started, snapshot.category(categoryId), duration);
+            }
+        });
+        if (split < to) {
+            store.scan(split, to, visitor);
+        }
+    }
+
+    @Override
+    public void openTasks(TaskVisitor visitor) {
+        store.openTasks(visitor);
+    }
+
+    @Override
+    public Map<String, Long> durationByCategory(long from, long to) {
+        final HistorySnapshotReader snapshot = snapshots.reader();
+        if (snapshot == null || from >= snapshot.watermark()) {
+            return store.durationByCategory(from, to);
+        }
+        long split = Math.min(to, snapshot.watermark());
+        final long[] sums = new long[snapshot.categoryCount()];
+        final boolean[] seen = new boolean[sums.length];
+        snapshot.scan(from, split, new SnapshotVisitor() {
+            @Override
+            public void visit(long started, int duration, int categoryId) {
+                sums[categoryId] += duration;
+                seen[categoryId] = true;
+            }
+        });
+        Map<String, Long> result = split < to
+                ? new HashMap<String, Long>(store.durationByCategory(split, to))
+                : new HashMap<String, Long>();
+        for (int i = 0; i < sums.length; i++) {
+            if (!seen[i]) {
+                continue;
+            }
+            Long sum = result.get(snapshot.category(i));
+            result.put(snapshot.category(i), sum == null ? sums[i] : sum + sums[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public void shutdown() {
+        store.shutdown();
+    }
+}
@@ -0,0 +1,12 @@
+package de.nenick.workinterruption.dataaccess.snapshot;
+
+/** Callback for tasks read from a history snapshot. */
+public interface SnapshotVisitor {
+
+    /**
+     * @param started task start time in milliseconds
+     * @param duration task duration in milliseconds
+     * @param categoryId resolve with {@link HistorySnapshotReader#category(int)}
+     */
+    void visit(long started, int duration, int categoryId);
+}
@@ -0,0 +1,228 @@
+package de.nenick.workinterruption.dataaccess.store;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the tasks in primitive arrays ordered by start time, nothing is persisted.
+ *
+ * Range scans are binary searches. Lookups by id walk backwards from the newest task,
+ * which is cheap for the usual case of closing a task that just started.
+ */
+public class MemoryTaskStore implements TaskStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /** Tasks copied per lock hold by {@link #scan}. */
+    private static final int SCAN_CHUNK = 256;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] started = new long[INITIAL_CAPACITY];
+    private int[] durations = new int[INITIAL_CAPACITY];
+    private String[] categories = new String[INITIAL_CAPACITY];
+    private int size;
+
+    private long nextId = 1;
+
+    @Override
+    public synchronized long insert(long id, long started, String category, int duration) {
+        if (id == NO_ID) {
+            id = nextId;
+        } else if (indexOf(id) >= 0) {
+            return -1;
+        }
+        nextId = Math.max(nextId, id + 1);
+
+        ensureCapacity(size + 1);
+        // behind all tasks with the same start time, so equal tasks keep their insert order
+        int position = firstIndexAfter(started);
+        int tail = size - position;
+        System.arraycopy(ids, position, ids, position + 1, tail);
+        System.arraycopy(this.started, position, this.started, position + 1, tail);
+        System.arraycopy(durations, position, durations, position + 1, tail);
+        System.arraycopy(categories, position, categories, position + 1, tail);
+
+        ids[position] = id;
+        this.started[position] = started;
+        durations[position] = duration;
+        categories[position] = category;
+        size++;
+        return id;
+    }
+
+    @Override
+    public synchronized int insertAll(TaskBatch batch) {
+        int inserted = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (insert(batch.id(i), batch.started(i), batch.category(i), batch.duration(i)) != -1) {
+                inserted++;
+            }
+        }
+        return inserted;
+    }
+
+    @Override
+    public synchronized boolean close(long id, int duration, TaskVisitor previous) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return false;
+        }
+        if (previous != null) {
+            previous.visit(ids[index], started[index], categories[index], durations[index]);
+        }
+        durations[index] = duration;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean delete(long id, TaskVisitor previous) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return false;
+        }
+        if (previous != null) {
+            previous.visit(ids[index], started[index], categories[index], durations[index]);
+        }
+        int tail = size - index - 1;
+        System.arraycopy(ids, index + 1, ids, index, tail);
+        System.arraycopy(started, index + 1, started, index, tail);
+        System.arraycopy(durations, index + 1, durations, index, tail);
+        System.arraycopy(categories, index + 1, categories, index, tail);
+        size--;
+        categories[size] = null;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean get(long id, TaskVisitor visitor) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return false;
+        }
+        visitor.visit(ids[index], started[index], categories[index], durations[index]);
+        return true;
+    }
+
+    /**
+     * Copies the tasks in chunks and visits them without holding the lock, so a slow visitor,
+     * e.g. an export into a pipe, doesn't block writers. Tasks written during the scan may or
+     * may not be visited.
+     */
+    @Override
+    public void scan(long from, long to, TaskVisitor visitor) {
+        long[] chunkIds = new long[SCAN_CHUNK];
+        long[] chunkStarted = new long[SCAN_CHUNK];
+        int[] chunkDurations = new int[SCAN_CHUNK];
+        String[] chunkCategories = new String[SCAN_CHUNK];
+        long resume = from;
+        // tasks started at resume which were visited already
+        int skip = 0;
+        int count;
+        do {
+            count = 0;
+            synchronized (this) {
+                for (int i = firstIndexAtOrAfter(resume) + skip; i < size && started[i] < to && count < SCAN_CHUNK; i++) {
+                    chunkIds[count] = ids[i];
+                    chunkStarted[count] = started[i];
+                    chunkDurations[count] = durations[i];
+                    chunkCategories[count] = categories[i];
+                    count++;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                visitor.visit(chunkIds[i], chunkStarted[i], chunkCategories[i], chunkDurations[i]);
+            }
+            if (count > 0) {
+                long last = chunkStarted[count - 1];
+                int ties = 0;
+                while (ties < count && chunkStarted[count - 1 - ties] == last) {
+                    ties++;
+                }
+                skip = last == resume ? skip + ties : ties;
+                resume = last;
+            }
+        } while (count == SCAN_CHUNK);
+    }
+
+    @Override
+    public synchronized void openTasks(TaskVisitor visitor) {
+        for (int i = 0; i < size; i++) {
+            if (durations[i] == OPEN) {
+                visitor.visit(ids[i], started[i], categories[i], durations[i]);
+            }
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Long> durationByCategory(long from, long to) {
+        Map<String, Long> result = new HashMap<String, Long>();
+        for (int i = firstIndexAtOrAfter(from); i < size && started[i] < to; i++) {
+            if (durations[i] == OPEN) {
+                continue;
+            }
+            Long sum = result.get(categories[i]);
+            result.put(categories[i], (sum == null ? 0 : sum) + durations[i]);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        size = 0;
+        Arrays.fill(categories, null);
+    }
+
+    /** @return number of stored tasks */
+    public synchronized int size() {
+        return size;
+    }
+
+    private int indexOf(long id) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int firstIndexAtOrAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (started[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int firstIndexAfter(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (started[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, ids.length * 2);
+        ids = Arrays.copyOf(ids, newCapacity);
+        started = Arrays.copyOf(started, newCapacity);
+        durations = Arrays.copyOf(durations, newCapacity);
+        categories = Arrays.copyOf(categories, newCapacity);
+    }
+}
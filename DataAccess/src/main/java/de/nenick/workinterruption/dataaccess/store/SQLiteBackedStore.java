@@ -0,0 +1,10 @@
+package de.nenick.workinterruption.dataaccess.store;
+
+import de.nenick.workinterruption.dataaccess.database.SQLiteHelper;
+
+/** A store which keeps its tasks in the SQLite task table, so SQL may read and write it directly. */
+public interface SQLiteBackedStore extends TaskStore {
+
+    /** @return helper for a task table which is up to date with all store operations */
+    SQLiteHelper getOpenHelper();
+}
@@ -0,0 +1,197 @@
+package de.nenick.workinterruption.dataaccess.store;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.database.SQLiteHelper;
+import de.nenick.workinterruption.dataaccess.database.TaskTable;
+
+/** Keeps the tasks in the SQLite task table. */
+public class SQLiteTaskStore implements SQLiteBackedStore {
+
+    private static final String[] COLUMNS = {
+            TaskTable._ID, TaskTable.COL_STARTED, TaskTable.COL_CATEGORY, TaskTable.COL_DURATION};
+
+    private static final String RANGE_SELECTION =
+            TaskTable.COL_STARTED + " >= ? AND " + TaskTable.COL_STARTED + " < ?";
+
+    private static final String ID_SELECTION = TaskTable._ID + " = ?";
+
+    private static final String OPEN_SELECTION = TaskTable.COL_DURATION + " is null";
+
+    private static final String ASCENDING = TaskTable.COL_STARTED + " ASC";
+
+    private static final String DURATION_BY_CATEGORY = "SELECT "
+            + TaskTable.COL_CATEGORY + ", SUM(" + TaskTable.COL_DURATION + ")"
+            + " FROM " + TaskTable.TABLE_NAME
+            + " WHERE " + RANGE_SELECTION + " AND " + TaskTable.COL_DURATION + " is not null"
+            + " GROUP BY " + TaskTable.COL_CATEGORY;
+
+    private static final String INSERT = "INSERT OR IGNORE INTO " + TaskTable.TABLE_NAME + " ("
+            + TaskTable.COL_STARTED + ", " + TaskTable.COL_CATEGORY + ", " + TaskTable.COL_DURATION
+            + ") VALUES (?, ?, ?)";
+
+    private static final String INSERT_WITH_ID = "INSERT OR IGNORE INTO " + TaskTable.TABLE_NAME + " ("
+            + TaskTable._ID + ", " + TaskTable.COL_STARTED + ", " + TaskTable.COL_CATEGORY + ", "
+            + TaskTable.COL_DURATION + ") VALUES (?, ?, ?, ?)";
+
+    private final SQLiteHelper openHelper;
+
+    public SQLiteTaskStore(Context context) {
+        this(new SQLiteHelper(context));
+    }
+
+    public SQLiteTaskStore(SQLiteHelper openHelper) {
+        this.openHelper = openHelper;
+    }
+
+    @Override
+    public SQLiteHelper getOpenHelper() {
+        return openHelper;
+    }
+
+    @Override
+    public long insert(long id, long started, String category, int duration) {
+        ContentValues values = new ContentValues();
+        if (id != NO_ID) {
+            values.put(TaskTable._ID, id);
+        }
+        values.put(TaskTable.COL_STARTED, started);
+        values.put(TaskTable.COL_CATEGORY, category);
+        if (duration != OPEN) {
+            values.put(TaskTable.COL_DURATION, duration);
+        }
+        return openHelper.getWritableDatabase().insert(TaskTable.TABLE_NAME, TaskTable.COL_CATEGORY, values);
+    }
+
+    @Override
+    public int insertAll(TaskBatch batch) {
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        SQLiteStatement generatedId = db.compileStatement(INSERT);
+        SQLiteStatement givenId = db.compileStatement(INSERT_WITH_ID);
+        int inserted = 0;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                SQLiteStatement statement = batch.id(i) == NO_ID ? generatedId : givenId;
+                statement.clearBindings();
+                int index = 1;
+                if (statement == givenId) {
+                    statement.bindLong(index++, batch.id(i));
+                }
+                statement.bindLong(index++, batch.started(i));
+                statement.bindString(index++, batch.category(i));
+                if (batch.duration(i) == OPEN) {
+                    statement.bindNull(index);
+                } else {
+                    statement.bindLong(index, batch.duration(i));
+                }
+                if (statement.executeInsert() != -1) {
+                    inserted++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            generatedId.close();
+            givenId.close();
+        }
+        return inserted;
+    }
+
+    @Override
+    public boolean close(long id, int duration, TaskVisitor previous) {
+        ContentValues values = new ContentValues();
+        values.put(TaskTable.COL_DURATION, duration);
+        String[] selectionArgs = {Long.toString(id)};
+        if (previous == null) {
+            return openHelper.getWritableDatabase().update(TaskTable.TABLE_NAME, values, ID_SELECTION, selectionArgs) > 0;
+        }
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            boolean closed = visitAll(query(ID_SELECTION, selectionArgs), previous) > 0
+                    && db.update(TaskTable.TABLE_NAME, values, ID_SELECTION, selectionArgs) > 0;
+            db.setTransactionSuccessful();
+            return closed;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public boolean delete(long id, TaskVisitor previous) {
+        String[] selectionArgs = {Long.toString(id)};
+        if (previous == null) {
+            return openHelper.getWritableDatabase().delete(TaskTable.TABLE_NAME, ID_SELECTION, selectionArgs) > 0;
+        }
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            boolean deleted = visitAll(query(ID_SELECTION, selectionArgs), previous) > 0
+                    && db.delete(TaskTable.TABLE_NAME, ID_SELECTION, selectionArgs) > 0;
+            db.setTransactionSuccessful();
+            return deleted;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public boolean get(long id, TaskVisitor visitor) {
+        return visitAll(query(ID_SELECTION, new String[]{Long.toString(id)}), visitor) > 0;
+    }
+
+    @Override
+    public void scan(long from, long to, TaskVisitor visitor) {
+        visitAll(query(RANGE_SELECTION, new String[]{Long.toString(from), Long.toString(to)}), visitor);
+    }
+
+    @Override
+    public void openTasks(TaskVisitor visitor) {
+        visitAll(query(OPEN_SELECTION, null), visitor);
+    }
+
+    @Override
+    public Map<String, Long> durationByCategory(long from, long to) {
+        Map<String, Long> result = new HashMap<String, Long>();
+        Cursor cursor = openHelper.getReadableDatabase().rawQuery(
+                DURATION_BY_CATEGORY, new String[]{Long.toString(from), Long.toString(to)});
+        try {
+            while (cursor.moveToNext()) {
+                result.put(cursor.getString(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    @Override
+    public void shutdown() {
+        openHelper.close();
+    }
+
+    private Cursor query(String selection, String[] selectionArgs) {
+        SQLiteDatabase db = openHelper.getReadableDatabase();
+        return db.query(TaskTable.TABLE_NAME, COLUMNS, selection, selectionArgs, null, null, ASCENDING);
+    }
+
+    private static int visitAll(Cursor cursor, TaskVisitor visitor) {
+        try {
+            while (cursor.moveToNext()) {
+                int duration = cursor.isNull(3) ? OPEN : cursor.getInt(3);
+                visitor.visit(cursor.getLong(0), cursor.getLong(1), cursor.getString(2), duration);
+            }
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+}
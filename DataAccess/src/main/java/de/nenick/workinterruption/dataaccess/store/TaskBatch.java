@@ -0,0 +1,65 @@
+package de.nenick.workinterruption.dataaccess.store;
+
+/** Fixed size chunk of tasks for {@link TaskStore#insertAll(TaskBatch)}, reused after {@link #clear()}. */
+public class TaskBatch {
+
+    private final long[] ids;
+    private final long[] started;
+    private final String[] categories;
+    private final int[] durations;
+    private int size;
+
+    public TaskBatch(int capacity) {
+        ids = new long[capacity];
+        started = new long[capacity];
+        categories = new String[capacity];
+        durations = new int[capacity];
+    }
+
+    /**
+     * Add a task, see {@link TaskStore#insert} for the values.
+     *
+     * @throws IllegalStateException if the batch is full
+     */
+    public void add(long id, long started, String category, int duration) {
+        if (isFull()) {
+            throw new IllegalStateException("Batch is full");
+        }
+        this.ids[size] = id;
+        this.started[size] = started;
+        this.categories[size] = category;
+        this.durations[size] = duration;
+        size++;
+    }
+
+    public boolean isFull() {
+        return size == ids.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int index) {
+        return ids[index];
+    }
+
+    public long started(int index) {
+        return started[index];
+    }
+
+    public String category(int index) {
+        return categories[index];
+    }
+
+    public int duration(int index) {
+        return durations[index];
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            categories[i] = null;
+        }
+        size = 0;
+    }
+}
@@ -0,0 +1,66 @@
+package de.nenick.workinterruption.dataaccess.store;
+
+import java.util.Map;
+
+/**
+ * Storage backend for the task history.
+ *
+ * The operations are plain java so different backends can be compared against each other
+ * on the JVM. Ranges are always half open, from inclusive and to exclusive.
+ */
+public interface TaskStore {
+
+    /** Pass as id to {@link #insert} to let the store generate one. */
+    long NO_ID = 0;
+
+    /** Duration of a task which is still running. */
+    int OPEN = -1;
+
+    /**
+     * Add a task.
+     *
+     * @param id task identifier or {@link #NO_ID}
+     * @param started task start time in milliseconds
+     * @param category task category
+     * @param duration task duration in milliseconds or {@link #OPEN}
+     * @return identifier of the new task or -1 if it could not be stored (e.g. id already exists)
+     */
+    long insert(long id, long started, String category, int duration);
+
+    /**
+     * Add several tasks, in one transaction where the store has transactions.
+     * Tasks which could not be stored (e.g. id already exists) are skipped.
+     *
+     * @return number of added tasks
+     */
+    int insertAll(TaskBatch batch);
+
+    /**
+     * Set the duration of a task.
+     *
+     * @param previous told about the task as it was before, may be null
+     * @return true if the task exists
+     */
+    boolean close(long id, int duration, TaskVisitor previous);
+
+    /**
+     * @param previous told about the removed task, may be null
+     * @return true if the task existed
+     */
+    boolean delete(long id, TaskVisitor previous);
+
+    /** @return true if the task exists and was passed to the visitor */
+    boolean get(long id, TaskVisitor visitor);
+
+    /** Visit all tasks started within the range, ordered by start time ascending. */
+    void scan(long from, long to, TaskVisitor visitor);
+
+    /** Visit all running tasks, ordered by start time ascending. */
+    void openTasks(TaskVisitor visitor);
+
+    /** Sum of durations per category for closed tasks started within the range. */
+    Map<String, Long> durationByCategory(long from, long to);
+
+    /** Release all resources, the store must not be used afterwards. */
+    void shutdown();
+}
@@ -0,0 +1,55 @@
+package de.nenick.workinterruption.dataaccess.store;
+
+import android.content.Context;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.nenick.workinterruption.dataaccess.eventlog.EventLogTaskStore;
+
+/** Creates the configured {@link TaskStore}. */
+public final class TaskStoreFactory {
+
+    /**
+     * Name of the provider meta-data entry which selects the backend.
+     * <P>Type: String ({@link #BACKEND_SQLITE}, {@link #BACKEND_EVENT_LOG} or {@link #BACKEND_MEMORY})</P>
+     */
+    public static final String META_DATA_BACKEND = "de.nenick.workinterruption.store";
+
+    /** Persistent backend on top of the SQLite task table, the default. */
+    public static final String BACKEND_SQLITE = "sqlite";
+
+    /** Append-only event log, projected into the SQLite task table in the background. */
+    public static final String BACKEND_EVENT_LOG = "eventlog";
+
+    /** Directory below the app files which holds the event log segments. */
+    private static final String EVENT_LOG_DIRECTORY = "task_events";
+
+    /** Volatile backend on top of plain java arrays. */
+    public static final String BACKEND_MEMORY = "memory";
+
+    private TaskStoreFactory() {
+    }
+
+    /**
+     * @param backend one of the BACKEND_ constants, null selects the default
+     * @throws IllegalArgumentException for unknown backends
+     */
+    public static TaskStore create(Context context, String backend) {
+        if (backend == null || BACKEND_SQLITE.equals(backend)) {
+            return new SQLiteTaskStore(context);
+        }
+        if (BACKEND_EVENT_LOG.equals(backend)) {
+            try {
+                return new EventLogTaskStore(new SQLiteTaskStore(context),
+                        new File(context.getFilesDir(), EVENT_LOG_DIRECTORY));
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't open the task event log", e);
+            }
+        }
+        if (BACKEND_MEMORY.equals(backend)) {
+            return new MemoryTaskStore();
+        }
+        throw new IllegalArgumentException("Unknown task store backend " + backend);
+    }
+}
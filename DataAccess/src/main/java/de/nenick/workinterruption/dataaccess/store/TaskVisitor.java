@@ -0,0 +1,13 @@
+package de.nenick.workinterruption.dataaccess.store;
+
+/** Callback for tasks delivered by a {@link TaskStore}, one call per task without allocations. */
+public interface TaskVisitor {
+
+    /**
+     * @param id unique task identifier
+     * @param started task start time in milliseconds
+     * @param category task category
+     * @param duration task duration in milliseconds or {@link TaskStore#OPEN} while running
+     */
+    void visit(long id, long started, String category, int duration);
+}
@@ -0,0 +1,25 @@
+package de.nenick.workinterruption.dataaccess.store;
+
+/** Told about task writes, after they happened. */
+public interface TaskWriteListener {
+
+    /** A task was added. */
+    void onTaskInserted(long id, long started, String category, int duration);
+
+    /**
+     * A task got its duration.
+     *
+     * @param previousDuration duration before, {@link TaskStore#OPEN} if the task was running
+     */
+    void onTaskClosed(long id, long started, String category, int previousDuration, int duration);
+
+    /**
+     * A task was removed.
+     *
+     * @param duration its duration, {@link TaskStore#OPEN} if it was running
+     */
+    void onTaskDeleted(long id, long started, String category, int duration);
+
+    /** Tasks were changed by free-form SQL, which ones is unknown. */
+    void onTasksChanged();
+}
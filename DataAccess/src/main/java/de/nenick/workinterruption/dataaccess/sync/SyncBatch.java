@@ -0,0 +1,145 @@
+package de.nenick.workinterruption.dataaccess.sync;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Changes of one device covering a range of change feed sequence numbers, sent as one request.
+ *
+ * <P>Rows are identified by "device:taskId", so applying a batch twice has no further effect.
+ * On the wire a batch is gzip compressed: version, device, first and last sequence number,
+ * reset flag, row count and the rows.</P>
+ *
+ * <P>After the change feed dropped changes the device pushes all its tasks. The first batch of
+ * such a push is a reset, its rows replace all rows stored for the device, so tasks deleted in
+ * the dropped changes disappear too.</P>
+ */
+public class SyncBatch {
+
+    /** MIME type of a batch on the wire. */
+    public static final String CONTENT_TYPE = "application/vnd.nenick.workinterruption.sync";
+
+    /** Row was inserted or changed, receivers store its values. */
+    public static final byte OP_UPSERT = 1;
+
+    /** Row was deleted. */
+    public static final byte OP_DELETE = 2;
+
+    private static final int VERSION = 2;
+
+    /** Last version without the reset flag. */
+    private static final int VERSION_WITHOUT_RESET = 1;
+
+    /** Values of one changed row. */
+    public static class Row {
+        public final String rowId;
+        public final byte op;
+        public final long started;
+        public final String category;
+        public final int duration;
+
+        Row(String rowId, byte op, long started, String category, int duration) {
+            this.rowId = rowId;
+            this.op = op;
+            this.started = started;
+            this.category = category;
+            this.duration = duration;
+        }
+    }
+
+    private final String device;
+    private final long firstSeq;
+    private long lastSeq;
+    private boolean reset;
+    private final List<Row> rows = new ArrayList<Row>();
+
+    /** @param firstSeq and lastSeq the change feed range the rows come from */
+    public SyncBatch(String device, long firstSeq, long lastSeq) {
+        this.device = device;
+        this.firstSeq = firstSeq;
+        this.lastSeq = lastSeq;
+    }
+
+    /** @return the row id of a task of a device */
+    public static String rowId(String device, long taskId) {
+        return device + ":" + taskId;
+    }
+
+    public void add(long taskId, byte op, long started, String category, int duration) {
+        rows.add(new Row(rowId(device, taskId), op, started, category == null ? "" : category, duration));
+    }
+
+    public String device() {
+        return device;
+    }
+
+    public long firstSeq() {
+        return firstSeq;
+    }
+
+    public long lastSeq() {
+        return lastSeq;
+    }
+
+    /** Extend the covered range, while rows are added. */
+    public void setLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    /** @return true if the rows replace all rows stored for the device */
+    public boolean isReset() {
+        return reset;
+    }
+
+    /** Mark the first batch of a push of all tasks. */
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+
+    public List<Row> rows() {
+        return rows;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+        DataOutputStream data = new DataOutputStream(compressed);
+        data.writeByte(VERSION);
+        data.writeUTF(device);
+        data.writeLong(firstSeq);
+        data.writeLong(lastSeq);
+        data.writeBoolean(reset);
+        data.writeInt(rows.size());
+        for (Row row : rows) {
+            data.writeUTF(row.rowId);
+            data.writeByte(row.op);
+            data.writeLong(row.started);
+            data.writeUTF(row.category);
+            data.writeInt(row.duration);
+        }
+        data.flush();
+        compressed.finish();
+    }
+
+    /** @throws IOException if the stream is no batch */
+    public static SyncBatch readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new GZIPInputStream(in, 8192));
+        int version = data.readUnsignedByte();
+        if (version != VERSION && version != VERSION_WITHOUT_RESET) {
+            throw new IOException("Unsupported sync batch version " + version);
+        }
+        SyncBatch batch = new SyncBatch(data.readUTF(), data.readLong(), data.readLong());
+        batch.reset = version != VERSION_WITHOUT_RESET && data.readBoolean();
+        int count = data.readInt();
+        for (int i = 0; i < count; i++) {
+            batch.rows.add(new Row(data.readUTF(), data.readByte(), data.readLong(), data.readUTF(), data.readInt()));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,147 @@
+package de.nenick.workinterruption.dataaccess.sync;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.IOException;
+
+import de.nenick.workinterruption.dataaccess.api.WorkInterruption;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/**
+ * Pushes the task changes behind the last synced sequence number to a receiver, in batches.
+ *
+ * <P>The client reads the change feed as consumer {@link #CONSUMER} and acknowledges each batch
+ * after the receiver stored it. If the receiver is ahead, because an acknowledgement got lost,
+ * the client continues behind the receiver. On the first sync the feed has dropped the older
+ * changes, then all tasks are pushed once and replace what the receiver stored.</P>
+ */
+public class SyncClient {
+
+    /** Name of the client in the change feed. */
+    public static final String CONSUMER = "sync";
+
+    /** Rows per request. */
+    public static final int BATCH_ROWS = 500;
+
+    private static final String STATE_FILE = "sync.properties";
+
+    private static final String[] TASK_COLUMNS = {
+            WorkInterruption.Task.VALUE_ID, WorkInterruption.Task.VALUE_STARTED,
+            WorkInterruption.Task.VALUE_CATEGORY, WorkInterruption.Task.VALUE_DURATION
+    };
+
+    private final ContentResolver resolver;
+    private final SyncTransport transport;
+    private final SyncState state;
+
+    public SyncClient(Context context, SyncTransport transport) throws IOException {
+        this.resolver = context.getContentResolver();
+        this.transport = transport;
+        this.state = new SyncState(new File(context.getFilesDir(), STATE_FILE));
+    }
+
+    /**
+     * Push everything which changed since the last sync. Call it off the UI thread.
+     *
+     * @return number of pushed rows
+     * @throws IOException if the receiver could not be reached, the next call continues
+     */
+    public synchronized int syncNow() throws IOException {
+        long watermark = Math.max(state.watermark(), transport.watermark(state.device()));
+        int pushed = 0;
+        while (true) {
+            SyncBatch batch = null;
+            long resetSeq = -1;
+            Cursor changes = resolver.query(changesSince(watermark), null, null, null, null);
+            try {
+                int seqIndex = changes.getColumnIndexOrThrow(WorkInterruption.Change.VALUE_SEQ);
+                int opIndex = changes.getColumnIndexOrThrow(WorkInterruption.Change.VALUE_OP);
+                int idIndex = changes.getColumnIndexOrThrow(WorkInterruption.Change.VALUE_TASK_ID);
+                int startedIndex = changes.getColumnIndexOrThrow(WorkInterruption.Task.VALUE_STARTED);
+                int categoryIndex = changes.getColumnIndexOrThrow(WorkInterruption.Task.VALUE_CATEGORY);
+                int durationIndex = changes.getColumnIndexOrThrow(WorkInterruption.Task.VALUE_DURATION);
+
+                if (changes.moveToFirst() && changes.getInt(opIndex) == WorkInterruption.Change.OP_RESET) {
+                    resetSeq = changes.getLong(seqIndex);
+                } else if (changes.getCount() > 0) {
+                    batch = new SyncBatch(state.device(), changes.getLong(seqIndex), changes.getLong(seqIndex));
+                    do {
+                        byte op = changes.getInt(opIndex) == WorkInterruption.Change.OP_DELETE
+                                ? SyncBatch.OP_DELETE : SyncBatch.OP_UPSERT;
+                        batch.add(changes.getLong(idIndex), op, changes.getLong(startedIndex),
+                                changes.getString(categoryIndex), duration(changes, durationIndex));
+                        batch.setLastSeq(changes.getLong(seqIndex));
+                    } while (batch.rows().size() < BATCH_ROWS && changes.moveToNext());
+                }
+            } finally {
+                changes.close();
+            }
+
+            if (resetSeq >= 0) {
+                pushed += pushAllTasks(resetSeq);
+                watermark = resetSeq;
+            } else if (batch != null) {
+                transport.send(batch);
+                pushed += batch.rows().size();
+                watermark = batch.lastSeq();
+            } else {
+                break;
+            }
+            state.setWatermark(watermark);
+            acknowledge(watermark);
+            if (batch != null && batch.rows().size() < BATCH_ROWS) {
+                break;
+            }
+        }
+        return pushed;
+    }
+
+    /**
+     * Pushes every task, the batches are marked with the sequence number of the reset. The first
+     * one is sent even without tasks, it replaces what the receiver stored for the device.
+     */
+    private int pushAllTasks(long resetSeq) throws IOException {
+        int pushed = 0;
+        Cursor tasks = resolver.query(WorkInterruption.Task.CONTENT_URI, TASK_COLUMNS, null, null,
+                WorkInterruption.Task.ASCENDING_SORT_ORDER);
+        try {
+            SyncBatch batch = new SyncBatch(state.device(), resetSeq, resetSeq);
+            batch.setReset(true);
+            while (tasks.moveToNext()) {
+                batch.add(tasks.getLong(0), SyncBatch.OP_UPSERT, tasks.getLong(1), tasks.getString(2), duration(tasks, 3));
+                if (batch.rows().size() == BATCH_ROWS) {
+                    transport.send(batch);
+                    pushed += batch.rows().size();
+                    batch = new SyncBatch(state.device(), resetSeq, resetSeq);
+                }
+            }
+            if (batch.isReset() || !batch.rows().isEmpty()) {
+                transport.send(batch);
+                pushed += batch.rows().size();
+            }
+        } finally {
+            tasks.close();
+        }
+        return pushed;
+    }
+
+    private void acknowledge(long seq) {
+        ContentValues values = new ContentValues();
+        values.put(WorkInterruption.Change.VALUE_ACKED, seq);
+        resolver.update(Uri.withAppendedPath(WorkInterruption.Change.CONSUMER_URI_BASE, CONSUMER), values, null, null);
+    }
+
+    private static Uri changesSince(long seq) {
+        return WorkInterruption.Change.CONTENT_URI.buildUpon()
+                .appendQueryParameter(WorkInterruption.Change.PARAM_SINCE, Long.toString(seq)).build();
+    }
+
+    private static int duration(Cursor cursor, int index) {
+        return cursor.isNull(index) ? TaskStore.OPEN : cursor.getInt(index);
+    }
+}
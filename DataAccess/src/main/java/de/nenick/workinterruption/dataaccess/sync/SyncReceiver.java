@@ -0,0 +1,210 @@
+package de.nenick.workinterruption.dataaccess.sync;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Reference receiver of the {@link SyncTransport} protocol on plain java.net sockets, keeping
+ * the rows in memory. Runs on a desktop JVM as stand-in for a real server.
+ *
+ * <P>A batch is skipped if its last sequence number is below the stored watermark of its
+ * device, replays of the newest batch are applied again, which changes nothing. A reset batch
+ * first drops all rows of its device.</P>
+ */
+public class SyncReceiver {
+
+    private static final int MAX_BODY_BYTES = 64 * 1024 * 1024;
+
+    private final Map<String, SyncBatch.Row> rows = new ConcurrentHashMap<String, SyncBatch.Row>();
+    private final Map<String, Set<String>> rowIdsByDevice = new HashMap<String, Set<String>>();
+    private final Map<String, Long> watermarks = new HashMap<String, Long>();
+    private final ExecutorService workers;
+    private ServerSocket server;
+    private volatile int appliedBatches;
+
+    public SyncReceiver(int threads) {
+        workers = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Start accepting connections.
+     *
+     * @param port to listen on, 0 for any free port
+     * @return the port listened on
+     */
+    public int start(int port) throws IOException {
+        server = new ServerSocket(port);
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "SyncReceiver");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    public void stop() throws IOException {
+        server.close();
+        workers.shutdown();
+    }
+
+    /** @return the stored row or null */
+    public SyncBatch.Row row(String rowId) {
+        return rows.get(rowId);
+    }
+
+    public int rowCount() {
+        return rows.size();
+    }
+
+    /** @return number of batches which changed something */
+    public int appliedBatches() {
+        return appliedBatches;
+    }
+
+    public synchronized long watermark(String device) {
+        Long watermark = watermarks.get(device);
+        return watermark == null ? 0 : watermark;
+    }
+
+    /** @return false if the batch was skipped as outdated */
+    public synchronized boolean apply(SyncBatch batch) {
+        if (batch.lastSeq() < watermark(batch.device())) {
+            return false;
+        }
+        Set<String> rowIds = rowIdsByDevice.get(batch.device());
+        if (rowIds == null) {
+            rowIds = new HashSet<String>();
+            rowIdsByDevice.put(batch.device(), rowIds);
+        }
+        if (batch.isReset()) {
+            rows.keySet().removeAll(rowIds);
+            rowIds.clear();
+        }
+        for (SyncBatch.Row row : batch.rows()) {
+            if (row.op == SyncBatch.OP_DELETE) {
+                rows.remove(row.rowId);
+                rowIds.remove(row.rowId);
+            } else {
+                rows.put(row.rowId, row);
+                rowIds.add(row.rowId);
+            }
+        }
+        watermarks.put(batch.device(), batch.lastSeq());
+        appliedBatches++;
+        return true;
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                final Socket socket = server.accept();
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch (SocketException e) {
+                // closed by stop()
+            } catch (IOException e) {
+                // next connection
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            try {
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                String[] request = readLine(in).split(" ");
+                Map<String, String> headers = new HashMap<String, String>();
+                String header;
+                while ((header = readLine(in)).length() > 0) {
+                    int colon = header.indexOf(':');
+                    if (colon > 0) {
+                        headers.put(header.substring(0, colon).trim().toLowerCase(), header.substring(colon + 1).trim());
+                    }
+                }
+                if (request.length < 2) {
+                    respond(socket, 400, "bad request");
+                } else if ("POST".equals(request[0]) && "/batches".equals(request[1])) {
+                    apply(SyncBatch.readFrom(new ByteArrayInputStream(readBody(in, headers))));
+                    respond(socket, 200, "ok");
+                } else if ("GET".equals(request[0]) && request[1].startsWith("/watermark?device=")) {
+                    String device = URLDecoder.decode(request[1].substring("/watermark?device=".length()), "UTF-8");
+                    respond(socket, 200, Long.toString(watermark(device)));
+                } else {
+                    respond(socket, 404, "not found");
+                }
+            } catch (IOException e) {
+                respond(socket, 400, String.valueOf(e.getMessage()));
+            } finally {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // connection is gone
+        }
+    }
+
+    private static byte[] readBody(InputStream in, Map<String, String> headers) throws IOException {
+        String length = headers.get("content-length");
+        if (length == null) {
+            throw new IOException("Content-Length required");
+        }
+        int size;
+        try {
+            size = Integer.parseInt(length);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid Content-Length " + length);
+        }
+        if (size < 0 || size > MAX_BODY_BYTES) {
+            throw new IOException("Body too large");
+        }
+        byte[] body = new byte[size];
+        new DataInputStream(in).readFully(body);
+        return body;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        if (c == -1 && line.length() == 0) {
+            throw new IOException("Connection closed");
+        }
+        return line.toString();
+    }
+
+    private static void respond(Socket socket, int status, String text) throws IOException {
+        byte[] body = text.getBytes("UTF-8");
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 " + status + (status == 200 ? " OK" : " Error") + "\r\n"
+                + "Content-Type: text/plain; charset=utf-8\r\n"
+                + "Content-Length: " + body.length + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes("US-ASCII"));
+        out.write(body);
+        out.flush();
+    }
+}
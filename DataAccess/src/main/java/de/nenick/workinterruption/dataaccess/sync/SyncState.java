@@ -0,0 +1,72 @@
+package de.nenick.workinterruption.dataaccess.sync;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.UUID;
+
+/** Device id and last synced sequence number, kept in a small properties file. */
+class SyncState {
+
+    private static final String KEY_DEVICE = "device";
+    private static final String KEY_WATERMARK = "watermark";
+
+    private final File file;
+    private final String device;
+    private long watermark;
+
+    /** Loads the state, a new device id is generated on first use. */
+    SyncState(File file) throws IOException {
+        this.file = file;
+        Properties properties = new Properties();
+        if (file.exists()) {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        }
+        String storedDevice = properties.getProperty(KEY_DEVICE);
+        if (storedDevice == null) {
+            device = UUID.randomUUID().toString();
+            save();
+        } else {
+            device = storedDevice;
+            watermark = Long.parseLong(properties.getProperty(KEY_WATERMARK, "0"));
+        }
+    }
+
+    String device() {
+        return device;
+    }
+
+    long watermark() {
+        return watermark;
+    }
+
+    void setWatermark(long watermark) throws IOException {
+        this.watermark = watermark;
+        save();
+    }
+
+    private void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_DEVICE, device);
+        properties.setProperty(KEY_WATERMARK, Long.toString(watermark));
+        File temp = new File(file.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Unable to replace " + file);
+        }
+    }
+}
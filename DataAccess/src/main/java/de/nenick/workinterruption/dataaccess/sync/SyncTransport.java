@@ -0,0 +1,131 @@
+package de.nenick.workinterruption.dataaccess.sync;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+
+/**
+ * Sends batches to a receiver over HTTP and retries failures with growing pauses. Retrying is
+ * safe because receivers apply a batch at most once.
+ *
+ * <P>Protocol: POST {endpoint}/batches with a {@link SyncBatch} body, answered by 200 once the
+ * batch is stored. GET {endpoint}/watermark?device=... answers the last stored sequence number
+ * of a device as plain text.</P>
+ */
+public class SyncTransport {
+
+    private static final int TIMEOUT_MILLIS = 15000;
+
+    private final String endpoint;
+    private final int attempts;
+    private final long backoffMillis;
+
+    /**
+     * @param endpoint base URL of the receiver, without trailing slash
+     * @param attempts how often a request is tried
+     * @param backoffMillis pause after the first failure, doubled after each further one
+     */
+    public SyncTransport(String endpoint, int attempts, long backoffMillis) {
+        this.endpoint = endpoint;
+        this.attempts = attempts;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /** @throws IOException if the last attempt failed */
+    public void send(SyncBatch batch) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        batch.writeTo(body);
+        byte[] bytes = body.toByteArray();
+
+        IOException failure = null;
+        long pause = backoffMillis;
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            if (attempt > 0) {
+                sleep(pause);
+                pause *= 2;
+            }
+            try {
+                post(bytes);
+                return;
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    /** @return the last sequence number the receiver has stored for the device, 0 for none */
+    public long watermark(String device) throws IOException {
+        HttpURLConnection connection = open(endpoint + "/watermark?device=" + URLEncoder.encode(device, "UTF-8"));
+        try {
+            checkResponse(connection);
+            return Long.parseLong(readText(connection.getInputStream()).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid watermark from " + endpoint);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private void post(byte[] body) throws IOException {
+        HttpURLConnection connection = open(endpoint + "/batches");
+        try {
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setRequestProperty("Content-Type", SyncBatch.CONTENT_TYPE);
+            connection.setFixedLengthStreamingMode(body.length);
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+            checkResponse(connection);
+            readText(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        return connection;
+    }
+
+    private static void checkResponse(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            throw new IOException("Receiver answered " + status + " for " + connection.getURL());
+        }
+    }
+
+    private static String readText(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                text.write(buffer, 0, read);
+            }
+            return text.toString("UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to retry");
+        }
+    }
+}
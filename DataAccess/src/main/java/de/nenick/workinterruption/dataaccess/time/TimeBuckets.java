@@ -0,0 +1,264 @@
+package de.nenick.workinterruption.dataaccess.time;
+
+import java.text.DateFormatSymbols;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Maps times to local days, weeks and hours of a time zone with arithmetic only, no
+ * {@code Calendar} and no allocations.
+ *
+ * <P>The offsets of the zone are read once into a table of transitions from 1970 to 2038: the
+ * zone is probed week by week and each change is searched to the millisecond. A lookup is a
+ * binary search in the table, daylight saving switches included. Two changes less than a week
+ * apart are not seen, no zone has them since 1970. Times outside of the table ask the zone.</P>
+ *
+ * <P>Days are epoch days, days since 1970-01-01 in local time. Weeks start on Monday and are
+ * identified by the epoch day of their Monday.</P>
+ */
+public final class TimeBuckets {
+
+    public static final long HOUR_MILLIS = 60L * 60 * 1000;
+    public static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+    private static final long WEEK_MILLIS = 7 * DAY_MILLIS;
+
+    // end of the table, 2038-01-19 like 32 bit unix time
+    private static final long TABLE_END = (long) Integer.MAX_VALUE * 1000;
+
+    // a change of the default zone or locale is seen within this time
+    private static final long DEFAULT_CHECK_MILLIS = 1000;
+
+    private static final int LABEL_CACHE_SIZE = 64;
+
+    private static volatile TimeBuckets sDefault;
+    private static volatile long sDefaultChecked;
+    private static volatile TimeBuckets sLast;
+
+    private final TimeZone zone;
+    private final long[] transitions;
+    private final int[] offsets;
+    // checked before use, a stale value from another thread only costs a search
+    private int lastIndex;
+
+    private final Locale locale;
+    private final String[] weekdays;
+    // direct mapped by epoch day, an entry is a Label so readers see it whole
+    private final Label[] labels = new Label[LABEL_CACHE_SIZE];
+
+    private static final class Label {
+        final int day;
+        final String text;
+
+        Label(int day, String text) {
+            this.day = day;
+            this.text = text;
+        }
+    }
+
+    private TimeBuckets(TimeZone zone, Locale locale) {
+        this.zone = (TimeZone) zone.clone();
+        this.locale = locale;
+
+        long[] starts = new long[16];
+        int[] values = new int[16];
+        int count = 0;
+        long probe = 0;
+        int offset = zone.getOffset(probe);
+        starts[count] = probe;
+        values[count++] = offset;
+        while (probe < TABLE_END) {
+            long next = Math.min(TABLE_END, probe + WEEK_MILLIS);
+            int nextOffset = zone.getOffset(next);
+            if (nextOffset != offset) {
+                // the first millisecond with another offset
+                long low = probe;
+                long high = next;
+                while (high - low > 1) {
+                    long middle = (low + high) >>> 1;
+                    if (zone.getOffset(middle) == offset) {
+                        low = middle;
+                    } else {
+                        high = middle;
+                    }
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    values = Arrays.copyOf(values, count * 2);
+                }
+                starts[count] = high;
+                values[count++] = zone.getOffset(high);
+                offset = nextOffset;
+            }
+            probe = next;
+        }
+        transitions = Arrays.copyOf(starts, count);
+        offsets = Arrays.copyOf(values, count);
+
+        String[] names = new DateFormatSymbols(locale).getShortWeekdays();
+        // by day of the week from Monday, like the weeks
+        weekdays = new String[] {names[Calendar.MONDAY], names[Calendar.TUESDAY], names[Calendar.WEDNESDAY],
+                names[Calendar.THURSDAY], names[Calendar.FRIDAY], names[Calendar.SATURDAY], names[Calendar.SUNDAY]};
+    }
+
+    /** @return buckets of the zone, labels in the default locale; the last ones are shared */
+    public static TimeBuckets forZone(TimeZone zone) {
+        Locale locale = Locale.getDefault();
+        TimeBuckets current = sDefault;
+        if (current != null && current.matches(zone, locale)) {
+            return current;
+        }
+        current = sLast;
+        if (current == null || !current.matches(zone, locale)) {
+            current = new TimeBuckets(zone, locale);
+            sLast = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return buckets of the default zone and locale, shared; changes of them are seen within
+     * a second, reading the default zone on each call would copy it each time
+     */
+    public static TimeBuckets getDefault() {
+        TimeBuckets current = sDefault;
+        long now = System.currentTimeMillis();
+        if (current != null && now - sDefaultChecked < DEFAULT_CHECK_MILLIS) {
+            return current;
+        }
+        TimeZone zone = TimeZone.getDefault();
+        Locale locale = Locale.getDefault();
+        if (current == null || !current.matches(zone, locale)) {
+            current = new TimeBuckets(zone, locale);
+            sDefault = current;
+        }
+        sDefaultChecked = now;
+        return current;
+    }
+
+    private boolean matches(TimeZone zone, Locale locale) {
+        return this.zone.getID().equals(zone.getID()) && this.locale.equals(locale);
+    }
+
+    public TimeZone getZone() {
+        return (TimeZone) zone.clone();
+    }
+
+    /** @return offset of local time from UTC at the time, in milliseconds */
+    public int offset(long millis) {
+        if (millis < 0 || millis >= TABLE_END) {
+            return zone.getOffset(millis);
+        }
+        // times come in runs, most lookups stay in the interval of the last one
+        int index = lastIndex;
+        if (millis < transitions[index] || index + 1 < transitions.length && millis >= transitions[index + 1]) {
+            index = Arrays.binarySearch(transitions, millis);
+            index = index >= 0 ? index : -index - 2;
+            lastIndex = index;
+        }
+        return offsets[index];
+    }
+
+    /** @return the local wall clock time as milliseconds since 1970-01-01 0:00 */
+    public long localMillis(long millis) {
+        return millis + offset(millis);
+    }
+
+    /** @return local epoch day of the time */
+    public int epochDay(long millis) {
+        return (int) floorDiv(localMillis(millis), DAY_MILLIS);
+    }
+
+    /** @return the first millisecond of the local epoch day */
+    public long dayStart(int epochDay) {
+        return atLocal(epochDay * DAY_MILLIS);
+    }
+
+    /**
+     * @param localMillis local wall clock time as milliseconds since 1970-01-01 0:00
+     * @return the first time the local wall clock reaches it, the switch for a time skipped by
+     * a daylight saving switch
+     */
+    public long atLocal(long localMillis) {
+        long time = localMillis - offset(localMillis - offset(localMillis));
+        if (localMillis(time) >= localMillis && localMillis(time - 1) < localMillis) {
+            return time;
+        }
+        long low = time - DAY_MILLIS;
+        long high = time + DAY_MILLIS;
+        while (high - low > 1) {
+            long middle = low + (high - low) / 2;
+            if (localMillis(middle) >= localMillis) {
+                high = middle;
+            } else {
+                low = middle;
+            }
+        }
+        return high;
+    }
+
+    /** @return epoch day of the Monday of the local week of the time */
+    public int weekStart(long millis) {
+        return weekStartOfDay(epochDay(millis));
+    }
+
+    /** @return local hour of the week of the time, 0 is Monday 0:00 to 1:00 */
+    public int hourOfWeek(long millis) {
+        long hour = floorDiv(localMillis(millis), HOUR_MILLIS);
+        // 1970-01-01 0:00 was a Thursday, 72 hours after Monday
+        return (int) floorMod(hour + 3 * 24, 7 * 24);
+    }
+
+    /** @return local hour of the day of the time, 0 to 23 */
+    public int hourOfDay(long millis) {
+        return (int) (floorMod(localMillis(millis), DAY_MILLIS) / HOUR_MILLIS);
+    }
+
+    /** @return day of the week of the epoch day, 0 is Monday */
+    public static int dayOfWeek(int epochDay) {
+        return (int) floorMod(epochDay + 3, 7);
+    }
+
+    /** @return the epoch day of the Monday of the week of the day */
+    public static int weekStartOfDay(int epochDay) {
+        return epochDay - dayOfWeek(epochDay);
+    }
+
+    /** @return short weekday, day of month and month of the local day, e.g. "Mon 1.4" */
+    public String dayLabel(long millis) {
+        int day = epochDay(millis);
+        int slot = day & (LABEL_CACHE_SIZE - 1);
+        Label label = labels[slot];
+        if (label == null || label.day != day) {
+            int[] date = civil(day);
+            label = new Label(day, weekdays[dayOfWeek(day)] + " " + date[2] + "." + date[1]);
+            labels[slot] = label;
+        }
+        return label.text;
+    }
+
+    /** @return year, month 1-12 and day of month of the epoch day, proleptic gregorian */
+    public static int[] civil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return new int[]{year, month, day};
+    }
+
+    private static long floorDiv(long value, long divisor) {
+        long result = value / divisor;
+        return value % divisor < 0 ? result - 1 : result;
+    }
+
+    private static long floorMod(long value, long divisor) {
+        return value - floorDiv(value, divisor) * divisor;
+    }
+}
@@ -0,0 +1,126 @@
+package de.nenick.workinterruption.dataaccess.trace;
+
+import android.content.ContentValues;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the calls of the provider to a trace file for {@link TraceReplayer}.
+ *
+ * <P>Records are buffered and written at most a second late, a crash loses that last second.
+ * Recording stops when the trace reaches {@link #MAX_BYTES}.</P>
+ */
+public class ProviderTrace {
+
+    /**
+     * Name of the provider meta-data entry which turns recording on.
+     * <P>Type: boolean</P>
+     */
+    public static final String META_DATA_TRACE = "de.nenick.workinterruption.trace";
+
+    /** Directory below the app files which holds the traces. */
+    public static final String TRACE_DIRECTORY = "traces";
+
+    static final int MAX_BYTES = 64 * 1024 * 1024;
+
+    private static final long FLUSH_NANOS = 1000L * 1000 * 1000;
+
+    private final TraceWriter writer;
+    private final long startNanos;
+    private long lastFlush;
+    private boolean stopped;
+
+    private ProviderTrace(TraceWriter writer, long startNanos) {
+        this.writer = writer;
+        this.startNanos = startNanos;
+        this.lastFlush = startNanos;
+    }
+
+    /**
+     * Start a new trace file named after the current time.
+     *
+     * @return the trace or null if the file can't be created
+     */
+    public static ProviderTrace start(File filesDir) {
+        File directory = new File(filesDir, TRACE_DIRECTORY);
+        long now = System.currentTimeMillis();
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Can't create " + directory);
+            }
+            FileOutputStream out = new FileOutputStream(new File(directory, now + ".trace"));
+            return new ProviderTrace(new TraceWriter(out, now), System.nanoTime());
+        } catch (IOException e) {
+            Log.w(ProviderTrace.class.getName(), "Provider calls are not traced", e);
+            return null;
+        }
+    }
+
+    /**
+     * Record a call which started at {@code beginNanos} of {@link System#nanoTime()} and ends now.
+     *
+     * @param result see {@link TraceRecord#result}
+     */
+    public void record(byte op, long beginNanos, Uri uri, String[] projection, String selection,
+                       String[] selectionArgs, String sortOrder, ContentValues values, long result, boolean failed) {
+        long end = System.nanoTime();
+        TraceRecord record = new TraceRecord();
+        record.op = op;
+        record.startMicros = (beginNanos - startNanos) / 1000;
+        record.durationMicros = (end - beginNanos) / 1000;
+        record.failed = failed;
+        record.result = result;
+        record.uri = uri.toString();
+        record.projection = projection;
+        record.selection = selection;
+        record.selectionArgs = selectionArgs;
+        record.sortOrder = sortOrder;
+        record.values = values == null ? null : toMap(values);
+
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            try {
+                writer.write(record);
+                if (writer.size() >= MAX_BYTES) {
+                    Log.w(ProviderTrace.class.getName(), "Trace is full, recording stopped");
+                    close();
+                } else if (end - lastFlush > FLUSH_NANOS) {
+                    writer.flush();
+                    lastFlush = end;
+                }
+            } catch (IOException e) {
+                Log.w(ProviderTrace.class.getName(), "Writing the trace failed, recording stopped", e);
+                close();
+            }
+        }
+    }
+
+    /** Write buffered records and stop recording. */
+    public synchronized void close() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            Log.w(ProviderTrace.class.getName(), "Closing the trace failed", e);
+        }
+    }
+
+    private static Map<String, Object> toMap(ContentValues values) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        for (Map.Entry<String, Object> value : values.valueSet()) {
+            map.put(value.getKey(), value.getValue());
+        }
+        return map;
+    }
+}
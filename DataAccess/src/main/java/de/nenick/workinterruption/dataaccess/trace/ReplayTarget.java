@@ -0,0 +1,13 @@
+package de.nenick.workinterruption.dataaccess.trace;
+
+/** Something a trace can be replayed against, a store or a provider. */
+public interface ReplayTarget {
+
+    /**
+     * Repeat the recorded call. Task ids in the URI are already those of the target.
+     *
+     * @return the result like {@link TraceRecord#result}
+     * @throws UnsupportedOperationException if the target can't answer this kind of call
+     */
+    long replay(TraceRecord record);
+}
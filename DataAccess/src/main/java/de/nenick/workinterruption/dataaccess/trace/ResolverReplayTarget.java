@@ -0,0 +1,67 @@
+package de.nenick.workinterruption.dataaccess.trace;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.util.Map;
+
+/** Replays a trace against a provider build on a device, through a content resolver. */
+public class ResolverReplayTarget implements ReplayTarget {
+
+    private final ContentResolver resolver;
+
+    public ResolverReplayTarget(ContentResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    @Override
+    public long replay(TraceRecord record) {
+        Uri uri = Uri.parse(record.uri);
+        switch (record.op) {
+            case TraceRecord.QUERY:
+                Cursor cursor = resolver.query(uri, record.projection, record.selection, record.selectionArgs,
+                        record.sortOrder);
+                try {
+                    return cursor.getCount();
+                } finally {
+                    cursor.close();
+                }
+            case TraceRecord.INSERT:
+                Uri inserted = resolver.insert(uri, toValues(record.values));
+                return inserted == null ? -1 : ContentUris.parseId(inserted);
+            case TraceRecord.UPDATE:
+                return resolver.update(uri, toValues(record.values), record.selection, record.selectionArgs);
+            case TraceRecord.DELETE:
+                return resolver.delete(uri, record.selection, record.selectionArgs);
+            default:
+                throw new UnsupportedOperationException(TraceRecord.opName(record.op));
+        }
+    }
+
+    private static ContentValues toValues(Map<String, Object> map) {
+        if (map == null) {
+            return null;
+        }
+        ContentValues values = new ContentValues(map.size());
+        for (Map.Entry<String, Object> value : map.entrySet()) {
+            Object v = value.getValue();
+            if (v == null) {
+                values.putNull(value.getKey());
+            } else if (v instanceof Long) {
+                values.put(value.getKey(), (Long) v);
+            } else if (v instanceof Double) {
+                values.put(value.getKey(), (Double) v);
+            } else if (v instanceof Boolean) {
+                values.put(value.getKey(), (Boolean) v);
+            } else if (v instanceof byte[]) {
+                values.put(value.getKey(), (byte[]) v);
+            } else {
+                values.put(value.getKey(), v.toString());
+            }
+        }
+        return values;
+    }
+}
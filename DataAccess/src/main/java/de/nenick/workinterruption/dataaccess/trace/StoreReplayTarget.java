@@ -0,0 +1,100 @@
+package de.nenick.workinterruption.dataaccess.trace;
+
+import java.util.Map;
+
+import de.nenick.workinterruption.dataaccess.api.WorkInterruption;
+import de.nenick.workinterruption.dataaccess.database.TaskTable;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Replays provider calls with the operations of a {@link TaskStore}, the same way the provider
+ * answers them for stores without SQL support. Free-form selections are not supported.
+ */
+public class StoreReplayTarget implements ReplayTarget {
+
+    private static final String TASKS_PATH = "/" + WorkInterruption.PATH_TASK;
+
+    private final TaskStore store;
+
+    private final int[] rows = new int[1];
+    private final TaskVisitor counter = new TaskVisitor() {
+        @Override
+        public void visit(long id, long started, String category, int duration) {
+            rows[0]++;
+        }
+    };
+
+    public StoreReplayTarget(TaskStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public long replay(TraceRecord record) {
+        long taskId = taskId(record.uri);
+        switch (record.op) {
+            case TraceRecord.QUERY:
+                rows[0] = 0;
+                if (taskId > 0 && record.selection == null) {
+                    store.get(taskId, counter);
+                } else if (taskId == 0 && record.selection == null) {
+                    store.scan(Long.MIN_VALUE, Long.MAX_VALUE, counter);
+                } else if (taskId == 0 && WorkInterruption.Task.SELECTION_OPEN.equals(record.selection.trim())) {
+                    store.openTasks(counter);
+                } else {
+                    break;
+                }
+                return rows[0];
+            case TraceRecord.INSERT:
+                if (taskId == 0 && record.values != null && record.values.get(TaskTable.COL_CATEGORY) != null) {
+                    Map<String, Object> values = record.values;
+                    Number id = (Number) values.get(TaskTable._ID);
+                    Number started = (Number) values.get(TaskTable.COL_STARTED);
+                    Number duration = (Number) values.get(TaskTable.COL_DURATION);
+                    return store.insert(id == null ? TaskStore.NO_ID : id.longValue(),
+                            started == null ? System.currentTimeMillis() : started.longValue(),
+                            values.get(TaskTable.COL_CATEGORY).toString(),
+                            duration == null ? TaskStore.OPEN : duration.intValue());
+                }
+                break;
+            case TraceRecord.UPDATE:
+                if (taskId > 0 && record.selection == null && record.values != null && record.values.size() == 1
+                        && record.values.get(TaskTable.COL_DURATION) instanceof Number) {
+                    int duration = ((Number) record.values.get(TaskTable.COL_DURATION)).intValue();
+                    return store.close(taskId, duration, null) ? 1 : 0;
+                }
+                break;
+            case TraceRecord.DELETE:
+                if (taskId > 0 && record.selection == null) {
+                    return store.delete(taskId, null) ? 1 : 0;
+                }
+                break;
+            default:
+                break;
+        }
+        throw new UnsupportedOperationException(TraceRecord.opName(record.op) + " " + record.uri
+                + (record.selection == null ? "" : " where " + record.selection));
+    }
+
+    /**
+     * @return the task id of a single task URI, 0 for the tasks URI
+     * @throws UnsupportedOperationException for other URIs
+     */
+    private static long taskId(String uri) {
+        int path = uri.indexOf(TASKS_PATH, uri.indexOf("://") + 3);
+        if (path >= 0) {
+            String rest = uri.substring(path + TASKS_PATH.length());
+            if (rest.length() == 0) {
+                return 0;
+            }
+            if (rest.charAt(0) == '/') {
+                try {
+                    return Long.parseLong(rest.substring(1));
+                } catch (NumberFormatException e) {
+                    // no task URI
+                }
+            }
+        }
+        throw new UnsupportedOperationException("Not a task URI " + uri);
+    }
+}
@@ -0,0 +1,156 @@
+package de.nenick.workinterruption.dataaccess.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a trace written by {@link TraceWriter}. A record cut off at the end, left when the
+ * process died before the buffer was flushed, ends the trace like a clean end would.
+ */
+public class TraceReader {
+
+    private final DataInputStream in;
+    private final long wallClockStart;
+    private final List<String> strings = new ArrayList<String>();
+    private long previousStart;
+
+    /** @throws IOException if the stream is no trace */
+    public TraceReader(InputStream stream) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+        byte[] magic = new byte[TraceWriter.MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < magic.length; i++) {
+            if (magic[i] != TraceWriter.MAGIC[i]) {
+                throw new IOException("Not a provider trace");
+            }
+        }
+        int version = in.readUnsignedByte();
+        if (version != TraceWriter.VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+        wallClockStart = in.readLong();
+    }
+
+    /** @return wall clock time in milliseconds when recording started */
+    public long wallClockStart() {
+        return wallClockStart;
+    }
+
+    /** @return the next record or null at the end of the trace */
+    public TraceRecord read() throws IOException {
+        int op = in.read();
+        if (op == -1) {
+            return null;
+        }
+        try {
+            TraceRecord record = new TraceRecord();
+            record.op = (byte) op;
+            record.startMicros = previousStart + unzigzag(readVarLong());
+            previousStart = record.startMicros;
+            record.durationMicros = readVarLong();
+            record.failed = in.readBoolean();
+            record.result = unzigzag(readVarLong());
+            record.uri = readString();
+            long uriId = readVarLong();
+            if (uriId > 0) {
+                record.uri += uriId - 1;
+            }
+            record.projection = readStrings();
+            record.selection = readString();
+            record.selectionArgs = readStrings();
+            record.sortOrder = readString();
+            int values = (int) readVarLong() - 1;
+            if (values >= 0) {
+                record.values = new LinkedHashMap<String, Object>();
+                for (int i = 0; i < values; i++) {
+                    String key = readString();
+                    record.values.put(key, readValue());
+                }
+            }
+            return record;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private Object readValue() throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case TraceWriter.TYPE_NULL:
+                return null;
+            case TraceWriter.TYPE_LONG:
+                return unzigzag(readVarLong());
+            case TraceWriter.TYPE_DOUBLE:
+                return in.readDouble();
+            case TraceWriter.TYPE_STRING:
+                return readString();
+            case TraceWriter.TYPE_BOOLEAN:
+                return in.readBoolean();
+            case TraceWriter.TYPE_BYTES:
+                byte[] bytes = new byte[(int) readVarLong()];
+                in.readFully(bytes);
+                return bytes;
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private String[] readStrings() throws IOException {
+        int length = (int) readVarLong() - 1;
+        if (length < 0) {
+            return null;
+        }
+        String[] values = new String[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = readString();
+        }
+        return values;
+    }
+
+    private String readString() throws IOException {
+        long reference = readVarLong();
+        if (reference == 0) {
+            return null;
+        }
+        if (reference == 1 || reference == 2) {
+            byte[] bytes = new byte[(int) readVarLong()];
+            in.readFully(bytes);
+            String value = new String(bytes, "UTF-8");
+            if (reference == 1) {
+                strings.add(value);
+            }
+            return value;
+        }
+        if (reference - 3 >= strings.size()) {
+            throw new IOException("Unknown string reference " + reference);
+        }
+        return strings.get((int) (reference - 3));
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
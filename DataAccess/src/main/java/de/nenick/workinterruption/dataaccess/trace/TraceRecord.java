@@ -0,0 +1,55 @@
+package de.nenick.workinterruption.dataaccess.trace;
+
+import java.util.Map;
+
+/** One recorded provider call. Unused arguments are null. */
+public class TraceRecord {
+
+    public static final byte QUERY = 1;
+    public static final byte INSERT = 2;
+    public static final byte UPDATE = 3;
+    public static final byte DELETE = 4;
+    /** Recorded without values, replays skip it. */
+    public static final byte BULK_INSERT = 5;
+
+    /** Kind of call, one of the constants above. */
+    public byte op;
+
+    /** Start of the call in microseconds after the start of the trace. */
+    public long startMicros;
+
+    /** Duration of the call in microseconds. */
+    public long durationMicros;
+
+    /** The call threw an exception. */
+    public boolean failed;
+
+    /** Rows of a query, id of an inserted task, rows of a bulk insert or rows changed by an update or delete. */
+    public long result;
+
+    public String uri;
+    public String[] projection;
+    public String selection;
+    public String[] selectionArgs;
+    public String sortOrder;
+
+    /** Values of an insert or update: Long, Double, String, Boolean, byte[] or null. */
+    public Map<String, Object> values;
+
+    public static String opName(byte op) {
+        switch (op) {
+            case QUERY:
+                return "query";
+            case INSERT:
+                return "insert";
+            case UPDATE:
+                return "update";
+            case DELETE:
+                return "delete";
+            case BULK_INSERT:
+                return "bulk";
+            default:
+                return "op" + op;
+        }
+    }
+}
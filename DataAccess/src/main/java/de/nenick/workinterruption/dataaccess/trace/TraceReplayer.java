@@ -0,0 +1,172 @@
+package de.nenick.workinterruption.dataaccess.trace;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.nenick.workinterruption.dataaccess.api.WorkInterruption;
+import de.nenick.workinterruption.dataaccess.store.MemoryTaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/**
+ * Replays a recorded trace against a {@link ReplayTarget} and reports the latency percentiles
+ * per kind of call, recorded next to replayed.
+ *
+ * <P>Ids of recorded inserts are mapped to the ids the target generates, so later calls on
+ * single tasks hit the same tasks. Calls the target can't answer are counted as skipped.</P>
+ */
+public class TraceReplayer {
+
+    private static final String TASK_PATH = "/" + WorkInterruption.PATH_TASK + "/";
+
+    /** Latencies of one kind of call. */
+    private static class Latencies {
+        private long[] recorded = new long[64];
+        private long[] replayed = new long[64];
+        int count;
+        int skipped;
+        int failed;
+
+        void add(long recordedMicros, long replayedMicros) {
+            if (count == recorded.length) {
+                recorded = Arrays.copyOf(recorded, count * 2);
+                replayed = Arrays.copyOf(replayed, count * 2);
+            }
+            recorded[count] = recordedMicros;
+            replayed[count] = replayedMicros;
+            count++;
+        }
+
+        String percentiles(boolean ofReplay) {
+            long[] sorted = Arrays.copyOf(ofReplay ? replayed : recorded, count);
+            Arrays.sort(sorted);
+            return percentile(sorted, 50) + "/" + percentile(sorted, 90) + "/" + percentile(sorted, 99) + "/"
+                    + (count == 0 ? 0 : sorted[count - 1]);
+        }
+
+        private static long percentile(long[] sorted, int percent) {
+            return sorted.length == 0 ? 0 : sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+        }
+    }
+
+    private final ReplayTarget target;
+    private final Map<Long, Long> ids = new HashMap<Long, Long>();
+    private final Map<Byte, Latencies> latencies = new TreeMap<Byte, Latencies>();
+
+    public TraceReplayer(ReplayTarget target) {
+        this.target = target;
+    }
+
+    /**
+     * Replay all records one after the other.
+     *
+     * @param paced wait between calls as long as recorded, otherwise replay as fast as possible
+     */
+    public void replay(TraceReader reader, boolean paced) throws IOException, InterruptedException {
+        long begin = System.nanoTime();
+        TraceRecord record;
+        while ((record = reader.read()) != null) {
+            if (paced) {
+                long wait = record.startMicros - (System.nanoTime() - begin) / 1000;
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000, (int) (wait % 1000) * 1000);
+                }
+            }
+            replay(record);
+        }
+    }
+
+    /** Replay one record. */
+    public void replay(TraceRecord record) {
+        Latencies op = latencies.get(record.op);
+        if (op == null) {
+            op = new Latencies();
+            latencies.put(record.op, op);
+        }
+        record.uri = mapTaskId(record.uri);
+        long start = System.nanoTime();
+        long result;
+        try {
+            result = target.replay(record);
+        } catch (UnsupportedOperationException e) {
+            op.skipped++;
+            return;
+        } catch (RuntimeException e) {
+            op.failed++;
+            return;
+        }
+        op.add(record.durationMicros, (System.nanoTime() - start) / 1000);
+        if (record.op == TraceRecord.INSERT && !record.failed && record.result > 0 && result > 0) {
+            ids.put(record.result, result);
+        }
+    }
+
+    /** @return number of replayed calls of the kind */
+    public int replayed(byte op) {
+        Latencies values = latencies.get(op);
+        return values == null ? 0 : values.count;
+    }
+
+    /** @return number of calls of the kind the target couldn't answer */
+    public int skipped(byte op) {
+        Latencies values = latencies.get(op);
+        return values == null ? 0 : values.skipped;
+    }
+
+    /** @return table of calls with p50/p90/p99/max latencies in microseconds */
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format("%-8s %8s %8s %8s  %-28s %-28s%n",
+                "op", "calls", "skipped", "failed", "recorded p50/p90/p99/max us", "replayed p50/p90/p99/max us"));
+        for (Map.Entry<Byte, Latencies> op : latencies.entrySet()) {
+            Latencies values = op.getValue();
+            report.append(String.format("%-8s %8d %8d %8d  %-28s %-28s%n", TraceRecord.opName(op.getKey()),
+                    values.count, values.skipped, values.failed, values.percentiles(false), values.percentiles(true)));
+        }
+        return report.toString();
+    }
+
+    private String mapTaskId(String uri) {
+        int path = uri.lastIndexOf(TASK_PATH);
+        if (path < 0) {
+            return uri;
+        }
+        try {
+            Long mapped = ids.get(Long.parseLong(uri.substring(path + TASK_PATH.length())));
+            return mapped == null ? uri : uri.substring(0, path + TASK_PATH.length()) + mapped;
+        } catch (NumberFormatException e) {
+            return uri;
+        }
+    }
+
+    /**
+     * Arguments: trace file, optionally the class name of a {@link TaskStore} with a public
+     * default constructor (default {@link MemoryTaskStore}) and {@code --paced}.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("usage: TraceReplayer <trace> [store class] [--paced]");
+            System.exit(2);
+        }
+        boolean paced = false;
+        TaskStore store = null;
+        for (int i = 1; i < args.length; i++) {
+            if ("--paced".equals(args[i])) {
+                paced = true;
+            } else {
+                store = (TaskStore) Class.forName(args[i]).newInstance();
+            }
+        }
+
+        TraceReplayer replayer = new TraceReplayer(new StoreReplayTarget(store == null ? new MemoryTaskStore() : store));
+        TraceReader reader = new TraceReader(new FileInputStream(args[0]));
+        try {
+            replayer.replay(reader, paced);
+        } finally {
+            reader.close();
+        }
+        System.out.print(replayer.report());
+    }
+}
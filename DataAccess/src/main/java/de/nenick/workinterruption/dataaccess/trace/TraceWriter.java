@@ -0,0 +1,181 @@
+package de.nenick.workinterruption.dataaccess.trace;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes {@link TraceRecord}s in a compact binary form.
+ *
+ * <P>The stream starts with {@link #MAGIC}, {@link #VERSION} and the wall clock start time as
+ * long. Numbers are unsigned LEB128 varints, signed ones zigzag encoded. Repeating strings are
+ * written once and referenced by index afterwards: {@code 0} is null, {@code 1} is followed by
+ * a new string as varint length and UTF-8 bytes, {@code 2} by a string which is not kept,
+ * {@code n >= 3} repeats string {@code n - 3}. Selection arguments are never kept, they are
+ * mostly distinct, and the table stops growing at {@link #MAX_STRINGS}.</P>
+ *
+ * <P>A record is {@code op, zigzag start delta, duration, failed, zigzag result, uri, uri id,
+ * projection, selection, selection args, sort order, values}. A trailing numeric path segment
+ * is cut from the uri and written as uri id plus one, zero if there is none. Arrays and values
+ * are prefixed by their size plus one, zero for null. Each value is a key string, a type byte
+ * and the value.</P>
+ */
+public class TraceWriter {
+
+    public static final byte[] MAGIC = {'W', 'I', 'T', 'R'};
+    public static final int VERSION = 1;
+
+    static final int TYPE_NULL = 0;
+    static final int TYPE_LONG = 1;
+    static final int TYPE_DOUBLE = 2;
+    static final int TYPE_STRING = 3;
+    static final int TYPE_BOOLEAN = 4;
+    static final int TYPE_BYTES = 5;
+
+    static final int MAX_STRINGS = 4096;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private long previousStart;
+    private long written;
+
+    /** Writes the header. */
+    public TraceWriter(OutputStream stream, long wallClockStart) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(wallClockStart);
+    }
+
+    public void write(TraceRecord record) throws IOException {
+        out.writeByte(record.op);
+        writeVarLong(zigzag(record.startMicros - previousStart));
+        previousStart = record.startMicros;
+        writeVarLong(record.durationMicros);
+        out.writeBoolean(record.failed);
+        writeVarLong(zigzag(record.result));
+        writeUri(record.uri);
+        writeStrings(record.projection, true);
+        writeString(record.selection);
+        writeStrings(record.selectionArgs, false);
+        writeString(record.sortOrder);
+        if (record.values == null) {
+            writeVarLong(0);
+        } else {
+            writeVarLong(record.values.size() + 1);
+            for (Map.Entry<String, Object> value : record.values.entrySet()) {
+                writeString(value.getKey());
+                writeValue(value.getValue());
+            }
+        }
+        written++;
+    }
+
+    /** @return number of records written */
+    public long written() {
+        return written;
+    }
+
+    /** @return bytes written so far, including buffered ones */
+    public int size() {
+        return out.size();
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Float || value instanceof Double) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            out.writeByte(TYPE_LONG);
+            writeVarLong(zigzag(((Number) value).longValue()));
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(TYPE_BYTES);
+            writeVarLong(((byte[]) value).length);
+            out.write((byte[]) value);
+        } else {
+            out.writeByte(TYPE_STRING);
+            writeString(value.toString());
+        }
+    }
+
+    private void writeUri(String uri) throws IOException {
+        int slash = uri == null ? -1 : uri.lastIndexOf('/');
+        if (slash >= 0 && slash + 1 < uri.length() && slash + 19 > uri.length()) {
+            boolean digits = true;
+            for (int i = slash + 1; i < uri.length() && digits; i++) {
+                digits = Character.isDigit(uri.charAt(i)) && uri.charAt(i) < 128;
+            }
+            if (digits && (uri.charAt(slash + 1) != '0' || slash + 2 == uri.length())) {
+                writeString(uri.substring(0, slash + 1));
+                writeVarLong(Long.parseLong(uri.substring(slash + 1)) + 1);
+                return;
+            }
+        }
+        writeString(uri);
+        writeVarLong(0);
+    }
+
+    private void writeStrings(String[] values, boolean keep) throws IOException {
+        if (values == null) {
+            writeVarLong(0);
+            return;
+        }
+        writeVarLong(values.length + 1);
+        for (String value : values) {
+            writeString(value, keep);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        writeString(value, true);
+    }
+
+    private void writeString(String value, boolean keep) throws IOException {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarLong(index + 3);
+            return;
+        }
+        if (keep && strings.size() < MAX_STRINGS) {
+            strings.put(value, strings.size());
+            writeVarLong(1);
+        } else {
+            writeVarLong(2);
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
@@ -0,0 +1,166 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Reads the {@link TaskBinaryFormat} straight from a buffer, for example a memory mapped file.
+ * Rows are decoded in place, only category names are copied out of the buffer.
+ */
+public class TaskBinaryDecoder {
+
+    private final ByteBuffer buffer;
+    private final int version;
+    private final List<String> categories = new ArrayList<String>();
+    private final CRC32 crc = new CRC32();
+    private byte[] scratch;
+    private boolean finished;
+
+    /** Reads the header, the buffer position is moved behind it. */
+    public TaskBinaryDecoder(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        try {
+            for (byte magic : TaskBinaryFormat.MAGIC) {
+                if (buffer.get() != magic) {
+                    throw new IOException("Not a binary task stream");
+                }
+            }
+            version = buffer.get();
+            if (version != TaskBinaryFormat.VERSION && version != TaskBinaryFormat.VERSION_HEADER_CATEGORIES) {
+                throw new IOException("Unsupported binary task version " + version);
+            }
+            readCategories(buffer, categories);
+        } catch (RuntimeException e) {
+            throw new IOException("Damaged binary task header: " + e);
+        }
+    }
+
+    /** @return the category names read so far, indexed by category id */
+    public String[] categories() {
+        return categories.toArray(new String[categories.size()]);
+    }
+
+    /**
+     * Decodes the next block.
+     *
+     * @return false if the end of the stream was reached
+     * @throws IOException if the block is damaged, nothing of it was visited then
+     */
+    public boolean readBlock(TaskVisitor visitor) throws IOException {
+        if (finished) {
+            return false;
+        }
+        try {
+            int rows = readVarInt();
+            if (rows == 0) {
+                finished = true;
+                return false;
+            }
+            int length = readVarInt();
+            int payload = buffer.position();
+            checkCrc(payload, length, buffer.getInt(payload + length));
+
+            decodeRows(buffer, version, rows, categories, visitor);
+            if (buffer.position() != payload + length) {
+                throw new IOException("Block length mismatch");
+            }
+            buffer.position(payload + length + 4);
+            return true;
+        } catch (RuntimeException e) {
+            throw new IOException("Damaged binary task block: " + e);
+        }
+    }
+
+    /** Decodes all remaining blocks. */
+    public void readAll(TaskVisitor visitor) throws IOException {
+        while (readBlock(visitor)) {
+            // next block
+        }
+    }
+
+    private void checkCrc(int offset, int length, int expected) throws IOException {
+        crc.reset();
+        if (buffer.hasArray()) {
+            crc.update(buffer.array(), buffer.arrayOffset() + offset, length);
+        } else {
+            if (scratch == null) {
+                scratch = new byte[8192];
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            int remaining = length;
+            while (remaining > 0) {
+                int chunk = Math.min(remaining, scratch.length);
+                view.get(scratch, 0, chunk);
+                crc.update(scratch, 0, chunk);
+                remaining -= chunk;
+            }
+        }
+        if ((int) crc.getValue() != expected) {
+            throw new IOException("Block checksum mismatch at " + offset);
+        }
+    }
+
+    /**
+     * Decodes the rows of a block payload, starting at the buffer position.
+     *
+     * @param categories known categories, the ones defined by the block are added
+     */
+    static void decodeRows(ByteBuffer buffer, int version, int rows, List<String> categories, TaskVisitor visitor)
+            throws IOException {
+        if (version != TaskBinaryFormat.VERSION_HEADER_CATEGORIES) {
+            readCategories(buffer, categories);
+        }
+        long id = 0;
+        long started = readVarLong(buffer);
+        for (int i = 0; i < rows; i++) {
+            id += unzigzag(readVarLong(buffer));
+            started += readVarLong(buffer);
+            int duration = (int) (readVarLong(buffer) - 1);
+            visitor.visit(id, started, categories.get(readVarInt(buffer)), duration);
+        }
+    }
+
+    private int readVarInt() throws IOException {
+        return readVarInt(buffer);
+    }
+
+    /** Reads a count followed by that many category names and adds them. */
+    private static void readCategories(ByteBuffer buffer, List<String> categories) throws IOException {
+        int count = readVarInt(buffer);
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[readVarInt(buffer)];
+            buffer.get(name);
+            categories.add(new String(name, "UTF-8"));
+        }
+    }
+
+    private static int readVarInt(ByteBuffer buffer) throws IOException {
+        long value = readVarLong(buffer);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
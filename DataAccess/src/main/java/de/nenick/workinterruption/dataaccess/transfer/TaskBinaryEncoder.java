@@ -0,0 +1,159 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/**
+ * Writes tasks in the {@link TaskBinaryFormat}. Only one block is buffered, tasks must be
+ * written in start order. Categories which are not in the header are defined by the first
+ * block using them.
+ */
+public class TaskBinaryEncoder {
+
+    private final OutputStream out;
+    private final Map<String, Integer> categoryIds = new HashMap<String, Integer>();
+    private final List<String> blockCategories = new ArrayList<String>();
+    private final ByteArrayOutputStream definitions = new ByteArrayOutputStream(64);
+    private final CRC32 crc = new CRC32();
+
+    private byte[] block = new byte[16 * TaskBinaryFormat.ROWS_PER_BLOCK];
+    private int blockLength;
+    private int blockRows;
+    private long previousId;
+    private long previousStarted;
+
+    private final byte[] scratch = new byte[10];
+
+    /** Starts the stream with an empty header, each block defines the categories it uses first. */
+    public TaskBinaryEncoder(OutputStream out) throws IOException {
+        this(out, Collections.<String>emptyList());
+    }
+
+    /** Starts the stream with the header, for categories known up front. */
+    public TaskBinaryEncoder(OutputStream out, List<String> categories) throws IOException {
+        this.out = out;
+        out.write(TaskBinaryFormat.MAGIC);
+        out.write(TaskBinaryFormat.VERSION);
+        writeDirect(categories.size());
+        for (String category : categories) {
+            categoryIds.put(category, categoryIds.size());
+            byte[] bytes = category.getBytes("UTF-8");
+            writeDirect(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /** @throws IllegalArgumentException for tasks out of start order */
+    public void write(long id, long started, String category, int duration) throws IOException {
+        if (blockRows > 0 && started < previousStarted) {
+            throw new IllegalArgumentException("Task " + id + " is out of start order");
+        }
+        Integer categoryId = categoryIds.get(category);
+        if (categoryId == null) {
+            categoryId = categoryIds.size();
+            categoryIds.put(category, categoryId);
+            blockCategories.add(category);
+        }
+        if (blockRows == 0) {
+            previousId = 0;
+            previousStarted = started;
+            putVarLong(started);
+        }
+        putVarLong(zigzag(id - previousId));
+        putVarLong(started - previousStarted);
+        putVarLong(duration + 1L);
+        putVarLong(categoryId);
+        previousId = id;
+        previousStarted = started;
+        if (++blockRows == TaskBinaryFormat.ROWS_PER_BLOCK) {
+            flushBlock();
+        }
+    }
+
+    /** Writes the last block and the end marker. Does not close the stream. */
+    public void finish() throws IOException {
+        flushBlock();
+        writeDirect(0);
+        out.flush();
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockRows == 0) {
+            return;
+        }
+        definitions.reset();
+        definitions.write(scratch, 0, encodeVarLong(blockCategories.size(), scratch, 0));
+        for (String category : blockCategories) {
+            byte[] bytes = category.getBytes("UTF-8");
+            definitions.write(scratch, 0, encodeVarLong(bytes.length, scratch, 0));
+            definitions.write(bytes);
+        }
+
+        writeDirect(blockRows);
+        writeDirect(definitions.size() + blockLength);
+        definitions.writeTo(out);
+        out.write(block, 0, blockLength);
+        crc.reset();
+        crc.update(definitions.toByteArray());
+        crc.update(block, 0, blockLength);
+        int value = (int) crc.getValue();
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+        blockCategories.clear();
+        blockLength = 0;
+        blockRows = 0;
+    }
+
+    private void putVarLong(long value) {
+        if (blockLength + 10 > block.length) {
+            block = Arrays.copyOf(block, block.length * 2);
+        }
+        blockLength = encodeVarLong(value, block, blockLength);
+    }
+
+    private void writeDirect(long value) throws IOException {
+        out.write(scratch, 0, encodeVarLong(value, scratch, 0));
+    }
+
+    /** @return position after the encoded value */
+    static int encodeVarLong(long value, byte[] target, int position) {
+        while ((value & ~0x7FL) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Writes all tasks of the store started in [from, to), optionally only one category.
+     * The tasks are written while the store scans them, only the current block is buffered.
+     */
+    public static void encode(TaskStore store, long from, long to, String category, OutputStream out)
+            throws IOException {
+        final TaskBinaryEncoder encoder = new TaskBinaryEncoder(out);
+        TaskExport.forEachTask(store, from, to, category, new TaskExport.TaskWriter() {
+            @Override
+            public void write(long id, long started, String category, int duration) throws IOException {
+                encoder.write(id, started, category, duration);
+            }
+        });
+        encoder.finish();
+    }
+}
@@ -0,0 +1,41 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+/**
+ * Layout of the binary task format, version 2.
+ *
+ * <pre>
+ * header:  "WITB" | byte version | varint categoryCount | categoryCount * category
+ * block:   varint rowCount | varint payloadLength | payload | int CRC32 of payload
+ * payload: varint newCategoryCount | newCategoryCount * category | varlong first started | rowCount * row
+ * category: varint length | UTF-8 bytes
+ * row:     zigzag varlong id delta | varlong started delta | varint duration + 1 | varint categoryId
+ * end:     varint 0
+ * </pre>
+ *
+ * <P>Category ids count the header categories first, then the new ones of each block in order,
+ * so a writer only needs to know the categories of the block it is writing. Version 1 has no
+ * new categories in its blocks, readers still accept it.</P>
+ *
+ * <P>Rows are sorted by start time, so start deltas are never negative. The first row of a
+ * block has a start delta of zero, its id delta is relative to zero. A running task has
+ * duration {@link de.nenick.workinterruption.dataaccess.store.TaskStore#OPEN}, encoded as 0.
+ * All fixed size ints are big endian.</P>
+ */
+public final class TaskBinaryFormat {
+
+    /** MIME type of a binary task stream. */
+    public static final String MIME_TYPE = "application/vnd.nenick.workinterruption.tasks";
+
+    static final byte[] MAGIC = {'W', 'I', 'T', 'B'};
+
+    static final int VERSION = 2;
+
+    /** Last version without categories in the blocks. */
+    static final int VERSION_HEADER_CATEGORIES = 1;
+
+    /** Rows per block, bounds the encoder buffer. */
+    static final int ROWS_PER_BLOCK = 1024;
+
+    private TaskBinaryFormat() {
+    }
+}
@@ -0,0 +1,101 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Reads the {@link TaskBinaryFormat} from a stream, one block at a time. Use
+ * {@link TaskBinaryDecoder} when the whole stream is in memory.
+ */
+public class TaskBinaryStreamReader extends TaskStreamReader {
+
+    private final DataInputStream in;
+    private final int version;
+    private final List<String> categories = new ArrayList<String>();
+    private final CRC32 crc = new CRC32();
+    private byte[] block = new byte[8192];
+    private boolean finished;
+
+    /** Reads the header. */
+    public TaskBinaryStreamReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        byte[] magic = new byte[TaskBinaryFormat.MAGIC.length];
+        this.in.readFully(magic);
+        if (!Arrays.equals(TaskBinaryFormat.MAGIC, magic)) {
+            throw new IOException("Not a binary task stream");
+        }
+        version = this.in.readUnsignedByte();
+        if (version != TaskBinaryFormat.VERSION && version != TaskBinaryFormat.VERSION_HEADER_CATEGORIES) {
+            throw new IOException("Unsupported binary task version " + version);
+        }
+        int count = readVarInt();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[readVarInt()];
+            this.in.readFully(name);
+            categories.add(new String(name, "UTF-8"));
+        }
+    }
+
+    /**
+     * Reads the next block.
+     *
+     * @return false if the end of the stream was reached
+     * @throws IOException if the block is damaged, nothing of it was visited then
+     */
+    public boolean readBlock(TaskVisitor visitor) throws IOException {
+        if (finished) {
+            return false;
+        }
+        int rows = readVarInt();
+        if (rows == 0) {
+            finished = true;
+            return false;
+        }
+        int length = readVarInt();
+        if (block.length < length) {
+            block = new byte[length];
+        }
+        in.readFully(block, 0, length);
+        crc.reset();
+        crc.update(block, 0, length);
+        if ((int) crc.getValue() != in.readInt()) {
+            throw new IOException("Block checksum mismatch");
+        }
+        ByteBuffer payload = ByteBuffer.wrap(block, 0, length);
+        try {
+            TaskBinaryDecoder.decodeRows(payload, version, rows, categories, visitor);
+        } catch (RuntimeException e) {
+            throw new IOException("Damaged binary task block: " + e);
+        }
+        return true;
+    }
+
+    /** Reads the next block. */
+    @Override
+    public boolean read(TaskVisitor visitor) throws IOException {
+        return readBlock(visitor);
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,122 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Reads tasks in the {@link TaskTextFormat#CSV} format one record at a time. Quoted values may
+ * contain commas, quotes and line breaks. An empty id is read as {@link TaskStore#NO_ID},
+ * an empty duration as {@link TaskStore#OPEN}.
+ */
+public class TaskCsvReader extends TaskStreamReader {
+
+    private static final int COLUMNS = 4;
+
+    private final Reader in;
+    private final String[] fields = new String[COLUMNS];
+    private final StringBuilder field = new StringBuilder();
+    private int line = 1;
+    private int next = -2;
+
+    /** Reads the header line. */
+    public TaskCsvReader(Reader in) throws IOException {
+        this.in = in;
+        if (!readRecord() || !"id".equals(fields[0]) || !"started".equals(fields[1])
+                || !"category".equals(fields[2]) || !"duration".equals(fields[3])) {
+            throw new IOException("Missing CSV header id,started,category,duration");
+        }
+    }
+
+    /**
+     * Reads the next task.
+     *
+     * @return false if the end of the stream was reached
+     * @throws IOException if the record is malformed
+     */
+    @Override
+    public boolean read(TaskVisitor visitor) throws IOException {
+        int recordLine = line;
+        if (!readRecord()) {
+            return false;
+        }
+        try {
+            long id = fields[0].length() == 0 ? TaskStore.NO_ID : Long.parseLong(fields[0]);
+            long started = Long.parseLong(fields[1]);
+            int duration = fields[3].length() == 0 ? TaskStore.OPEN : Integer.parseInt(fields[3]);
+            visitor.visit(id, started, fields[2], duration);
+            return true;
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid number in line " + recordLine + ": " + e.getMessage());
+        }
+    }
+
+    /** @return false at the end of the stream */
+    private boolean readRecord() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return false;
+        }
+        int column = 0;
+        boolean quoted = false;
+        field.setLength(0);
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quote in line " + line);
+                } else if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',' || c == '\n' || c == '\r' || c == -1) {
+                if (column == COLUMNS) {
+                    throw new IOException("Too many values in line " + line);
+                }
+                fields[column++] = field.toString();
+                field.setLength(0);
+                if (c != ',') {
+                    if (c == '\r' && peek() == '\n') {
+                        read();
+                    }
+                    if (column != COLUMNS) {
+                        throw new IOException("Expected " + COLUMNS + " values in line " + line);
+                    }
+                    line++;
+                    return true;
+                }
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (next != -2) {
+            int c = next;
+            next = -2;
+            return c;
+        }
+        return in.read();
+    }
+
+    private int peek() throws IOException {
+        if (next == -2) {
+            next = in.read();
+        }
+        return next;
+    }
+}
@@ -0,0 +1,122 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Streams tasks from a store as text or binary. Tasks are written while the store scans them,
+ * so memory use does not depend on the number of tasks.
+ */
+public class TaskExport {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Like {@link TaskVisitor}, but may fail. */
+    interface TaskWriter {
+        void write(long id, long started, String category, int duration) throws IOException;
+    }
+
+    private final String mimeType;
+    private long from = Long.MIN_VALUE;
+    private long to = Long.MAX_VALUE;
+    private String category;
+    private boolean gzip;
+
+    /**
+     * @param mimeType one of {@link #mimeTypes()}
+     * @throws IllegalArgumentException for other types
+     */
+    public TaskExport(String mimeType) {
+        if (!TaskBinaryFormat.MIME_TYPE.equals(mimeType) && TaskTextFormat.forMimeType(mimeType) == null) {
+            throw new IllegalArgumentException("Unsupported export type " + mimeType);
+        }
+        this.mimeType = mimeType;
+    }
+
+    /** @return the MIME types of all export formats */
+    public static String[] mimeTypes() {
+        String[] textTypes = TaskTextFormat.mimeTypes();
+        String[] mimeTypes = new String[textTypes.length + 1];
+        System.arraycopy(textTypes, 0, mimeTypes, 0, textTypes.length);
+        mimeTypes[textTypes.length] = TaskBinaryFormat.MIME_TYPE;
+        return mimeTypes;
+    }
+
+    /** Only export tasks started in [from, to). */
+    public TaskExport range(long from, long to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /** Only export tasks of this category, null for all. */
+    public TaskExport category(String category) {
+        this.category = category;
+        return this;
+    }
+
+    /** Compress the output with gzip. */
+    public TaskExport gzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    /** Write the selected tasks, oldest first. Does not close the stream. */
+    public void writeTo(TaskStore store, OutputStream out) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        OutputStream target = compressed != null ? compressed : out;
+
+        if (TaskBinaryFormat.MIME_TYPE.equals(mimeType)) {
+            BufferedOutputStream buffered = new BufferedOutputStream(target, BUFFER_SIZE);
+            TaskBinaryEncoder.encode(store, from, to, category, buffered);
+            buffered.flush();
+        } else {
+            final TaskTextFormat format = TaskTextFormat.forMimeType(mimeType);
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(target, "UTF-8"), BUFFER_SIZE);
+            format.writeHeader(writer);
+            forEachTask(store, from, to, category, new TaskWriter() {
+                @Override
+                public void write(long id, long started, String category, int duration) throws IOException {
+                    format.writeTask(writer, id, started, category, duration);
+                }
+            });
+            writer.flush();
+        }
+
+        if (compressed != null) {
+            compressed.finish();
+        }
+        out.flush();
+    }
+
+    /** Passes the selected tasks to the writer, the first failure stops writing and is thrown. */
+    static void forEachTask(TaskStore store, long from, long to, final String category, final TaskWriter writer)
+            throws IOException {
+        // TaskVisitor can't throw, the failure is kept until the scan is done.
+        final IOException[] failure = new IOException[1];
+        store.scan(from, to, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String taskCategory, int duration) {
+                if (failure[0] != null || (category != null && !category.equals(taskCategory))) {
+                    return;
+                }
+                try {
+                    writer.write(id, started, taskCategory, duration);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+}
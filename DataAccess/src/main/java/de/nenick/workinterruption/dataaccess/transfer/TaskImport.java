@@ -0,0 +1,146 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import de.nenick.workinterruption.dataaccess.store.TaskBatch;
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Imports a CSV or binary task stream into a store, optionally gzip compressed. The stream is
+ * parsed while it arrives and stored in chunks, each chunk in one transaction.
+ *
+ * <P>Tasks with the start time and category of an existing task are skipped, so importing the
+ * same history twice adds nothing. Imported tasks get new ids.</P>
+ */
+public class TaskImport {
+
+    /** Told after each stored chunk. */
+    public interface Progress {
+        void onProgress(int imported, int skipped);
+    }
+
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+
+    /** Filter capacity for imports into an empty store. */
+    private static final int IMPORT_RESERVE = 10000;
+
+    private final TaskStore store;
+    private final TaskBatch batch;
+
+    private TaskKeyFilter existing;
+    private Progress progress;
+    private volatile int imported;
+    private volatile int skipped;
+    private volatile boolean finished;
+    private volatile String failure;
+
+    private final TaskVisitor collect = new TaskVisitor() {
+        @Override
+        public void visit(long id, long started, String category, int duration) {
+            if (existing.mightContain(started, category) && isDuplicate(started, category)) {
+                skipped++;
+                return;
+            }
+            existing.add(started, category);
+            batch.add(TaskStore.NO_ID, started, category, duration);
+            if (batch.isFull()) {
+                flush();
+            }
+        }
+    };
+
+    public TaskImport(TaskStore store, int chunkSize) {
+        this.store = store;
+        this.batch = new TaskBatch(chunkSize);
+    }
+
+    /**
+     * Imports the whole stream, the format is detected from its first bytes. Chunks stored
+     * before a failure are kept.
+     *
+     * @param progress told after each chunk, may be null
+     * @throws IOException if reading fails or the stream is malformed
+     */
+    public void run(InputStream in, Progress progress) throws IOException {
+        this.progress = progress;
+        try {
+            existing = existingKeys();
+            TaskStreamReader reader = TaskStreamReader.open(in);
+            while (reader.read(collect)) {
+                // next piece
+            }
+            flush();
+        } catch (IOException e) {
+            failure = e.getMessage();
+            throw e;
+        } finally {
+            finished = true;
+        }
+    }
+
+    public int imported() {
+        return imported;
+    }
+
+    public int skipped() {
+        return skipped;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /** @return why the import failed or null */
+    public String failure() {
+        return failure;
+    }
+
+    private TaskKeyFilter existingKeys() {
+        final int[] count = {0};
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                count[0]++;
+            }
+        });
+        // room for as many imported tasks, more only raise the false positive rate
+        final TaskKeyFilter filter = new TaskKeyFilter(count[0] * 2 + IMPORT_RESERVE);
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, new TaskVisitor() {
+            @Override
+            public void visit(long id, long started, String category, int duration) {
+                filter.add(started, category);
+            }
+        });
+        return filter;
+    }
+
+    /** Checks a filter hit against the pending chunk and the store. */
+    private boolean isDuplicate(long started, final String category) {
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.started(i) == started && batch.category(i).equals(category)) {
+                return true;
+            }
+        }
+        final boolean[] found = {false};
+        store.scan(started, started + 1, new TaskVisitor() {
+            @Override
+            public void visit(long id, long taskStarted, String taskCategory, int duration) {
+                found[0] |= taskCategory.equals(category);
+            }
+        });
+        return found[0];
+    }
+
+    private void flush() {
+        if (batch.size() == 0) {
+            return;
+        }
+        imported += store.insertAll(batch);
+        batch.clear();
+        if (progress != null) {
+            progress.onProgress(imported, skipped);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+/**
+ * Bloom filter over (started, category) pairs. Answers "maybe contained" or "certainly not",
+ * with about 1% false positives at the expected size.
+ */
+class TaskKeyFilter {
+
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final long[] bits;
+    private final long mask;
+
+    /** @param expectedKeys number of keys the false positive rate is planned for */
+    TaskKeyFilter(int expectedKeys) {
+        long wanted = Math.max(1024L, (long) expectedKeys * BITS_PER_KEY);
+        long size = Long.highestOneBit(wanted - 1) << 1;
+        bits = new long[(int) (size >>> 6)];
+        mask = size - 1;
+    }
+
+    void add(long started, String category) {
+        long hash = hash(started, category);
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = (hash + i * step) & mask;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(long started, String category) {
+        long hash = hash(started, category);
+        long step = (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            long bit = (hash + i * step) & mask;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long hash(long started, String category) {
+        long h = started * 0x9E3779B97F4A7C15L + category.hashCode();
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,49 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.zip.GZIPInputStream;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/** Reads an exported task stream piece by piece, whatever its format. */
+public abstract class TaskStreamReader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Reads the next piece of the stream, at least one task.
+     *
+     * @return false if the end of the stream was reached
+     * @throws IOException if the stream is malformed
+     */
+    public abstract boolean read(TaskVisitor visitor) throws IOException;
+
+    /**
+     * Opens a CSV or binary export, optionally gzip compressed. The format is detected from
+     * the first bytes.
+     */
+    public static TaskStreamReader open(InputStream stream) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(stream, BUFFER_SIZE);
+        in.mark(TaskBinaryFormat.MAGIC.length);
+        byte[] head = new byte[TaskBinaryFormat.MAGIC.length];
+        int length = 0;
+        int read;
+        while (length < head.length && (read = in.read(head, length, head.length - length)) != -1) {
+            length += read;
+        }
+        in.reset();
+
+        if (length >= 2 && (head[0] & 0xFF) == 0x1F && (head[1] & 0xFF) == 0x8B) {
+            return open(new GZIPInputStream(in, BUFFER_SIZE));
+        }
+        if (length == head.length && head[0] == TaskBinaryFormat.MAGIC[0] && head[1] == TaskBinaryFormat.MAGIC[1]
+                && head[2] == TaskBinaryFormat.MAGIC[2] && head[3] == TaskBinaryFormat.MAGIC[3]) {
+            return new TaskBinaryStreamReader(in);
+        }
+        return new TaskCsvReader(new BufferedReader(new InputStreamReader(in, "UTF-8"), BUFFER_SIZE));
+    }
+}
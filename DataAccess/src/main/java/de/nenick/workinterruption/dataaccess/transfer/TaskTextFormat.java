@@ -0,0 +1,140 @@
+package de.nenick.workinterruption.dataaccess.transfer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/** Text formats for exporting tasks, one line per task. */
+public enum TaskTextFormat {
+
+    /** Comma separated values with a header line. Running tasks have an empty duration. */
+    CSV("text/csv") {
+        @Override
+        public void writeHeader(Writer out) throws IOException {
+            out.write("id,started,category,duration\n");
+        }
+
+        @Override
+        public void writeTask(Writer out, long id, long started, String category, int duration) throws IOException {
+            out.write(Long.toString(id));
+            out.write(',');
+            out.write(Long.toString(started));
+            out.write(',');
+            writeCsvValue(out, category);
+            out.write(',');
+            if (duration != TaskStore.OPEN) {
+                out.write(Integer.toString(duration));
+            }
+            out.write('\n');
+        }
+    },
+
+    /** One JSON object per line. Running tasks have a null duration. */
+    NDJSON("application/x-ndjson") {
+        @Override
+        public void writeHeader(Writer out) {
+        }
+
+        @Override
+        public void writeTask(Writer out, long id, long started, String category, int duration) throws IOException {
+            out.write("{\"id\":");
+            out.write(Long.toString(id));
+            out.write(",\"started\":");
+            out.write(Long.toString(started));
+            out.write(",\"category\":");
+            writeJsonString(out, category);
+            out.write(",\"duration\":");
+            out.write(duration == TaskStore.OPEN ? "null" : Integer.toString(duration));
+            out.write("}\n");
+        }
+    };
+
+    private final String mimeType;
+
+    TaskTextFormat(String mimeType) {
+        this.mimeType = mimeType;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /** Write whatever comes before the first task. */
+    public abstract void writeHeader(Writer out) throws IOException;
+
+    /** Write one task as a line. */
+    public abstract void writeTask(Writer out, long id, long started, String category, int duration) throws IOException;
+
+    /** @return the format for the MIME type or null if there is none */
+    public static TaskTextFormat forMimeType(String mimeType) {
+        for (TaskTextFormat format : values()) {
+            if (format.mimeType.equals(mimeType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /** @return the MIME types of all formats */
+    public static String[] mimeTypes() {
+        TaskTextFormat[] formats = values();
+        String[] mimeTypes = new String[formats.length];
+        for (int i = 0; i < formats.length; i++) {
+            mimeTypes[i] = formats[i].mimeType;
+        }
+        return mimeTypes;
+    }
+
+    private static void writeCsvValue(Writer out, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+}
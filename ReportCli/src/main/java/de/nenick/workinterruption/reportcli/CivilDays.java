@@ -0,0 +1,32 @@
+package de.nenick.workinterruption.reportcli;
+
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
+
+/**
+ * Months and labels of days since 1970-01-01 in the proleptic gregorian calendar, local days
+ * and weeks come from {@link TimeBuckets}.
+ */
+final class CivilDays {
+
+    static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private CivilDays() {
+    }
+
+    /** @return months since year 0, {@code year * 12 + month - 1} */
+    static int month(int epochDay) {
+        int[] date = TimeBuckets.civil(epochDay);
+        return date[0] * 12 + date[1] - 1;
+    }
+
+    /** @return yyyy-MM-dd */
+    static String formatDay(int epochDay) {
+        int[] date = TimeBuckets.civil(epochDay);
+        return String.format("%04d-%02d-%02d", date[0], date[1], date[2]);
+    }
+
+    /** @return yyyy-MM */
+    static String formatMonth(int month) {
+        return String.format("%04d-%02d", month / 12, month % 12 + 1);
+    }
+}
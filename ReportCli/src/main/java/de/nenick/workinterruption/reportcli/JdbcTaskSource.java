@@ -0,0 +1,94 @@
+package de.nenick.workinterruption.reportcli;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Reads the task table of a {@code work_interruption} database file pulled from a device. The
+ * file is opened read-only with one connection per scanning thread, SQLite connections must not
+ * be shared between threads.
+ */
+public class JdbcTaskSource implements TaskSource {
+
+    /** SQLITE_OPEN_READONLY for the open_mode property of sqlite-jdbc. */
+    private static final String OPEN_READONLY = "1";
+
+    private static final String RANGE_QUERY = "SELECT min(started), max(started) FROM task WHERE duration IS NOT NULL";
+    private static final String SCAN_QUERY = "SELECT _id, started, category, duration FROM task"
+            + " WHERE started >= ? AND started < ? AND duration IS NOT NULL";
+
+    private final String url;
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private final ThreadLocal<Connection> connection = new ThreadLocal<Connection>();
+
+    public JdbcTaskSource(String databaseFile) throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("sqlite-jdbc is missing on the class path", e);
+        }
+        this.url = String.format("jdbc:sqlite:%s", databaseFile);
+    }
+
+    @Override
+    public long[] range() throws SQLException {
+        PreparedStatement statement = connection().prepareStatement(RANGE_QUERY);
+        try {
+            ResultSet result = statement.executeQuery();
+            result.next();
+            long first = result.getLong(1);
+            if (result.wasNull()) {
+                return null;
+            }
+            return new long[]{first, result.getLong(2) + 1};
+        } finally {
+            statement.close();
+        }
+    }
+
+    @Override
+    public void scan(long from, long to, TaskVisitor visitor) throws SQLException {
+        PreparedStatement statement = connection().prepareStatement(SCAN_QUERY);
+        try {
+            statement.setLong(1, from);
+            statement.setLong(2, to);
+            statement.setFetchSize(1024);
+            ResultSet result = statement.executeQuery();
+            while (result.next()) {
+                visitor.visit(result.getLong(1), result.getLong(2), result.getString(3), result.getInt(4));
+            }
+        } finally {
+            statement.close();
+        }
+    }
+
+    /** Close the connections of all threads. */
+    public synchronized void close() throws SQLException {
+        for (Connection open : connections) {
+            open.close();
+        }
+        connections.clear();
+    }
+
+    private Connection connection() throws SQLException {
+        Connection current = connection.get();
+        if (current == null) {
+            Properties properties = new Properties();
+            properties.setProperty("open_mode", OPEN_READONLY);
+            current = DriverManager.getConnection(url, properties);
+            synchronized (this) {
+                connections.add(current);
+            }
+            connection.set(current);
+        }
+        return current;
+    }
+}
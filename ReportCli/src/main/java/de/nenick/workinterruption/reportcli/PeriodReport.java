@@ -0,0 +1,143 @@
+package de.nenick.workinterruption.reportcli;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+import de.nenick.workinterruption.dataaccess.time.TimeBuckets;
+
+/**
+ * Number of tasks and total duration per category and day, week and month. A task counts in
+ * the period it started in. Reports of separate time ranges are combined with {@link #merge}.
+ */
+public class PeriodReport implements TaskVisitor {
+
+    public enum Period {
+        DAY, WEEK, MONTH
+    }
+
+    /** Totals of one category, each value is {tasks, millis}. */
+    private static class CategoryTotals {
+        final Map<Integer, long[]> days = new HashMap<Integer, long[]>();
+        final Map<Integer, long[]> weeks = new HashMap<Integer, long[]>();
+        final Map<Integer, long[]> months = new HashMap<Integer, long[]>();
+
+        Map<Integer, long[]> of(Period period) {
+            switch (period) {
+                case DAY:
+                    return days;
+                case WEEK:
+                    return weeks;
+                default:
+                    return months;
+            }
+        }
+    }
+
+    private final TimeBuckets buckets;
+    private final Map<String, CategoryTotals> categories = new HashMap<String, CategoryTotals>();
+
+    public PeriodReport(TimeZone zone) {
+        this.buckets = TimeBuckets.forZone(zone);
+    }
+
+    @Override
+    public void visit(long id, long started, String category, int duration) {
+        CategoryTotals totals = categories.get(category);
+        if (totals == null) {
+            totals = new CategoryTotals();
+            categories.put(category, totals);
+        }
+        int day = buckets.epochDay(started);
+        add(totals.days, day, 1, duration);
+        add(totals.weeks, TimeBuckets.weekStartOfDay(day), 1, duration);
+        add(totals.months, CivilDays.month(day), 1, duration);
+    }
+
+    /** Add the totals of the other report to this one, the other report is used up. */
+    public PeriodReport merge(PeriodReport other) {
+        for (Map.Entry<String, CategoryTotals> category : other.categories.entrySet()) {
+            CategoryTotals totals = categories.get(category.getKey());
+            if (totals == null) {
+                categories.put(category.getKey(), category.getValue());
+                continue;
+            }
+            for (Period period : Period.values()) {
+                for (Map.Entry<Integer, long[]> value : category.getValue().of(period).entrySet()) {
+                    add(totals.of(period), value.getKey(), value.getValue()[0], value.getValue()[1]);
+                }
+            }
+        }
+        return this;
+    }
+
+    public SortedSet<String> categories() {
+        return new TreeSet<String>(categories.keySet());
+    }
+
+    /**
+     * @return {tasks, millis} by period key: epoch day for days, epoch day of the monday for
+     * weeks, {@code year * 12 + month - 1} for months
+     */
+    public SortedMap<Integer, long[]> totals(Period period, String category) {
+        CategoryTotals totals = categories.get(category);
+        return totals == null ? new TreeMap<Integer, long[]>() : new TreeMap<Integer, long[]>(totals.of(period));
+    }
+
+    /** @return number of days with at least one task */
+    public int activeDays() {
+        SortedSet<Integer> days = new TreeSet<Integer>();
+        for (CategoryTotals totals : categories.values()) {
+            days.addAll(totals.days.keySet());
+        }
+        return days.size();
+    }
+
+    /** Print the totals per period and the interruption frequency per category as CSV sections. */
+    public void print(PrintStream out) {
+        print(out, Period.DAY, "day");
+        print(out, Period.WEEK, "week");
+        print(out, Period.MONTH, "month");
+
+        int activeDays = activeDays();
+        out.println();
+        out.println("category,tasks,tasks_per_active_day,mean_millis");
+        for (String category : categories()) {
+            long tasks = 0;
+            long millis = 0;
+            for (long[] value : categories.get(category).days.values()) {
+                tasks += value[0];
+                millis += value[1];
+            }
+            out.printf("%s,%d,%.2f,%d%n", category, tasks, (double) tasks / activeDays, millis / tasks);
+        }
+    }
+
+    private void print(PrintStream out, Period period, String name) {
+        out.println();
+        out.println(name + ",category,tasks,millis");
+        for (String category : categories()) {
+            for (Map.Entry<Integer, long[]> value : totals(period, category).entrySet()) {
+                String key = period == Period.MONTH
+                        ? CivilDays.formatMonth(value.getKey()) : CivilDays.formatDay(value.getKey());
+                out.println(key + ',' + category + ',' + value.getValue()[0] + ',' + value.getValue()[1]);
+            }
+        }
+    }
+
+    private static void add(Map<Integer, long[]> totals, int key, long tasks, long millis) {
+        long[] value = totals.get(key);
+        if (value == null) {
+            totals.put(key, new long[]{tasks, millis});
+        } else {
+            value[0] += tasks;
+            value[1] += millis;
+        }
+    }
+}
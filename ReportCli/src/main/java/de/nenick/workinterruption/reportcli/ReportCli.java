@@ -0,0 +1,91 @@
+package de.nenick.workinterruption.reportcli;
+
+import java.sql.SQLException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Prints task reports of a {@code work_interruption} database file pulled from a device, see
+ * {@link #USAGE}. The time range is split into segments which are aggregated in parallel.
+ */
+public class ReportCli {
+
+    static final String USAGE = "usage: ReportCli <work_interruption database>"
+            + " [--from yyyy-MM-dd] [--to yyyy-MM-dd] [--zone id] [--threads n] [--segment-days n]";
+
+    private static final int DEFAULT_SEGMENT_DAYS = 30;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || args.length % 2 == 0) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        String from = null;
+        String to = null;
+        TimeZone zone = TimeZone.getDefault();
+        int threads = Runtime.getRuntime().availableProcessors();
+        int segmentDays = DEFAULT_SEGMENT_DAYS;
+        for (int i = 1; i < args.length; i += 2) {
+            String value = args[i + 1];
+            if ("--from".equals(args[i])) {
+                from = value;
+            } else if ("--to".equals(args[i])) {
+                to = value;
+            } else if ("--zone".equals(args[i])) {
+                zone = TimeZone.getTimeZone(value);
+            } else if ("--threads".equals(args[i])) {
+                threads = Integer.parseInt(value);
+            } else if ("--segment-days".equals(args[i])) {
+                segmentDays = Integer.parseInt(value);
+            } else {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+        }
+
+        JdbcTaskSource source = new JdbcTaskSource(args[0]);
+        try {
+            long[] range = range(source, from, to, zone);
+            PeriodReport report = range == null ? new PeriodReport(zone)
+                    : report(source, zone, range[0], range[1], segmentDays * CivilDays.DAY_MILLIS, threads);
+            report.print(System.out);
+        } finally {
+            source.close();
+        }
+    }
+
+    /** Aggregate the range with the given number of threads. */
+    public static PeriodReport report(TaskSource source, TimeZone zone, long from, long to, long segmentMillis,
+                                      int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.invoke(new SegmentAggregation(source, zone, from, to, segmentMillis));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static long[] range(TaskSource source, String from, String to, TimeZone zone)
+            throws SQLException, ParseException {
+        long[] range = source.range();
+        if (range == null) {
+            return null;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        format.setTimeZone(zone);
+        format.setLenient(false);
+        if (from != null) {
+            range[0] = Math.max(range[0], format.parse(from).getTime());
+        }
+        if (to != null) {
+            Calendar end = Calendar.getInstance(zone);
+            end.setTime(format.parse(to));
+            end.add(Calendar.DAY_OF_MONTH, 1);
+            range[1] = Math.min(range[1], end.getTimeInMillis());
+        }
+        return range[0] < range[1] ? range : null;
+    }
+}
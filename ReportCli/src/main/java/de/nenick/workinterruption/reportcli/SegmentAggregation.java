@@ -0,0 +1,48 @@
+package de.nenick.workinterruption.reportcli;
+
+import java.sql.SQLException;
+import java.util.TimeZone;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregates a time range by splitting it in halves until a piece is at most one segment long.
+ * Pieces are scanned by the threads of the fork/join pool and their reports merged.
+ */
+@SuppressWarnings("serial") // never serialized, only run by the pool
+public class SegmentAggregation extends RecursiveTask<PeriodReport> {
+
+    private final TaskSource source;
+    private final TimeZone zone;
+    private final long from;
+    private final long to;
+    private final long segmentMillis;
+
+    public SegmentAggregation(TaskSource source, TimeZone zone, long from, long to, long segmentMillis) {
+        this.source = source;
+        this.zone = zone;
+        this.from = from;
+        this.to = to;
+        this.segmentMillis = segmentMillis;
+    }
+
+    @Override
+    protected PeriodReport compute() {
+        if (to - from <= segmentMillis) {
+            PeriodReport report = new PeriodReport(zone);
+            try {
+                source.scan(from, to, report);
+            } catch (SQLException e) {
+                throw new IllegalStateException("Reading tasks from " + from + " to " + to + " failed", e);
+            }
+            return report;
+        }
+        // split on a segment border so the pieces don't depend on the pool
+        long segments = (to - from + segmentMillis - 1) / segmentMillis;
+        long middle = from + segments / 2 * segmentMillis;
+        SegmentAggregation left = new SegmentAggregation(source, zone, from, middle, segmentMillis);
+        SegmentAggregation right = new SegmentAggregation(source, zone, middle, to, segmentMillis);
+        left.fork();
+        PeriodReport report = right.compute();
+        return left.join().merge(report);
+    }
+}
@@ -0,0 +1,15 @@
+package de.nenick.workinterruption.reportcli;
+
+import java.sql.SQLException;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/** Closed tasks for the report, scanned by several threads at once. */
+public interface TaskSource {
+
+    /** @return start time of the first and behind the last task, or null without tasks */
+    long[] range() throws SQLException;
+
+    /** Visit the closed tasks started in the half open range. */
+    void scan(long from, long to, TaskVisitor visitor) throws SQLException;
+}
@@ -0,0 +1,95 @@
+package de.nenick.workinterruption.reportcli;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+public class SegmentAggregationTest extends TestCase {
+
+    private static final TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+
+    /** Tasks in start order, as long[] {started, duration} with category "work" or "call". */
+    private final List<long[]> tasks = new ArrayList<long[]>();
+
+    private final TaskSource source = new TaskSource() {
+        @Override
+        public long[] range() {
+            return new long[]{tasks.get(0)[0], tasks.get(tasks.size() - 1)[0] + 1};
+        }
+
+        @Override
+        public void scan(long from, long to, TaskVisitor visitor) {
+            for (long[] task : tasks) {
+                if (task[0] >= from && task[0] < to) {
+                    visitor.visit(0, task[0], task[1] % 2 == 0 ? "work" : "call", (int) task[1]);
+                }
+            }
+        }
+    };
+
+    public void testPeriodsInLocalTime() throws Exception {
+
+        // given: a call late on sunday 2013-03-31 and work on monday 2013-04-01, in Berlin
+        tasks.add(new long[]{time(2013, Calendar.MARCH, 31, 23), 61});
+        tasks.add(new long[]{time(2013, Calendar.APRIL, 1, 0), 100});
+
+        // when: the report is built
+        long[] range = source.range();
+        PeriodReport report = ReportCli.report(source, BERLIN, range[0], range[1], CivilDays.DAY_MILLIS, 2);
+
+        // then: they are on separate days, weeks and months
+        assertEquals("2013-03-31=1/61", values(report.totals(PeriodReport.Period.DAY, "call"), false));
+        assertEquals("2013-04-01=1/100", values(report.totals(PeriodReport.Period.DAY, "work"), false));
+        assertEquals("2013-03-25=1/61", values(report.totals(PeriodReport.Period.WEEK, "call"), false));
+        assertEquals("2013-04-01=1/100", values(report.totals(PeriodReport.Period.WEEK, "work"), false));
+        assertEquals("2013-03=1/61", values(report.totals(PeriodReport.Period.MONTH, "call"), true));
+        assertEquals(2, report.activeDays());
+    }
+
+    public void testParallelSegmentsMatchSingleScan() throws Exception {
+
+        // given: three years of tasks every five hours
+        long started = time(2011, Calendar.JANUARY, 1, 8);
+        for (int i = 0; i < 3 * 365 * 24 / 5; i++) {
+            tasks.add(new long[]{started, 1000 + i % 7});
+            started += 5 * 60 * 60 * 1000L;
+        }
+        long[] range = source.range();
+
+        // when: it is aggregated in one piece and in weekly segments on four threads
+        PeriodReport single = ReportCli.report(source, BERLIN, range[0], range[1], Long.MAX_VALUE, 1);
+        PeriodReport parallel = ReportCli.report(source, BERLIN, range[0], range[1], 7 * CivilDays.DAY_MILLIS, 4);
+
+        // then: the totals are the same
+        for (PeriodReport.Period period : PeriodReport.Period.values()) {
+            for (String category : single.categories()) {
+                assertEquals(values(single.totals(period, category), false),
+                        values(parallel.totals(period, category), false));
+            }
+        }
+        assertEquals(36, single.totals(PeriodReport.Period.MONTH, "work").size());
+    }
+
+    private static long time(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance(BERLIN);
+        calendar.clear();
+        calendar.set(year, month, day, hour, 30);
+        return calendar.getTimeInMillis();
+    }
+
+    private static String values(Map<Integer, long[]> totals, boolean months) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<Integer, long[]> value : totals.entrySet()) {
+            text.append(text.length() == 0 ? "" : ",")
+                    .append(months ? CivilDays.formatMonth(value.getKey()) : CivilDays.formatDay(value.getKey()))
+                    .append('=').append(value.getValue()[0]).append('/').append(value.getValue()[1]);
+        }
+        return text.toString();
+    }
+}
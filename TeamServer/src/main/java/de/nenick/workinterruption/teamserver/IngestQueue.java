@@ -0,0 +1,194 @@
+package de.nenick.workinterruption.teamserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import de.nenick.workinterruption.dataaccess.store.TaskStore;
+
+/**
+ * Writes uploads to the user logs with a fixed number of writer threads.
+ *
+ * <P>Each user belongs to one writer, so the uploads of a user are written in order and a log
+ * is never shared. Each writer has a bounded queue, a full queue rejects the upload instead of
+ * letting the server run out of memory. A writer takes all queued uploads at once, writes them
+ * and syncs each touched log once before the uploads are reported as done.</P>
+ */
+public class IngestQueue {
+
+    /** Most uploads written together by one writer. */
+    private static final int MAX_GROUP = 64;
+
+    private static final String LOG_SUFFIX = ".tasks";
+
+    private static final Upload STOP = new Upload(null, null);
+
+    private final File directory;
+    private final Rollups rollups;
+    private final Writer[] writers;
+
+    /**
+     * Open the logs in the directory and start the writers.
+     *
+     * @param capacity queued uploads per writer
+     */
+    public IngestQueue(File directory, Rollups rollups, int writerCount, int capacity) throws IOException {
+        this.directory = directory;
+        this.rollups = rollups;
+        this.writers = new Writer[writerCount];
+        for (int i = 0; i < writerCount; i++) {
+            writers[i] = new Writer(i, capacity);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create data directory " + directory);
+        }
+        File[] teams = directory.listFiles();
+        for (File team : teams == null ? new File[0] : teams) {
+            File[] users = team.isDirectory() ? team.listFiles() : null;
+            for (File user : users == null ? new File[0] : users) {
+                String name = user.getName();
+                if (name.endsWith(LOG_SUFFIX)) {
+                    String userName = name.substring(0, name.length() - LOG_SUFFIX.length());
+                    writer(team.getName(), userName).open(team.getName(), userName);
+                }
+            }
+        }
+        for (Writer writer : writers) {
+            writer.start();
+        }
+    }
+
+    /** @return false if the queue of the user's writer is full, try again later */
+    public boolean offer(Upload upload) {
+        return writer(upload.team, upload.user).queue.offer(upload);
+    }
+
+    /** Write the queued uploads, then stop the writers and close the logs. */
+    public void shutdown() throws InterruptedException {
+        for (Writer writer : writers) {
+            writer.queue.put(STOP);
+        }
+        for (Writer writer : writers) {
+            writer.join();
+        }
+    }
+
+    private Writer writer(String team, String user) {
+        int hash = (team + '/' + user).hashCode();
+        return writers[(hash & Integer.MAX_VALUE) % writers.length];
+    }
+
+    private class Writer extends Thread {
+
+        final BlockingQueue<Upload> queue;
+        private final Map<String, UserLog> logs = new HashMap<String, UserLog>();
+
+        Writer(int index, int capacity) {
+            super("IngestWriter-" + index);
+            queue = new ArrayBlockingQueue<Upload>(capacity);
+        }
+
+        UserLog open(String team, String user) throws IOException {
+            String key = team + '/' + user;
+            UserLog log = logs.get(key);
+            if (log == null) {
+                File teamDirectory = new File(directory, team);
+                if (!teamDirectory.isDirectory() && !teamDirectory.mkdirs()) {
+                    throw new IOException("Can't create team directory " + teamDirectory);
+                }
+                log = new UserLog(new File(teamDirectory, user + LOG_SUFFIX), team, user, rollups);
+                logs.put(key, log);
+            }
+            return log;
+        }
+
+        void close(UserLog log) {
+            logs.remove(log.team + '/' + log.user);
+            try {
+                log.close();
+            } catch (IOException e) {
+                // the next open replays what made it to the file
+            }
+        }
+
+        @Override
+        public void run() {
+            List<Upload> group = new ArrayList<Upload>(MAX_GROUP);
+            boolean stopped = false;
+            while (!stopped) {
+                try {
+                    group.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+                queue.drainTo(group, MAX_GROUP - 1);
+                stopped = group.remove(STOP);
+                write(group);
+                group.clear();
+            }
+            for (UserLog log : logs.values()) {
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    // nothing left to write
+                }
+            }
+        }
+
+        private void write(List<Upload> group) {
+            Set<UserLog> touched = new LinkedHashSet<UserLog>();
+            try {
+                for (Upload upload : group) {
+                    UserLog log = open(upload.team, upload.user);
+                    touched.add(log);
+                    buffer(upload, log);
+                }
+                for (UserLog log : touched) {
+                    log.write();
+                }
+                for (UserLog log : touched) {
+                    log.sync(rollups);
+                }
+            } catch (IOException e) {
+                for (UserLog log : touched) {
+                    try {
+                        log.discard();
+                    } catch (IOException truncateFailed) {
+                        // opening it again drops the torn record
+                        close(log);
+                    }
+                }
+                for (Upload upload : group) {
+                    upload.fail(e);
+                }
+                return;
+            }
+            for (Upload upload : group) {
+                upload.finish();
+            }
+        }
+
+        private void buffer(Upload upload, UserLog log) throws IOException {
+            int accepted = 0;
+            int duplicates = 0;
+            int running = 0;
+            for (int task = 0; task < upload.size(); task++) {
+                if (upload.duration(task) == TaskStore.OPEN) {
+                    running++;
+                } else if (log.add(upload.started(task), upload.category(task), upload.duration(task))) {
+                    accepted++;
+                } else {
+                    duplicates++;
+                }
+            }
+            upload.count(accepted, duplicates, running);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package de.nenick.workinterruption.teamserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import de.nenick.workinterruption.dataaccess.transfer.TaskBinaryEncoder;
+
+/**
+ * Simulates many users uploading tasks at the same time to a {@link TeamServer} on localhost
+ * and prints throughput and upload latencies. Busy answers are retried after a short pause.
+ */
+public class LoadGenerator {
+
+    private static final List<String> CATEGORIES = Arrays.asList("work", "call", "colleague", "mail", "meeting");
+    private static final int TEAMS = 10;
+
+    private final int port;
+    private final int uploaders;
+    private final int uploadsPerUser;
+    private final int tasksPerUpload;
+
+    private final long[] latencies;
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    public LoadGenerator(int port, int uploaders, int uploadsPerUser, int tasksPerUpload) {
+        this.port = port;
+        this.uploaders = uploaders;
+        this.uploadsPerUser = uploadsPerUser;
+        this.tasksPerUpload = tasksPerUpload;
+        this.latencies = new long[uploaders * uploadsPerUser];
+    }
+
+    /** Run all uploaders and wait for them. */
+    public void run() throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(uploaders);
+        for (int i = 0; i < uploaders; i++) {
+            final int user = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        upload(user);
+                    } catch (InterruptedException e) {
+                        // stop early
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "Uploader-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        double seconds = Math.max(1, System.nanoTime() - begin) / 1e9;
+
+        int count = completed.get();
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        System.out.printf("%d uploaders, %d uploads of %d tasks in %.2f s%n", uploaders, count, tasksPerUpload,
+                seconds);
+        System.out.printf("%.0f uploads/s, %.0f tasks/s, %d retries, %d failures%n", count / seconds,
+                (double) count * tasksPerUpload / seconds, retries.get(), failures.get());
+        if (count > 0) {
+            System.out.printf("latency p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    percentile(sorted, 50) / 1e6, percentile(sorted, 95) / 1e6, percentile(sorted, 99) / 1e6,
+                    sorted[count - 1] / 1e6);
+        }
+    }
+
+    private void upload(int user) throws InterruptedException {
+        Random random = new Random(user);
+        long started = 1370000000000L;
+        for (int i = 0; i < uploadsPerUser; i++) {
+            byte[] body;
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+                TaskBinaryEncoder encoder = new TaskBinaryEncoder(gzip, CATEGORIES);
+                for (int task = 0; task < tasksPerUpload; task++) {
+                    int duration = 1000 + random.nextInt(30 * 60 * 1000);
+                    encoder.write(task + 1, started, CATEGORIES.get(random.nextInt(CATEGORIES.size())), duration);
+                    started += duration + random.nextInt(60 * 1000);
+                }
+                encoder.finish();
+                gzip.close();
+                body = bytes.toByteArray();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+
+            long begin = System.nanoTime();
+            int backoff = 50;
+            while (true) {
+                int status;
+                try {
+                    status = post("team" + (user % TEAMS), "user" + user, body);
+                } catch (IOException e) {
+                    status = -1;
+                }
+                if (status == 200) {
+                    latencies[completed.getAndIncrement()] = System.nanoTime() - begin;
+                    break;
+                }
+                if (status != 503 && status != -1) {
+                    failures.incrementAndGet();
+                    break;
+                }
+                retries.incrementAndGet();
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, 2000);
+            }
+        }
+    }
+
+    private int post(String team, String user, byte[] body) throws IOException {
+        URL url = new URL("http://localhost:" + port + "/upload?team=" + team + "&user=" + user);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setFixedLengthStreamingMode(body.length);
+            OutputStream out = connection.getOutputStream();
+            out.write(body);
+            out.close();
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                while (in.read() != -1) {
+                    // drain for keep alive
+                }
+                in.close();
+            }
+            return status;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    /**
+     * Arguments: [uploaders] [uploads per user] [tasks per upload] [port]. Without a port a
+     * server with a temporary data directory is started in this process.
+     */
+    public static void main(String[] args) throws Exception {
+        int uploaders = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int uploads = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int tasks = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        TeamServer server = null;
+        int port;
+        if (args.length > 3) {
+            port = Integer.parseInt(args[3]);
+        } else {
+            File directory = File.createTempFile("teamserver", "");
+            if (!directory.delete() || !directory.mkdirs()) {
+                throw new IOException("Can't create " + directory);
+            }
+            server = new TeamServer(directory, Runtime.getRuntime().availableProcessors(), 64, 64);
+            port = server.start(0);
+            System.out.println("Started server with data in " + directory);
+        }
+
+        new LoadGenerator(port, uploaders, uploads, tasks).run();
+        if (server != null) {
+            server.stop();
+        }
+    }
+}
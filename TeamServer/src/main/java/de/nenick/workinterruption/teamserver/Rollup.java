@@ -0,0 +1,42 @@
+package de.nenick.workinterruption.teamserver;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Number of tasks and their total duration per category, for a user or a team. */
+public class Rollup {
+
+    /** Totals of one category. */
+    public static class Totals {
+        public long tasks;
+        public long millis;
+
+        Totals copy() {
+            Totals copy = new Totals();
+            copy.tasks = tasks;
+            copy.millis = millis;
+            return copy;
+        }
+    }
+
+    private final Map<String, Totals> categories = new TreeMap<String, Totals>();
+
+    public synchronized void add(String category, int duration) {
+        Totals totals = categories.get(category);
+        if (totals == null) {
+            totals = new Totals();
+            categories.put(category, totals);
+        }
+        totals.tasks++;
+        totals.millis += duration;
+    }
+
+    /** @return copy of the totals sorted by category */
+    public synchronized Map<String, Totals> categories() {
+        Map<String, Totals> copy = new TreeMap<String, Totals>();
+        for (Map.Entry<String, Totals> entry : categories.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        return copy;
+    }
+}
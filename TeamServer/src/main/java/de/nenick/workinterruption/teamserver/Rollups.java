@@ -0,0 +1,92 @@
+package de.nenick.workinterruption.teamserver;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Rollups of all users and teams. Safe for use from several threads. */
+public class Rollups {
+
+    private final ConcurrentMap<String, Rollup> users = new ConcurrentHashMap<String, Rollup>();
+    private final ConcurrentMap<String, Rollup> teams = new ConcurrentHashMap<String, Rollup>();
+    private final AtomicLong version = new AtomicLong();
+
+    public void add(String team, String user, String category, int duration) {
+        rollup(users, team + '/' + user).add(category, duration);
+        rollup(teams, team).add(category, duration);
+        version.incrementAndGet();
+    }
+
+    /** @return rollup of the user or null if nothing was uploaded */
+    public Rollup user(String team, String user) {
+        return users.get(team + '/' + user);
+    }
+
+    /** @return rollup of the team or null if nothing was uploaded */
+    public Rollup team(String team) {
+        return teams.get(team);
+    }
+
+    /** @return number which changes with each added task */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Replace the file with all rollups as CSV {@code scope,name,category,tasks,millis}. Scope
+     * is {@code team} or {@code user}, users are named {@code team/user}.
+     */
+    public void writeTo(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+            out.write("scope,name,category,tasks,millis\n");
+            write(out, "team", teams);
+            write(out, "user", users);
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("Can't replace " + file);
+        }
+    }
+
+    private static void write(Writer out, String scope, Map<String, Rollup> rollups) throws IOException {
+        for (Map.Entry<String, Rollup> rollup : new TreeMap<String, Rollup>(rollups).entrySet()) {
+            for (Map.Entry<String, Rollup.Totals> category : rollup.getValue().categories().entrySet()) {
+                out.write(scope + ',' + rollup.getKey() + ',' + quote(category.getKey()) + ','
+                        + category.getValue().tasks + ',' + category.getValue().millis + '\n');
+            }
+        }
+    }
+
+    static String quote(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static Rollup rollup(ConcurrentMap<String, Rollup> rollups, String name) {
+        Rollup rollup = rollups.get(name);
+        if (rollup == null) {
+            Rollup created = new Rollup();
+            rollup = rollups.putIfAbsent(name, created);
+            if (rollup == null) {
+                rollup = created;
+            }
+        }
+        return rollup;
+    }
+}
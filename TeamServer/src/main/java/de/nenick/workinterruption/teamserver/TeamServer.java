@@ -0,0 +1,257 @@
+package de.nenick.workinterruption.teamserver;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import de.nenick.workinterruption.dataaccess.transfer.TaskStreamReader;
+
+/**
+ * Collects the closed tasks of a team over HTTP and keeps rollups per user and per team.
+ *
+ * <UL>
+ * <LI>{@code POST /upload?team=T&user=U} with a task export in any format of the app, CSV or
+ * binary, optionally gzip compressed. Answers 200 once the tasks are on disk, 503 with
+ * {@code Retry-After} if the writers are busy.</LI>
+ * <LI>{@code GET /rollup?team=T} or {@code GET /rollup?team=T&user=U} answers
+ * {@code category,tasks,millis} lines.</LI>
+ * </UL>
+ *
+ * <P>Tasks are kept per user below {@code users/} in the data directory, the rollups are
+ * rebuilt from them on start and written to {@code rollups.csv} while running.</P>
+ */
+public class TeamServer {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    static final int MAX_TASKS_PER_UPLOAD = 100000;
+    static final String ROLLUP_FILE = "rollups.csv";
+
+    private static final long WRITE_TIMEOUT_SECONDS = 30;
+    private static final long ROLLUP_WRITE_SECONDS = 10;
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]{0,63}");
+
+    private final File directory;
+    private final int writers;
+    private final int queueCapacity;
+    private final int handlerThreads;
+    private final Rollups rollups = new Rollups();
+
+    private HttpServer server;
+    private IngestQueue ingest;
+    private ExecutorService handlers;
+    private ScheduledExecutorService rollupWriter;
+    private long writtenVersion = -1;
+
+    /**
+     * @param writers number of threads writing uploads to disk
+     * @param queueCapacity queued uploads per writer before uploads are rejected
+     * @param handlerThreads number of threads reading requests
+     */
+    public TeamServer(File directory, int writers, int queueCapacity, int handlerThreads) {
+        this.directory = directory;
+        this.writers = writers;
+        this.queueCapacity = queueCapacity;
+        this.handlerThreads = handlerThreads;
+    }
+
+    /**
+     * Load the stored tasks and start listening.
+     *
+     * @param port to listen on, 0 for any free port
+     * @return the port listened on
+     */
+    public int start(int port) throws IOException {
+        ingest = new IngestQueue(new File(directory, "users"), rollups, writers, queueCapacity);
+        handlers = Executors.newFixedThreadPool(handlerThreads);
+        server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(handlers);
+        server.createContext("/upload", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleUpload(exchange);
+            }
+        });
+        server.createContext("/rollup", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleRollup(exchange);
+            }
+        });
+        server.start();
+
+        rollupWriter = Executors.newSingleThreadScheduledExecutor();
+        rollupWriter.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                writeRollups();
+            }
+        }, ROLLUP_WRITE_SECONDS, ROLLUP_WRITE_SECONDS, TimeUnit.SECONDS);
+        return server.getAddress().getPort();
+    }
+
+    /** Stop accepting requests, write queued uploads and the rollups. */
+    public void stop() throws InterruptedException {
+        server.stop(1);
+        handlers.shutdown();
+        handlers.awaitTermination(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        ingest.shutdown();
+        rollupWriter.shutdown();
+        rollupWriter.awaitTermination(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        writeRollups();
+    }
+
+    public Rollups rollups() {
+        return rollups;
+    }
+
+    private synchronized void writeRollups() {
+        long version = rollups.version();
+        if (version == writtenVersion) {
+            return;
+        }
+        try {
+            rollups.writeTo(new File(directory, ROLLUP_FILE));
+            writtenVersion = version;
+        } catch (IOException e) {
+            System.err.println("Writing the rollups failed: " + e);
+        }
+    }
+
+    private void handleUpload(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "POST required");
+                return;
+            }
+            Map<String, String> query = query(exchange);
+            String team = query.get("team");
+            String user = query.get("user");
+            if (!isName(team) || !isName(user)) {
+                respond(exchange, 400, "team and user required");
+                return;
+            }
+
+            Upload upload = new Upload(team, user);
+            InputStream in = exchange.getRequestBody();
+            try {
+                TaskStreamReader reader = TaskStreamReader.open(in);
+                while (reader.read(upload)) {
+                    if (upload.size() > MAX_TASKS_PER_UPLOAD) {
+                        respond(exchange, 413, "At most " + MAX_TASKS_PER_UPLOAD + " tasks per upload");
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                respond(exchange, 400, String.valueOf(e.getMessage()));
+                return;
+            } finally {
+                in.close();
+            }
+
+            if (!ingest.offer(upload)) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                respond(exchange, 503, "busy");
+                return;
+            }
+            if (!upload.await(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                respond(exchange, 504, "write timed out");
+            } else if (upload.failure() != null) {
+                respond(exchange, 500, String.valueOf(upload.failure().getMessage()));
+            } else {
+                respond(exchange, 200, "accepted " + upload.accepted() + "\nduplicates " + upload.duplicates()
+                        + "\nrunning " + upload.running() + "\n");
+            }
+        } catch (InterruptedException e) {
+            respond(exchange, 503, "stopping");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleRollup(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> query = query(exchange);
+            String team = query.get("team");
+            String user = query.get("user");
+            if (!isName(team) || (user != null && !isName(user))) {
+                respond(exchange, 400, "team required");
+                return;
+            }
+            Rollup rollup = user == null ? rollups.team(team) : rollups.user(team, user);
+            StringBuilder text = new StringBuilder("category,tasks,millis\n");
+            if (rollup != null) {
+                for (Map.Entry<String, Rollup.Totals> category : rollup.categories().entrySet()) {
+                    text.append(Rollups.quote(category.getKey())).append(',').append(category.getValue().tasks).append(',')
+                            .append(category.getValue().millis).append('\n');
+                }
+            }
+            respond(exchange, 200, text.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static boolean isName(String name) {
+        return name != null && NAME.matcher(name).matches();
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) throws IOException {
+        Map<String, String> values = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    values.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                            URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+                }
+            }
+        }
+        return values;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    /** Arguments: [port] [data directory] [writer threads]. */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        File directory = new File(args.length > 1 ? args[1] : "teamserver-data");
+        int writers = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        final TeamServer server = new TeamServer(directory, writers, 64, 64);
+        int listening = server.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.stop();
+                } catch (InterruptedException e) {
+                    // exiting anyway
+                }
+            }
+        });
+        System.out.println("Team server listening on port " + listening + ", data in " + directory);
+    }
+}
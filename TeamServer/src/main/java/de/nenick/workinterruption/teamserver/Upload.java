@@ -0,0 +1,105 @@
+package de.nenick.workinterruption.teamserver;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.nenick.workinterruption.dataaccess.store.TaskVisitor;
+
+/**
+ * Tasks uploaded by one user, waiting to be written by the {@link IngestQueue}.
+ *
+ * <P>Collect the tasks by passing the upload as visitor to a task reader.</P>
+ */
+public class Upload implements TaskVisitor {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    final String team;
+    final String user;
+
+    private long[] started = new long[INITIAL_CAPACITY];
+    private String[] categories = new String[INITIAL_CAPACITY];
+    private int[] durations = new int[INITIAL_CAPACITY];
+    private int size;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile int accepted;
+    private volatile int duplicates;
+    private volatile int running;
+    private volatile Exception failure;
+
+    public Upload(String team, String user) {
+        this.team = team;
+        this.user = user;
+    }
+
+    @Override
+    public void visit(long id, long taskStarted, String category, int duration) {
+        if (size == started.length) {
+            started = Arrays.copyOf(started, size * 2);
+            categories = Arrays.copyOf(categories, size * 2);
+            durations = Arrays.copyOf(durations, size * 2);
+        }
+        started[size] = taskStarted;
+        categories[size] = category;
+        durations[size] = duration;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    long started(int index) {
+        return started[index];
+    }
+
+    String category(int index) {
+        return categories[index];
+    }
+
+    int duration(int index) {
+        return durations[index];
+    }
+
+    void count(int accepted, int duplicates, int running) {
+        this.accepted = accepted;
+        this.duplicates = duplicates;
+        this.running = running;
+    }
+
+    void finish() {
+        done.countDown();
+    }
+
+    void fail(Exception failure) {
+        this.failure = failure;
+        done.countDown();
+    }
+
+    /** @return false if the upload was not written in time */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return done.await(timeout, unit);
+    }
+
+    /** @return number of new tasks written */
+    public int accepted() {
+        return accepted;
+    }
+
+    /** @return number of tasks which were already uploaded before */
+    public int duplicates() {
+        return duplicates;
+    }
+
+    /** @return number of running tasks, they are left out until they are closed */
+    public int running() {
+        return running;
+    }
+
+    /** @return why writing failed or null */
+    public Exception failure() {
+        return failure;
+    }
+}
@@ -0,0 +1,185 @@
+package de.nenick.workinterruption.teamserver;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Append-only file with the closed tasks of one user, records are
+ * {@code [long started][int duration][int length][UTF-8 category]}.
+ *
+ * <P>The started time and category of each stored task are kept in memory to skip tasks which
+ * are uploaded again. Only one writer thread may use a log.</P>
+ */
+class UserLog {
+
+    /** Identity of a task for duplicate detection. */
+    private static class TaskKey {
+        final long started;
+        final String category;
+
+        TaskKey(long started, String category) {
+            this.started = started;
+            this.category = category;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof TaskKey)) {
+                return false;
+            }
+            TaskKey other = (TaskKey) o;
+            return started == other.started && category.equals(other.category);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (started ^ (started >>> 32)) * 31 + category.hashCode();
+        }
+    }
+
+    /** Buffered task, counted in the rollups once it is synced. */
+    private static class PendingTask {
+        final TaskKey key;
+        final int duration;
+
+        PendingTask(TaskKey key, int duration) {
+            this.key = key;
+            this.duration = duration;
+        }
+    }
+
+    /** Record size without the category. */
+    private static final int RECORD_BYTES = 8 + 4 + 4;
+
+    final String team;
+    final String user;
+
+    private final FileOutputStream out;
+    /** Length of the log up to the last synced record. */
+    private long syncedLength;
+    private final Set<TaskKey> keys = new HashSet<TaskKey>();
+    private final List<PendingTask> pending = new ArrayList<PendingTask>();
+    private final Set<TaskKey> pendingKeys = new HashSet<TaskKey>();
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream(4096);
+    private final DataOutputStream recordsOut = new DataOutputStream(records);
+
+    /**
+     * Open the log, creating it if missing. Stored tasks are added to the rollups, a torn record
+     * at the end is dropped.
+     */
+    UserLog(File file, String team, String user, Rollups rollups) throws IOException {
+        this.team = team;
+        this.user = user;
+        if (file.exists()) {
+            long valid = replay(file, rollups);
+            if (valid < file.length()) {
+                RandomAccessFile truncate = new RandomAccessFile(file, "rw");
+                try {
+                    truncate.setLength(valid);
+                } finally {
+                    truncate.close();
+                }
+            }
+        }
+        out = new FileOutputStream(file, true);
+        syncedLength = out.getChannel().size();
+    }
+
+    /**
+     * Buffer a task unless it is already stored or buffered.
+     *
+     * @return false for a duplicate
+     */
+    boolean add(long started, String category, int duration) throws IOException {
+        TaskKey key = new TaskKey(started, category);
+        if (keys.contains(key) || !pendingKeys.add(key)) {
+            return false;
+        }
+        pending.add(new PendingTask(key, duration));
+        recordsOut.writeLong(started);
+        recordsOut.writeInt(duration);
+        byte[] bytes = category.getBytes("UTF-8");
+        recordsOut.writeInt(bytes.length);
+        recordsOut.write(bytes);
+        return true;
+    }
+
+    /** Write the buffered tasks without forcing them to the device. */
+    void write() throws IOException {
+        if (records.size() > 0) {
+            out.write(records.toByteArray());
+        }
+    }
+
+    /** Force written tasks to the device, afterwards they count as stored and in the rollups. */
+    void sync(Rollups rollups) throws IOException {
+        if (records.size() > 0) {
+            out.getFD().sync();
+            for (PendingTask task : pending) {
+                keys.add(task.key);
+                rollups.add(team, user, task.key.category, task.duration);
+            }
+            syncedLength = out.getChannel().size();
+            clear();
+        }
+    }
+
+    /**
+     * Forget the buffered tasks after a failed write, an upload again stores them. The log is cut
+     * back to the last synced record, so a partly written one isn't followed by later records.
+     *
+     * @throws IOException if the log can't be cut, it must not be written anymore then
+     */
+    void discard() throws IOException {
+        clear();
+        out.getChannel().truncate(syncedLength);
+    }
+
+    void close() throws IOException {
+        out.close();
+    }
+
+    private void clear() {
+        records.reset();
+        pending.clear();
+        pendingKeys.clear();
+    }
+
+    private long replay(File file, Rollups rollups) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        long valid = 0;
+        try {
+            while (true) {
+                long started = in.readLong();
+                int duration = in.readInt();
+                int length = in.readInt();
+                if (length < 0 || valid + RECORD_BYTES + length > file.length()) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                String category = new String(bytes, "UTF-8");
+                keys.add(new TaskKey(started, category));
+                rollups.add(team, user, category, duration);
+                valid += RECORD_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // end of the log or a torn record
+        } finally {
+            in.close();
+        }
+        return valid;
+    }
+}
@@ -0,0 +1,115 @@
+package de.nenick.workinterruption.teamserver;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+public class TeamServerTest extends TestCase {
+
+    private static final String TASKS = "id,started,category,duration\n"
+            + ",100,work,50\n"
+            + ",200,call,20\n"
+            + ",300,work,\n";
+
+    private File directory;
+    private TeamServer server;
+    private int port;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = File.createTempFile("teamserver", "");
+        assertTrue(directory.delete() && directory.mkdirs());
+        server = new TeamServer(directory, 2, 4, 4);
+        port = server.start(0);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (server != null) {
+            server.stop();
+        }
+        super.tearDown();
+    }
+
+    public void testUploadAgainSkipsDuplicates() throws Exception {
+
+        // given: a user uploaded closed and running tasks
+        assertEquals("accepted 2\nduplicates 0\nrunning 1\n", request("POST", "/upload?team=core&user=anna", TASKS));
+
+        // when: the same tasks are uploaded again
+        String answer = request("POST", "/upload?team=core&user=anna", TASKS);
+
+        // then: nothing new was stored
+        assertEquals("accepted 0\nduplicates 2\nrunning 1\n", answer);
+        assertEquals("category,tasks,millis\ncall,1,20\nwork,1,50\n", request("GET", "/rollup?team=core&user=anna", null));
+    }
+
+    public void testRollupsSurviveRestart() throws Exception {
+
+        // given: two users of a team uploaded tasks
+        request("POST", "/upload?team=core&user=anna", TASKS);
+        request("POST", "/upload?team=core&user=ben", "id,started,category,duration\n,100,work,10\n");
+
+        // when: the server is started again
+        server.stop();
+        server = new TeamServer(directory, 3, 4, 4);
+        port = server.start(0);
+
+        // then: the team rollup is rebuilt from disk and was written as file
+        assertEquals("category,tasks,millis\ncall,1,20\nwork,2,60\n", request("GET", "/rollup?team=core", null));
+        assertTrue(new File(directory, TeamServer.ROLLUP_FILE).isFile());
+    }
+
+    public void testInvalidNamesAreRejected() throws Exception {
+
+        // when: a user name escapes the data directory
+        int status = status("POST", "/upload?team=core&user=..%2Fanna", TASKS);
+
+        // then: the upload is refused
+        assertEquals(400, status);
+    }
+
+    private String request(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = connect(method, path, body);
+        try {
+            assertEquals(200, connection.getResponseCode());
+            InputStream in = connection.getInputStream();
+            ByteArrayOutputStream answer = new ByteArrayOutputStream();
+            int read;
+            while ((read = in.read()) != -1) {
+                answer.write(read);
+            }
+            return answer.toString("UTF-8");
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private int status(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = connect(method, path, body);
+        try {
+            return connection.getResponseCode();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection connect(String method, String path, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            OutputStream out = connection.getOutputStream();
+            out.write(body.getBytes("UTF-8"));
+            out.close();
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,49 @@
+package de.nenick.workinterruption.teamserver;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+
+public class UserLogTest extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        file = File.createTempFile("userlog", ".tasks");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        super.tearDown();
+    }
+
+    public void testDiscardCutsUnsyncedRecords() throws IOException {
+
+        // given: a synced task and a written but failed one
+        UserLog log = new UserLog(file, "core", "anna", new Rollups());
+        log.add(100, "work", 50);
+        log.write();
+        log.sync(new Rollups());
+        long synced = file.length();
+        log.add(200, "call", 20);
+        log.write();
+
+        // when: the failed task is discarded and another one stored
+        log.discard();
+        log.add(300, "work", 10);
+        log.write();
+        log.sync(new Rollups());
+        log.close();
+
+        // then: the log holds the synced tasks only
+        Rollups replayed = new Rollups();
+        new UserLog(file, "core", "anna", replayed).close();
+        assertTrue(synced < file.length());
+        assertEquals(2, replayed.user("core", "anna").categories().get("work").tasks);
+        assertNull(replayed.user("core", "anna").categories().get("call"));
+    }
+}